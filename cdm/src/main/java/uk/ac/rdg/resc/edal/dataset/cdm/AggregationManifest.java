@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ucar.ma2.Array;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.units.DateUnit;
+import uk.ac.rdg.resc.edal.dataset.WorkingFiles;
+
+/**
+ * A record of the information needed from each file in a multi-file glob
+ * aggregation in order to build its NcML. Each file is only rescanned if its
+ * modification time or size has changed since it was last scanned, and new
+ * files are scanned in parallel.
+ * 
+ * Manifests are {@link Serializable} so that they can be stored on disk and
+ * reused across restarts.
+ * 
+ * @author agent
+ */
+final class AggregationManifest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AggregationManifest.class);
+
+    /**
+     * The attributes which must have the same values across all files in the
+     * aggregation
+     */
+    private static final String[] COMMON_ATTRIBUTES = new String[] { "scale_factor",
+            "add_offset", "_FillValue" };
+
+    /**
+     * The information extracted from a single file in the aggregation
+     */
+    static final class FileSummary implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String path;
+        final long lastModified;
+        final long length;
+        final String timeUnits;
+        final long startTime;
+        final long endTime;
+        /* The concatenated variable names, identifying the set of variables */
+        final String varNames;
+        /*
+         * Maps variable name to the values of the attributes which must match
+         * across the aggregation. A null value means that the attribute is
+         * present but not numeric.
+         */
+        final Map<String, Map<String, Number>> varAttributes;
+
+        private FileSummary(File file, long lastModified, long length, String timeUnits,
+                long startTime, long endTime, String varNames,
+                Map<String, Map<String, Number>> varAttributes) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = lastModified;
+            this.length = length;
+            this.timeUnits = timeUnits;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.varNames = varNames;
+            this.varAttributes = varAttributes;
+        }
+
+        private boolean isCurrent(File file) {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+
+    private final String location;
+    private final String timeDimName;
+    private final Map<String, FileSummary> summaries = new HashMap<>();
+    private transient int lastScanCount = 0;
+
+    /**
+     * Creates a new, empty manifest
+     * 
+     * @param location
+     *            The glob expression which this manifest describes
+     * @param timeDimName
+     *            The name of the time dimension being aggregated over
+     */
+    AggregationManifest(String location, String timeDimName) {
+        this.location = location;
+        this.timeDimName = timeDimName;
+    }
+
+    /**
+     * Reads a manifest from disk.
+     * 
+     * @param manifestFile
+     *            The file to read from
+     * @param location
+     *            The glob expression which the manifest should describe
+     * @param timeDimName
+     *            The name of the time dimension being aggregated over
+     * @return The stored manifest, or a new empty one if the file does not
+     *         exist, cannot be read, or describes a different aggregation
+     */
+    static AggregationManifest read(File manifestFile, String location, String timeDimName) {
+        if (manifestFile != null && manifestFile.exists()) {
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new FileInputStream(manifestFile))) {
+                AggregationManifest manifest = (AggregationManifest) in.readObject();
+                if (manifest.matches(location, timeDimName)) {
+                    return manifest;
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                log.warn("Unable to read aggregation manifest " + manifestFile
+                        + ". It will be regenerated.", e);
+            }
+        }
+        return new AggregationManifest(location, timeDimName);
+    }
+
+    /**
+     * Writes this manifest to disk
+     * 
+     * @param manifestFile
+     *            The file to write to
+     */
+    synchronized void write(File manifestFile) {
+        try {
+            WorkingFiles.write(manifestFile, tmpFile -> {
+                try (ObjectOutputStream out = new ObjectOutputStream(
+                        new FileOutputStream(tmpFile))) {
+                    out.writeObject(this);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Unable to write aggregation manifest to " + manifestFile, e);
+        }
+    }
+
+    /**
+     * @param location
+     *            The glob expression
+     * @param timeDimName
+     *            The name of the time dimension
+     * @return Whether this manifest describes the given aggregation
+     */
+    boolean matches(String location, String timeDimName) {
+        return this.location.equals(location) && this.timeDimName.equals(timeDimName);
+    }
+
+    /**
+     * Brings this manifest up-to-date with the given list of files. Files which
+     * are new, or have changed since they were last scanned, are scanned in
+     * parallel. Files which are no longer present are removed.
+     * 
+     * @param files
+     *            The files which make up the aggregation
+     * @param nThreads
+     *            The maximum number of files to scan at once
+     * @return The {@link FileSummary}s, in the same order as the files. Files
+     *         which could not be read are omitted.
+     */
+    synchronized List<FileSummary> update(List<File> files, int nThreads) {
+        Map<File, Future<FileSummary>> scans = new HashMap<>();
+        List<File> toScan = new ArrayList<>();
+        for (File file : files) {
+            FileSummary summary = summaries.get(file.getAbsolutePath());
+            if (summary == null || !summary.isCurrent(file)) {
+                toScan.add(file);
+            }
+        }
+        lastScanCount = toScan.size();
+
+        if (!toScan.isEmpty()) {
+            log.debug("Scanning " + toScan.size() + " of " + files.size() + " files in "
+                    + location);
+            ExecutorService executor = Executors
+                    .newFixedThreadPool(Math.max(1, Math.min(nThreads, toScan.size())));
+            try {
+                for (final File file : toScan) {
+                    scans.put(file, executor.submit(new Callable<FileSummary>() {
+                        @Override
+                        public FileSummary call() throws Exception {
+                            return scan(file, timeDimName);
+                        }
+                    }));
+                }
+                for (File file : toScan) {
+                    summaries.remove(file.getAbsolutePath());
+                    try {
+                        summaries.put(file.getAbsolutePath(), scans.get(file).get());
+                    } catch (ExecutionException e) {
+                        log.error("Problem aggregating dataset", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(
+                                "Interrupted whilst scanning files in " + location, e);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        Map<String, FileSummary> current = new LinkedHashMap<>();
+        for (File file : files) {
+            FileSummary summary = summaries.get(file.getAbsolutePath());
+            if (summary != null) {
+                current.put(summary.path, summary);
+            }
+        }
+        summaries.keySet().retainAll(current.keySet());
+        return new ArrayList<>(current.values());
+    }
+
+    /**
+     * @return The number of files which were scanned in the most recent call
+     *         to {@link #update(List, int)}
+     */
+    int getLastScanCount() {
+        return lastScanCount;
+    }
+
+    /**
+     * Reads the time range, variables, and common attributes from a single
+     * file
+     */
+    private static FileSummary scan(File file, String timeDimName) throws Exception {
+        /*
+         * Get the state of the file before reading it, so that any change made
+         * during the scan means that it gets scanned again next time
+         */
+        long lastModified = file.lastModified();
+        long length = file.length();
+        NetcdfFile ncFile = null;
+        try {
+            ncFile = NetcdfFile.open(file.getAbsolutePath());
+            Variable timeVar = ncFile.findVariable(timeDimName);
+            String unitsString = timeVar.findAttribute("units").getStringValue();
+            String[] unitsParts = unitsString.split(" since ");
+            Array timeVals = timeVar.read();
+            long startTime = new DateUnit(timeVals.getDouble(0), unitsParts[0],
+                    DateUnit.getStandardOrISO(unitsParts[1])).getDate().getTime();
+            long endTime = new DateUnit(timeVals.getDouble(timeVar.getShape(0) - 1),
+                    unitsParts[0], DateUnit.getStandardOrISO(unitsParts[1])).getDate()
+                            .getTime();
+
+            /*
+             * varNames allows us to track which variables are in each file.
+             */
+            StringBuilder varNames = new StringBuilder();
+            Map<String, Map<String, Number>> varAttributes = new LinkedHashMap<>();
+            for (Variable v : ncFile.getVariables()) {
+                varNames.append(v.getFullName());
+                Map<String, Number> attributeValues = new HashMap<>();
+                for (Attribute attr : v.getAttributes()) {
+                    for (String name : COMMON_ATTRIBUTES) {
+                        if (attr.getFullName().equalsIgnoreCase(name)) {
+                            attributeValues.put(attr.getFullName(), attr.getNumericValue());
+                        }
+                    }
+                }
+                varAttributes.put(v.getFullName(), attributeValues);
+            }
+            return new FileSummary(file, lastModified, length, unitsString, startTime, endTime,
+                    varNames.toString(), varAttributes);
+        } finally {
+            if (ncFile != null) {
+                ncFile.close();
+            }
+        }
+    }
+}
@@ -28,18 +28,21 @@
 
 package uk.ac.rdg.resc.edal.dataset.cdm;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-
 import ucar.ma2.Array;
+import ucar.ma2.DataType;
 import ucar.ma2.Index;
+import ucar.ma2.IndexIterator;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Variable;
 import ucar.nc2.dataset.NetcdfDataset;
@@ -47,6 +50,8 @@ import ucar.nc2.dataset.NetcdfDataset.Enhance;
 import ucar.nc2.dataset.VariableDS;
 import ucar.nc2.dt.GridDataset;
 import ucar.nc2.dt.GridDatatype;
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.dataset.ChunkedGridDataSource;
 import uk.ac.rdg.resc.edal.dataset.GridDataSource;
 import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
 import uk.ac.rdg.resc.edal.util.Array4D;
@@ -59,23 +64,29 @@ import uk.ac.rdg.resc.edal.util.cdm.CdmUtils;
  * @author Guy Griffiths
  * @author Jon
  */
-final class CdmGridDataSource implements GridDataSource {
+final class CdmGridDataSource implements ChunkedGridDataSource {
     private static final Logger log = LoggerFactory.getLogger(CdmGridDataSource.class);
+    /*
+     * Reads smaller than this (e.g. single values read pixel-by-pixel) are not
+     * worth accounting for in the memory budget
+     */
+    private static final long MIN_RESERVED_BYTES = 64 * 1024;
 
     /*
      * Note that this is the CDM GridDataset, not the EDAL one
      */
     private final GridDataset gridDataset;
-    private NetcdfDataset nc;
-    private Map<String, RangesList> rangeListCache = new HashMap<>();
+    private Map<String, RangesList> rangeListCache = new ConcurrentHashMap<>();
 
     /*
-     * This is used to synchronize the actual reading. This is necessary because
-     * we have the following model:
+     * Reads are synchronized on the NetcdfDataset itself, rather than on a
+     * global lock. This is necessary because we have the following model:
      * 
-     * There is a single NetcdfDataset object per dataset, which gets cached,
-     * and closed when the cache becomes full. This is because the overhead of
-     * creating a NetcdfDataset is high.
+     * Open NetcdfDataset objects are kept in a pool (see NetcdfDatasetPool),
+     * because the overhead of creating a NetcdfDataset is high. A location
+     * can have several open NetcdfDatasets, so that concurrent requests can
+     * read in parallel, and they are closed when the pool becomes full or
+     * they have been idle for too long.
      * 
      * Each time CdmGridDataset.openGridDataSource() is called, a *new*
      * CdmGridDataSource is created. We can't keep the individual
@@ -84,17 +95,22 @@ final class CdmGridDataSource implements GridDataSource {
      * creating a new CdmGridDataSource is very low compared to the creation of
      * a NetcdfDataset.
      * 
-     * When read() is called on separate instances of CdmGridDataSource which
-     * refer to the same location, something happens which causes the array
-     * indices to be set incorrectly, and we get an
-     * ArrayIndexOutOfBoundsException. We can't synchronize on a non-static
-     * object, because these are all separate instances.
+     * When read() is called concurrently on separate instances of
+     * CdmGridDataSource which were given the same NetcdfDataset, the shared
+     * file position of the underlying RandomAccessFile gets moved by one
+     * thread whilst another is part way through a read, which causes the
+     * array indices to be set incorrectly, and we get an
+     * ArrayIndexOutOfBoundsException. Locking on the NetcdfDataset object is
+     * sufficient to prevent the issue.
+     * 
+     * Reads from different NetcdfDatasets (i.e. different locations, or
+     * different pooled handles on the same location) do not share any I/O
+     * state and can therefore proceed in parallel.
      * 
-     * This could also have been solved by removing NetcdfDataset caching. I
-     * think that this would have a bigger effect on the speed, although that
-     * may depend on the use case.
+     * This used to be a single static lock object, which meant that only one
+     * read could happen at a time across the entire JVM.
      */
-    private static Object syncObj = new Object();
+    private final NetcdfDataset nc;
 
     /**
      * Instantiate a {@link CdmGridDataSource} from a {@link NetcdfDataset}
@@ -145,11 +161,7 @@ final class CdmGridDataSource implements GridDataSource {
          */
         if (rangeList != null) {
             for (Entry<String, RangesList> entry : rangeList.entrySet()) {
-                int x = entry.getValue().getXAxisIndex();
-                int y = entry.getValue().getYAxisIndex();
-                int z = entry.getValue().getZAxisIndex();
-                int t = entry.getValue().getTAxisIndex();
-                rangeListCache.put(entry.getKey(), new RangesList(x, y, z, t));
+                rangeListCache.put(entry.getKey(), new RangesList(entry.getValue()));
             }
         }
     }
@@ -157,48 +169,16 @@ final class CdmGridDataSource implements GridDataSource {
     @Override
     public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin, int zmax, int ymin,
             int ymax, int xmin, int xmax) throws IOException, DataReadingException {
+        VariableDS var = getVariable(variableId);
+        RangesList cachedRangesList = getRangesList(variableId);
         /*
-         * Get hold of the variable from which we want to read data
-         */
-        GridDatatype gridDatatype = gridDataset.findGridDatatype(variableId);
-        VariableDS var;
-        if (gridDatatype != null) {
-            /*
-             * This is the ideal option, but in the case of staggered grids, we
-             * may not have any grid datatypes
-             */
-            var = gridDatatype.getVariable();
-        } else {
-            /*
-             * In this case, just find the original variable and either cast it
-             * or create a new VariableDS, as required
-             */
-            Variable origVar = nc.findVariable(variableId);
-            if (origVar instanceof VariableDS) {
-                var = (VariableDS) origVar;
-            } else {
-                var = new VariableDS(null, origVar, false);
-            }
-        }
-
-        /*
-         * Create RangesList object from GridDatatype object This will lead to
-         * many RangesList objects being created during data extraction for
-         * PIXEL_BY_PIXEL and SCANLINE strategies.
-         * 
-         * Therefore we cache it - it doesn't give a huge increase in speed, but
-         * it is noticeable
+         * The ranges get modified for each read (and again by the returned
+         * WrappedArray if it reads 2D slices), so we take a copy of the cached
+         * list, which keeps its rank including any extra dimensions (e.g. an
+         * ensemble dimension). Otherwise concurrent reads on this object
+         * would overwrite each others' ranges.
          */
-        RangesList rangesList;
-        if (rangeListCache.containsKey(variableId)) {
-            rangesList = rangeListCache.get(variableId);
-        } else {
-            /*
-             * TODO What if gridDatatype is null????
-             */
-            rangesList = new RangesList(gridDatatype);
-            rangeListCache.put(variableId, rangesList);
-        }
+        RangesList rangesList = new RangesList(cachedRangesList);
 
         /*
          * If we are extracting a chunk of data which is 3- or 4-dimensional,
@@ -209,12 +189,6 @@ final class CdmGridDataSource implements GridDataSource {
         int ySize = ymax - ymin + 1;
         int xSize = xmax - xmin + 1;
 
-        /*
-         * Note that this could be increased by forcing a garbage collection.
-         * 
-         * However, that completely cripples performance.
-         */
-        long freeBytes = Runtime.getRuntime().freeMemory();
         /*
          * This is actually the amount of storage needed to store an array of
          * floats * 2. The factor of 2 is to cover additional overheads.
@@ -234,90 +208,272 @@ final class CdmGridDataSource implements GridDataSource {
         rangesList.setXRange(xmin, xmax);
 
         /*
-         * If we have no t or z data, or we definitely have enough memory, read
-         * all data at once.
+         * If we have no t or z data, or we can reserve enough memory from the
+         * shared budget, read all data at once. The memory is held by the
+         * returned array, so the reservation lasts until that is no longer in
+         * use.
          * 
-         * If not, we will read in 2D slices.
+         * If not, we will read in 2D slices, and only reserve enough memory
+         * for the slice which the returned array caches.
          */
-        if ((tSize == 1 && zSize == 1) || freeBytes > requiredBytes) {
-            try {
-                /*
-                 * See definition of syncObj for explanation of synchronization
-                 */
-                if (origVar == null) {
-                    synchronized (syncObj) {
-                        /* We read from the enhanced variable */
-                        arr = var.read(rangesList.getRanges());
-                    }
-                } else {
-                    synchronized (syncObj) {
-                        /*
-                         * We read from the original variable to avoid enhancing
-                         * data values that we won't use
-                         */
-                        arr = origVar.read(rangesList.getRanges());
+        MemoryBudget.Reservation reservation = null;
+        try {
+            boolean readAll;
+            if (requiredBytes < MIN_RESERVED_BYTES) {
+                readAll = true;
+            } else if (tSize == 1 && zSize == 1) {
+                reservation = MemoryBudget.reserve(requiredBytes);
+                readAll = true;
+            } else {
+                reservation = MemoryBudget.tryReserve(requiredBytes);
+                readAll = reservation != null;
+            }
+            if (readAll) {
+                try {
+                    /*
+                     * See definition of nc for explanation of synchronization
+                     */
+                    if (origVar == null) {
+                        synchronized (nc) {
+                            /* We read from the enhanced variable */
+                            arr = var.read(rangesList.getRanges());
+                        }
+                    } else {
+                        synchronized (nc) {
+                            /*
+                             * We read from the original variable to avoid
+                             * enhancing data values that we won't use
+                             */
+                            arr = origVar.read(rangesList.getRanges());
+                        }
                     }
+                } catch (InvalidRangeException ire) {
+                    log.error("Problem reading data - invalid range:\n" + "x: " + xmin + " -> "
+                            + xmax + "y: " + ymin + " -> " + ymax + "z: " + zmin + " -> " + zmax
+                            + "t: " + tmin + " -> " + tmax);
+                    throw new DataReadingException("Cannot read data - invalid range specified",
+                            ire);
+                } catch (ArrayIndexOutOfBoundsException e) {
+                    log.error(this + " caused out of bounds");
+                    throw e;
                 }
-            } catch (InvalidRangeException ire) {
-                log.error("Problem reading data - invalid range:\n" + "x: " + xmin + " -> " + xmax
-                        + "y: " + ymin + " -> " + ymax + "z: " + zmin + " -> " + zmax + "t: " + tmin
-                        + " -> " + tmax);
-                throw new DataReadingException("Cannot read data - invalid range specified", ire);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                log.error(this + " caused out of bounds");
-                throw e;
+            } else {
+                /*
+                 * Reading this section into memory may cause an
+                 * OutOfMemoryError. Instead, we will read it in 2D xy slices.
+                 * 
+                 * This is actually fine for many use cases (e.g. extracting
+                 * map data, writing to file), but will become a massive issue
+                 * if profile / timeseries data is extracted. Warn about this.
+                 * 
+                 * When applications know it's fine, they can lower the log
+                 * threshold for this class.
+                 */
+                log.warn(
+                        "Not enough memory available to read entire data structure into memory. Data will be read in 2D x-y slices. "
+                                + "This will be very inefficient if you are extracting profiles / timeseries. "
+                                + "In that case, consider using a higher-level method to extract the profile / timeseries, or increase the heap size");
+                reservation = reserve((long) xSize * ySize * 4 * 2);
+                /*
+                 * Simply setting the array to null will cause the WrappedArray
+                 * to read 2D slices whenever get() is called. If the same 2D
+                 * slice is accessed on subsequent calls, it is cached.
+                 */
+                arr = null;
             }
-        } else {
-            /*
-             * Reading this section into memory may cause an OutOfMemoryError.
-             * Instead, we will read it in 2D xy slices.
-             * 
-             * This is actually fine for many use cases (e.g. extracting map
-             * data, writing to file), but will become a massive issue if
-             * profile / timeseries data is extracted. Warn about this.
-             * 
-             * When applications know it's fine, they can lower the log
-             * threshold for this class.
-             */
-            log.warn(
-                    "Not enough free memory to read entire data structure into memory. Data will be read in 2D x-y slices. "
-                            + "This will be very inefficient if you are extracting profiles / timeseries. "
-                            + "In that case, consider using a higher-level method to extract the profile / timeseries, or increase the heap size");
+        } catch (IOException | RuntimeException e) {
+            if (reservation != null) {
+                reservation.close();
+            }
+            throw e;
+        }
+
+        /*
+         * Returns a 4D array that wraps the Array
+         */
+        int[] shape = new int[] { tSize, zSize, ySize, xSize };
+        WrappedArray wrappedArray = new WrappedArray(nc, var, arr, needsEnhance(var, origVar),
+                shape, rangesList);
+        if (reservation != null) {
+            reservation.releaseWhenUnreachable(wrappedArray);
+        }
+        return wrappedArray;
+    }
+
+    /*
+     * Reserves memory for a read, unless it is too small to be worth
+     * accounting for (e.g. single values read pixel-by-pixel)
+     */
+    private static MemoryBudget.Reservation reserve(long bytes) {
+        return bytes < MIN_RESERVED_BYTES ? null : MemoryBudget.reserve(bytes);
+    }
+
+    /**
+     * Values of float, short and byte variables are all exactly representable
+     * as floats, as are those of packed variables which are unpacked to
+     * floats. Others (e.g. doubles, or ints which may be larger than
+     * 2<sup>24</sup>) are not.
+     */
+    @Override
+    public boolean hasFloatValues(String variableId) throws DataReadingException {
+        VariableDS var = getVariable(variableId);
+        DataType dataType = var.getDataType();
+        if (var.hasScaleOffset()) {
+            return dataType == DataType.FLOAT;
+        }
+        return dataType == DataType.FLOAT || dataType == DataType.SHORT
+                || dataType == DataType.BYTE;
+    }
+
+    /**
+     * Reads the data in a single operation and converts it straight into the
+     * supplied array. Scale, offset and missing values are handled for the
+     * whole array at once, rather than for each value as they are with
+     * {@link #read(String, int, int, int, int, int, int, int, int)}.
+     */
+    @Override
+    public void readFloats(String variableId, int tmin, int tmax, int zmin, int zmax, int ymin,
+            int ymax, int xmin, int xmax, float[] values) throws IOException, DataReadingException {
+        VariableDS var = getVariable(variableId);
+        RangesList cachedRangesList = getRangesList(variableId);
+        RangesList rangesList = new RangesList(cachedRangesList);
+        int tSize = tmax - tmin + 1;
+        int zSize = zmax - zmin + 1;
+        int ySize = ymax - ymin + 1;
+        int xSize = xmax - xmin + 1;
+        if (values.length < (long) tSize * zSize * ySize * xSize) {
+            throw new IllegalArgumentException("Array of size " + values.length
+                    + " is too small to read " + tSize * zSize * ySize * xSize + " values into");
+        }
+        rangesList.setTRange(tmin, tmax);
+        rangesList.setZRange(zmin, zmax);
+        rangesList.setYRange(ymin, ymax);
+        rangesList.setXRange(xmin, xmax);
+
+        Variable origVar = var.getOriginalVariable();
+        Array arr;
+        try {
             /*
-             * Simply setting the array to null will cause the WrappedArray to
-             * read 2D slices whenever get() is called. If the same 2D slice is
-             * accessed on subsequent calls, it is cached.
+             * See definition of nc for explanation of synchronization
              */
-            arr = null;
+            synchronized (nc) {
+                arr = (origVar == null ? var : origVar).read(rangesList.getRanges());
+            }
+        } catch (InvalidRangeException ire) {
+            log.error("Problem reading data - invalid range:\n" + "x: " + xmin + " -> " + xmax
+                    + "y: " + ymin + " -> " + ymax + "z: " + zmin + " -> " + zmax + "t: " + tmin
+                    + " -> " + tmax);
+            throw new DataReadingException("Cannot read data - invalid range specified", ire);
+        }
+        if (needsEnhance(var, origVar)) {
+            arr = var.convertScaleOffsetMissing(arr);
+        }
+
+        /*
+         * The array is in the order of the variable's dimensions, which may not
+         * be t,z,y,x. Permute it so that iterating over it gives t,z,y,x order.
+         * Any other dimensions have a size of 1, so we put them first.
+         */
+        int[] axisOrder = new int[] { rangesList.getTAxisIndex(), rangesList.getZAxisIndex(),
+                rangesList.getYAxisIndex(), rangesList.getXAxisIndex() };
+        int[] dims = new int[arr.getRank()];
+        int d = 0;
+        for (int i = 0; i < dims.length; i++) {
+            if (!contains(axisOrder, i)) {
+                dims[d++] = i;
+            }
+        }
+        for (int axis : axisOrder) {
+            if (axis >= 0) {
+                dims[d++] = axis;
+            }
+        }
+
+        MissingValues missingValues = new MissingValues(var);
+        IndexIterator it = arr.permute(dims).getIndexIterator();
+        int n = 0;
+        while (it.hasNext()) {
+            double value = it.getDoubleNext();
+            values[n++] = missingValues.isMissing(value) ? Float.NaN : (float) value;
         }
+    }
 
+    @Override
+    public void readMany(List<String> variableIds, int tmin, int tmax, int zmin, int zmax,
+            int ymin, int ymax, int xmin, int xmax, float[][] values)
+            throws IOException, DataReadingException {
         /*
-         * Decide whether or not we need to enhance any data values we read from
-         * this array
+         * Hold the lock for all of the variables, so that they are read one
+         * after the other without reads from other threads in between
          */
-        final boolean needsEnhance;
+        synchronized (nc) {
+            ChunkedGridDataSource.super.readMany(variableIds, tmin, tmax, zmin, zmax, ymin, ymax,
+                    xmin, xmax, values);
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Decide whether or not we need to enhance any data values we read from a
+     * variable
+     */
+    static boolean needsEnhance(VariableDS var, Variable origVar) {
         Set<Enhance> enhanceMode = var.getEnhanceMode();
         if (enhanceMode.contains(Enhance.ScaleMissingDefer)) {
             /*
              * Values read from the array are not enhanced, but need to be
              */
-            needsEnhance = true;
+            return true;
         } else if (enhanceMode.contains(Enhance.ScaleMissing)) {
             /*
              * We only need to enhance if we read data from the plain Variable
              */
-            needsEnhance = origVar != null;
+            return origVar != null;
         } else {
             /* Values read from the array will not be enhanced */
-            needsEnhance = false;
+            return false;
+        }
+    }
+
+    @Override
+    public int[] getChunkShape(String variableId) throws DataReadingException {
+        VariableDS var = getVariable(variableId);
+        Variable origVar = var.getOriginalVariable();
+        int[] chunkSizes = CdmUtils.getChunkSizes(origVar == null ? var : origVar);
+        if (chunkSizes == null) {
+            return null;
         }
+        return toTZYX(chunkSizes, getRangesList(variableId));
+    }
+
+    @Override
+    public int[] getShape(String variableId) throws DataReadingException {
+        return toTZYX(getVariable(variableId).getShape(), getRangesList(variableId));
+    }
 
+    @Override
+    public String getCacheId() {
+        String location = nc.getLocation();
+        if (location == null) {
+            return null;
+        }
         /*
-         * Returns a 4D array that wraps the Array
+         * Include the modification time of local files, so that chunks of
+         * files which have changed are not reused
          */
-        int[] shape = new int[] { tSize, zSize, ySize, xSize };
-        WrappedArray wrappedArray = new WrappedArray(var, arr, needsEnhance, shape, rangesList);
-        return wrappedArray;
+        File file = new File(location);
+        if (file.exists()) {
+            return location + "@" + file.lastModified();
+        }
+        return location;
     }
 
     @Override
@@ -325,7 +481,79 @@ final class CdmGridDataSource implements GridDataSource {
         NetcdfDatasetAggregator.releaseDataset(nc);
     }
 
+    @Override
+    public boolean supportsConcurrentReads() {
+        /*
+         * Reads are synchronized on the dataset, and each read works on its
+         * own copy of the ranges
+         */
+        return true;
+    }
+
+    /*
+     * Gets hold of the variable from which we want to read data
+     */
+    VariableDS getVariable(String variableId) throws DataReadingException {
+        GridDatatype gridDatatype = gridDataset.findGridDatatype(variableId);
+        if (gridDatatype != null) {
+            /*
+             * This is the ideal option, but in the case of staggered grids, we
+             * may not have any grid datatypes
+             */
+            return gridDatatype.getVariable();
+        } else {
+            /*
+             * In this case, just find the original variable and either cast it
+             * or create a new VariableDS, as required
+             */
+            Variable origVar = nc.findVariable(variableId);
+            if (origVar == null) {
+                throw new DataReadingException("Variable " + variableId + " not found");
+            }
+            if (origVar instanceof VariableDS) {
+                return (VariableDS) origVar;
+            } else {
+                return new VariableDS(null, origVar, false);
+            }
+        }
+    }
+
+    /*
+     * Create RangesList object from GridDatatype object This will lead to many
+     * RangesList objects being created during data extraction for
+     * PIXEL_BY_PIXEL and SCANLINE strategies.
+     * 
+     * Therefore we cache it - it doesn't give a huge increase in speed, but it
+     * is noticeable
+     */
+    RangesList getRangesList(String variableId) {
+        RangesList rangesList = rangeListCache.get(variableId);
+        if (rangesList == null) {
+            /*
+             * TODO What if gridDatatype is null????
+             */
+            rangesList = new RangesList(gridDataset.findGridDatatype(variableId));
+            rangeListCache.put(variableId, rangesList);
+        }
+        return rangesList;
+    }
+
+    /*
+     * Converts an array in the order of the variable's dimensions to one in
+     * the order t, z, y, x, with missing axes having a size of 1
+     */
+    private static int[] toTZYX(int[] values, RangesList rangesList) {
+        int[] axisIndices = new int[] { rangesList.getTAxisIndex(), rangesList.getZAxisIndex(),
+                rangesList.getYAxisIndex(), rangesList.getXAxisIndex() };
+        int[] ret = new int[4];
+        for (int i = 0; i < 4; i++) {
+            ret[i] = axisIndices[i] >= 0 ? values[axisIndices[i]] : 1;
+        }
+        return ret;
+    }
+
     private static final class WrappedArray extends Array4D<Number> {
+        private final NetcdfDataset nc;
         private VariableDS var;
         private Array arr;
         private final int[] shape;
@@ -335,6 +563,7 @@ final class CdmGridDataSource implements GridDataSource {
         private final int tAxisIndex;
         private final boolean needsEnhance;
         private final RangesList rangesList;
+        private final MissingValues missingValues;
 
         /*
          * Used for caching in the case where we read in slices
@@ -343,13 +572,15 @@ final class CdmGridDataSource implements GridDataSource {
         private int cachedZ = -1;
         private int cachedT = -1;
 
-        public WrappedArray(VariableDS var, Array arr, boolean needsEnhance, int[] shape,
-                RangesList rangesList) {
+        public WrappedArray(NetcdfDataset nc, VariableDS var, Array arr, boolean needsEnhance,
+                int[] shape, RangesList rangesList) {
             super(shape[0], shape[1], shape[2], shape[3]);
+            this.nc = nc;
             this.var = var;
             this.shape = shape;
             this.needsEnhance = needsEnhance;
             this.rangesList = rangesList;
+            this.missingValues = new MissingValues(var);
 
             if (needsEnhance && arr != null) {
                 this.arr = var.convertScaleOffsetMissing(arr);
@@ -411,7 +642,9 @@ final class CdmGridDataSource implements GridDataSource {
                     rangesList.setTRange(t, t);
                     rangesList.setZRange(z, z);
                     try {
-                        arrLocal = var.read(rangesList.getRanges());
+                        synchronized (nc) {
+                            arrLocal = var.read(rangesList.getRanges());
+                        }
                         if (this.needsEnhance) {
                             arrLocal = var.convertScaleOffsetMissing(arrLocal);
                         }
@@ -490,45 +723,58 @@ final class CdmGridDataSource implements GridDataSource {
             return shape[0] * shape[1] * shape[2] * shape[3];
         }
 
+        private boolean isMissing(Number num) {
+            return num == null || missingValues.isMissing(num.doubleValue());
+        }
+    }
+
+    /**
+     * Performs the same checks as {@link VariableDS#isMissing(double)}, but
+     * allows a tolerance of 1e-7 on the maximum and minimum values. This is
+     * because when using aggregations we have no underlying original variable.
+     * In these cases, the valid min/max get automatically enhanced as doubles,
+     * but the value gets enhanced as its underlying data type. If this is a
+     * float, then rounding errors can occur.
+     * 
+     * e.g. the valid max may be 1.0f, but 0.9999999776482582. The valid max is
+     * represented in the double form, but the value is represented in the
+     * floating point form is 1.0, which is greater than the valid max, even if
+     * in the underlying data they are equal.
+     * 
+     * The properties of the variable are looked up once, rather than for each
+     * value checked.
+     */
+    static final class MissingValues {
+        private final VariableDS var;
+        private final boolean hasFillValue;
+        private final boolean hasMissingValue;
+        private final double validMin;
+        private final double validMax;
+
+        MissingValues(VariableDS var) {
+            this.var = var;
+            hasFillValue = var.hasFillValue();
+            hasMissingValue = var.hasMissingValue();
+            if (var.hasInvalidData()) {
+                validMin = var.getValidMin() != Double.MAX_VALUE ? var.getValidMin() - 1e-7
+                        : -Double.MAX_VALUE;
+                validMax = var.getValidMax() != -Double.MAX_VALUE ? var.getValidMax() + 1e-7
+                        : Double.MAX_VALUE;
+            } else {
+                validMin = -Double.MAX_VALUE;
+                validMax = Double.MAX_VALUE;
+            }
+        }
+
         /**
-         * Performs the same checks as {@link VariableDS#isMissing(double)}, but
-         * allows a tolerance of 1e-7 on the maximum and minimum values. This is
-         * because when using aggregations we have no underlying original
-         * variable. In these cases, the valid min/max get automatically
-         * enhanced as doubles, but the value gets enhanced as its underlying
-         * data type. If this is a float, then rounding errors can occur.
-         * 
-         * e.g. the valid max may be 1.0f, but 0.9999999776482582. The valid max
-         * is represented in the double form, but the value is represented in
-         * the floating point form is 1.0, which is greater than the valid max,
-         * even if in the underlying data they are equal.
-         * 
          * @param val
          *            The value to check
          * @return Whether or not this should be considered missing data
          */
-        private boolean isMissing(Number num) {
-            if (num == null) {
-                return true;
-            } else {
-                double val = num.doubleValue();
-                if (var.hasFillValue() && var.isFillValue(val)
-                        || var.hasMissingValue() && var.isMissingValue(val) || Double.isNaN(val)) {
-                    return true;
-                } else if (var.hasInvalidData()) {
-                    if (var.getValidMax() != -Double.MAX_VALUE) {
-                        if (val > var.getValidMax() && (val - var.getValidMax()) > 1e-7) {
-                            return true;
-                        }
-                    }
-                    if (var.getValidMin() != Double.MAX_VALUE) {
-                        if (val < var.getValidMin() && (var.getValidMin() - val) > 1e-7) {
-                            return true;
-                        }
-                    }
-                }
-                return false;
-            }
+        boolean isMissing(double val) {
+            return Double.isNaN(val) || val < validMin || val > validMax
+                    || (hasFillValue && var.isFillValue(val))
+                    || (hasMissingValue && var.isMissingValue(val));
         }
     }
 }
@@ -28,6 +28,7 @@
 
 package uk.ac.rdg.resc.edal.dataset.cdm;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -113,11 +114,50 @@ public class CdmGridDatasetFactory extends CdmDatasetFactory implements Serializ
     private static final String UNSTAGGERED_SUFFIX = ":face";
     private static final long serialVersionUID = 1L;
 
+    private static boolean reorderMeshNodes = false;
+
+    /**
+     * Sets whether unstructured mesh datasets should have local copies of
+     * their variables made with the nodes reordered for spatial locality (see
+     * {@link HorizontalMesh4dDataset#buildReorderedStore()}) in the background
+     * when they are loaded. This requires a working directory to have been set, and only
+     * applies to datasets consisting of a single local file. Defaults to
+     * <code>false</code>.
+     * 
+     * @param reorderMeshNodes
+     *            Whether to reorder the nodes of mesh datasets
+     */
+    public static void setReorderMeshNodes(boolean reorderMeshNodes) {
+        CdmGridDatasetFactory.reorderMeshNodes = reorderMeshNodes;
+    }
+
+    /**
+     * Sets the largest gap between required nodes which will be read through
+     * when reading data from unstructured mesh datasets. Nodes separated by a
+     * larger gap are read in separate runs. Defaults to 1024.
+     * 
+     * @param maxNodeGap
+     *            The maximum number of unused nodes to read between two
+     *            required nodes
+     */
+    public static void setMaxMeshNodeGap(int maxNodeGap) {
+        CdmMeshDataSource.setMaxNodeGap(maxNodeGap);
+    }
+
     @Override
     protected DiscreteLayeredDataset<? extends DataSource, ? extends DiscreteLayeredVariableMetadata> generateDataset(
             String id, String location, NetcdfDataset nc) throws IOException {
         if (isUgrid(nc)) {
-            return generateUnstructuredGridDataset(id, location, nc);
+            CdmUgridDataset dataset = generateUnstructuredGridDataset(id, location, nc);
+            if (reorderMeshNodes && getWorkingDirectory() != null
+                    && dataset.getSourceId() != null) {
+                /*
+                 * Building the local copies can take a long time, so the
+                 * dataset reads from the source files until they are ready
+                 */
+                dataset.buildReorderedStoreInBackground();
+            }
+            return dataset;
         } else if (isSgrid(nc)) {
             return generateStaggeredGridDataset(id, location, nc);
         } else {
@@ -1249,7 +1289,15 @@ public class CdmGridDatasetFactory extends CdmDatasetFactory implements Serializ
                      * ConcurrentModificationException, so we synchronise this
                      * action to avoid the issue.
                      */
-                    return new CdmGridDataSource(nc);
+                    CdmGridDataSource dataSource = new CdmGridDataSource(nc);
+                    if (MappedNetcdf3DataSource.canMap(nc)) {
+                        /*
+                         * Local NetCDF-3 files can be read directly from a
+                         * memory-mapped copy of the file
+                         */
+                        return new MappedNetcdf3DataSource(nc, dataSource);
+                    }
+                    return dataSource;
                 }
             } catch (EdalException | IOException e) {
                 if (nc != null) {
@@ -1450,6 +1498,11 @@ public class CdmGridDatasetFactory extends CdmDatasetFactory implements Serializ
         public void close() throws DataReadingException {
             cdmGridDataSource.close();
         }
+
+        @Override
+        public boolean supportsConcurrentReads() {
+            return cdmGridDataSource.supportsConcurrentReads();
+        }
     }
 
     private final class CdmUgridDataset extends HorizontalMesh4dDataset implements Serializable {
@@ -1492,11 +1545,24 @@ public class CdmGridDatasetFactory extends CdmDatasetFactory implements Serializ
                      * ConcurrentModificationException, so we synchronise this
                      * action to avoid the issue.
                      */
-                    return new CdmMeshDataSource(nc, varId2hztIndices);
+                    return useReorderedStore(new CdmMeshDataSource(nc, varId2hztIndices));
                 }
             } catch (EdalException | IOException e) {
                 throw new DataReadingException("Problem aggregating datasets", e);
             }
         }
+
+        @Override
+        protected String getSourceId() {
+            /*
+             * We can only identify the source data if it is a single local
+             * file
+             */
+            File file = new File(location);
+            if (file.isFile()) {
+                return file.getAbsolutePath() + "@" + file.lastModified() + ":" + file.length();
+            }
+            return null;
+        }
     }
 }
@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+
+import uk.ac.rdg.resc.edal.dataset.GridSliceWriter;
+import uk.ac.rdg.resc.edal.dataset.GriddedDataset;
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.domain.GridDomain;
+import uk.ac.rdg.resc.edal.exceptions.EdalException;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.grid.RectilinearGrid;
+import uk.ac.rdg.resc.edal.grid.TimeAxis;
+import uk.ac.rdg.resc.edal.grid.VerticalAxis;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.util.Array2D;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+/**
+ * A {@link GridSliceWriter} which streams a subset of a {@link GriddedDataset}
+ * to an {@link OutputStream} as a NetCDF-3 file (64-bit offset format).
+ * 
+ * Unlike {@link CdmGridFeatureWrite}, which needs a complete
+ * {@link uk.ac.rdg.resc.edal.feature.GridFeature} and writes NetCDF-4 to a
+ * file, the layout of a NetCDF-3 file can be calculated in advance from the
+ * subset domain alone. This means that the header can be sent (e.g. as the
+ * start of an HTTP response) before any data has been read, and the data can
+ * then be written one horizontal slice at a time, so that memory use does not
+ * depend on the size of the subset.
+ * 
+ * If the subset has a time axis, it is written as the record (unlimited)
+ * dimension, so that each time step of every variable is written in turn.
+ * 
+ * @author agent
+ */
+public class CdmGridFeatureStreamWrite implements GridSliceWriter {
+    private static final float FILL_VALUE = Float.NEGATIVE_INFINITY;
+
+    private static final byte[] MAGIC = new byte[] { 'C', 'D', 'F', 2 };
+    private static final int NC_DIMENSION = 0x0A;
+    private static final int NC_VARIABLE = 0x0B;
+    private static final int NC_ATTRIBUTE = 0x0C;
+    private static final int NC_CHAR = 2;
+    private static final int NC_FLOAT = 5;
+    private static final int NC_DOUBLE = 6;
+    /*
+     * The largest vsize which can be stored in the header. Only the last
+     * variable in the file may be larger than this.
+     */
+    private static final long MAX_VSIZE = 0xFFFFFFFCL;
+
+    private final DataOutputStream out;
+
+    private int xSize;
+    private int ySize;
+    private int zSize;
+    private int tSize;
+    private TimeAxis tAxis;
+    private List<String> varIds;
+    /*
+     * Buffer for a single row of a slice
+     */
+    private ByteBuffer rowBuffer;
+    private long slicesWritten = 0;
+
+    /**
+     * Creates a new {@link CdmGridFeatureStreamWrite}.
+     * 
+     * @param out
+     *            The {@link OutputStream} to write to. This will be flushed
+     *            after the header and at the end of the data, but will not be
+     *            closed.
+     */
+    public CdmGridFeatureStreamWrite(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Streams a subset of a {@link GriddedDataset} as NetCDF. All variables
+     * must share the same underlying grid, which must be rectilinear and
+     * CRS:84/EPSG:4326.
+     * 
+     * @param dataset
+     *            The {@link GriddedDataset} to extract data from
+     * @param variables
+     *            The variable IDs to write
+     * @param hBox
+     *            The {@link BoundingBox} in which to extract data
+     * @param zExtent
+     *            The {@link Extent} in the z-direction to subset, or
+     *            <code>null</code> for all z-values
+     * @param tExtent
+     *            The {@link Extent} in time to subset, or <code>null</code>
+     *            for all time values
+     * @param out
+     *            The {@link OutputStream} to write to
+     * @throws EdalException
+     *             If there is a problem extracting the subset
+     * @throws IOException
+     *             If there is a problem writing to the {@link OutputStream}
+     */
+    public static void gridSubsetToNetCDF(GriddedDataset dataset, Set<String> variables,
+            BoundingBox hBox, Extent<Double> zExtent, Extent<DateTime> tExtent,
+            OutputStream out) throws EdalException, IOException {
+        dataset.streamSubsetFeatures(variables, hBox, zExtent, tExtent,
+                new CdmGridFeatureStreamWrite(out));
+    }
+
+    @Override
+    public void writeHeader(String name, String description, GridDomain domain,
+            Map<String, Parameter> parameters) throws IOException {
+        if (!GISUtils.isDefaultGeographicCRS(
+                domain.getHorizontalGrid().getCoordinateReferenceSystem())
+                || !(domain.getHorizontalGrid() instanceof RectilinearGrid)) {
+            throw new UnsupportedOperationException(
+                    "Currently, writing only supports GridFeatures in CRS:84/EPSG:4326 with a RectlinearGrid");
+        }
+        RectilinearGrid hGrid = (RectilinearGrid) domain.getHorizontalGrid();
+        VerticalAxis zAxis = domain.getVerticalAxis();
+        tAxis = domain.getTimeAxis();
+        xSize = hGrid.getXSize();
+        ySize = hGrid.getYSize();
+        zSize = zAxis == null ? 1 : zAxis.size();
+        tSize = tAxis == null ? 1 : tAxis.size();
+        varIds = new ArrayList<>(parameters.keySet());
+        rowBuffer = ByteBuffer.allocate(xSize * 4);
+
+        /*
+         * Define dimensions. Time is the record dimension, so has no length in
+         * the header.
+         */
+        Map<String, Integer> dims = new LinkedHashMap<>();
+        if (tAxis != null) {
+            dims.put("time", 0);
+        }
+        if (zAxis != null) {
+            dims.put("z", zSize);
+        }
+        dims.put("lat", ySize);
+        dims.put("lon", xSize);
+        List<String> dataDims = new ArrayList<>(dims.keySet());
+
+        /*
+         * Define variables, with non-record variables first
+         */
+        List<NcVariable> vars = new ArrayList<>();
+        NcVariable latVar = new NcVariable("lat", NC_FLOAT, false, ySize * 4L, "lat");
+        latVar.attributes.put("units", "degrees_north");
+        latVar.attributes.put("standard_name", "latitude");
+        vars.add(latVar);
+        NcVariable lonVar = new NcVariable("lon", NC_FLOAT, false, xSize * 4L, "lon");
+        lonVar.attributes.put("units", "degrees_east");
+        lonVar.attributes.put("standard_name", "longitude");
+        vars.add(lonVar);
+        if (zAxis != null) {
+            NcVariable zVar = new NcVariable("z", NC_FLOAT, false, zSize * 4L, "z");
+            zVar.attributes.put("units", zAxis.getVerticalCrs().getUnits());
+            zVar.attributes.put("positive",
+                    zAxis.getVerticalCrs().isPositiveUpwards() ? "up" : "down");
+            vars.add(zVar);
+        }
+        long sliceSize = (long) zSize * ySize * xSize * 4L;
+        List<NcVariable> dataVars = new ArrayList<>();
+        for (Entry<String, Parameter> entry : parameters.entrySet()) {
+            NcVariable dataVar = new NcVariable(entry.getKey(), NC_FLOAT, tAxis != null,
+                    sliceSize, dataDims.toArray(new String[dataDims.size()]));
+            Parameter parameter = entry.getValue();
+            dataVar.attributes.put("units", parameter.getUnits());
+            dataVar.attributes.put("standard_name", parameter.getStandardName());
+            dataVar.attributes.put("long_name", parameter.getDescription());
+            dataVar.attributes.put("_FillValue", FILL_VALUE);
+            dataVars.add(dataVar);
+        }
+        if (tAxis != null) {
+            NcVariable tVar = new NcVariable("time", NC_DOUBLE, true, 8L, "time");
+            tVar.attributes.put("units", "seconds since 1970-01-01 00:00:00");
+            tVar.attributes.put("standard_name", "time");
+            vars.add(tVar);
+        }
+        vars.addAll(dataVars);
+
+        Map<String, Object> globalAttributes = new LinkedHashMap<>();
+        globalAttributes.put("Conventions", "CF-1.6");
+        globalAttributes.put("title", name);
+        globalAttributes.put("summary", description);
+        globalAttributes.put("CreatedBy", "EDAL Libraries");
+        globalAttributes.put("MoreInfo", "https://github.com/Reading-eScience-Centre/edal-java");
+
+        /*
+         * The header size doesn't depend on the variable offsets, so we can
+         * calculate it first and then lay out the data after it.
+         */
+        long offset = encodeHeader(dims, globalAttributes, vars).length;
+        for (NcVariable var : vars) {
+            if (!var.record) {
+                var.begin = offset;
+                offset += var.vsize;
+            }
+        }
+        for (NcVariable var : vars) {
+            if (var.record) {
+                var.begin = offset;
+                offset += var.vsize;
+            }
+        }
+        for (int i = 0; i < vars.size() - 1; i++) {
+            if (vars.get(i).vsize > MAX_VSIZE) {
+                throw new IllegalArgumentException("The variable " + vars.get(i).name
+                        + " is too large to be written to NetCDF-3."
+                        + " Try requesting a smaller subset or fewer variables.");
+            }
+        }
+        out.write(encodeHeader(dims, globalAttributes, vars));
+
+        /*
+         * Write the coordinate variables
+         */
+        for (Double lat : hGrid.getYAxis().getCoordinateValues()) {
+            out.writeFloat(lat.floatValue());
+        }
+        for (Double lon : hGrid.getXAxis().getCoordinateValues()) {
+            out.writeFloat(lon.floatValue());
+        }
+        if (zAxis != null) {
+            for (Double z : zAxis.getCoordinateValues()) {
+                out.writeFloat(z.floatValue());
+            }
+        }
+        /*
+         * Flush, so that whatever is receiving the data can start to do so
+         * before any data has been read.
+         */
+        out.flush();
+    }
+
+    @Override
+    public void writeSlice(String varId, int t, int z, Array2D<Number> values)
+            throws IOException {
+        /*
+         * The file layout depends on the order in which we receive the data,
+         * so check that it's what we expect.
+         */
+        int nVars = varIds.size();
+        int expectedT = (int) (slicesWritten / (zSize * nVars));
+        int expectedVar = (int) ((slicesWritten / zSize) % nVars);
+        int expectedZ = (int) (slicesWritten % zSize);
+        if (t != expectedT || z != expectedZ || !varIds.get(expectedVar).equals(varId)) {
+            throw new IllegalStateException("Expected slice t=" + expectedT + ", z="
+                    + expectedZ + " of " + varIds.get(expectedVar) + " but received t=" + t
+                    + ", z=" + z + " of " + varId);
+        }
+        if (values.getYSize() != ySize || values.getXSize() != xSize) {
+            throw new IllegalArgumentException("Slice has the wrong shape");
+        }
+
+        if (tAxis != null && expectedVar == 0 && z == 0) {
+            /*
+             * Start of a new record, which begins with the time value
+             */
+            out.writeDouble(tAxis.getCoordinateValue(t).getMillis() / 1000.0);
+        }
+        for (int y = 0; y < ySize; y++) {
+            rowBuffer.clear();
+            for (int x = 0; x < xSize; x++) {
+                Number value = values.get(y, x);
+                rowBuffer.putFloat(value == null ? FILL_VALUE : value.floatValue());
+            }
+            out.write(rowBuffer.array(), 0, rowBuffer.position());
+        }
+        slicesWritten++;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        long expected = (long) tSize * zSize * varIds.size();
+        if (slicesWritten != expected) {
+            throw new IllegalStateException("Only " + slicesWritten + " of " + expected
+                    + " slices were written");
+        }
+        out.flush();
+    }
+
+    /*
+     * A variable in the NetCDF header. vsize is the size of the variable (or
+     * of a single record of it).
+     */
+    private static final class NcVariable {
+        private final String name;
+        private final int type;
+        private final boolean record;
+        private final long vsize;
+        private final String[] dims;
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private long begin = 0;
+
+        private NcVariable(String name, int type, boolean record, long vsize, String... dims) {
+            this.name = name;
+            this.type = type;
+            this.record = record;
+            this.vsize = vsize;
+            this.dims = dims;
+        }
+    }
+
+    private byte[] encodeHeader(Map<String, Integer> dims, Map<String, Object> globalAttributes,
+            List<NcVariable> vars) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.write(MAGIC);
+        header.writeInt(tAxis == null ? 0 : tSize);
+
+        header.writeInt(NC_DIMENSION);
+        header.writeInt(dims.size());
+        List<String> dimNames = new ArrayList<>();
+        for (Entry<String, Integer> dim : dims.entrySet()) {
+            writeName(header, dim.getKey());
+            header.writeInt(dim.getValue());
+            dimNames.add(dim.getKey());
+        }
+
+        writeAttributes(header, globalAttributes);
+
+        header.writeInt(NC_VARIABLE);
+        header.writeInt(vars.size());
+        for (int i = 0; i < vars.size(); i++) {
+            NcVariable var = vars.get(i);
+            writeName(header, var.name);
+            header.writeInt(var.dims.length);
+            for (String dim : var.dims) {
+                header.writeInt(dimNames.indexOf(dim));
+            }
+            writeAttributes(header, var.attributes);
+            header.writeInt(var.type);
+            /*
+             * A vsize which is too large to represent is only allowed for the
+             * last variable, and is written as 2^32 - 1
+             */
+            header.writeInt(var.vsize > MAX_VSIZE ? -1 : (int) var.vsize);
+            header.writeLong(var.begin);
+        }
+        header.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeAttributes(DataOutputStream header, Map<String, Object> attributes)
+            throws IOException {
+        List<Entry<String, Object>> nonNull = new ArrayList<>();
+        for (Entry<String, Object> attribute : attributes.entrySet()) {
+            if (attribute.getValue() != null) {
+                nonNull.add(attribute);
+            }
+        }
+        if (nonNull.isEmpty()) {
+            /*
+             * ABSENT
+             */
+            header.writeInt(0);
+            header.writeInt(0);
+            return;
+        }
+        header.writeInt(NC_ATTRIBUTE);
+        header.writeInt(nonNull.size());
+        for (Entry<String, Object> attribute : nonNull) {
+            writeName(header, attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Float) {
+                header.writeInt(NC_FLOAT);
+                header.writeInt(1);
+                header.writeFloat((Float) value);
+            } else {
+                header.writeInt(NC_CHAR);
+                writeChars(header, value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static void writeName(DataOutputStream header, String name) throws IOException {
+        writeChars(header, name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeChars(DataOutputStream header, byte[] chars) throws IOException {
+        header.writeInt(chars.length);
+        header.write(chars);
+        /*
+         * Pad to a 4-byte boundary
+         */
+        for (int i = chars.length; i % 4 != 0; i++) {
+            header.write(0);
+        }
+    }
+}
@@ -63,6 +63,9 @@ import uk.ac.rdg.resc.edal.util.GridCoordinates2D;
  * Provides methods for writing Features to NetCDF files. Currently fairly
  * limited in scope, it contains a single method which will write a GridFeature
  * on a rectilinear lat-lon grid to file.
+ * 
+ * This requires the entire {@link GridFeature} to be held in memory. For large
+ * subsets, use {@link CdmGridFeatureStreamWrite} instead.
  *
  * @author Guy Griffiths
  */
@@ -30,6 +30,7 @@ package uk.ac.rdg.resc.edal.dataset.cdm;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -52,12 +53,14 @@ import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
  */
 final class CdmMeshDataSource implements HZTDataSource {
     /*
-     * This is used to synchronize the actual reading. This is necessary because
-     * we have the following model:
+     * Reads are synchronized on the NetcdfDataset itself, rather than on a
+     * global lock. This is necessary because we have the following model:
      * 
-     * There is a single NetcdfDataset object per dataset, which gets cached,
-     * and closed when the cache becomes full. This is because the overhead of
-     * creating a NetcdfDataset is high.
+     * Open NetcdfDataset objects are kept in a pool (see NetcdfDatasetPool),
+     * because the overhead of creating a NetcdfDataset is high. A location
+     * can have several open NetcdfDatasets, so that concurrent requests can
+     * read in parallel, and they are closed when the pool becomes full or
+     * they have been idle for too long.
      * 
      * Each time CfHorizontalMesh4dDataset.openGridDataSource() is called, a
      * *new* CdmMeshDataSource is created. We can't keep the individual
@@ -66,50 +69,67 @@ final class CdmMeshDataSource implements HZTDataSource {
      * creating a new CdmMeshDataSource is very low compared to the creation of
      * a NetcdfDataset.
      * 
-     * When read() is called on separate instances of CdmMeshDataSource which
-     * refer to the same location, something happens which causes the array
-     * indices to be set incorrectly, and we get an
-     * ArrayIndexOutOfBoundsException. We can't synchronize on a non-static
-     * object, because these are all separate instances.
-     * 
-     * This could also have been solved by removing NetcdfDataset caching. I
-     * think that this would have a bigger effect on the speed, although that
-     * may depend on the use case.
+     * When read() is called concurrently on separate instances of
+     * CdmMeshDataSource which were given the same NetcdfDataset, the shared
+     * file position gets moved by one thread whilst another is part way
+     * through a read, which causes the array indices to be set incorrectly,
+     * and we get an ArrayIndexOutOfBoundsException. Locking on the
+     * NetcdfDataset object is sufficient to prevent this, and reads from
+     * different NetcdfDatasets (whether of different mesh datasets or pooled
+     * handles on the same one) can proceed concurrently.
      */
-    private static Object syncObj = new Object();
     private NetcdfDataset nc;
     private Map<String, int[]> varId2hztIndices;
 
+    /*
+     * Node numbering on unstructured meshes is generally not spatially local,
+     * so the nodes needed for a small area can be spread throughout the
+     * variable. Rather than reading everything between the smallest and
+     * largest node, we read runs of nodes, starting a new run whenever the gap
+     * to the next required node is larger than this.
+     */
+    private static int maxNodeGap = 1024;
+
     public CdmMeshDataSource(NetcdfDataset nc, Map<String, int[]> varId2hztIndices) {
         this.nc = nc;
         this.varId2hztIndices = varId2hztIndices;
     }
 
+    /**
+     * Sets the largest gap between required nodes which will be read through
+     * rather than being split into separate reads
+     * 
+     * @param maxNodeGap
+     *            The maximum number of unused nodes to read between two
+     *            required nodes
+     */
+    static void setMaxNodeGap(int maxNodeGap) {
+        if (maxNodeGap < 0) {
+            throw new IllegalArgumentException("Maximum node gap cannot be negative");
+        }
+        CdmMeshDataSource.maxNodeGap = maxNodeGap;
+    }
+
     @Override
     public List<Number> read(String variableId, List<MeshCoordinates3D> coordsToRead)
             throws DataReadingException {
         int[] hztIndices = varId2hztIndices.get(variableId);
 
         /*
-         * First find the range of co-ordinates to read
+         * First find the range of co-ordinates to read, and the horizontal
+         * indices which are actually required
          */
-        int minH = Integer.MAX_VALUE;
-        int maxH = -1;
+        int[] hs = new int[coordsToRead.size()];
+        int nHs = 0;
         int minZ = Integer.MAX_VALUE;
         int maxZ = -1;
         int minT = Integer.MAX_VALUE;
         int maxT = -1;
         boolean[] hztRangesSet = new boolean[] { false, false, false };
         for (MeshCoordinates3D coords : coordsToRead) {
-            if (hztIndices[0] >= 0) {
-                if (coords.h < minH && coords.h >= 0) {
-                    minH = coords.h;
-                    hztRangesSet[0] = true;
-                }
-                if (coords.h > maxH) {
-                    maxH = coords.h;
-                    hztRangesSet[0] = true;
-                }
+            if (hztIndices[0] >= 0 && coords.h >= 0) {
+                hs[nHs++] = coords.h;
+                hztRangesSet[0] = true;
             }
             if (hztIndices[1] >= 0) {
                 if (coords.z < minZ && coords.z >= 0) {
@@ -155,62 +175,109 @@ final class CdmMeshDataSource implements HZTDataSource {
                 }
             }
 
-            List<Range> ranges = new ArrayList<>();
-            for (int i = 0; i < numDims; i++) {
-                ranges.add(null);
-            }
+            /*
+             * Group the required horizontal indices into runs. If there is no
+             * horizontal dimension, we just have a single "run".
+             */
+            int[][] runs = getRuns(hs, nHs);
 
             try {
-                if (hztIndices[0] >= 0) {
-                    ranges.set(hztIndices[0], new Range(minH, maxH));
+                List<Range> ranges = new ArrayList<>();
+                for (int i = 0; i < numDims; i++) {
+                    ranges.add(null);
                 }
-
                 if (hztIndices[1] >= 0) {
                     ranges.set(hztIndices[1], new Range(minZ, maxZ));
                 }
-
                 if (hztIndices[2] >= 0) {
                     ranges.set(hztIndices[2], new Range(minT, maxT));
                 }
 
-                /*
-                 * See definition of syncObj for explanation of synchronization
-                 */
-                synchronized (syncObj) {
-                    Variable var = nc.findVariable(variableId);
-                    Array arr = var.read(ranges);
-
-                    for (MeshCoordinates3D coords : coordsToRead) {
-                        if (coords.h < 0 || coords.z < 0 || coords.t < 0) {
-                            ret.add(null);
-                            continue;
-                        }
-                        Index index = arr.getIndex();
-                        if (hztIndices[2] >= 0) {
-                            index.setDim(hztIndices[2], coords.t - minT);
-                        }
-                        if (hztIndices[1] >= 0) {
-                            index.setDim(hztIndices[1], coords.z - minZ);
-                        }
-                        if (hztIndices[0] >= 0) {
-                            try {
-                                index.setDim(hztIndices[0], coords.h - minH);
-                            } catch (ArrayIndexOutOfBoundsException e) {
-                                e.printStackTrace();
-                            }
-                        }
+                Array[] runArrays = new Array[runs[0].length];
+                for (int r = 0; r < runArrays.length; r++) {
+                    if (hztIndices[0] >= 0) {
+                        ranges.set(hztIndices[0], new Range(runs[0][r], runs[1][r]));
+                    }
+                    /*
+                     * See the definition of nc for an explanation of the
+                     * synchronization
+                     */
+                    synchronized (nc) {
+                        Variable var = nc.findVariable(variableId);
+                        runArrays[r] = var.read(ranges);
+                    }
+                }
 
-                        ret.add(readNumber(arr, index));
+                for (MeshCoordinates3D coords : coordsToRead) {
+                    if (coords.h < 0 || coords.z < 0 || coords.t < 0) {
+                        ret.add(null);
+                        continue;
+                    }
+                    int run = 0;
+                    if (hztIndices[0] >= 0) {
+                        run = Arrays.binarySearch(runs[0], coords.h);
+                        if (run < 0) {
+                            /*
+                             * Not the start of a run, so it's in the run
+                             * before the insertion point
+                             */
+                            run = -run - 2;
+                        }
+                    }
+                    Array arr = runArrays[run];
+                    Index index = arr.getIndex();
+                    if (hztIndices[2] >= 0) {
+                        index.setDim(hztIndices[2], coords.t - minT);
+                    }
+                    if (hztIndices[1] >= 0) {
+                        index.setDim(hztIndices[1], coords.z - minZ);
                     }
+                    if (hztIndices[0] >= 0) {
+                        index.setDim(hztIndices[0], coords.h - runs[0][run]);
+                    }
+
+                    ret.add(readNumber(arr, index));
                 }
             } catch (ArrayIndexOutOfBoundsException | IOException | InvalidRangeException e) {
-                e.printStackTrace();
                 throw new DataReadingException("Problem reading data from data source", e);
             }
         }
         return ret;
     }
 
+    /**
+     * Groups horizontal indices into runs which should be read together
+     * 
+     * @param hs
+     *            An array containing the required horizontal indices. This
+     *            will be sorted in place.
+     * @param nHs
+     *            The number of valid entries in <code>hs</code>
+     * @return A 2-element array containing the start indices and the end
+     *         indices (inclusive) of each run, in ascending order. If there
+     *         are no horizontal indices, a single run is returned.
+     */
+    static int[][] getRuns(int[] hs, int nHs) {
+        if (nHs == 0) {
+            return new int[][] { { 0 }, { 0 } };
+        }
+        Arrays.sort(hs, 0, nHs);
+        int[] starts = new int[nHs];
+        int[] ends = new int[nHs];
+        int nRuns = 0;
+        starts[0] = hs[0];
+        ends[0] = hs[0];
+        for (int i = 1; i < nHs; i++) {
+            if (hs[i] - ends[nRuns] - 1 > maxNodeGap) {
+                nRuns++;
+                starts[nRuns] = hs[i];
+            }
+            ends[nRuns] = hs[i];
+        }
+        nRuns++;
+        return new int[][] { Arrays.copyOf(starts, nRuns), Arrays.copyOf(ends, nRuns) };
+    }
+
     private Number readNumber(Array arr, Index index) {
         Number val = null;
         switch (arr.getDataType()) {
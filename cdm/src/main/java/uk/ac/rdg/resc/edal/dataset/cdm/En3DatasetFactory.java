@@ -34,15 +34,22 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.joda.time.DateTime;
 import org.joda.time.chrono.ISOChronology;
@@ -59,12 +66,15 @@ import ucar.nc2.Dimension;
 import ucar.nc2.Variable;
 import ucar.nc2.dataset.NetcdfDataset;
 import uk.ac.rdg.resc.edal.dataset.PointDataset;
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore;
+import uk.ac.rdg.resc.edal.dataset.DataReadExecutor;
 import uk.ac.rdg.resc.edal.dataset.Dataset;
 import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
 import uk.ac.rdg.resc.edal.dataset.DiscreteFeatureReader;
 import uk.ac.rdg.resc.edal.dataset.FeatureIndexer;
 import uk.ac.rdg.resc.edal.dataset.FeatureIndexer.FeatureBounds;
-import uk.ac.rdg.resc.edal.dataset.PRTreeFeatureIndexer;
+import uk.ac.rdg.resc.edal.dataset.MappedFeatureIndexer;
+import uk.ac.rdg.resc.edal.dataset.WorkingFiles;
 import uk.ac.rdg.resc.edal.domain.Extent;
 import uk.ac.rdg.resc.edal.domain.SimpleHorizontalDomain;
 import uk.ac.rdg.resc.edal.domain.SimpleTemporalDomain;
@@ -165,6 +175,25 @@ public final class En3DatasetFactory extends DatasetFactory {
         }
     }
 
+    /*
+     * The maximum number of unwanted profiles to read between wanted profiles
+     * when reading several profiles from the same file
+     */
+    private static int maxProfileGap = 64;
+
+    /**
+     * Sets the maximum number of unwanted profiles which will be read in order
+     * to read wanted profiles from a file in a single pass. Larger values mean
+     * fewer, larger reads.
+     * 
+     * @param maxProfileGap
+     *            The maximum gap between profile numbers which will be read in
+     *            the same pass
+     */
+    static void setMaxProfileGap(int maxProfileGap) {
+        En3DatasetFactory.maxProfileGap = maxProfileGap;
+    }
+
     /*
      * The VerticalCrs for the EN3 database. In EN3, depth is measured as a
      * positive number of metres downwards.
@@ -181,379 +210,456 @@ public final class En3DatasetFactory extends DatasetFactory {
             .appendMinuteOfHour(1).appendLiteral(":").appendSecondOfMinute(1).appendLiteral(" utc")
             .toFormatter().withZoneUTC().withChronology(ISOChronology.getInstanceUTC());
 
-    /* This is because we deserialise a HashMap which is a generic. */
+    /*
+     * The details of each file which has been added to the spatial index of an
+     * EN3 dataset. This is used to detect files which have changed since they
+     * were indexed, and to recalculate the domain of the dataset without
+     * reading every file.
+     */
+    private static final class En3FileInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int fileId;
+        private final long lastModified;
+        private final long length;
+        /*
+         * The number of profiles in this file which have been indexed
+         */
+        private int nProfiles = 0;
+        private double minLat = Double.MAX_VALUE;
+        private double maxLat = -Double.MAX_VALUE;
+        private double minLon = Double.MAX_VALUE;
+        private double maxLon = -Double.MAX_VALUE;
+        private double minZ = Double.MAX_VALUE;
+        private double maxZ = -Double.MAX_VALUE;
+        private long minT = Long.MAX_VALUE;
+        private long maxT = -Long.MAX_VALUE;
+
+        public En3FileInfo(File file, int fileId) {
+            this.fileId = fileId;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        /**
+         * @param file
+         *            The file which this {@link En3FileInfo} describes
+         * @return Whether the file is unchanged since it was indexed
+         */
+        public boolean isCurrent(File file) {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+
+    /* This is because we deserialise a LinkedHashMap which is a generic. */
     @SuppressWarnings("unchecked")
     @Override
-    public En3Dataset createDataset(String id, String location, boolean forceRefresh)
+    public PointDataset<ProfileFeature> createDataset(String id, String location,
+            boolean forceRefresh)
             throws IOException, EdalException {
         log.debug("IN createDataset Entering createDataset");
         long t1 = System.currentTimeMillis();
 
-        /*
-         * Use these to calculate the spatial extent of the entire dataset
-         */
-        double minLat = Double.MAX_VALUE;
-        double maxLat = -Double.MAX_VALUE;
-
-        double minLon = Double.MAX_VALUE;
-        double maxLon = -Double.MAX_VALUE;
-
-        double minZ = Double.MAX_VALUE;
-        double maxZ = -Double.MAX_VALUE;
-
-        DateTime minT = new DateTime(Long.MAX_VALUE);
-        DateTime maxT = new DateTime(-Long.MAX_VALUE);
-
         /*
          * Expand the glob expression and then loop over each individual file
          */
         List<File> files = CdmUtils.expandGlobExpression(location);
 
         /*
-         * Check to see if we have indexed this set of files in the past. If so,
-         * read the spatial index from disk, otherwise generate a new one and
-         * write that.
+         * If the dataset has been ingested into a columnar store since these
+         * files last changed, read features from that instead
          */
-        File spatialIndexFile = new File(workingDir, id + ".index.ser");
-        boolean readExistingSpatialIndex = false;
-        ObjectInputStream in = null;
-        FileInputStream fileIn = null;
-
-        if (spatialIndexFile.exists() && !forceRefresh) {
-            /*-
-             * We have an existing spatial index for this ID.
-             *
-             * This file contains simple serialisations of (in order):
-             *
-             * The list of files used in the index.
-             * The horizontal domain
-             * The vertical domain
-             * The time domain
-             * The spatial indexer
-             */
-            try {
-                fileIn = new FileInputStream(spatialIndexFile);
-                in = new ObjectInputStream(fileIn);
-                List<File> existingFilesList = (List<File>) in.readObject();
-                if (files.equals(existingFilesList)) {
-                    /*
-                     * The current list of files is the same as the one used in
-                     * the previous indexing.
-                     */
-                    readExistingSpatialIndex = true;
+        String sourceKey = null;
+        if (ColumnarFeatureStore.isEnabled()) {
+            sourceKey = ColumnarFeatureStore.getSourceKey(files);
+            if (!forceRefresh) {
+                PointDataset<ProfileFeature> storedDataset = ColumnarFeatureStore
+                        .openDataset(id, sourceKey);
+                if (storedDataset != null) {
+                    return storedDataset;
                 }
-            } catch (ClassNotFoundException | IOException | ClassCastException e) {
-                /*
-                 * Log this error, but otherwise ignore it - we will just
-                 * recreate the spatial index, so it's not a big problem.
-                 */
-                log.warn("Problem reading EN3/4 serialisation index", e);
             }
         }
 
         /*
-         * The domain of this EN3 dataset
+         * Check to see if we have indexed files for this ID in the past. If so,
+         * read the existing spatial index and only update it for files which
+         * have been added, changed, or removed since, otherwise generate a new
+         * one.
+         *
+         * The spatial index itself is stored in a MappedFeatureIndexer file,
+         * and the details of the indexed files are serialised alongside it,
+         * along with the revision of the index they were written with. If the
+         * two don't match (e.g. we stopped between writing one and the other)
+         * they are both discarded.
          */
-        SimpleHorizontalDomain hDomain = null;
-        SimpleVerticalDomain zDomain = null;
-        SimpleTemporalDomain tDomain = null;
+        File spatialIndexFile = new File(workingDir, id + ".index.ser");
+        File featureIndexFile = new File(workingDir, id + ".index");
+
         /*
-         * The map of IDs to file locations
+         * The files which are in the spatial index
          */
-        Map<Integer, File> id2File = new HashMap<>();
+        Map<File, En3FileInfo> fileInfos = null;
         /*
          * The spatial indexer to use
          */
-        FeatureIndexer indexer = null;
-
-        if (readExistingSpatialIndex) {
-            try {
-                hDomain = (SimpleHorizontalDomain) in.readObject();
-                zDomain = (SimpleVerticalDomain) in.readObject();
-                tDomain = (SimpleTemporalDomain) in.readObject();
-                id2File = (HashMap<Integer, File>) in.readObject();
-                indexer = (PRTreeFeatureIndexer) in.readObject();
-
+        MappedFeatureIndexer indexer = null;
+
+        if (spatialIndexFile.exists() && featureIndexFile.exists() && !forceRefresh) {
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new FileInputStream(spatialIndexFile))) {
+                long revision = in.readLong();
+                fileInfos = (LinkedHashMap<File, En3FileInfo>) in.readObject();
+                indexer = new MappedFeatureIndexer(featureIndexFile);
+                if (indexer.getRevision() != revision) {
+                    throw new IOException("EN3/4 file list does not match the spatial index");
+                }
                 log.debug("Successfully read spatial index from file");
-            } catch (ClassNotFoundException | IOException | ClassCastException e) {
+            } catch (ClassNotFoundException | IOException | ClassCastException
+                    | DataReadingException e) {
                 /*
-                 * Problem reading spatial index/domain from file. Set the flag
-                 * to regenerate it.
+                 * Log this error, but otherwise ignore it - we will just
+                 * recreate the spatial index, so it's not a big problem.
                  */
-                log.warn("Problem reading EN3/4 domain/spatial index", e);
-                readExistingSpatialIndex = false;
+                log.warn("Problem reading EN3/4 spatial index", e);
+                indexer = null;
             }
         }
 
-        if (!readExistingSpatialIndex) {
+        if (indexer == null) {
             /*
-             * We don't want to keep reading from the file, because it either
-             * doesn't exist, or it doesn't match the file set we are now
-             * reading (e.g. a new file has been added, or this ID was last used
-             * for a different EN3 dataset)
+             * We either have no spatial index for this ID, or it is not
+             * readable. Delete any existing files and start a new one.
              */
-            if (in != null) {
-                in.close();
+            spatialIndexFile.delete();
+            featureIndexFile.delete();
+            fileInfos = new LinkedHashMap<>();
+            indexer = new MappedFeatureIndexer(featureIndexFile);
+        }
+
+        /*
+         * Find the files which have been removed or changed since they were
+         * indexed. Changed files are then re-indexed as new files.
+         */
+        Set<File> currentFiles = new HashSet<>(files);
+        Set<Integer> removedFileIds = new HashSet<>();
+        int nextFileId = 0;
+        Iterator<Entry<File, En3FileInfo>> iterator = fileInfos.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<File, En3FileInfo> entry = iterator.next();
+            En3FileInfo fileInfo = entry.getValue();
+            nextFileId = Math.max(nextFileId, fileInfo.fileId + 1);
+            if (!currentFiles.contains(entry.getKey()) || !fileInfo.isCurrent(entry.getKey())) {
+                removedFileIds.add(fileInfo.fileId);
+                iterator.remove();
             }
-            if (fileIn != null) {
-                fileIn.close();
+        }
+
+        /*
+         * We want to be able to easily convert a feature ID to a file and
+         * profile number. We could:
+         *
+         * Create unique IDs and store a map of ID -> File/ProfileNumber
+         *
+         * Encode the full path/profile number in the ID
+         *
+         * Store the common prefix+suffix of all file paths in the dataset, and
+         * encode the non-unique path/profile number in the ID
+         *
+         * But to get around having awkward characters in the ID and not use too
+         * much memory, we use a hybrid solution, where we store a Map of IDs to
+         * Files, and encode the file ID and the profile number in the feature
+         * ID.
+         *
+         * File IDs are never reused, so that features in a changed file get
+         * new IDs.
+         */
+        List<FeatureBounds> featureBounds = new ArrayList<>();
+        int newFiles = 0;
+        for (File file : files) {
+            if (!fileInfos.containsKey(file)) {
+                fileInfos.put(file, readFeatureBounds(file, nextFileId++, featureBounds));
+                newFiles++;
             }
-            if (spatialIndexFile.exists()) {
-                /*
-                 * We have a spatial index file but it doesn't match the files
-                 * list. Delete it to create a new one.
-                 */
-                spatialIndexFile.delete();
+        }
+
+        if (!removedFileIds.isEmpty() || newFiles > 0 || !spatialIndexFile.exists()) {
+            log.debug("Read " + featureBounds.size() + " features from " + newFiles
+                    + " new files.  Removing " + removedFileIds.size()
+                    + " files and updating index...");
+            Set<String> removedFeatureIds = new HashSet<>();
+            if (!removedFileIds.isEmpty()) {
+                for (String featureId : indexer.getAllFeatureIds()) {
+                    int fileId = Integer.parseInt(featureId.substring(0, featureId.indexOf(':')));
+                    if (removedFileIds.contains(fileId)) {
+                        removedFeatureIds.add(featureId);
+                    }
+                }
             }
+            indexer.updateFeatures(removedFeatureIds, featureBounds);
+            log.debug("Indexed " + indexer.size() + " features.");
 
             /*
-             * Now loop through all files, read the profile domains and IDs and
-             * create the spatial index.
+             * Now serialise the details of the indexed files, with the
+             * revision of the index they match.
              */
-            indexer = new PRTreeFeatureIndexer();
-            List<PRTreeFeatureIndexer.FeatureBounds> featureBounds = new ArrayList<>();
-            int totalProfiles = 0;
+            long revision = indexer.getRevision();
+            Map<File, En3FileInfo> indexedFileInfos = fileInfos;
+            try {
+                WorkingFiles.write(spatialIndexFile, tmpFile -> {
+                    try (ObjectOutputStream out = new ObjectOutputStream(
+                            new FileOutputStream(tmpFile))) {
+                        out.writeLong(revision);
+                        out.writeObject(indexedFileInfos);
+                    }
+                });
+                log.debug("Serialised spatial index to file");
+            } catch (IOException e) {
+                log.warn("Unable to serialise spatial index to file", e);
+            }
+        }
 
+        /*
+         * Use these to calculate the spatial extent of the entire dataset
+         */
+        double minLat = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE;
+
+        double minLon = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE;
+
+        double minZ = Double.MAX_VALUE;
+        double maxZ = -Double.MAX_VALUE;
+
+        long minT = Long.MAX_VALUE;
+        long maxT = -Long.MAX_VALUE;
+
+        /*
+         * The map of IDs to file locations
+         */
+        Map<Integer, File> id2File = new HashMap<>();
+        for (Entry<File, En3FileInfo> entry : fileInfos.entrySet()) {
+            En3FileInfo fileInfo = entry.getValue();
+            id2File.put(fileInfo.fileId, entry.getKey());
+            if (fileInfo.nProfiles > 0) {
+                minLat = Math.min(minLat, fileInfo.minLat);
+                maxLat = Math.max(maxLat, fileInfo.maxLat);
+                minLon = Math.min(minLon, fileInfo.minLon);
+                maxLon = Math.max(maxLon, fileInfo.maxLon);
+                minZ = Math.min(minZ, fileInfo.minZ);
+                maxZ = Math.max(maxZ, fileInfo.maxZ);
+                minT = Math.min(minT, fileInfo.minT);
+                maxT = Math.max(maxT, fileInfo.maxT);
+            }
+        }
+
+        /*
+         * The domain of this dataset. Since all variables are valid for the
+         * entire dataset, their domain must include the domains of all points
+         * within it.
+         */
+        SimpleHorizontalDomain hDomain = new SimpleHorizontalDomain(minLon, minLat, maxLon,
+                maxLat);
+        SimpleVerticalDomain zDomain = new SimpleVerticalDomain(minZ, maxZ, EN3_VERTICAL_CRS);
+        SimpleTemporalDomain tDomain = new SimpleTemporalDomain(
+                new DateTime(minT, ISOChronology.getInstanceUTC()),
+                new DateTime(maxT, ISOChronology.getInstanceUTC()));
+
+        /*
+         * Create a list of VariableMetadata objects for this domain. These can
+         * be hardcoded, because these are the variables which the EN3 dataset
+         * measures, and this reader is only for EN3 datasets...
+         */
+        List<VariableMetadata> metadata = new ArrayList<VariableMetadata>();
+        metadata.add(new VariableMetadata(POT_TEMP_PARAMETER, hDomain, zDomain, tDomain));
+        metadata.add(new VariableMetadata(PSAL_PARAMETER, hDomain, zDomain, tDomain));
+
+        long t2 = System.currentTimeMillis();
+        log.debug("Time to create EN3/4 dataset: " + ((t2 - t1) / 1000.0) + "s");
+
+        En3Dataset dataset = new En3Dataset(id, metadata, indexer, hDomain.getBoundingBox(),
+                zDomain.getExtent(), tDomain.getExtent(), id2File);
+        if (sourceKey != null) {
             /*
-             * We want to be able to easily convert a feature ID to a file and
-             * profile number. We could:
-             *
-             * Create unique IDs and store a map of ID -> File/ProfileNumber
-             *
-             * Encode the full path/profile number in the ID
-             *
-             * Store the common prefix+suffix of all file paths in the dataset,
-             * and encode the non-unique path/profile number in the ID
-             *
-             * But to get around having awkward characters in the ID and not use
-             * too much memory, we use a hybrid solution, where we store a Map
-             * of IDs to Files, and encode the file ID and the profile number in
-             * the feature ID
+             * The columnar store is out of date. Use the spatial index until
+             * it has been rewritten.
              */
+            log.debug("OUT createDataset Ingesting into columnar store in the background");
+            ColumnarFeatureStore.ingestInBackground(dataset, sourceKey);
+        }
+        log.debug("OUT createDataset Returning from createDataset");
+        return dataset;
+    }
 
-            int fileId = 0;
+    /**
+     * Reads the positions of all profiles in a single EN3 file
+     * 
+     * @param file
+     *            The file to read
+     * @param fileId
+     *            The ID to use for the file in feature IDs
+     * @param featureBounds
+     *            A {@link List} to add the {@link FeatureBounds} of each valid
+     *            profile to
+     * @return An {@link En3FileInfo} describing the file and the extent of its
+     *         profiles
+     * @throws IOException
+     *             If there is a problem reading the file
+     */
+    private static En3FileInfo readFeatureBounds(File file, int fileId,
+            List<FeatureBounds> featureBounds) throws IOException {
+        En3FileInfo fileInfo = new En3FileInfo(file, fileId);
+        NetcdfDataset nc = NetcdfDatasetAggregator.getDataset(file.getAbsolutePath());
+        try {
+            Dimension nProfiles = nc.findDimension("N_PROF");
+            Dimension nLevels = nc.findDimension("N_LEVELS");
 
-            for (File file : files) {
-                id2File.put(fileId, file);
-                NetcdfDataset nc = NetcdfDatasetAggregator.getDataset(file.getAbsolutePath());
+            Variable latitudeVar = nc.findVariable("LATITUDE");
+            Variable longitudeVar = nc.findVariable("LONGITUDE");
+            Variable timeVar = nc.findVariable("JULD");
+            Variable depthVar = nc.findVariable("DEPH_CORRECTED");
 
-                Dimension nProfiles = nc.findDimension("N_PROF");
-                Dimension nLevels = nc.findDimension("N_LEVELS");
+            Attribute timeUnits = timeVar.findAttribute("units");
+            String timeUnitsStr = timeUnits.getStringValue();
+            String[] timeUnitsParts = timeUnitsStr.split(" since ");
 
-                Variable latitudeVar = nc.findVariable("LATITUDE");
-                Variable longitudeVar = nc.findVariable("LONGITUDE");
-                Variable timeVar = nc.findVariable("JULD");
-                Variable depthVar = nc.findVariable("DEPH_CORRECTED");
+            if (timeUnitsParts.length != 2) {
+                log.error("Expected time units of the form xxxs since yyyy-dd-mm hh:mm:ss utc");
+                return fileInfo;
+            }
 
-                Attribute timeUnits = timeVar.findAttribute("units");
-                String timeUnitsStr = timeUnits.getStringValue();
-                String[] timeUnitsParts = timeUnitsStr.split(" since ");
+            /*
+             * Find the length of a unit, in seconds (we don't use
+             * milliseconds because the DateTime.plusMillis takes an integer
+             * argument and there is a very good chance of integer overflow
+             * for recent values)
+             */
+            int unitLength = TimeUtils.getUnitLengthSeconds(timeUnitsParts[0]);
+            DateTime refTime = EN3_DATE_TIME_FORMATTER.parseDateTime(timeUnitsParts[1]);
 
-                if (timeUnitsParts.length != 2) {
-                    log.error("Expected time units of the form xxxs since yyyy-dd-mm hh:mm:ss utc");
-                    continue;
-                }
+            Array latValues = latitudeVar.read();
+            Array lonValues = longitudeVar.read();
+            Array timeValues = timeVar.read();
+            Array depthValues = depthVar.read();
 
+            /*
+             * Loop over all profiles
+             */
+            for (int profileNum = 0; profileNum < nProfiles.getLength(); profileNum++) {
                 /*
-                 * Find the length of a unit, in seconds (we don't use
-                 * milliseconds because the DateTime.plusMillis takes an integer
-                 * argument and there is a very good chance of integer overflow
-                 * for recent values)
+                 * Get the horizontal position of the current profile
                  */
-                int unitLength = TimeUtils.getUnitLengthSeconds(timeUnitsParts[0]);
-                DateTime refTime = EN3_DATE_TIME_FORMATTER.parseDateTime(timeUnitsParts[1]);
+                double lat = latValues.getDouble(profileNum);
+                double lon = lonValues.getDouble(profileNum);
 
-                Array latValues = latitudeVar.read();
-                Array lonValues = longitudeVar.read();
-                Array timeValues = timeVar.read();
-                Array depthValues = depthVar.read();
+                if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                    /*
+                     * We have bad data for the position. This reading must
+                     * be ignored.
+                     */
+                    continue;
+                }
 
                 /*
-                 * Loop over all profiles
+                 * All positions are in WGS84
                  */
-                for (int profileNum = 0; profileNum < nProfiles.getLength(); profileNum++) {
-                    /*
-                     * Get the horizontal position of the current profile
-                     */
-                    double lat = latValues.getDouble(profileNum);
-                    double lon = lonValues.getDouble(profileNum);
+                HorizontalPosition horizontalPosition = new HorizontalPosition(lon, lat,
+                        GISUtils.defaultGeographicCRS());
+                /*
+                 * Find the time of the current profile measurement
+                 */
+                double seconds = (timeValues.getDouble(profileNum) * unitLength);
+                if (Double.isNaN(seconds)) {
+                    continue;
+                }
 
-                    if (Double.isNaN(lat) || Double.isNaN(lon)) {
-                        /*
-                         * We have bad data for the position. This reading must
-                         * be ignored.
-                         */
-                        continue;
-                    }
+                DateTime time = refTime.plusSeconds((int) seconds);
+                Extent<DateTime> tExtent = Extents.newExtent(time, time);
 
-                    /*
-                     * All positions are in WGS84
-                     */
-                    HorizontalPosition horizontalPosition = new HorizontalPosition(lon, lat,
-                            GISUtils.defaultGeographicCRS());
-                    /*
-                     * Find the time of the current profile measurement
-                     */
-                    double seconds = (timeValues.getDouble(profileNum) * unitLength);
-                    if (Double.isNaN(seconds)) {
-                        continue;
+                /*
+                 * Find the vertical extent of the current profile
+                 */
+                List<Double> depths = new ArrayList<>();
+                for (int j = 0; j < nLevels.getLength(); j++) {
+                    double depth = depthValues.getDouble(profileNum * nLevels.getLength() + j);
+                    if (!Double.isNaN(depth) && depth != 99999.0) {
+                        depths.add(depth);
+                    } else {
+                        break;
                     }
+                }
 
-                    DateTime time = refTime.plusSeconds((int) seconds);
-                    Extent<DateTime> tExtent = Extents.newExtent(time, time);
-
+                if (depths.size() == 0) {
                     /*
-                     * Find the vertical extent of the current profile
+                     * We have the situation where all values of depth
+                     * returned NaN
+                     *
+                     * This profile cannot be indexed
                      */
-                    List<Double> depths = new ArrayList<>();
-                    for (int j = 0; j < nLevels.getLength(); j++) {
-                        double depth = depthValues.getDouble(profileNum * nLevels.getLength() + j);
-                        if (!Double.isNaN(depth) && depth != 99999.0) {
-                            depths.add(depth);
-                        } else {
-                            break;
-                        }
-                    }
-
-                    if (depths.size() == 0) {
-                        /*
-                         * We have the situation where all values of depth
-                         * returned NaN
-                         *
-                         * This profile cannot be indexed
-                         */
-                        continue;
-                    }
-                    boolean nonMonotonic = false;
-                    for (int k = 0; k < depths.size() - 1; k++) {
-                        double depth = depths.get(k);
-                        double nextDepth = depths.get(k + 1);
-                        if (nextDepth <= depth) {
-                            /*
-                             * We have a non-monotonic value. This usually
-                             * follows a very large value in the middle of a
-                             * normally increasing depth axis.
-                             */
-                            nonMonotonic = true;
-                            break;
-                        }
-                    }
-                    if (nonMonotonic) {
+                    continue;
+                }
+                boolean nonMonotonic = false;
+                for (int k = 0; k < depths.size() - 1; k++) {
+                    double depth = depths.get(k);
+                    double nextDepth = depths.get(k + 1);
+                    if (nextDepth <= depth) {
                         /*
-                         * Ignore profiles with non-monotonic axes
+                         * We have a non-monotonic value. This usually
+                         * follows a very large value in the middle of a
+                         * normally increasing depth axis.
                          */
-                        continue;
+                        nonMonotonic = true;
+                        break;
                     }
-
-                    Extent<Double> zExtent = Extents.newExtent(Collections.min(depths),
-                            Collections.max(depths));
-
+                }
+                if (nonMonotonic) {
                     /*
-                     * Create a unique ID
+                     * Ignore profiles with non-monotonic axes
                      */
-                    String profileId = fileId + ":" + profileNum;
+                    continue;
+                }
 
-                    /*
-                     * Store the bounds of this feature to load into the spatial
-                     * indexer
-                     */
-                    featureBounds.add(new FeatureBounds(profileId, horizontalPosition, zExtent,
-                            tExtent, CollectionUtils.setOf(POT_TEMP_PARAMETER.getVariableId(),
-                                    PSAL_PARAMETER.getVariableId())));
+                Extent<Double> zExtent = Extents.newExtent(Collections.min(depths),
+                        Collections.max(depths));
 
-                    /*
-                     * Update entire dataset extents
-                     */
-                    minLat = Math.min(minLat, lat);
-                    maxLat = Math.max(maxLat, lat);
+                /*
+                 * Create a unique ID
+                 */
+                String profileId = fileId + ":" + profileNum;
 
-                    minLon = Math.min(minLon, lon);
-                    maxLon = Math.max(maxLon, lon);
+                /*
+                 * Store the bounds of this feature to load into the spatial
+                 * indexer
+                 */
+                featureBounds.add(new FeatureBounds(profileId, horizontalPosition, zExtent,
+                        tExtent, CollectionUtils.setOf(POT_TEMP_PARAMETER.getVariableId(),
+                                PSAL_PARAMETER.getVariableId())));
 
-                    minZ = Math.min(minZ, zExtent.getLow());
-                    maxZ = Math.max(maxZ, zExtent.getHigh());
+                /*
+                 * Update the extents of this file
+                 */
+                fileInfo.nProfiles++;
 
-                    if (minT.isAfter(time)) {
-                        minT = time;
-                    }
-                    if (maxT.isBefore(time)) {
-                        maxT = time;
-                    }
-                }
+                fileInfo.minLat = Math.min(fileInfo.minLat, lat);
+                fileInfo.maxLat = Math.max(fileInfo.maxLat, lat);
 
-                log.debug("Read " + nProfiles.getLength() + " profiles from file: "
-                        + file.getAbsolutePath());
-                log.debug("Allocated memory " + (Runtime.getRuntime().totalMemory() / 1_000_000L)
-                        + "/" + (Runtime.getRuntime().maxMemory() / 1_000_000L));
-                totalProfiles += nProfiles.getLength();
-                fileId++;
-                NetcdfDatasetAggregator.releaseDataset(nc);
-            }
-            log.debug("Read " + totalProfiles + " features.  Starting indexing...");
-            /*
-             * The domain of this dataset. Since all variables are valid for the
-             * entire dataset, their domain must include the domains of all
-             * points within it.
-             */
-            hDomain = new SimpleHorizontalDomain(minLon, minLat, maxLon, maxLat);
-            zDomain = new SimpleVerticalDomain(minZ, maxZ, EN3_VERTICAL_CRS);
-            tDomain = new SimpleTemporalDomain(minT, maxT);
+                fileInfo.minLon = Math.min(fileInfo.minLon, lon);
+                fileInfo.maxLon = Math.max(fileInfo.maxLon, lon);
 
-            /*
-             * Now add all features to the spatial indexer
-             */
-            indexer.addFeatures(featureBounds);
-            log.debug("Indexed " + totalProfiles + " features.");
-            log.debug("Allocated memory " + (Runtime.getRuntime().totalMemory() / 1_000_000L) + "/"
-                    + (Runtime.getRuntime().maxMemory() / 1_000_000L));
+                fileInfo.minZ = Math.min(fileInfo.minZ, zExtent.getLow());
+                fileInfo.maxZ = Math.max(fileInfo.maxZ, zExtent.getHigh());
 
-            /*
-             * Now serialise the file list, domains, and indexer to file
-             */
-            try {
-                FileOutputStream fileOut = new FileOutputStream(spatialIndexFile);
-                ObjectOutputStream out = new ObjectOutputStream(fileOut);
-                out.writeObject(files);
-                out.writeObject(hDomain);
-                out.writeObject(zDomain);
-                out.writeObject(tDomain);
-                out.writeObject(id2File);
-                out.writeObject(indexer);
-                out.close();
-                fileOut.close();
-                log.debug("Serialised spatial index to file");
-            } catch (IOException e) {
-                log.warn("Unable to serialise spatial index to file", e);
+                fileInfo.minT = Math.min(fileInfo.minT, time.getMillis());
+                fileInfo.maxT = Math.max(fileInfo.maxT, time.getMillis());
             }
-        }
 
-        if (hDomain == null || zDomain == null || tDomain == null || indexer == null) {
-            /*
-             * The above is equivalent to an if-else block, but is implemented
-             * as 2 opposite ifs so that the second block can be entered if the
-             * first fails.
-             *
-             * The upshot is that none of the above variables can be null,
-             * unless the logic is seriously wrong.
-             */
-            assert false;
+            log.debug("Read " + nProfiles.getLength() + " profiles from file: "
+                    + file.getAbsolutePath());
+            log.debug("Allocated memory " + (Runtime.getRuntime().totalMemory() / 1_000_000L)
+                    + "/" + (Runtime.getRuntime().maxMemory() / 1_000_000L));
+            return fileInfo;
+        } finally {
+            NetcdfDatasetAggregator.releaseDataset(nc);
         }
-
-        /*
-         * Create a list of VariableMetadata objects for this domain. These can
-         * be hardcoded, because these are the variables which the EN3 dataset
-         * measures, and this reader is only for EN3 datasets...
-         */
-        List<VariableMetadata> metadata = new ArrayList<VariableMetadata>();
-        metadata.add(new VariableMetadata(POT_TEMP_PARAMETER, hDomain, zDomain, tDomain));
-        metadata.add(new VariableMetadata(PSAL_PARAMETER, hDomain, zDomain, tDomain));
-
-        long t2 = System.currentTimeMillis();
-        log.debug("Time to create EN3/4 dataset: " + ((t2 - t1) / 1000.0) + "s");
-
-        log.debug("OUT createDataset Returning from createDataset");
-        return new En3Dataset(id, metadata, indexer, hDomain.getBoundingBox(), zDomain.getExtent(),
-                tDomain.getExtent(), id2File);
     }
 
     private final class En3Dataset extends PointDataset<ProfileFeature> {
@@ -645,54 +751,63 @@ public final class En3DatasetFactory extends DatasetFactory {
              * the file
              */
             FileAndProfileNumber fileAndProfileNumber = deserialiseId(id);
-
-            ProfileFeature profileFeature = null;
-            NetcdfDataset nc = null;
-            try {
-                /*
-                 * Open the dataset, read the profile, and close the dataset
-                 */
-                nc = NetcdfDatasetAggregator
-                        .getDataset(fileAndProfileNumber.file.getAbsolutePath());
-                profileFeature = doRead(id, nc, fileAndProfileNumber.profileNumber, variableIds);
-            } catch (IOException e) {
-                log.debug("readFeature throwing exception");
-                throw new DataReadingException("Problem reading EN3/4 profile data", e);
-            } catch (InvalidRangeException e) {
-                log.debug("readFeature throwing exception");
-                throw new DataReadingException("Problem reading EN3/4 profile data", e);
-            } finally {
-                NetcdfDatasetAggregator.releaseDataset(nc);
-            }
-            return profileFeature;
-        }
-
-        private class FeatureAndProfileId {
-            private String featureId;
-            private Integer profileId;
-
-            public FeatureAndProfileId(String featureId, Integer profileId) {
-                super();
-                this.featureId = featureId;
-                this.profileId = profileId;
-            }
+            List<ProfileFeature> profileFeatures = readFromFile(fileAndProfileNumber.file,
+                    Collections.singletonList(
+                            new FeatureAndProfileId(id, fileAndProfileNumber.profileNumber)),
+                    variableIds, false, null);
+            return profileFeatures.isEmpty() ? null : profileFeatures.get(0);
         }
 
         @Override
         public List<ProfileFeature> readFeatures(Collection<String> ids,
                 Set<String> variableIds) throws DataReadingException {
+            return readProfiles(ids, variableIds, false, null);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * <p>
+         * This only reads the level of each profile closest to the target
+         * elevation from the data variables.
+         */
+        @Override
+        public List<ProfileFeature> readFeatures(Collection<String> ids, Set<String> variableIds,
+                Extent<Double> zExtent, Double targetZ) throws DataReadingException {
+            return readProfiles(ids, variableIds, true, targetZ);
+        }
+
+        /**
+         * Reads profiles, grouping them by file
+         * 
+         * @param ids
+         *            The IDs of the profiles to read
+         * @param variableIds
+         *            The variables to read, or <code>null</code> for all
+         *            variables
+         * @param singleLevel
+         *            Whether to only read the level of each profile closest to
+         *            targetZ
+         * @param targetZ
+         *            The target elevation if singleLevel is <code>true</code>.
+         *            If this is <code>null</code> the level closest to the
+         *            surface is read.
+         * @return The {@link ProfileFeature}s which could be read
+         * @throws DataReadingException
+         *             If there is a problem reading the profiles
+         */
+        private List<ProfileFeature> readProfiles(Collection<String> ids,
+                Set<String> variableIds, final boolean singleLevel, final Double targetZ)
+                throws DataReadingException {
             log.debug("IN readFeatures Reading multiple features");
-            List<ProfileFeature> ret = new ArrayList<ProfileFeature>();
-            if (variableIds == null) {
-                variableIds = dataset.getVariableIds();
-            }
+            final Set<String> varIds = variableIds == null ? dataset.getVariableIds()
+                    : variableIds;
 
             /*
              * Find the files containing each profile and map to a list of the
              * profile numbers needing to be read from each file.
              */
-            Map<File, List<FeatureAndProfileId>> file2Ids = new HashMap<File, List<FeatureAndProfileId>>();
-            log.debug("readFeatures 1a Mapping files 2 IDs");
+            Map<File, List<FeatureAndProfileId>> file2Ids = new LinkedHashMap<>();
             for (String id : ids) {
                 FileAndProfileNumber fileAndProfileNumber = deserialiseId(id);
                 File file = fileAndProfileNumber.file.getAbsoluteFile();
@@ -704,345 +819,385 @@ public final class En3DatasetFactory extends DatasetFactory {
                 file2Ids.get(file).add(
                         new FeatureAndProfileId(id, fileAndProfileNumber.profileNumber));
             }
-            log.debug("readFeatures 1b Mapping files 2 IDs");
+
+            List<ProfileFeature> ret = new ArrayList<ProfileFeature>();
+            if (file2Ids.size() < 2 || DataReadExecutor.isReadThread()) {
+                for (Entry<File, List<FeatureAndProfileId>> entry : file2Ids.entrySet()) {
+                    ret.addAll(readFromFile(entry.getKey(), entry.getValue(), varIds,
+                            singleLevel, targetZ));
+                }
+                log.debug("OUT readFeatures Read collection of features.  Returning");
+                return ret;
+            }
+
             /*
-             * Now open each file in turn and read the profiles from them
+             * Each file is read on a separate thread with its own dataset
+             * handle, so reads from different files run in parallel
              */
-            log.debug("readFeatures 2a reading from all files");
-            for (Entry<File, List<FeatureAndProfileId>> entry : file2Ids.entrySet()) {
-                File file = entry.getKey();
-                NetcdfDataset nc = null;
-                try {
-                    log.debug("readFeatures 3a acquiring dataset: " + file.getAbsolutePath());
-                    nc = NetcdfDatasetAggregator.getDataset(file.getAbsolutePath());
-                    log.debug("readFeatures 3b acquiring dataset: " + file.getAbsolutePath());
-
-                    List<FeatureAndProfileId> featureProfileIds = entry.getValue();
-                    /*
-                     * For 100 simultaneous requests
-                     *
-                     * 4a happens 100 times more than 4b
-                     */
-                    log.debug("readFeatures 4a reading all features from file "
-                            + file.getAbsolutePath());
-                    for (FeatureAndProfileId featureProfileId : featureProfileIds) {
-                        /* 5a happens 100 times more than 5b */
-                        log.debug("readFeatures 5a");
-                        /* doRead entry log happens 49 times less than 5a */
-                        ProfileFeature profileFeature = doRead(featureProfileId.featureId, nc,
-                                featureProfileId.profileId, variableIds);
-                        /*
-                         * doRead exit log happens 50 times less than 5b
-                         *
-                         * i.e. doRead enters once more than it exits
-                         */
-                        log.debug("readFeatures 5b");
-                        if (profileFeature != null) {
-                            ret.add(profileFeature);
-                        }
-                    }
-                    log.debug("readFeatures 4b reading all features from file "
-                            + file.getAbsolutePath());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    log.debug("readFeatures EXCEPTION IO");
-                    throw new DataReadingException("Problem reading EN3/4 profile data", e);
-                } catch (InvalidRangeException e) {
-                    log.debug("readFeatures EXCEPTION InvalidRange");
-                    throw new DataReadingException("Problem reading EN3/4 profile data", e);
-                } finally {
-                    NetcdfDatasetAggregator.releaseDataset(nc);
+            List<CompletableFuture<List<ProfileFeature>>> futures = new ArrayList<>();
+            for (final Entry<File, List<FeatureAndProfileId>> entry : file2Ids.entrySet()) {
+                futures.add(DataReadExecutor.submit(() -> readFromFile(entry.getKey(),
+                        entry.getValue(), varIds, singleLevel, targetZ)));
+            }
+            try {
+                for (CompletableFuture<List<ProfileFeature>> future : futures) {
+                    ret.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataReadingException("Interrupted whilst reading EN3/4 profile data", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof DataReadingException) {
+                    throw (DataReadingException) cause;
+                }
+                throw new DataReadingException("Problem reading EN3/4 profile data", cause);
+            } finally {
+                /*
+                 * Any reads which are still waiting are no longer needed, but
+                 * we must not return whilst any are still using the files
+                 */
+                for (CompletableFuture<List<ProfileFeature>> future : futures) {
+                    DataReadExecutor.cancelAndWait(future);
                 }
             }
-            log.debug("readFeatures 2b reading from all files");
             log.debug("OUT readFeatures Read collection of features.  Returning");
             return ret;
         }
+
+        /**
+         * Reads a number of profiles from a single file
+         * 
+         * @param file
+         *            The file to read from
+         * @param profiles
+         *            The IDs and profile numbers of the profiles to read
+         * @param variableIds
+         *            The variables to read
+         * @param singleLevel
+         *            Whether to only read the level of each profile closest to
+         *            targetZ
+         * @param targetZ
+         *            The target elevation
+         * @return The {@link ProfileFeature}s which could be read
+         * @throws DataReadingException
+         *             If there is a problem reading the file
+         */
+        private List<ProfileFeature> readFromFile(File file, List<FeatureAndProfileId> profiles,
+                Set<String> variableIds, boolean singleLevel, Double targetZ)
+                throws DataReadingException {
+            NetcdfDataset nc = null;
+            try {
+                nc = NetcdfDatasetAggregator.getDataset(file.getAbsolutePath());
+                return doRead(nc, profiles, variableIds, singleLevel, targetZ);
+            } catch (IOException | InvalidRangeException e) {
+                log.debug("readFromFile throwing exception");
+                throw new DataReadingException("Problem reading EN3/4 profile data", e);
+            } finally {
+                NetcdfDatasetAggregator.releaseDataset(nc);
+            }
+        }
+    }
+
+    /*
+     * The ID of a feature, and the number of its profile within a file
+     */
+    private static class FeatureAndProfileId {
+        private String featureId;
+        private int profileId;
+
+        public FeatureAndProfileId(String featureId, int profileId) {
+            super();
+            this.featureId = featureId;
+            this.profileId = profileId;
+        }
     }
 
     /**
-     * Reads a single {@link ProfileFeature} from a {@link NetcdfDataset}
+     * Reads {@link ProfileFeature}s from a {@link NetcdfDataset}.
+     *
+     * The profiles are sorted, and runs of nearby profiles are read with a
+     * single read per variable.
      *
-     * @param id
-     *            The desired ID of the returned {@link ProfileFeature}
      * @param nc
-     *            The {@link NetcdfDataset} to read the {@link ProfileFeature}
+     *            The {@link NetcdfDataset} to read the {@link ProfileFeature}s
      *            from. The file must have the EN3 v2a format
-     * @param profNum
-     *            The profile number within the file
+     * @param profiles
+     *            The desired IDs and profile numbers within the file
      * @param variableIds
      *            The variables to read from the file - may not be
      *            <code>null</code>
-     * @return The desired {@link ProfileFeature}
+     * @param singleLevel
+     *            Whether each profile should only contain the level closest to
+     *            targetZ
+     * @param targetZ
+     *            The target elevation. If this is <code>null</code> the level
+     *            closest to the surface is used.
+     * @return The desired {@link ProfileFeature}s, in order of profile number.
+     *         Profiles which are not valid are omitted.
      * @throws IOException
      *             If there is a problem reading data from the
      *             {@link NetcdfDataset}
      * @throws InvalidRangeException
      */
-    private static synchronized ProfileFeature doRead(String id, NetcdfDataset nc, int profNum,
-            Set<String> variableIds) throws IOException, InvalidRangeException {
-        /*
-         * This method is synchronized because Variable objects can be shared
-         * between instances which leads to Bad Things
-         */
+    private static List<ProfileFeature> doRead(NetcdfDataset nc,
+            List<FeatureAndProfileId> profiles, Set<String> variableIds, boolean singleLevel,
+            Double targetZ) throws IOException, InvalidRangeException {
         log.debug("doRead IN");
         String location = nc.getLocation();
-        /*
-         * This is a fixed value. We could read the "STRING8" dimension and find
-         * its length, but that seems a little unnecessary, since it will be 8
-         */
-        int platformNameLength = 8;
-
-        /*
-         * TODO removed this approach...it didn't fix the issue, but it might be
-         * good to put it back for speed reasons once we do track down the
-         * problem...
-         *
-         * We synchronise the rest of this method on an object specific to the
-         * location of the NetcdfDataset we are reading.
-         *
-         * This means that doRead() cannot be called simultaneously with the
-         * same NetcdfDataset object (this causes Ranges to be set incorrectly
-         * and leads to ArrayIndex errors), but CAN be called simultaneously to
-         * read features from different files (which is fine).
-         */
-        Dimension nLevels = nc.findDimension("N_LEVELS");
+        List<ProfileFeature> ret = new ArrayList<>();
 
-        /*
-         * Find the variables necessary to determine the 4D domain of this
-         * platform
-         */
-        Variable latitudeVar = nc.findVariable("LATITUDE");
-        Variable longitudeVar = nc.findVariable("LONGITUDE");
-        Variable timeVar = nc.findVariable("JULD");
-        Variable depthVar = nc.findVariable("DEPH_CORRECTED");
-
-        log.debug("doRead 1 " + location);
-        /*
-         * Set up some ranges to only read the pertinent part of the file
-         */
-        Range profileNumRange = new Range(profNum, profNum);
-        Range levelNumRange = new Range(nLevels.getLength());
+        List<FeatureAndProfileId> sortedProfiles = new ArrayList<>(profiles);
+        Collections.sort(sortedProfiles, new Comparator<FeatureAndProfileId>() {
+            @Override
+            public int compare(FeatureAndProfileId p1, FeatureAndProfileId p2) {
+                return Integer.compare(p1.profileId, p2.profileId);
+            }
+        });
 
         /*
-         * Determine the platform ID
+         * Variable objects can be shared between users of the same
+         * NetcdfDataset, so reads are synchronized on the dataset. Different
+         * files have different datasets, so they can be read in parallel.
          */
-        List<Range> platformIdRangeList = new ArrayList<Range>();
-        platformIdRangeList.add(profileNumRange);
-        platformIdRangeList.add(new Range(8));
-
-        log.debug("doRead 2 " + location);
+        synchronized (nc) {
+            /*
+             * Determine the reference time
+             */
+            Variable timeVar = nc.findVariable("JULD");
+            Attribute timeUnits = timeVar.findAttribute("units");
+            String timeUnitsStr = timeUnits.getStringValue();
+            String[] timeUnitsParts = timeUnitsStr.split(" since ");
+            if (timeUnitsParts.length != 2) {
+                log.debug("doRead OUT - bad time units");
+                log.error("Expected time units of the form \"xxxs since yyyy-dd-mm hh:mm:ss utc\"");
+                return ret;
+            }
+            int unitLength = TimeUtils.getUnitLengthSeconds(timeUnitsParts[0]);
+            DateTime refTime = EN3_DATE_TIME_FORMATTER.parseDateTime(timeUnitsParts[1]);
 
-        Array platformIdArr = nc.findVariable("PLATFORM_NUMBER").read(platformIdRangeList);
-        log.debug("doRead 3 " + location);
-        StringBuilder platformId = new StringBuilder();
-        for (int i = 0; i < platformNameLength; i++) {
-            platformId.append(platformIdArr.getChar(i));
+            int start = 0;
+            while (start < sortedProfiles.size()) {
+                /*
+                 * Find the next run of profiles which are close enough
+                 * together to read in one go
+                 */
+                int end = start;
+                while (end + 1 < sortedProfiles.size() && sortedProfiles.get(end + 1).profileId
+                        - sortedProfiles.get(end).profileId <= maxProfileGap) {
+                    end++;
+                }
+                readRun(nc, sortedProfiles.subList(start, end + 1), variableIds, unitLength,
+                        refTime, singleLevel, targetZ, ret);
+                start = end + 1;
+            }
         }
-        log.debug("doRead 4 " + location);
+        log.debug("doRead OUT " + location);
+        return ret;
+    }
 
+    /*
+     * Reads a run of sorted profiles, reading each variable once for the
+     * whole range of profile numbers. If singleLevel is true, each profile
+     * only contains the level closest to targetZ (or to the surface if
+     * targetZ is null), and only the levels needed are read from the data
+     * variables.
+     */
+    private static void readRun(NetcdfDataset nc, List<FeatureAndProfileId> profiles,
+            Set<String> variableIds, int unitLength, DateTime refTime, boolean singleLevel,
+            Double targetZ, List<ProfileFeature> ret) throws IOException, InvalidRangeException {
         /*
-         * Determine the reference time
+         * This is a fixed value. We could read the "STRING8" dimension and find
+         * its length, but that seems a little unnecessary, since it will be 8
          */
-        Attribute timeUnits = timeVar.findAttribute("units");
-        String timeUnitsStr = timeUnits.getStringValue();
-        String[] timeUnitsParts = timeUnitsStr.split(" since ");
-        if (timeUnitsParts.length != 2) {
-            log.debug("doRead OUT - bad time units");
-            log.error("Expected time units of the form \"xxxs since yyyy-dd-mm hh:mm:ss utc\"");
-            return null;
-        }
-        int unitLength = TimeUtils.getUnitLengthSeconds(timeUnitsParts[0]);
-        DateTime refTime = EN3_DATE_TIME_FORMATTER.parseDateTime(timeUnitsParts[1]);
-        log.debug("doRead 5 " + location);
+        int platformNameLength = 8;
+        int nLevels = nc.findDimension("N_LEVELS").getLength();
+
+        int firstProfile = profiles.get(0).profileId;
+        int lastProfile = profiles.get(profiles.size() - 1).profileId;
 
         /*
-         * Read the appropriate parts of the required variables
+         * Set up some ranges to only read the pertinent part of the file
          */
         List<Range> singleValPerPlatform = new ArrayList<Range>();
-        singleValPerPlatform.add(profileNumRange);
-        Array latValues = latitudeVar.read(singleValPerPlatform);
-        Array lonValues = longitudeVar.read(singleValPerPlatform);
-        Array timeValues = timeVar.read(singleValPerPlatform);
-        log.debug("doRead 6 " + location);
-
-        List<Range> allDepthsOnePlatform = new ArrayList<Range>();
-        allDepthsOnePlatform.add(profileNumRange);
-        allDepthsOnePlatform.add(levelNumRange);
-        Array depthValues = depthVar.read(allDepthsOnePlatform);
-        log.debug("doRead 7 " + location);
+        singleValPerPlatform.add(new Range(firstProfile, lastProfile));
+
+        List<Range> platformIdRangeList = new ArrayList<Range>(singleValPerPlatform);
+        platformIdRangeList.add(new Range(platformNameLength));
+
+        List<Range> allDepthsPerPlatform = new ArrayList<Range>(singleValPerPlatform);
+        allDepthsPerPlatform.add(new Range(nLevels));
 
         /*
-         * Now use the values read from file to create the domain for this
-         * feature
+         * Read the appropriate parts of the variables which define the domain
          */
-        HorizontalPosition hPos = new HorizontalPosition(lonValues.getDouble(0),
-                latValues.getDouble(0), GISUtils.defaultGeographicCRS());
-
-        double seconds = (timeValues.getDouble(0) * unitLength);
-        DateTime time = refTime.plusSeconds((int) seconds);
+        Array platformIdArr = nc.findVariable("PLATFORM_NUMBER").read(platformIdRangeList);
+        Array latValues = nc.findVariable("LATITUDE").read(singleValPerPlatform);
+        Array lonValues = nc.findVariable("LONGITUDE").read(singleValPerPlatform);
+        Array timeValues = nc.findVariable("JULD").read(singleValPerPlatform);
+        Array depthValues = nc.findVariable("DEPH_CORRECTED").read(allDepthsPerPlatform);
 
         /*
-         * Read the depth values, stopping when we hit NaNs
+         * Find the vertical domain of each profile, and the levels of it which
+         * are needed
          */
-        List<Double> zValues = new ArrayList<Double>();
-        for (int i = 0; i < nLevels.getLength(); i++) {
-            double depth = depthValues.getDouble(i);
-            if (!Double.isNaN(depth) && depth != 99999.0) {
-                zValues.add(depth);
-            } else {
-                break;
+        VerticalAxisImpl[] domains = new VerticalAxisImpl[profiles.size()];
+        int[] firstLevels = new int[profiles.size()];
+        int minLevel = nLevels;
+        int maxLevel = -1;
+        for (int i = 0; i < profiles.size(); i++) {
+            int p = profiles.get(i).profileId - firstProfile;
+            /*
+             * Read the depth values, stopping when we hit NaNs
+             */
+            List<Double> zValues = new ArrayList<Double>();
+            for (int l = 0; l < nLevels; l++) {
+                double depth = depthValues.getDouble(p * nLevels + l);
+                if (!Double.isNaN(depth) && depth != 99999.0) {
+                    zValues.add(depth);
+                } else {
+                    break;
+                }
+            }
+            VerticalAxisImpl domain = null;
+            try {
+                domain = new VerticalAxisImpl("Depth axis of profile", zValues, EN3_VERTICAL_CRS);
+            } catch (IllegalArgumentException e) {
+                /*
+                 * This happens when the domain is non-monotonic. For now we
+                 * ignore these profiles (1-2% of total) but later we may need
+                 * to re-order the measurement values
+                 */
+                log.debug("doRead - bad vertical domain");
+                continue;
+            }
+            if (singleLevel) {
+                /*
+                 * Choose the level in the same way as
+                 * PointDataset.convertProfileFeature()
+                 */
+                int zIndex;
+                if (targetZ == null) {
+                    zIndex = domain.findIndexOf(GISUtils.getClosestElevationToSurface(domain));
+                } else {
+                    zIndex = GISUtils.getIndexOfClosestElevationTo(targetZ, domain);
+                }
+                if (zIndex < 0) {
+                    continue;
+                }
+                domain = new VerticalAxisImpl("Depth axis of profile",
+                        Collections.singletonList(zValues.get(zIndex)), EN3_VERTICAL_CRS);
+                firstLevels[i] = zIndex;
             }
+            domains[i] = domain;
+            minLevel = Math.min(minLevel, firstLevels[i]);
+            maxLevel = Math.max(maxLevel, firstLevels[i] + domain.size() - 1);
         }
-        log.debug("doRead 8 " + location);
-        VerticalAxisImpl domain = null;
-        try {
-            domain = new VerticalAxisImpl("Depth axis of profile", zValues, EN3_VERTICAL_CRS);
-        } catch (IllegalArgumentException e) {
+        if (maxLevel < 0) {
             /*
-             * This happens when the domain is non-monotonic. For now we ignore
-             * these profiles (1-2% of total) but later we may need to re-order
-             * the measurement values
+             * None of the profiles are valid
              */
-            // log.error("Invalid domain in EN3/4 file", e);
-            log.debug("doRead OUT - bad vertical domain");
-            return null;
+            return;
         }
+
         /*
-         * Store the number of depth values before a NaN appears (this is the
-         * true depth domain - once we get to NaN values there is no data)
+         * Read only the levels which are needed from the actual data
          */
-        int trueNumLevels = zValues.size();
-        log.debug("doRead 9 " + location);
+        int nLevelsRead = maxLevel - minLevel + 1;
+        List<Range> dataRanges = new ArrayList<Range>(singleValPerPlatform);
+        dataRanges.add(new Range(minLevel, maxLevel));
+        Map<String, Array> varArrays = new HashMap<>();
+        for (String varId : variableIds) {
+            varArrays.put(varId, nc.findVariable(varId).read(dataRanges));
+        }
 
-        Map<String, Array1D<Number>> values = new HashMap<String, Array1D<Number>>();
         /*
-         * Read all of the actual data
+         * Read the quality control flags
          */
-        Map<String, Parameter> parameters = new HashMap<String, Parameter>();
-        for (String varId : variableIds) {
-            Array varArray = nc.findVariable(varId).read(allDepthsOnePlatform);
+        Array qcPos = nc.findVariable("POSITION_QC").read(singleValPerPlatform);
+        Array qcPotmCorrected = nc.findVariable("PROFILE_POTM_QC").read(singleValPerPlatform);
+        Array qcPsalCorrected = nc.findVariable("PROFILE_PSAL_QC").read(singleValPerPlatform);
+
+        for (int i = 0; i < profiles.size(); i++) {
+            VerticalAxisImpl domain = domains[i];
+            if (domain == null) {
+                continue;
+            }
+            FeatureAndProfileId profile = profiles.get(i);
+            int p = profile.profileId - firstProfile;
+
+            StringBuilder platformId = new StringBuilder();
+            for (int c = 0; c < platformNameLength; c++) {
+                platformId.append(platformIdArr.getChar(p * platformNameLength + c));
+            }
 
-            Array1D<Number> varValues = new ValuesArray1D(trueNumLevels);
-            for (int i = 0; i < trueNumLevels; i++) {
-                Double val = varArray.getDouble(i);
-                if (Double.isNaN(val)) {
-                    val = null;
+            /*
+             * Now use the values read from file to create the domain for this
+             * feature
+             */
+            HorizontalPosition hPos = new HorizontalPosition(lonValues.getDouble(p),
+                    latValues.getDouble(p), GISUtils.defaultGeographicCRS());
+
+            double seconds = (timeValues.getDouble(p) * unitLength);
+            DateTime time = refTime.plusSeconds((int) seconds);
+
+            Map<String, Array1D<Number>> values = new HashMap<String, Array1D<Number>>();
+            Map<String, Parameter> parameters = new HashMap<String, Parameter>();
+            int offset = p * nLevelsRead + firstLevels[i] - minLevel;
+            for (String varId : variableIds) {
+                Array varArray = varArrays.get(varId);
+                Array1D<Number> varValues = new ValuesArray1D(domain.size());
+                for (int l = 0; l < domain.size(); l++) {
+                    Double val = varArray.getDouble(offset + l);
+                    if (Double.isNaN(val)) {
+                        val = null;
+                    }
+                    varValues.set(val, l);
                 }
-                varValues.set(val, i);
+                values.put(varId, varValues);
+                parameters.put(varId, ALL_PARAMETERS.get(varId));
             }
-            values.put(varId, varValues);
-            parameters.put(varId, ALL_PARAMETERS.get(varId));
-        }
-        log.debug("doRead 10 " + location);
 
-        String platformIdStr = platformId.toString().trim();
+            String platformIdStr = platformId.toString().trim();
 
-//        log.debug("Read data, creating ProfileFeature");
-        /*
-         * Create the ProfileFeature
-         */
-        ProfileFeature ret = new ProfileFeature(id, "EN platform " + platformIdStr,
-                "Profile data from platform " + platformIdStr + " in the EN3/4 database", domain,
-                hPos, time, parameters, values);
+            /*
+             * Create the ProfileFeature
+             */
+            ProfileFeature profileFeature = new ProfileFeature(profile.featureId,
+                    "EN platform " + platformIdStr,
+                    "Profile data from platform " + platformIdStr + " in the EN3/4 database",
+                    domain, hPos, time, parameters, values);
 
-        log.debug("doRead 11 " + location);
-        /*
-         * Read the quality control flags and store in the properties of the
-         * profile feature
-         */
-        Variable qcPosVar = nc.findVariable("POSITION_QC");
-        Variable qcPotmCorrectedVar = nc.findVariable("PROFILE_POTM_QC");
-        Variable qcPsalCorrectedVar = nc.findVariable("PROFILE_PSAL_QC");
-        log.debug("doRead 12 " + location);
-
-        //			Variable qcDepthVar = nc.findVariable("PROFILE_DEPH_QC");
-        //			Variable qcJuldVar = nc.findVariable("JULD_QC");
-
-        Array qcPos = qcPosVar.read();
-        log.debug("doRead 13.1 " + location);
-        Array qcPotmCorrected = qcPotmCorrectedVar.read();
-        log.debug("doRead 13.2 " + location);
-        Array qcPsalCorrected = qcPsalCorrectedVar.read();
-        log.debug("doRead 13.3 " + location);
-
-        //			Array qcDepth = qcDepthVar.read();
-        //			Array qcJuld = qcJuldVar.read();
-
-        Properties props = new Properties();
-        String key;
-        String value;
-
-        key = "Position QC";
-        if (qcPos.getChar(profNum) == '1') {
-            value = "Accept";
-        } else if (qcPos.getChar(profNum) == '4') {
-            value = "Reject";
-        } else if (qcPos.getChar(profNum) == '0') {
-            value = "No QC data";
-        } else {
-            value = "N/A";
-        }
-        props.put(key, value);
-        log.debug("doRead 14 " + location);
-
-        if (variableIds.contains(POT_TEMP_PARAMETER.getVariableId())) {
-            key = "Potential temperature QC";
-            if (qcPotmCorrected.getChar(profNum) == '1') {
-                value = "Accept";
-            } else if (qcPotmCorrected.getChar(profNum) == '4') {
-                value = "Reject";
-            } else if (qcPotmCorrected.getChar(profNum) == '0') {
-                value = "No QC data";
-            } else {
-                value = "N/A";
+            /*
+             * Store the quality control flags in the properties of the profile
+             * feature
+             */
+            Properties props = new Properties();
+            props.put("Position QC", getQcValue(qcPos.getChar(p)));
+            if (variableIds.contains(POT_TEMP_PARAMETER.getVariableId())) {
+                props.put("Potential temperature QC", getQcValue(qcPotmCorrected.getChar(p)));
             }
-            props.put(key, value);
-        }
-        log.debug("doRead 15 " + location);
-
-        if (variableIds.contains(PSAL_PARAMETER.getVariableId())) {
-            key = "Practical salinity QC";
-            if (qcPsalCorrected.getChar(profNum) == '1') {
-                value = "Accept";
-            } else if (qcPsalCorrected.getChar(profNum) == '4') {
-                value = "Reject";
-            } else if (qcPsalCorrected.getChar(profNum) == '0') {
-                value = "No QC data";
-            } else {
-                value = "N/A";
+            if (variableIds.contains(PSAL_PARAMETER.getVariableId())) {
+                props.put("Practical salinity QC", getQcValue(qcPsalCorrected.getChar(p)));
             }
-            props.put(key, value);
+            profileFeature.getFeatureProperties().putAll(props);
+
+            ret.add(profileFeature);
         }
-        log.debug("doRead 16 " + location);
-
-        //			key = "Depth QC";
-        //			if (qcDepth.getChar(profNum) == '1') {
-        //				value = "Accept";
-        //			} else if (qcDepth.getChar(profNum) == '4') {
-        //				value = "Reject";
-        //			} else if (qcDepth.getChar(profNum) == '0') {
-        //				value = "No QC data";
-        //			} else {
-        //				value = "N/A";
-        //			}
-        //			props.put(key, value);
-        //
-        //			key = "Date/time QC";
-        //			if (qcJuld.getChar(profNum) == '1') {
-        //				value = "Accept";
-        //			} else if (qcJuld.getChar(profNum) == '4') {
-        //				value = "Reject";
-        //			} else if (qcJuld.getChar(profNum) == '0') {
-        //				value = "No QC data";
-        //			} else {
-        //				value = "N/A";
-        //			}
-        //			props.put(key, value);
-
-        ret.getFeatureProperties().putAll(props);
-        log.debug("doRead OUT");
+    }
 
-        return ret;
+    /*
+     * Converts an EN3 QC flag to a readable value
+     */
+    private static String getQcValue(char qcFlag) {
+        if (qcFlag == '1') {
+            return "Accept";
+        } else if (qcFlag == '4') {
+            return "Reject";
+        } else if (qcFlag == '0') {
+            return "No QC data";
+        } else {
+            return "N/A";
+        }
     }
-}
\ No newline at end of file
+}
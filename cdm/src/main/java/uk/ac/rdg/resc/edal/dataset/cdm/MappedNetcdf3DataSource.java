@@ -0,0 +1,430 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.dataset.VariableDS;
+import uk.ac.rdg.resc.edal.dataset.ChunkedGridDataSource;
+import uk.ac.rdg.resc.edal.dataset.GridDataSource;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.util.Array4D;
+
+/**
+ * A {@link GridDataSource} for local NetCDF-3 (classic or 64-bit offset)
+ * files, which reads data directly from a memory-mapped copy of the file.
+ * 
+ * NetCDF-3 files store each variable as a contiguous big-endian array (or, for
+ * record variables, one contiguous slab per record), so a bulk read of a box
+ * of data can be done by copying runs of values straight out of the mapped
+ * file. This avoids both the lock on the {@link NetcdfDataset} (see
+ * {@link CdmGridDataSource}) and the intermediate {@link Array} objects
+ * created by the CDM.
+ * 
+ * Anything which cannot be read in this way (e.g. variables with unusual
+ * dimension orders) is delegated to a {@link CdmGridDataSource}.
+ *
+ * @author agent
+ */
+final class MappedNetcdf3DataSource implements ChunkedGridDataSource {
+    private static final Logger log = LoggerFactory.getLogger(MappedNetcdf3DataSource.class);
+
+    /*
+     * Memory-mapping is limited to 2GB per buffer
+     */
+    private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+    /*
+     * Mapped files are shared between all data sources which refer to the
+     * same file. The mappings themselves use no heap, but we keep the number
+     * of them bounded so that we don't hold on to address space for files
+     * which are no longer being used.
+     */
+    private static final int MAX_MAPPED_FILES = 32;
+    private static final Map<String, MappedFile> mappedFiles = new LinkedHashMap<String, MappedFile>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, MappedFile> eldest) {
+            return size() > MAX_MAPPED_FILES;
+        }
+    };
+
+    private final CdmGridDataSource delegate;
+    private final MappedFile mappedFile;
+
+    /**
+     * Instantiate a {@link MappedNetcdf3DataSource}. This should only be
+     * called if {@link MappedNetcdf3DataSource#canMap(NetcdfDataset)} returns
+     * <code>true</code>
+     * 
+     * @param nc
+     *            The {@link NetcdfDataset} to read data from
+     * @param delegate
+     *            A {@link CdmGridDataSource} reading from the same
+     *            {@link NetcdfDataset}, used for anything which cannot be
+     *            read directly from the file
+     * @throws IOException
+     *             If there is a problem mapping the file
+     */
+    public MappedNetcdf3DataSource(NetcdfDataset nc, CdmGridDataSource delegate)
+            throws IOException {
+        this.delegate = delegate;
+        this.mappedFile = getMappedFile(getLocalFile(nc));
+    }
+
+    /**
+     * Determines whether a {@link NetcdfDataset} can be read by a
+     * {@link MappedNetcdf3DataSource}
+     * 
+     * @param nc
+     *            The {@link NetcdfDataset} to test
+     * @return <code>true</code> if the dataset is a single local NetCDF-3
+     *         file with a header which can be read
+     */
+    static boolean canMap(NetcdfDataset nc) {
+        if (!"netCDF".equalsIgnoreCase(nc.getFileTypeId())) {
+            return false;
+        }
+        File file = getLocalFile(nc);
+        if (file == null || file.length() > MAX_MAPPED_SIZE) {
+            return false;
+        }
+        try {
+            getMappedFile(file);
+            return true;
+        } catch (IOException e) {
+            log.debug("Cannot memory-map " + file + ", reading with CDM instead", e);
+            return false;
+        }
+    }
+
+    @Override
+    public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin, int zmax,
+            int ymin, int ymax, int xmin, int xmax) throws IOException, DataReadingException {
+        return delegate.read(variableId, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax);
+    }
+
+    @Override
+    public boolean hasFloatValues(String variableId) throws DataReadingException {
+        return delegate.hasFloatValues(variableId);
+    }
+
+    @Override
+    public void readFloats(String variableId, int tmin, int tmax, int zmin, int zmax, int ymin,
+            int ymax, int xmin, int xmax, float[] values) throws IOException, DataReadingException {
+        VariableDS var = delegate.getVariable(variableId);
+        Variable origVar = var.getOriginalVariable();
+        RangesList rangesList = delegate.getRangesList(variableId);
+        Netcdf3Header.VariableInfo info = origVar == null ? null
+                : mappedFile.header.getVariable(origVar.getFullName());
+        if (info == null || !canReadDirectly(info, origVar, rangesList)) {
+            delegate.readFloats(variableId, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax,
+                    values);
+            return;
+        }
+
+        int tSize = tmax - tmin + 1;
+        int zSize = zmax - zmin + 1;
+        int ySize = ymax - ymin + 1;
+        int xSize = xmax - xmin + 1;
+        int size = tSize * zSize * ySize * xSize;
+        if (values.length < (long) size) {
+            throw new IllegalArgumentException("Array of size " + values.length
+                    + " is too small to read " + size + " values into");
+        }
+
+        /*
+         * The strides of each axis, in values. For record variables, the
+         * record dimension (which is always the first) is instead stepped over
+         * using the record size.
+         */
+        int rank = info.shape.length;
+        long[] strides = new long[rank];
+        long stride = 1;
+        for (int d = rank - 1; d >= 0; d--) {
+            strides[d] = stride;
+            stride *= info.shape[d];
+        }
+        int elementSize = info.getElementSize();
+        int tAxis = rangesList.getTAxisIndex();
+        int zAxis = rangesList.getZAxisIndex();
+        int yAxis = rangesList.getYAxisIndex();
+        int xAxis = rangesList.getXAxisIndex();
+
+        Object storage = newStorage(info.type, size);
+        /*
+         * Each thread gets its own view of the mapped file, so that reads
+         * don't share a position
+         */
+        ByteBuffer buffer = mappedFile.buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int n = 0;
+        for (int t = tmin; t <= tmax; t++) {
+            for (int z = zmin; z <= zmax; z++) {
+                for (int y = ymin; y <= ymax; y++) {
+                    long offset = info.begin;
+                    offset += axisOffset(info, tAxis, t, strides, elementSize);
+                    offset += axisOffset(info, zAxis, z, strides, elementSize);
+                    offset += axisOffset(info, yAxis, y, strides, elementSize);
+                    offset += axisOffset(info, xAxis, xmin, strides, elementSize);
+                    buffer.position((int) offset);
+                    copy(buffer, info.type, storage, n, xSize);
+                    n += xSize;
+                }
+            }
+        }
+
+        Array arr = Array.factory(getDataType(info.type), new int[] { size }, storage);
+        if (CdmGridDataSource.needsEnhance(var, origVar)) {
+            arr = var.convertScaleOffsetMissing(arr);
+        }
+
+        CdmGridDataSource.MissingValues missingValues = new CdmGridDataSource.MissingValues(var);
+        IndexIterator it = arr.getIndexIterator();
+        n = 0;
+        while (it.hasNext()) {
+            double value = it.getDoubleNext();
+            values[n++] = missingValues.isMissing(value) ? Float.NaN : (float) value;
+        }
+    }
+
+    @Override
+    public int[] getChunkShape(String variableId) throws DataReadingException {
+        return delegate.getChunkShape(variableId);
+    }
+
+    @Override
+    public int[] getShape(String variableId) throws DataReadingException {
+        return delegate.getShape(variableId);
+    }
+
+    @Override
+    public String getCacheId() {
+        return delegate.getCacheId();
+    }
+
+    @Override
+    public void close() throws DataReadingException {
+        delegate.close();
+    }
+
+    @Override
+    public boolean supportsConcurrentReads() {
+        /*
+         * Each read uses its own view of the mapped buffer
+         */
+        return delegate.supportsConcurrentReads();
+    }
+
+    /*
+     * We can read directly if the variable has a simple numeric type, has the
+     * same shape as in the file header, and has no dimensions other than t, z,
+     * y, and x, which appear in that order.
+     */
+    private boolean canReadDirectly(Netcdf3Header.VariableInfo info, Variable origVar,
+            RangesList rangesList) {
+        switch (info.type) {
+        case Netcdf3Header.NC_BYTE:
+            if (origVar.findAttribute("_Unsigned") != null) {
+                return false;
+            }
+            break;
+        case Netcdf3Header.NC_SHORT:
+        case Netcdf3Header.NC_INT:
+        case Netcdf3Header.NC_FLOAT:
+        case Netcdf3Header.NC_DOUBLE:
+            break;
+        default:
+            return false;
+        }
+        if (!Arrays.equals(info.shape, origVar.getShape())) {
+            return false;
+        }
+        int rank = info.shape.length;
+        int previous = -1;
+        int nAxes = 0;
+        for (int axis : new int[] { rangesList.getTAxisIndex(), rangesList.getZAxisIndex(),
+                rangesList.getYAxisIndex(), rangesList.getXAxisIndex() }) {
+            if (axis >= 0) {
+                if (axis <= previous) {
+                    return false;
+                }
+                previous = axis;
+                nAxes++;
+            }
+        }
+        return nAxes == rank && rangesList.getXAxisIndex() == rank - 1;
+    }
+
+    /*
+     * The byte offset of the given index along an axis of the variable
+     */
+    private long axisOffset(Netcdf3Header.VariableInfo info, int axis, int index, long[] strides,
+            int elementSize) {
+        if (axis < 0) {
+            return 0;
+        }
+        if (axis == 0 && info.isRecord) {
+            return index * mappedFile.header.getRecordSize();
+        }
+        return index * strides[axis] * elementSize;
+    }
+
+    private static Object newStorage(int type, int size) {
+        switch (type) {
+        case Netcdf3Header.NC_BYTE:
+            return new byte[size];
+        case Netcdf3Header.NC_SHORT:
+            return new short[size];
+        case Netcdf3Header.NC_INT:
+            return new int[size];
+        case Netcdf3Header.NC_FLOAT:
+            return new float[size];
+        case Netcdf3Header.NC_DOUBLE:
+            return new double[size];
+        default:
+            throw new IllegalArgumentException("Unsupported NetCDF-3 type: " + type);
+        }
+    }
+
+    private static DataType getDataType(int type) {
+        switch (type) {
+        case Netcdf3Header.NC_BYTE:
+            return DataType.BYTE;
+        case Netcdf3Header.NC_SHORT:
+            return DataType.SHORT;
+        case Netcdf3Header.NC_INT:
+            return DataType.INT;
+        case Netcdf3Header.NC_FLOAT:
+            return DataType.FLOAT;
+        case Netcdf3Header.NC_DOUBLE:
+            return DataType.DOUBLE;
+        default:
+            throw new IllegalArgumentException("Unsupported NetCDF-3 type: " + type);
+        }
+    }
+
+    /*
+     * Copies a run of values from the current position of the buffer
+     */
+    private static void copy(ByteBuffer buffer, int type, Object storage, int offset,
+            int length) {
+        switch (type) {
+        case Netcdf3Header.NC_BYTE:
+            buffer.get((byte[]) storage, offset, length);
+            break;
+        case Netcdf3Header.NC_SHORT:
+            buffer.asShortBuffer().get((short[]) storage, offset, length);
+            break;
+        case Netcdf3Header.NC_INT:
+            buffer.asIntBuffer().get((int[]) storage, offset, length);
+            break;
+        case Netcdf3Header.NC_FLOAT:
+            buffer.asFloatBuffer().get((float[]) storage, offset, length);
+            break;
+        case Netcdf3Header.NC_DOUBLE:
+            buffer.asDoubleBuffer().get((double[]) storage, offset, length);
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported NetCDF-3 type: " + type);
+        }
+    }
+
+    private static File getLocalFile(NetcdfDataset nc) {
+        String location = nc.getLocation();
+        if (location == null) {
+            return null;
+        }
+        if (location.startsWith("file:")) {
+            location = location.substring(5);
+        }
+        File file = new File(location);
+        return file.isFile() ? file : null;
+    }
+
+    private static MappedFile getMappedFile(File file) throws IOException {
+        if (file == null) {
+            throw new IOException("Only local files can be memory-mapped");
+        }
+        String key = file.getAbsolutePath() + "@" + file.lastModified() + ":" + file.length();
+        synchronized (mappedFiles) {
+            MappedFile mappedFile = mappedFiles.get(key);
+            if (mappedFile == null) {
+                mappedFile = new MappedFile(file);
+                mappedFiles.put(key, mappedFile);
+            }
+            return mappedFile;
+        }
+    }
+
+    /*
+     * A read-only mapping of a file, along with its parsed header
+     */
+    private static final class MappedFile {
+        private final MappedByteBuffer buffer;
+        private final Netcdf3Header header;
+
+        private MappedFile(File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > MAX_MAPPED_SIZE) {
+                    throw new IOException("File " + file + " is too large to memory-map");
+                }
+                /*
+                 * The mapping remains valid after the channel is closed
+                 */
+                buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+            header = Netcdf3Header.read(buffer.duplicate().order(ByteOrder.BIG_ENDIAN));
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal reader for the header of a NetCDF-3 file (classic or 64-bit offset
+ * format). This only extracts what is needed to locate the data of each
+ * variable in the file, so that it can be read directly - see
+ * {@link MappedNetcdf3DataSource}.
+ * 
+ * See https://www.unidata.ucar.edu/software/netcdf/docs/file_format_specifications.html
+ * 
+ * @author agent
+ */
+final class Netcdf3Header {
+    /*
+     * Tags used in the header
+     */
+    private static final int NC_DIMENSION = 0x0A;
+    private static final int NC_VARIABLE = 0x0B;
+    private static final int NC_ATTRIBUTE = 0x0C;
+    private static final int STREAMING = -1;
+
+    /*
+     * Data types
+     */
+    static final int NC_BYTE = 1;
+    static final int NC_CHAR = 2;
+    static final int NC_SHORT = 3;
+    static final int NC_INT = 4;
+    static final int NC_FLOAT = 5;
+    static final int NC_DOUBLE = 6;
+
+    /**
+     * The location of a variable's data within the file
+     */
+    static final class VariableInfo {
+        final String name;
+        /* The shape, with the record dimension (if any) having the number of records */
+        final int[] shape;
+        final boolean isRecord;
+        final int type;
+        final long begin;
+
+        private VariableInfo(String name, int[] shape, boolean isRecord, int type, long begin) {
+            this.name = name;
+            this.shape = shape;
+            this.isRecord = isRecord;
+            this.type = type;
+            this.begin = begin;
+        }
+
+        /**
+         * @return The size of a single value of this variable, in bytes
+         */
+        int getElementSize() {
+            return elementSize(type);
+        }
+    }
+
+    private final int numRecords;
+    private final long recordSize;
+    private final Map<String, VariableInfo> variables;
+
+    private Netcdf3Header(int numRecords, long recordSize, Map<String, VariableInfo> variables) {
+        this.numRecords = numRecords;
+        this.recordSize = recordSize;
+        this.variables = Collections.unmodifiableMap(variables);
+    }
+
+    /**
+     * Reads the header from the start of a buffer
+     * 
+     * @param buffer
+     *            A big-endian {@link ByteBuffer} containing the file. Its
+     *            position will be changed.
+     * @return The parsed {@link Netcdf3Header}
+     * @throws IOException
+     *             If the buffer does not contain a NetCDF-3 classic or 64-bit
+     *             offset file, or the file uses features which are not
+     *             supported (e.g. it is still being written in streaming mode)
+     */
+    static Netcdf3Header read(ByteBuffer buffer) throws IOException {
+        try {
+            buffer.position(0);
+            if (buffer.get() != 'C' || buffer.get() != 'D' || buffer.get() != 'F') {
+                throw new IOException("Not a NetCDF-3 file");
+            }
+            int version = buffer.get();
+            if (version != 1 && version != 2) {
+                throw new IOException("Unsupported NetCDF-3 version: " + version);
+            }
+            int numRecords = buffer.getInt();
+            if (numRecords == STREAMING) {
+                throw new IOException("NetCDF-3 file is in streaming mode");
+            }
+
+            /*
+             * Dimensions
+             */
+            List<Integer> dimLengths = new ArrayList<>();
+            int recordDim = -1;
+            int nDims = readListHeader(buffer, NC_DIMENSION);
+            for (int i = 0; i < nDims; i++) {
+                readName(buffer);
+                int length = buffer.getInt();
+                if (length == 0) {
+                    recordDim = i;
+                    length = numRecords;
+                }
+                dimLengths.add(length);
+            }
+
+            /*
+             * Global attributes
+             */
+            skipAttributes(buffer);
+
+            /*
+             * Variables
+             */
+            Map<String, VariableInfo> variables = new HashMap<>();
+            List<VariableInfo> recordVariables = new ArrayList<>();
+            long recordSize = 0;
+            int nVars = readListHeader(buffer, NC_VARIABLE);
+            for (int i = 0; i < nVars; i++) {
+                String name = readName(buffer);
+                int rank = buffer.getInt();
+                int[] shape = new int[rank];
+                boolean isRecord = false;
+                for (int d = 0; d < rank; d++) {
+                    int dimId = buffer.getInt();
+                    shape[d] = dimLengths.get(dimId);
+                    if (dimId == recordDim) {
+                        isRecord = true;
+                    }
+                }
+                skipAttributes(buffer);
+                int type = buffer.getInt();
+                int vsize = buffer.getInt();
+                long begin = version == 1 ? buffer.getInt() & 0xFFFFFFFFL : buffer.getLong();
+                VariableInfo info = new VariableInfo(name, shape, isRecord, type, begin);
+                variables.put(name, info);
+                if (isRecord) {
+                    recordVariables.add(info);
+                    recordSize += vsize;
+                }
+            }
+            if (recordVariables.size() == 1) {
+                /*
+                 * Special case - a single record variable is not padded
+                 */
+                VariableInfo info = recordVariables.get(0);
+                recordSize = info.getElementSize();
+                for (int d = 1; d < info.shape.length; d++) {
+                    recordSize *= info.shape[d];
+                }
+            }
+            return new Netcdf3Header(numRecords, recordSize, variables);
+        } catch (RuntimeException e) {
+            /*
+             * BufferUnderflowException, IndexOutOfBoundsException etc.
+             */
+            throw new IOException("Invalid NetCDF-3 header", e);
+        }
+    }
+
+    /**
+     * @param name
+     *            The name of the variable
+     * @return The {@link VariableInfo} for the variable, or <code>null</code>
+     *         if it is not present
+     */
+    VariableInfo getVariable(String name) {
+        return variables.get(name);
+    }
+
+    int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * @return The number of bytes between consecutive records of a record
+     *         variable
+     */
+    long getRecordSize() {
+        return recordSize;
+    }
+
+    static int elementSize(int type) {
+        switch (type) {
+        case NC_BYTE:
+        case NC_CHAR:
+            return 1;
+        case NC_SHORT:
+            return 2;
+        case NC_INT:
+        case NC_FLOAT:
+            return 4;
+        case NC_DOUBLE:
+            return 8;
+        default:
+            throw new IllegalArgumentException("Unknown NetCDF-3 type: " + type);
+        }
+    }
+
+    /*
+     * Reads the tag and number of elements of a list, which may be absent
+     */
+    private static int readListHeader(ByteBuffer buffer, int expectedTag) throws IOException {
+        int tag = buffer.getInt();
+        int nElems = buffer.getInt();
+        if (tag == 0 && nElems == 0) {
+            return 0;
+        }
+        if (tag != expectedTag) {
+            throw new IOException("Invalid NetCDF-3 header: expected tag " + expectedTag
+                    + " but found " + tag);
+        }
+        return nElems;
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        skipPadding(buffer, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) throws IOException {
+        int nAttrs = readListHeader(buffer, NC_ATTRIBUTE);
+        for (int i = 0; i < nAttrs; i++) {
+            readName(buffer);
+            int type = buffer.getInt();
+            int nValues = buffer.getInt();
+            int length = nValues * elementSize(type);
+            buffer.position(buffer.position() + length);
+            skipPadding(buffer, length);
+        }
+    }
+
+    /*
+     * Everything in the header is padded to a multiple of 4 bytes
+     */
+    private static void skipPadding(ByteBuffer buffer, int length) {
+        int remainder = length % 4;
+        if (remainder != 0) {
+            buffer.position(buffer.position() + 4 - remainder);
+        }
+    }
+}
@@ -36,10 +36,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Formatter;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -48,13 +48,13 @@ import org.slf4j.LoggerFactory;
 import thredds.client.catalog.ServiceType;
 import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
-import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.ft.fmrc.Fmrc;
 import ucar.nc2.ncml.NcMLReader;
-import ucar.nc2.units.DateUnit;
+import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.WorkingFiles;
 import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
 import uk.ac.rdg.resc.edal.exceptions.EdalException;
 import uk.ac.rdg.resc.edal.exceptions.MetadataException;
@@ -74,53 +74,98 @@ public class NetcdfDatasetAggregator {
     }
 
     private static final Logger log = LoggerFactory.getLogger(NetcdfDatasetAggregator.class);
-    private static final int DATASET_CACHE_SIZE = 20;
+    private static final int DEFAULT_MAX_HANDLES_PER_LOCATION = 4;
+    private static final int DEFAULT_MAX_OPEN_HANDLES = 20;
 
-    private static Map<String, NcmlString> ncmlStringCache = new HashMap<>();
+    private static Map<String, NcmlString> ncmlStringCache = new ConcurrentHashMap<>();
 
-    private static Map<NetcdfDataset, Integer> activeDatasets = new HashMap<>();
     /**
-     * A LRU cache of {@link NetcdfDataset}s.
+     * The manifests of files in glob aggregations, so that they only need to be
+     * rescanned when files are added or changed.
      */
-    @SuppressWarnings("serial")
-    private static Map<String, NetcdfDataset> datasetCache = new LinkedHashMap<String, NetcdfDataset>(
-            DATASET_CACHE_SIZE + 1, 1.0f, true) {
+    private static Map<String, AggregationManifest> manifestCache = new ConcurrentHashMap<>();
 
-        protected boolean removeEldestEntry(final Map.Entry<String, NetcdfDataset> eldest) {
-            /*
-             * If we are going to remove the eldest entry, we also want to call
-             * the close method on it before allowing LinkedHashMap to do the
-             * actual removal
-             */
-            if (super.size() > DATASET_CACHE_SIZE) {
-                /*
-                 * Start a new thread which will remove the dataset once it
-                 * stops being active
-                 */
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            while (activeDatasets.containsKey(eldest.getValue())
-                                    && activeDatasets.get(eldest.getValue()) > 0) {
-                                log.debug("Waiting to close dataset: " + eldest.getKey());
-                                Thread.sleep(2_000L);
-                            }
-                            log.debug("Closing dataset: " + eldest.getKey());
-                            closeDataset(eldest.getValue());
-                        } catch (IOException e) {
-                            log.error("Cannot close dataset", e);
-                        } catch (InterruptedException e) {
-                            log.error("Problem scheduling dataset closure", e);
-                        }
-                    }
-                }).start();
-                return true;
-            }
-            return false;
-        }
+    /**
+     * The number of files in a glob aggregation to scan in parallel
+     */
+    private static int aggregationScanThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * A pool of open {@link NetcdfDataset}s, which may hold several handles
+     * for each location.
+     */
+    private static final NetcdfDatasetPool datasetPool = new NetcdfDatasetPool(
+            DEFAULT_MAX_HANDLES_PER_LOCATION, DEFAULT_MAX_OPEN_HANDLES);
+
+    /**
+     * Sets the maximum number of {@link NetcdfDataset}s which will be held
+     * open for a single location. Having more than one allows concurrent
+     * requests on the same location to read data in parallel, at the cost of
+     * more open files. Defaults to 4.
+     * 
+     * @param maxHandlesPerLocation
+     *            The maximum number of handles per location
+     */
+    public static void setMaxHandlesPerLocation(int maxHandlesPerLocation) {
+        datasetPool.setMaxHandlesPerLocation(maxHandlesPerLocation);
+    }
+
+    /**
+     * Sets the maximum number of {@link NetcdfDataset}s which will be held
+     * open in total. Once this is exceeded, the least recently used datasets
+     * which are not in use are closed. Defaults to 20.
+     * 
+     * @param maxOpenHandles
+     *            The maximum number of open handles
+     */
+    public static void setMaxOpenHandles(int maxOpenHandles) {
+        datasetPool.setMaxOpenHandles(maxOpenHandles);
+    }
+
+    /**
+     * Sets the maximum amount of memory which open {@link NetcdfDataset}s
+     * should use. This is an estimate based on the number of variables and the
+     * size of any cached coordinate data. Once this is exceeded, the least
+     * recently used datasets which are not in use are closed. By default there
+     * is no memory limit.
+     * 
+     * @param maxOpenBytes
+     *            The maximum estimated memory in bytes, or &lt;= 0 for no limit
+     */
+    public static void setMaxOpenMemory(long maxOpenBytes) {
+        datasetPool.setMaxOpenBytes(maxOpenBytes);
+    }
 
-    };
+    /**
+     * Sets the time after which {@link NetcdfDataset}s which have not been
+     * used get closed. By default datasets are only closed when one of the
+     * limits on open datasets is reached.
+     * 
+     * @param idleTimeoutSeconds
+     *            The idle timeout in seconds, or &lt;= 0 to disable it
+     */
+    public static void setIdleTimeout(long idleTimeoutSeconds) {
+        datasetPool.setIdleTimeout(idleTimeoutSeconds);
+    }
+
+    /**
+     * Sets the number of files which will be scanned in parallel when a glob
+     * expression is first aggregated, or when new files are added to it.
+     * Defaults to the number of available processors.
+     * 
+     * @param nThreads
+     *            The number of files to scan in parallel
+     */
+    public static void setAggregationScanThreads(int nThreads) {
+        aggregationScanThreads = nThreads;
+    }
+
+    /**
+     * @return The hit/miss/wait statistics of the pool of open datasets
+     */
+    public static NetcdfDatasetPool.PoolStatistics getPoolStatistics() {
+        return datasetPool.getStatistics();
+    }
 
     /**
      * Opens the NetCDF dataset at the given location, using the dataset cache.
@@ -144,7 +189,7 @@ public class NetcdfDatasetAggregator {
      * @throws IOException
      *             if there was an error reading from the data source.
      */
-    public static synchronized NetcdfDataset getDataset(String location)
+    public static NetcdfDataset getDataset(String location)
             throws IOException, EdalException {
         return getDataset(location, false);
     }
@@ -173,369 +218,363 @@ public class NetcdfDatasetAggregator {
      * @throws IOException
      *             if there was an error reading from the data source.
      */
-    // These warnings are because we keep files open and close them when they get removed from the cache      
+    public static NetcdfDataset getDataset(final String location, final boolean forceRefresh)
+            throws IOException, EdalException {
+        if (forceRefresh) {
+            /*
+             * Remove any cached handles for this location. Those which are
+             * currently in use will be closed once they have been released.
+             */
+            datasetPool.invalidate(location);
+        }
+        return datasetPool.acquire(location, loc -> openLocation(loc, forceRefresh));
+    }
+
+    /**
+     * Opens a new {@link NetcdfDataset} for the given location. Multi-file
+     * glob expressions are aggregated with NcML.
+     * 
+     * @param location
+     *            The location of the data
+     * @param forceRefresh
+     *            Set to <code>true</code> if cached NcML should be ignored
+     * @return A newly-opened {@link NetcdfDataset}
+     */
+    // These warnings are because we keep files open and close them when they get removed from the cache
     @SuppressWarnings("resource")
-    public static synchronized NetcdfDataset getDataset(final String location, boolean forceRefresh)
+    private static NetcdfDataset openLocation(String location, boolean forceRefresh)
             throws IOException, EdalException {
         NetcdfDataset nc;
-
-        if (datasetCache.containsKey(location) && !forceRefresh) {
-            nc = datasetCache.get(location);
+        if (isRemote(location)) {
+            /*
+             * We have a remote dataset
+             */
+            nc = openDataset(location);
         } else {
-            if (datasetCache.containsKey(location)) {
-                /*
-                 * This means that we have the location in the cache, but we are
-                 * forcing a refresh. In this case, we want to forcibly remove
-                 * the dataset from the cache and close it before doing anything
-                 * else
-                 */
-                nc = datasetCache.get(location);
-                datasetCache.remove(location);
-                nc.close();
+            /*
+             * We have a local dataset
+             */
+            List<File> files = null;
+            try {
+                files = CdmUtils.expandGlobExpression(location);
+            } catch (NullPointerException e) {
+                log.warn("NPE processing location: " + location);
+                throw e;
             }
-            if (isRemote(location)) {
-                /*
-                 * We have a remote dataset
-                 */
-                nc = openDataset(location);
+            if (files.size() == 0) {
+                throw new EdalException(
+                        "The location " + location + " doesn't refer to any existing files.");
+            }
+            if (files.size() == 1) {
+                nc = openDataset(files.get(0).getAbsolutePath());
             } else {
                 /*
-                 * We have a local dataset
+                 * We have multiple files in a glob expression. We write
+                 * some NcML and use the NetCDF aggregation libs to parse
+                 * this into an aggregated dataset.
+                 * 
+                 * If we have already generated the ncML on a previous call,
+                 * just use that.
                  */
-                List<File> files = null;
-                try {
-                    files = CdmUtils.expandGlobExpression(location);
-                } catch (NullPointerException e) {
-                    log.warn("NPE processing location: " + location);
-                    throw e;
-                }
-                if (files.size() == 0) {
-                    throw new EdalException(
-                            "The location " + location + " doesn't refer to any existing files.");
-                }
-                if (files.size() == 1) {
-                    nc = openDataset(files.get(0).getAbsolutePath());
+                NcmlString ncmlString;
+                if (ncmlStringCache.containsKey(location) && !forceRefresh) {
+                    ncmlString = ncmlStringCache.get(location);
                 } else {
                     /*
-                     * We have multiple files in a glob expression. We write
-                     * some NcML and use the NetCDF aggregation libs to parse
-                     * this into an aggregated dataset.
-                     * 
-                     * If we have already generated the ncML on a previous call,
-                     * just use that.
+                     * Find the name of the time dimension
                      */
-                    NcmlString ncmlString;
-                    if (ncmlStringCache.containsKey(location) && !forceRefresh) {
-                        ncmlString = ncmlStringCache.get(location);
-                    } else {
-                        /*
-                         * Find the name of the time dimension
-                         */
-                        NetcdfDataset first = getDataset(files.get(0).getAbsolutePath(),
-                                forceRefresh);
-                        if (first.getFileTypeId().startsWith("GRIB")) {
-                            throw new EdalException("Cannot automatically aggregate GRIB files.");
-                        }
-                        String timeDimName = null;
-                        for (Variable var : first.getVariables()) {
-                            if (var.isCoordinateVariable()) {
-                                for (Attribute attr : var.getAttributes()) {
-                                    if (attr.getFullName().equalsIgnoreCase("units")
-                                            && attr.getStringValue().contains(" since ")) {
-                                        /*
-                                         * This is the time dimension. Since
-                                         * this is a co-ordinate variable, there
-                                         * is only 1 dimension
-                                         */
-                                        Dimension timeDimension = var.getDimension(0);
-                                        timeDimName = timeDimension.getFullName();
-                                    }
+                    NetcdfDataset first = getDataset(files.get(0).getAbsolutePath(),
+                            forceRefresh);
+                    if (first.getFileTypeId().startsWith("GRIB")) {
+                        throw new EdalException("Cannot automatically aggregate GRIB files.");
+                    }
+                    String timeDimName = null;
+                    for (Variable var : first.getVariables()) {
+                        if (var.isCoordinateVariable()) {
+                            for (Attribute attr : var.getAttributes()) {
+                                if (attr.getFullName().equalsIgnoreCase("units")
+                                        && attr.getStringValue().contains(" since ")) {
+                                    /*
+                                     * This is the time dimension. Since
+                                     * this is a co-ordinate variable, there
+                                     * is only 1 dimension
+                                     */
+                                    Dimension timeDimension = var.getDimension(0);
+                                    timeDimName = timeDimension.getFullName();
                                 }
                             }
                         }
-                        releaseDataset(first);
-                        if (timeDimName == null) {
-                            throw new EdalException(
-                                    "Cannot join multiple files without time dimensions");
-                        }
+                    }
+                    releaseDataset(first);
+                    if (timeDimName == null) {
+                        throw new EdalException(
+                                "Cannot join multiple files without time dimensions");
+                    }
 
+                    /*
+                     * Read the time range, variables and attributes of each
+                     * file. This is stored in a manifest so that only new or
+                     * changed files need to be read on subsequent calls.
+                     */
+                    File manifestFile = getManifestFile(location);
+                    AggregationManifest manifest = getManifest(location, timeDimName,
+                            manifestFile);
+                    List<AggregationManifest.FileSummary> summaries = manifest.update(files,
+                            aggregationScanThreads);
+                    if (manifestFile != null) {
+                        manifest.write(manifestFile);
+                    }
+
+                    /*
+                     * We map time values to the variables in files.
+                     * 
+                     * The standard case is that we have multiple files, all
+                     * with the same variables, but at different times. That
+                     * will create an aggregation using "joinExisting".
+                     * 
+                     * However, we also support the case where we have
+                     * multiple files per timestep, each containing a
+                     * different set of variables. Then we want to do a
+                     * "joinExisting", but the thing we want to join is a
+                     * union of the files. This map allows us to do that.
+                     */
+                    Map<Long, Map<String, String>> time2vars2filename = new HashMap<>();
+                    /*
+                     * This stores the end time of each file. Used to check
+                     * for time axis overlaps
+                     */
+                    List<Long> endTimes = new ArrayList<>();
+                    /*
+                     * Used to check that attribute values are consistent
+                     * across all variables in all files.
+                     */
+                    Map<String, Map<String, Number>> varname2Attributes = new HashMap<>();
+                    String timeUnitsTest = null;
+                    boolean commonTimeUnits = true;
+                    for (AggregationManifest.FileSummary summary : summaries) {
                         /*
-                         * We map time values to the variables in files.
-                         * 
-                         * The standard case is that we have multiple files, all
-                         * with the same variables, but at different times. That
-                         * will create an aggregation using "joinExisting".
+                         * Check whether all files have common time units.
                          * 
-                         * However, we also support the case where we have
-                         * multiple files per timestep, each containing a
-                         * different set of variables. Then we want to do a
-                         * "joinExisting", but the thing we want to join is a
-                         * union of the files. This map allows us to do that.
-                         */
-                        Map<Long, Map<String, String>> time2vars2filename = new HashMap<>();
-                        /*
-                         * This stores the end time of each file. Used to check
-                         * for time axis overlaps
-                         */
-                        List<Long> endTimes = new ArrayList<>();
-                        /*
-                         * Used to check that attribute values are consistent
-                         * across all variables in all files.
+                         * If not, we need timeUnitsChange="true" in our NcML
                          */
-                        Map<String, Map<String, Number>> varname2Attributes = new HashMap<>();
-                        String timeUnitsTest = null;
-                        boolean commonTimeUnits = true;
-                        for (File file : files) {
-                            NetcdfFile ncFile = null;
-                            try {
-                                ncFile = NetcdfFile.open(file.getAbsolutePath());
-                                Variable timeVar = ncFile.findVariable(timeDimName);
-                                String unitsString = timeVar.findAttribute("units")
-                                        .getStringValue();
+                        if (timeUnitsTest == null) {
+                            timeUnitsTest = summary.timeUnits;
+                        } else {
+                            if (!timeUnitsTest.equals(summary.timeUnits)) {
+                                commonTimeUnits = false;
+                            }
+                        }
+                        endTimes.add(summary.endTime);
+
+                        if (!time2vars2filename.containsKey(summary.startTime)) {
+                            Map<String, String> vars2filename = new HashMap<>();
+                            time2vars2filename.put(summary.startTime, vars2filename);
+                        }
+                        for (Entry<String, Map<String, Number>> varAttributes : summary.varAttributes
+                                .entrySet()) {
+                            String varName = varAttributes.getKey();
+                            /*
+                             * When aggregating different files, it's important
+                             * that _FillValue, scale_factor, and add_offset
+                             * have common values across the aggregation,
+                             * otherwise incorrect values will be reported -
+                             * each aggregated variable will pick one value
+                             * (usually the last one) and apply it to all of
+                             * them.
+                             * 
+                             * NOTE: This used to be the case for time units,
+                             * but it now works properly :D
+                             */
+                            if (!varname2Attributes.containsKey(varName)) {
                                 /*
-                                 * Check whether all files have common time
-                                 * units.
-                                 * 
-                                 * If not, we need timeUnitsChange="true" in our
-                                 * NcML
+                                 * We haven't processed a variable with this
+                                 * name before
                                  */
-                                if (timeUnitsTest == null) {
-                                    timeUnitsTest = unitsString;
-                                } else {
-                                    if (!timeUnitsTest.equals(unitsString)) {
-                                        commonTimeUnits = false;
+                                Map<String, Number> attributeValues = new HashMap<>();
+                                for (Entry<String, Number> attr : varAttributes.getValue()
+                                        .entrySet()) {
+                                    if (attr.getValue() != null) {
+                                        /*
+                                         * We're only concerned with numeric
+                                         * attributes.
+                                         */
+                                        attributeValues.put(attr.getKey(), attr.getValue());
                                     }
                                 }
-                                String[] unitsParts = unitsString.split(" since ");
-                                long startTime = new DateUnit(timeVar.read().getDouble(0),
-                                        unitsParts[0], DateUnit.getStandardOrISO(unitsParts[1]))
-                                                .getDate().getTime();
-                                long endTime = new DateUnit(
-                                        timeVar.read().getDouble(timeVar.getShape(0) - 1),
-                                        unitsParts[0], DateUnit.getStandardOrISO(unitsParts[1]))
-                                                .getDate().getTime();
-                                endTimes.add(endTime);
-
-                                if (!time2vars2filename.containsKey(startTime)) {
-                                    Map<String, String> vars2filename = new HashMap<>();
-                                    time2vars2filename.put(startTime, vars2filename);
-                                }
-                                List<Variable> variables = ncFile.getVariables();
-                                /*
-                                 * varNames allows us to track which variables
-                                 * are in each file.
-                                 */
-                                String varNames = "";
-                                for (Variable v : variables) {
-                                    String varName = v.getFullName();
-                                    varNames += varName;
-                                    /*
-                                     * When aggregating different files, it's
-                                     * important that _FillValue, scale_factor,
-                                     * and add_offset have common values across
-                                     * the aggregation, otherwise incorrect
-                                     * values will be reported - each aggregated
-                                     * variable will pick one value (usually the
-                                     * last one) and apply it to all of them.
-                                     * 
-                                     * NOTE: This used to be the case for time
-                                     * units, but it now works properly :D
-                                     */
-                                    if (!varname2Attributes.containsKey(varName)) {
+                                varname2Attributes.put(varName, attributeValues);
+                            } else {
+                                Map<String, Number> attributes = varname2Attributes.get(varName);
+                                for (Entry<String, Number> attr : varAttributes.getValue()
+                                        .entrySet()) {
+                                    String attrName = attr.getKey();
+                                    if (!attributes.containsKey(attrName)) {
                                         /*
-                                         * We haven't processed a variable with
-                                         * this name before
+                                         * We have an attribute for a variable
+                                         * which did not exist in a previous
+                                         * variable with the same name.
                                          */
-                                        Map<String, Number> attributeValues = new HashMap<>();
-                                        for (Attribute attr : v.getAttributes()) {
-                                            Number value = attr.getNumericValue();
-                                            if (value != null) {
-                                                /*
-                                                 * We're only concerned with
-                                                 * numeric attributes.
-                                                 */
-                                                attributeValues.put(attr.getFullName(), value);
-                                            }
-                                        }
-                                        varname2Attributes.put(varName, attributeValues);
+                                        throw new MetadataException(
+                                                "Trying to aggregate NetCDF files, but the variable "
+                                                        + varName + " in " + summary.path
+                                                        + " has the attribute " + attrName
+                                                        + " which did not exist in another file in the aggregation.  "
+                                                        + "This attribute must match across all files in the aggregation.");
                                     } else {
-                                        Map<String, Number> attributes = varname2Attributes
-                                                .get(varName);
-                                        for (Attribute attr : v.getAttributes()) {
-                                            if (attr.getFullName().equalsIgnoreCase("scale_factor")
-                                                    || attr.getFullName()
-                                                            .equalsIgnoreCase("add_offset")
-                                                    || attr.getFullName()
-                                                            .equalsIgnoreCase("_FillValue")) {
-                                                if (!attributes.containsKey(attr.getFullName())) {
-                                                    /*
-                                                     * We have an attribute for
-                                                     * a variable which did not
-                                                     * exist in a previous
-                                                     * variable with the same
-                                                     * name.
-                                                     */
-                                                    throw new MetadataException(
-                                                            "Trying to aggregate NetCDF files, but the variable "
-                                                                    + varName + " in "
-                                                                    + file.getAbsolutePath()
-                                                                    + " has the attribute "
-                                                                    + attr.getFullName()
-                                                                    + " which did not exist in another file in the aggregation.  "
-                                                                    + "This attribute must match across all files in the aggregation.");
-                                                } else {
-                                                    Number value = attr.getNumericValue();
-                                                    Number previousValue = attributes
-                                                            .get(attr.getFullName());
-                                                    if (value == null) {
-                                                        throw new MetadataException(
-                                                                "Trying to aggregate NetCDF files, but the variable "
-                                                                        + varName + " in the file "
-                                                                        + file.getAbsolutePath()
-                                                                        + " has an attribute "
-                                                                        + attr.getFullName()
-                                                                        + " without a numeric value.  In a previous file, this was seen to have the value "
-                                                                        + previousValue
-                                                                        + "This variable attribute must match across all files in the aggregation.");
-                                                    } else if (previousValue.doubleValue() != value
-                                                            .doubleValue()) {
-                                                        throw new MetadataException(
-                                                                "Trying to aggregate NetCDF files, but the variable "
-                                                                        + varName + " in the file "
-                                                                        + file.getAbsolutePath()
-                                                                        + " has an attribute "
-                                                                        + attr.getFullName()
-                                                                        + " with the value " + value
-                                                                        + " which is different to the value of "
-                                                                        + attr.getFullName()
-                                                                        + " on " + varName
-                                                                        + " in a different file. ("
-                                                                        + previousValue
-                                                                        + "). This variable attribute must match across all files in the aggregation.");
-                                                    }
-                                                }
-                                            }
+                                        Number value = attr.getValue();
+                                        Number previousValue = attributes.get(attrName);
+                                        if (value == null) {
+                                            throw new MetadataException(
+                                                    "Trying to aggregate NetCDF files, but the variable "
+                                                            + varName + " in the file "
+                                                            + summary.path + " has an attribute "
+                                                            + attrName
+                                                            + " without a numeric value.  In a previous file, this was seen to have the value "
+                                                            + previousValue
+                                                            + "This variable attribute must match across all files in the aggregation.");
+                                        } else if (previousValue.doubleValue() != value
+                                                .doubleValue()) {
+                                            throw new MetadataException(
+                                                    "Trying to aggregate NetCDF files, but the variable "
+                                                            + varName + " in the file "
+                                                            + summary.path
+                                                            + " has an attribute " + attrName
+                                                            + " with the value " + value
+                                                            + " which is different to the value of "
+                                                            + attrName + " on " + varName
+                                                            + " in a different file. ("
+                                                            + previousValue
+                                                            + "). This variable attribute must match across all files in the aggregation.");
                                         }
-
                                     }
                                 }
-                                time2vars2filename.get(startTime).put(varNames,
-                                        file.getAbsolutePath());
-                            } catch (MetadataException e) {
-                                /*
-                                 * We want to actually throw our
-                                 * MetadataExceptions, but catch all others.
-                                 */
-                                throw e;
-                            } catch (Exception e) {
-                                log.error("Problem aggregating dataset", e);
-                            } finally {
-                                if (ncFile != null) {
-                                    ncFile.close();
-                                }
                             }
                         }
+                        time2vars2filename.get(summary.startTime).put(summary.varNames,
+                                summary.path);
+                    }
 
-                        List<Long> startTimes = new ArrayList<>(time2vars2filename.keySet());
-                        Collections.sort(startTimes);
-                        Collections.sort(endTimes);
+                    List<Long> startTimes = new ArrayList<>(time2vars2filename.keySet());
+                    Collections.sort(startTimes);
+                    Collections.sort(endTimes);
 
-                        boolean overlap = false;
-                        for (int i = 1; i < startTimes.size(); i++) {
-                            if (startTimes.get(i) <= endTimes.get(i - 1)) {
-                                overlap = true;
-                                log.debug("Overlap in: " + new Date(startTimes.get(i)) + ","
-                                        + new Date(endTimes.get(i - 1)));
-                            }
+                    boolean overlap = false;
+                    for (int i = 1; i < startTimes.size(); i++) {
+                        if (startTimes.get(i) <= endTimes.get(i - 1)) {
+                            overlap = true;
+                            log.debug("Overlap in: " + new Date(startTimes.get(i)) + ","
+                                    + new Date(endTimes.get(i - 1)));
                         }
+                    }
 
-                        /*
-                         * Now create the NcML string and use it to create an
-                         * aggregated dataset
-                         */
-                        StringBuffer ncmlStringBuffer = new StringBuffer();
-                        ncmlStringBuffer.append(
-                                "<netcdf xmlns=\"http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2\" enhance=\"true\">");
-                        String timeUnitsChange = commonTimeUnits ? "" : "timeUnitsChange=\"true\"";
-
-                        if (!overlap) {
-                            /*
-                             * Non overlapping time axes. This is the standard
-                             * and we use joinExisting
-                             */
-                            ncmlStringBuffer.append("<aggregation dimName=\"" + timeDimName + "\" "
-                                    + timeUnitsChange + " type=\"joinExisting\">");
-                        } else {
-                            /*
-                             * We have overlapping time axes. Treat this as a
-                             * forecast model run collection, which it probably
-                             * is.
-                             * 
-                             * Plus, even if it's not, this is probably the best
-                             * way of handling the overlapping time axes (i.e.
-                             * take later values in preference to earlier ones)
-                             */
-                            ncmlStringBuffer.append("<aggregation dimName=\"run\" "
-                                    + timeUnitsChange
-                                    + " type=\"forecastModelRunCollection\" enhance=\"true\">");
-                        }
-                        for (Long time : startTimes) {
-                            Map<String, String> vars2filename = time2vars2filename.get(time);
-                            if (vars2filename.size() == 1) {
-                                String filename = vars2filename.values().iterator().next();
-                                ncmlStringBuffer.append("<netcdf location=\"" + filename + "\"");
-                                if (overlap) {
-                                    ncmlStringBuffer.append(" coordValue=\""
-                                            + TimeUtils.dateTimeToISO8601(new DateTime(time))
-                                            + "\"");
-                                }
-                                ncmlStringBuffer.append("/>");
-                            } else {
-                                ncmlStringBuffer.append("<netcdf><aggregation type=\"union\">");
-                                for (Entry<String, String> entry : vars2filename.entrySet()) {
-                                    ncmlStringBuffer.append(
-                                            "<netcdf location=\"" + entry.getValue() + "\"/>");
-                                }
-                                ncmlStringBuffer.append("</aggregation></netcdf>");
-                            }
-                        }
-                        ncmlStringBuffer.append("</aggregation>");
-                        ncmlStringBuffer.append("</netcdf>");
+                    /*
+                     * Now create the NcML string and use it to create an
+                     * aggregated dataset
+                     */
+                    StringBuffer ncmlStringBuffer = new StringBuffer();
+                    ncmlStringBuffer.append(
+                            "<netcdf xmlns=\"http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2\" enhance=\"true\">");
+                    String timeUnitsChange = commonTimeUnits ? "" : "timeUnitsChange=\"true\"";
 
-                        ncmlString = new NcmlString(ncmlStringBuffer.toString(), overlap);
-                        ncmlStringCache.put(location, ncmlString);
-                    }
-                    if (ncmlString.fmrc) {
+                    if (!overlap) {
                         /*
-                         * NcML string represents a forecast model run
-                         * collection
+                         * Non overlapping time axes. This is the standard
+                         * and we use joinExisting
                          */
-                        Formatter errlog = new Formatter();
-                        Fmrc fmrc = Fmrc.readNcML(ncmlString.ncml, errlog);
-                        nc = fmrc.getDatasetBest().getNetcdfDataset();
+                        ncmlStringBuffer.append("<aggregation dimName=\"" + timeDimName + "\" "
+                                + timeUnitsChange + " type=\"joinExisting\">");
                     } else {
                         /*
-                         * Standard NcML
+                         * We have overlapping time axes. Treat this as a
+                         * forecast model run collection, which it probably
+                         * is.
+                         * 
+                         * Plus, even if it's not, this is probably the best
+                         * way of handling the overlapping time axes (i.e.
+                         * take later values in preference to earlier ones)
                          */
-                        nc = NcMLReader.readNcML(new StringReader(ncmlString.ncml), null);
+                        ncmlStringBuffer.append("<aggregation dimName=\"run\" "
+                                + timeUnitsChange
+                                + " type=\"forecastModelRunCollection\" enhance=\"true\">");
+                    }
+                    for (Long time : startTimes) {
+                        Map<String, String> vars2filename = time2vars2filename.get(time);
+                        if (vars2filename.size() == 1) {
+                            String filename = vars2filename.values().iterator().next();
+                            ncmlStringBuffer.append("<netcdf location=\"" + filename + "\"");
+                            if (overlap) {
+                                ncmlStringBuffer.append(" coordValue=\""
+                                        + TimeUtils.dateTimeToISO8601(new DateTime(time))
+                                        + "\"");
+                            }
+                            ncmlStringBuffer.append("/>");
+                        } else {
+                            ncmlStringBuffer.append("<netcdf><aggregation type=\"union\">");
+                            for (Entry<String, String> entry : vars2filename.entrySet()) {
+                                ncmlStringBuffer.append(
+                                        "<netcdf location=\"" + entry.getValue() + "\"/>");
+                            }
+                            ncmlStringBuffer.append("</aggregation></netcdf>");
+                        }
                     }
+                    ncmlStringBuffer.append("</aggregation>");
+                    ncmlStringBuffer.append("</netcdf>");
+
+                    ncmlString = new NcmlString(ncmlStringBuffer.toString(), overlap);
+                    ncmlStringCache.put(location, ncmlString);
+                }
+                if (ncmlString.fmrc) {
+                    /*
+                     * NcML string represents a forecast model run
+                     * collection
+                     */
+                    Formatter errlog = new Formatter();
+                    Fmrc fmrc = Fmrc.readNcML(ncmlString.ncml, errlog);
+                    nc = fmrc.getDatasetBest().getNetcdfDataset();
+                } else {
+                    /*
+                     * Standard NcML
+                     */
+                    nc = NcMLReader.readNcML(new StringReader(ncmlString.ncml), null);
                 }
             }
-            datasetCache.put(location, nc);
         }
-        /*
-         * Mark this dataset as active. It will not be removed from the cache
-         * until it is marked as finished with, with the releaseDataset() method
-         */
-        if (!activeDatasets.containsKey(nc)) {
-            activeDatasets.put(nc, 1);
-        } else {
-            activeDatasets.put(nc, activeDatasets.get(nc) + 1);
-        }
-        log.debug(location + " has " + activeDatasets.get(nc) + " active connections");
         return nc;
     }
 
+    /**
+     * @param location
+     *            A glob expression
+     * @return The file to store the {@link AggregationManifest} for the glob
+     *         expression in, or <code>null</code> if no working directory has
+     *         been set on {@link DatasetFactory}
+     */
+    private static File getManifestFile(String location) {
+        return WorkingFiles
+                .getFile("aggregation-" + WorkingFiles.digest(location) + ".manifest.ser");
+    }
+
+    /**
+     * Gets the {@link AggregationManifest} for a glob expression, either from
+     * memory or from disk.
+     * 
+     * @param location
+     *            The glob expression
+     * @param timeDimName
+     *            The name of the time dimension being aggregated over
+     * @param manifestFile
+     *            The file the manifest is stored in. May be <code>null</code>
+     * @return An {@link AggregationManifest}, which may be empty
+     */
+    private static AggregationManifest getManifest(String location, String timeDimName,
+            File manifestFile) {
+        AggregationManifest manifest = manifestCache.get(location);
+        if (manifest == null || !manifest.matches(location, timeDimName)) {
+            manifest = AggregationManifest.read(manifestFile, location, timeDimName);
+            manifestCache.put(location, manifest);
+        }
+        return manifest;
+    }
+
     /**
      * Mark a {@link NetcdfDataset} as inactive. This means that it may be
      * removed from the cache in the event that the cache fills up. Reacquiring
@@ -546,23 +585,8 @@ public class NetcdfDatasetAggregator {
      *            The {@link NetcdfDataset} which is no longer (immediately)
      *            required.
      */
-    public static synchronized void releaseDataset(NetcdfDataset dataset) {
-        if (activeDatasets.containsKey(dataset)) {
-            Integer count = activeDatasets.get(dataset);
-            if (count == 1) {
-                activeDatasets.remove(dataset);
-                log.debug(dataset.getLocation() + " has no active connections");
-            } else {
-                activeDatasets.put(dataset, count - 1);
-                log.debug(dataset.getLocation() + " has " + activeDatasets.get(dataset)
-                        + " active connections");
-            }
-        } else {
-            if (dataset != null) {
-                log.warn("Dataset " + dataset.getLocation()
-                        + " is not in active dataset list but has been asked to be released!  This is not harmful in itself but may indicate a coding error whereby a dataset has been marked to be released from the cache multiple times.");
-            }
-        }
+    public static void releaseDataset(NetcdfDataset dataset) {
+        datasetPool.release(dataset);
     }
 
     /**
@@ -649,18 +673,4 @@ public class NetcdfDatasetAggregator {
          */
         return (!isRemote(location)) && (location.endsWith(".xml") || location.endsWith(".ncml"));
     }
-
-    /**
-     * Closes the given dataset, logging any exceptions at debug level
-     * 
-     * @param nc
-     *            The {@link NetcdfDataset} to close
-     * @throws IOException
-     *             if there is a problem closing the underlying dataset
-     */
-    private static void closeDataset(NetcdfDataset nc) throws IOException {
-        if (nc == null)
-            return;
-        nc.close();
-    }
 }
@@ -0,0 +1,664 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.CoordinateAxis;
+import ucar.nc2.dataset.NetcdfDataset;
+import uk.ac.rdg.resc.edal.exceptions.EdalException;
+
+/**
+ * A pool of open {@link NetcdfDataset}s, keyed on their location.
+ * 
+ * Each location can have several open handles, up to a configurable maximum.
+ * Reads are synchronized on the individual {@link NetcdfDataset} (see
+ * {@link CdmGridDataSource}), so having more than one handle for a location
+ * allows concurrent requests for the same dataset to read in parallel.
+ * 
+ * Looking up a location never blocks on other locations. Opening a dataset
+ * can be slow (e.g. a large NcML aggregation or a remote location), but only
+ * callers which are waiting for the first handle on that same location will
+ * wait for it.
+ * 
+ * Handles are reference counted. The total number of open handles, and their
+ * total estimated memory usage, are limited. When either limit is exceeded the
+ * least recently used idle handles are closed. Handles which are in use are
+ * never closed - the pool can temporarily exceed its limits until they are
+ * released, at which point they are closed straight away. Handles can also be
+ * closed once they have been idle for a given time.
+ * 
+ * The actual closing of datasets (which can be slow for aggregations) is done
+ * by a single shared background thread, which also runs the periodic check for
+ * idle handles.
+ * 
+ * @author agent
+ */
+public final class NetcdfDatasetPool {
+    private static final Logger log = LoggerFactory.getLogger(NetcdfDatasetPool.class);
+
+    /*
+     * Rough overheads used to estimate the memory used by an open dataset, in
+     * addition to any data it has cached.
+     */
+    private static final long HANDLE_OVERHEAD_BYTES = 64 * 1024;
+    private static final long VARIABLE_OVERHEAD_BYTES = 2 * 1024;
+
+    /** How often to check for idle handles, if an idle timeout is set */
+    private static final long IDLE_CHECK_INTERVAL_SECONDS = 30;
+
+    /**
+     * The single thread which closes datasets and checks for idle handles for
+     * all pools
+     */
+    private static final ScheduledExecutorService closer = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "netcdf-dataset-closer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Opens a new {@link NetcdfDataset} for a location. This is called without
+     * holding any locks.
+     */
+    interface DatasetOpener {
+        public NetcdfDataset open(String location) throws IOException, EdalException;
+    }
+
+    /*
+     * The open handles for a single location. All of the mutable state in here
+     * is guarded by the LocationHandles object itself.
+     */
+    private static final class LocationHandles {
+        private final String location;
+        private final List<Handle> handles = new ArrayList<>();
+        /* The number of threads currently opening a new handle */
+        private int opening = 0;
+        /*
+         * Set once this has been removed from the pool. Anyone who picked it up
+         * beforehand needs to look it up again.
+         */
+        private boolean removed = false;
+
+        private LocationHandles(String location) {
+            this.location = location;
+        }
+
+        private Handle leastActive() {
+            Handle best = null;
+            for (Handle handle : handles) {
+                if (best == null || handle.active < best.active) {
+                    best = handle;
+                }
+            }
+            return best;
+        }
+    }
+
+    /*
+     * A single open NetcdfDataset
+     */
+    private static final class Handle {
+        private final LocationHandles owner;
+        private final NetcdfDataset nc;
+        private final long estimatedBytes;
+        /* The number of callers currently using this handle */
+        private int active = 0;
+        /* Used to find the least recently used handle */
+        private long lastUsed;
+        /* The time at which this handle was last acquired or released */
+        private long lastUsedMillis;
+        /* If true, this gets closed as soon as it is no longer active */
+        private boolean retired = false;
+
+        private Handle(LocationHandles owner, NetcdfDataset nc) {
+            this.owner = owner;
+            this.nc = nc;
+            this.estimatedBytes = estimateMemory(nc);
+        }
+    }
+
+    /**
+     * Statistics about the usage of a {@link NetcdfDatasetPool}
+     */
+    public static final class PoolStatistics {
+        private final long hits;
+        private final long misses;
+        private final long waits;
+        private final int openHandles;
+        private final long estimatedBytes;
+        private final int locations;
+
+        private PoolStatistics(long hits, long misses, long waits, int openHandles,
+                long estimatedBytes, int locations) {
+            this.hits = hits;
+            this.misses = misses;
+            this.waits = waits;
+            this.openHandles = openHandles;
+            this.estimatedBytes = estimatedBytes;
+            this.locations = locations;
+        }
+
+        /**
+         * @return The number of requests which were served by a handle which
+         *         was already open
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return The number of requests which needed a new handle to be
+         *         opened
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return The number of requests which had to wait for another thread
+         *         to finish opening the same location
+         */
+        public long getWaits() {
+            return waits;
+        }
+
+        /**
+         * @return The number of handles which are currently open
+         */
+        public int getOpenHandles() {
+            return openHandles;
+        }
+
+        /**
+         * @return The estimated memory used by the open handles, in bytes
+         */
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        /**
+         * @return The number of locations which currently have open handles
+         */
+        public int getLocations() {
+            return locations;
+        }
+
+        @Override
+        public String toString() {
+            return "hits: " + hits + ", misses: " + misses + ", waits: " + waits
+                    + ", open handles: " + openHandles + " (~" + (estimatedBytes / 1024)
+                    + "kB), locations: " + locations;
+        }
+    }
+
+    private final ConcurrentMap<String, LocationHandles> locations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<NetcdfDataset, Handle> handles = new ConcurrentHashMap<>();
+    private final AtomicInteger openHandles = new AtomicInteger(0);
+    private final AtomicLong openBytes = new AtomicLong(0L);
+    private final AtomicLong useCounter = new AtomicLong(0L);
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong waits = new AtomicLong(0L);
+
+    private volatile int maxHandlesPerLocation;
+    private volatile int maxOpenHandles;
+    private volatile long maxOpenBytes = 0L;
+    private volatile long idleTimeoutMillis = 0L;
+    private ScheduledFuture<?> idleCheck = null;
+
+    /**
+     * Create a new {@link NetcdfDatasetPool}
+     * 
+     * @param maxHandlesPerLocation
+     *            The maximum number of handles to open for a single location
+     * @param maxOpenHandles
+     *            The maximum number of handles to keep open in total
+     */
+    NetcdfDatasetPool(int maxHandlesPerLocation, int maxOpenHandles) {
+        setMaxHandlesPerLocation(maxHandlesPerLocation);
+        setMaxOpenHandles(maxOpenHandles);
+    }
+
+    /**
+     * @param maxHandlesPerLocation
+     *            The maximum number of handles which will be opened for any
+     *            one location. Once this is reached, concurrent callers share
+     *            the existing handles.
+     */
+    public void setMaxHandlesPerLocation(int maxHandlesPerLocation) {
+        if (maxHandlesPerLocation < 1) {
+            throw new IllegalArgumentException("Must allow at least one handle per location");
+        }
+        this.maxHandlesPerLocation = maxHandlesPerLocation;
+    }
+
+    /**
+     * @param maxOpenHandles
+     *            The maximum number of handles to keep open across all
+     *            locations. When this is exceeded, the least recently used
+     *            idle handles are closed.
+     */
+    public void setMaxOpenHandles(int maxOpenHandles) {
+        if (maxOpenHandles < 1) {
+            throw new IllegalArgumentException("Must allow at least one open handle");
+        }
+        this.maxOpenHandles = maxOpenHandles;
+        trim();
+    }
+
+    /**
+     * @param maxOpenBytes
+     *            The maximum estimated memory, in bytes, which the open handles
+     *            may use. When this is exceeded, the least recently used idle
+     *            handles are closed. Values &lt;= 0 mean that there is no
+     *            memory limit.
+     */
+    public void setMaxOpenBytes(long maxOpenBytes) {
+        this.maxOpenBytes = maxOpenBytes;
+        trim();
+    }
+
+    /**
+     * @param idleTimeoutSeconds
+     *            The time after which a handle which has not been used gets
+     *            closed. Values &lt;= 0 mean that handles are kept open until
+     *            one of the pool's limits is reached.
+     */
+    public synchronized void setIdleTimeout(long idleTimeoutSeconds) {
+        idleTimeoutMillis = idleTimeoutSeconds * 1000L;
+        if (idleCheck != null) {
+            idleCheck.cancel(false);
+            idleCheck = null;
+        }
+        if (idleTimeoutMillis > 0) {
+            idleCheck = closer.scheduleWithFixedDelay(this::closeIdleHandles,
+                    IDLE_CHECK_INTERVAL_SECONDS, IDLE_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public int getMaxHandlesPerLocation() {
+        return maxHandlesPerLocation;
+    }
+
+    public int getMaxOpenHandles() {
+        return maxOpenHandles;
+    }
+
+    public long getMaxOpenBytes() {
+        return maxOpenBytes;
+    }
+
+    /**
+     * @return A snapshot of the statistics for this pool
+     */
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(hits.get(), misses.get(), waits.get(), openHandles.get(),
+                openBytes.get(), locations.size());
+    }
+
+    /**
+     * Gets a {@link NetcdfDataset} for the given location, opening a new one
+     * if required. This must be matched with a call to
+     * {@link #release(NetcdfDataset)}
+     * 
+     * @param location
+     *            The location of the dataset
+     * @param opener
+     *            The {@link DatasetOpener} to use if a new handle needs opening
+     * @return An open {@link NetcdfDataset}
+     * @throws IOException
+     *             If there is a problem opening the dataset
+     * @throws EdalException
+     *             If there is a problem opening the dataset
+     */
+    NetcdfDataset acquire(String location, DatasetOpener opener)
+            throws IOException, EdalException {
+        LocationHandles locationHandles;
+        while (true) {
+            locationHandles = locations.computeIfAbsent(location, LocationHandles::new);
+            synchronized (locationHandles) {
+                if (locationHandles.removed) {
+                    /*
+                     * This was removed from the pool after we looked it up. Try
+                     * again.
+                     */
+                    continue;
+                }
+                Handle handle = getOrWait(locationHandles);
+                if (handle != null) {
+                    hits.incrementAndGet();
+                    return handle.nc;
+                }
+                if (locationHandles.removed) {
+                    continue;
+                }
+                /*
+                 * We are going to open a new handle
+                 */
+                locationHandles.opening++;
+                break;
+            }
+        }
+
+        /*
+         * Open the new handle without holding any locks
+         */
+        NetcdfDataset nc = null;
+        try {
+            nc = opener.open(location);
+        } finally {
+            if (nc == null) {
+                synchronized (locationHandles) {
+                    locationHandles.opening--;
+                    locationHandles.notifyAll();
+                }
+            }
+        }
+
+        Handle handle = new Handle(locationHandles, nc);
+        handle.active = 1;
+        handle.lastUsed = useCounter.incrementAndGet();
+        handle.lastUsedMillis = System.currentTimeMillis();
+        handles.put(nc, handle);
+        openHandles.incrementAndGet();
+        openBytes.addAndGet(handle.estimatedBytes);
+        misses.incrementAndGet();
+        synchronized (locationHandles) {
+            locationHandles.opening--;
+            if (locationHandles.removed) {
+                /*
+                 * The location was refreshed whilst we were opening it. We can
+                 * still use this handle, but it shouldn't be reused.
+                 */
+                handle.retired = true;
+            } else {
+                locationHandles.handles.add(handle);
+            }
+            locationHandles.notifyAll();
+        }
+        log.debug("Opened new handle for " + location + ". " + getStatistics());
+
+        trim();
+        return nc;
+    }
+
+    /*
+     * Must be called whilst holding the lock on locationHandles. Returns an
+     * existing handle (marking it as active) if one should be used, or null if
+     * the caller should open a new one.
+     */
+    private Handle getOrWait(LocationHandles locationHandles) {
+        boolean waited = false;
+        while (true) {
+            Handle best = locationHandles.leastActive();
+            if (best != null && (best.active == 0 || locationHandles.handles.size()
+                    + locationHandles.opening >= maxHandlesPerLocation)) {
+                /*
+                 * Either we have an idle handle, or we're at the limit for this
+                 * location and need to share the least busy one.
+                 */
+                best.active++;
+                best.lastUsed = useCounter.incrementAndGet();
+                best.lastUsedMillis = System.currentTimeMillis();
+                return best;
+            }
+            if (best == null && locationHandles.opening > 0) {
+                /*
+                 * Someone else is opening the first handle for this location.
+                 * Wait for them rather than opening it twice.
+                 */
+                if (!waited) {
+                    waits.incrementAndGet();
+                    waited = true;
+                }
+                try {
+                    locationHandles.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(
+                            "Interrupted whilst waiting for " + locationHandles.location
+                                    + " to open",
+                            e);
+                }
+                if (locationHandles.removed) {
+                    return null;
+                }
+                continue;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Marks a {@link NetcdfDataset} as no longer in use by the caller. It may
+     * then be reused by other callers, or closed if the pool is over its limit.
+     * 
+     * @param nc
+     *            The {@link NetcdfDataset} to release
+     */
+    void release(NetcdfDataset nc) {
+        if (nc == null) {
+            return;
+        }
+        Handle handle = handles.get(nc);
+        if (handle == null) {
+            log.warn("Dataset " + nc.getLocation()
+                    + " is not in active dataset list but has been asked to be released!  This is not harmful in itself but may indicate a coding error whereby a dataset has been marked to be released from the cache multiple times.");
+            return;
+        }
+        boolean close = false;
+        synchronized (handle.owner) {
+            if (handle.active == 0) {
+                log.warn("Dataset " + nc.getLocation()
+                        + " has been released more times than it has been acquired.");
+                return;
+            }
+            handle.active--;
+            handle.lastUsedMillis = System.currentTimeMillis();
+            log.debug(nc.getLocation() + " has " + handle.active + " active connections");
+            if (handle.active == 0 && handle.retired) {
+                handle.owner.handles.remove(handle);
+                close = true;
+            }
+        }
+        if (close) {
+            closeHandle(handle);
+        } else if (overLimit()) {
+            trim();
+        }
+    }
+
+    /**
+     * Removes all handles for the given location from the pool, so that
+     * subsequent requests open the location afresh. Idle handles are closed
+     * immediately, handles which are in use are closed once they are released.
+     * 
+     * @param location
+     *            The location to remove
+     */
+    void invalidate(String location) {
+        LocationHandles locationHandles = locations.remove(location);
+        if (locationHandles == null) {
+            return;
+        }
+        List<Handle> toClose = new ArrayList<>();
+        synchronized (locationHandles) {
+            locationHandles.removed = true;
+            for (Handle handle : locationHandles.handles) {
+                if (handle.active == 0) {
+                    toClose.add(handle);
+                } else {
+                    handle.retired = true;
+                }
+            }
+            locationHandles.handles.removeAll(toClose);
+            locationHandles.notifyAll();
+        }
+        for (Handle handle : toClose) {
+            closeHandle(handle);
+        }
+    }
+
+    private boolean overLimit() {
+        long maxBytes = maxOpenBytes;
+        return openHandles.get() > maxOpenHandles || (maxBytes > 0 && openBytes.get() > maxBytes);
+    }
+
+    /*
+     * Closes least recently used idle handles until we are within the limits,
+     * or there are no more idle handles.
+     */
+    private void trim() {
+        while (overLimit()) {
+            Handle eldest = null;
+            for (Handle handle : handles.values()) {
+                if (!handle.retired && (eldest == null || handle.lastUsed < eldest.lastUsed)) {
+                    /*
+                     * Reading active without the lock is fine here, since we
+                     * check it again below before removing anything.
+                     */
+                    if (handle.active == 0) {
+                        eldest = handle;
+                    }
+                }
+            }
+            if (eldest == null) {
+                /*
+                 * Everything is in use. We'll try again when something gets
+                 * released.
+                 */
+                return;
+            }
+            if (!removeIdle(eldest)) {
+                /*
+                 * Someone picked it up in the meantime. Try again.
+                 */
+                continue;
+            }
+            log.debug("Closing dataset: " + eldest.owner.location);
+            closeHandle(eldest);
+        }
+    }
+
+    /*
+     * Closes any handles which have not been used for longer than the idle
+     * timeout. Run periodically on the closer thread.
+     */
+    private void closeIdleHandles() {
+        long timeout = idleTimeoutMillis;
+        if (timeout <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - timeout;
+        for (Handle handle : handles.values()) {
+            if (handle.active == 0 && !handle.retired && handle.lastUsedMillis < cutoff) {
+                if (removeIdle(handle)) {
+                    log.debug("Closing idle dataset: " + handle.owner.location);
+                    closeHandle(handle);
+                }
+            }
+        }
+    }
+
+    /*
+     * Removes a handle from its location, if it is still idle. Returns true if
+     * the handle was removed, and should now be closed.
+     */
+    private boolean removeIdle(Handle handle) {
+        LocationHandles owner = handle.owner;
+        synchronized (owner) {
+            if (handle.active > 0 || handle.retired) {
+                return false;
+            }
+            handle.retired = true;
+            owner.handles.remove(handle);
+            if (owner.handles.isEmpty() && owner.opening == 0) {
+                owner.removed = true;
+                locations.remove(owner.location, owner);
+                owner.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Removes the handle from the accounting straight away, and then closes it
+     * on the closer thread.
+     */
+    private void closeHandle(final Handle handle) {
+        if (handles.remove(handle.nc) != null) {
+            openHandles.decrementAndGet();
+            openBytes.addAndGet(-handle.estimatedBytes);
+        }
+        closer.execute(() -> {
+            try {
+                handle.nc.close();
+            } catch (IOException e) {
+                log.error("Cannot close dataset " + handle.owner.location, e);
+            }
+        });
+    }
+
+    /**
+     * Estimates the memory used by an open {@link NetcdfDataset}. This is a
+     * rough guess based on the number of variables, plus the size of any data
+     * which is cached in memory (typically coordinate axes).
+     * 
+     * @param nc
+     *            The {@link NetcdfDataset} to estimate the size of
+     * @return The estimated size in bytes
+     */
+    static long estimateMemory(NetcdfDataset nc) {
+        long bytes = HANDLE_OVERHEAD_BYTES;
+        for (Variable var : nc.getVariables()) {
+            bytes += VARIABLE_OVERHEAD_BYTES;
+            if (var.hasCachedData() || var instanceof CoordinateAxis) {
+                bytes += var.getSize() * var.getElementSize();
+            }
+        }
+        return bytes;
+    }
+}
@@ -115,6 +115,22 @@ final class RangesList {
         }
     }
 
+    /**
+     * Instantiate a new {@link RangesList} which is a copy of an existing one.
+     * The copy has the same rank and axis indices, and can be modified
+     * without affecting the original.
+     * 
+     * @param rangesList
+     *            The {@link RangesList} to copy
+     */
+    public RangesList(RangesList rangesList) {
+        ranges = new ArrayList<Range>(rangesList.ranges);
+        xAxisIndex = rangesList.xAxisIndex;
+        yAxisIndex = rangesList.yAxisIndex;
+        zAxisIndex = rangesList.zAxisIndex;
+        tAxisIndex = rangesList.tAxisIndex;
+    }
+
     /**
      * Instantiate a new {@link RangesList} based on a given
      * {@link GridDatatype}
@@ -31,6 +31,7 @@ package uk.ac.rdg.resc.edal.dataset.cdm;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +55,7 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import uk.ac.rdg.resc.edal.dataset.PointDataset;
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore;
 import uk.ac.rdg.resc.edal.dataset.Dataset;
 import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
 import uk.ac.rdg.resc.edal.dataset.DiscreteFeatureReader;
@@ -84,13 +86,31 @@ public class WaterMLDatasetFactory extends DatasetFactory {
     @Override
     public Dataset createDataset(String id, String location, boolean forceRefresh)
             throws IOException, EdalException {
+        File wmlSites = new File(location + "/" + "GetSiteInfoFile.xml");
+        File wmlData = new File(location + "/" + "ExportValues.xml");
+
+        /*
+         * If the XML files have been ingested into a columnar store since they
+         * last changed, read features from that instead of parsing them
+         */
+        String sourceKey = null;
+        if (ColumnarFeatureStore.isEnabled()) {
+            sourceKey = ColumnarFeatureStore.getSourceKey(Arrays.asList(wmlSites, wmlData));
+            if (!forceRefresh) {
+                PointDataset<PointSeriesFeature> storedDataset = ColumnarFeatureStore
+                        .openDataset(id, sourceKey);
+                if (storedDataset != null) {
+                    return storedDataset;
+                }
+            }
+        }
+
         try {
             /*
              * First we read the GetSiteInfoFile.xml which maps site codes to
              * physical locations.
              */
             Map<String, HorizontalPosition> sites = new HashMap<>();
-            File wmlSites = new File(location + "/" + "GetSiteInfoFile.xml");
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
             Document doc = builder.parse(wmlSites);
@@ -126,7 +146,6 @@ public class WaterMLDatasetFactory extends DatasetFactory {
              * timeseries
              */
 
-            File wmlData = new File(location + "/" + "ExportValues.xml");
             builder = factory.newDocumentBuilder();
             doc = builder.parse(wmlData);
             NodeList timeseriesList = (NodeList) xpath.compile("timeSeriesResponse/timeSeries")
@@ -203,7 +222,11 @@ public class WaterMLDatasetFactory extends DatasetFactory {
                 featureBounds.add(FeatureBounds.fromPointSeriesFeature(feature));
             }
             featureIndexer.addFeatures(featureBounds);
-            return new WaterMLDataset(id, metadata, featureIndexer, features);
+            WaterMLDataset dataset = new WaterMLDataset(id, metadata, featureIndexer, features);
+            if (sourceKey != null) {
+                ColumnarFeatureStore.ingestInBackground(dataset, sourceKey);
+            }
+            return dataset;
         } catch (ParserConfigurationException | SAXException | XPathExpressionException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
@@ -29,6 +29,7 @@
 package uk.ac.rdg.resc.edal.dataset.vtk;
 
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.util.Collection;
 
 import uk.ac.rdg.resc.edal.dataset.DataReadingStrategy;
@@ -97,7 +98,7 @@ public class HydromodelVtkGridDataset extends GriddedDataset {
             for (int t = tmin; t <= tmax; t++) {
                 TimestepInfo timestepInfo = timesteps[t];
                 
-                Number[] data1d = getData1D(timestepInfo, variableId);
+                FloatBuffer data1d = getData1D(timestepInfo, variableId);
                 
                 /*
                  * Reshape the 1D data into the 4D array
@@ -105,7 +106,8 @@ public class HydromodelVtkGridDataset extends GriddedDataset {
                 for (int z = zmin; z <= zmax; z++) {
                     for (int y = ymin; y <= ymax; y++) {
                         for (int x = xmin; x <= xmax; x++) {
-                            Number value = data1d[x + xTotalSize * y + xTotalSize * yTotalSize * z];
+                            Number value = getValue(data1d,
+                                    x + xTotalSize * y + xTotalSize * yTotalSize * z);
                             ret.set(value, t - tmin, z - zmin, y - ymin, x - xmin);
                         }
                     }
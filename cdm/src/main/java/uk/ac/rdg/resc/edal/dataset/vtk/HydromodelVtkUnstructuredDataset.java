@@ -29,6 +29,7 @@
 package uk.ac.rdg.resc.edal.dataset.vtk;
 
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -86,21 +87,21 @@ public class HydromodelVtkUnstructuredDataset extends HorizontalMesh4dDataset {
                     }
                 }
             } else {
-                Number[] lastData = null;
+                FloatBuffer lastData = null;
                 int lastT = -1;
                 for (MeshCoordinates3D coord : coordsToRead) {
                     if (coord.h < 0 || coord.t < 0 || coord.z < 0) {
                         ret.add(null);
                     } else {
                         if(lastT == coord.t) {
-                            ret.add(lastData[coord.h]);
+                            ret.add(getValue(lastData, coord.h));
                         } else {
                             TimestepInfo timestepInfo = timesteps[coord.t];
                             try {
-                                Number[] data1d = getData1D(timestepInfo, variableId);
+                                FloatBuffer data1d = getData1D(timestepInfo, variableId);
                                 lastT = coord.t;
                                 lastData = data1d;
-                                ret.add(data1d[coord.h]);
+                                ret.add(getValue(data1d, coord.h));
                             } catch (IOException e) {
                                 throw new DataReadingException("Problem reading data file", e);
                             }
@@ -28,10 +28,20 @@
 
 package uk.ac.rdg.resc.edal.dataset.vtk;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Pattern;
 import java.util.zip.DataFormatException;
 
 import javax.xml.stream.XMLInputFactory;
@@ -51,104 +61,334 @@ import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
 import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import uk.ac.rdg.resc.edal.cache.EdalCache;
 import uk.ac.rdg.resc.edal.dataset.DataSource;
+import uk.ac.rdg.resc.edal.dataset.WorkingFiles;
 import uk.ac.rdg.resc.edal.dataset.vtk.HydromodelVtkDatasetFactory.TimestepInfo;
 import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
 
 public class OnDemandVtkDataSource implements DataSource {
     private static Logger log = LoggerFactory.getLogger(OnDemandVtkDataSource.class);
+    private static final String CACHE_DIR = "vtk";
+    private static final int CHUNK_SIZE = 65536;
     private XMLInputFactory xmlif;
     
     public OnDemandVtkDataSource() {
         xmlif = XMLInputFactory.newInstance();
     }
-    
-    protected Number[] getData1D(TimestepInfo timestepInfo, String variableId) throws FileNotFoundException, IOException {
+
+    /**
+     * Gets the data for a variable at a single timestep.
+     * 
+     * Decoded data is cached in memory, and also written to a binary file in
+     * the working directory (if one is set), which is memory-mapped for
+     * subsequent reads. This means that each VTK file only needs to be parsed
+     * once for each variable.
+     * 
+     * @param timestepInfo
+     *            The {@link TimestepInfo} describing the file to read from
+     * @param variableId
+     *            The ID of the variable to read
+     * @return A {@link FloatBuffer} containing the data. Missing values are
+     *         represented by {@link Float#NaN}
+     * @throws IOException
+     *             If there is a problem reading the file
+     */
+    protected FloatBuffer getData1D(TimestepInfo timestepInfo, String variableId)
+            throws IOException {
         /*
          * Get 1D data from cache if it is present
          */
-        Number[] data1d;
         DataCacheKey key = new DataCacheKey(timestepInfo.file, variableId);
-        if (vtkGridDatasetCache.isKeyInCache(key)) {
+        Element cached = vtkGridDatasetCache.get(key);
+        if (cached != null) {
             log.debug("Getting timestep data from cache");
-            data1d = (Number[]) vtkGridDatasetCache.get(key).getObjectValue();
-        } else {
+            return (FloatBuffer) cached.getObjectValue();
+        }
+
+        File cacheFile = getCacheFile(timestepInfo, variableId);
+        FloatBuffer data1d = null;
+        if (cacheFile != null && cacheFile.exists()) {
+            try {
+                data1d = mapCacheFile(cacheFile);
+            } catch (IOException e) {
+                log.warn("Problem reading cached VTK data from " + cacheFile, e);
+            }
+        }
+        if (data1d == null) {
             log.debug("Data not in cache, reading from VTK file: "
                     + timestepInfo.file.getAbsolutePath());
-            try (FileInputStream fis = new FileInputStream(timestepInfo.file)) {
-                XMLStreamReader xmlr = xmlif.createXMLStreamReader(fis);
-
-                String dataStr = null;
-                String dataType = null;
-                String dataFormat = null;
-                /*
-                 * Go through the XML as a stream
-                 */
-                while (xmlr.hasNext()) {
-                    int elType = xmlr.next();
-                    if (elType == XMLStreamConstants.START_ELEMENT) {
+            float[] values = readDataArray(timestepInfo, variableId);
+            data1d = FloatBuffer.wrap(values);
+            if (cacheFile != null) {
+                try {
+                    writeCacheFile(cacheFile, values);
+                    deleteStaleCacheFiles(cacheFile, timestepInfo, variableId);
+                    data1d = mapCacheFile(cacheFile);
+                } catch (IOException e) {
+                    log.warn("Problem caching decoded VTK data to " + cacheFile, e);
+                }
+            }
+        }
+        vtkGridDatasetCache.put(new Element(key, data1d));
+        return data1d;
+    }
+
+    /**
+     * Gets a single value from data returned by
+     * {@link #getData1D(TimestepInfo, String)}
+     * 
+     * @param data1d
+     *            The data
+     * @param index
+     *            The index of the value
+     * @return The value, or <code>null</code> if it is missing
+     */
+    protected static Number getValue(FloatBuffer data1d, int index) {
+        float value = data1d.get(index);
+        return Float.isNaN(value) ? null : value;
+    }
+
+    /*
+     * Finds the requested <DataArray> in a VTK file and decodes it, without
+     * holding the whole array as text
+     */
+    private float[] readDataArray(TimestepInfo timestepInfo, String variableId)
+            throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(timestepInfo.file))) {
+            XMLStreamReader xmlr = xmlif.createXMLStreamReader(is);
+            /*
+             * Settings for binary data, which are defined on the root element
+             */
+            boolean compressed = false;
+            boolean bigEndian = false;
+            boolean header64 = false;
+            /*
+             * Go through the XML as a stream
+             */
+            while (xmlr.hasNext()) {
+                if (xmlr.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String elementType = xmlr.getLocalName();
+                if (elementType.equalsIgnoreCase("VTKFile")) {
+                    String compressor = getAttribute(xmlr, "compressor");
+                    compressed = compressor != null && !compressor.isEmpty();
+                    bigEndian = "BigEndian".equalsIgnoreCase(getAttribute(xmlr, "byte_order"));
+                    header64 = "UInt64".equalsIgnoreCase(getAttribute(xmlr, "header_type"));
+                } else if (elementType.equalsIgnoreCase("DataArray")) {
+                    /*
+                     * We have a <DataArray>. Check that it's the one we're
+                     * after
+                     */
+                    String varName = getAttribute(xmlr, "Name");
+                    String dataType = getAttribute(xmlr, "type");
+                    String dataFormat = getAttribute(xmlr, "format");
+                    if (varName == null || dataType == null || dataFormat == null
+                            || !varName.startsWith(variableId)) {
+                        continue;
+                    }
+
+                    VtkDataArrayDecoder decoder = new VtkDataArrayDecoder(dataType,
+                            compressed, bigEndian, header64, timestepInfo.fillValues);
+                    if (dataFormat.equalsIgnoreCase("ascii")) {
+                        readText(xmlr, decoder, true);
+                        return decoder.getAsciiValues();
+                    } else if (dataFormat.equalsIgnoreCase("binary")) {
+                        readText(xmlr, decoder, false);
+                        return decoder.getBinaryValues();
+                    } else if (dataFormat.equalsIgnoreCase("appended")) {
                         /*
-                         * We have a start element
+                         * The appended data may be raw binary, which the XML
+                         * parser cannot handle, so we read it directly from
+                         * the file.
                          */
-                        String elementType = xmlr.getLocalName();
-                        if (elementType.equalsIgnoreCase("DataArray")) {
-                            /*
-                             * We have a <DataArray>
-                             */
-                            String varName = null;
-                            /*
-                             * Fetch the values for Name, type and
-                             * format attributes if they are present
-                             */
-                            for (int i = 0; i < xmlr.getAttributeCount(); i++) {
-                                if (xmlr.getAttributeLocalName(i)
-                                        .equalsIgnoreCase("Name")) {
-                                    varName = xmlr.getAttributeValue(i);
-                                } else if (xmlr.getAttributeLocalName(i)
-                                        .equalsIgnoreCase("type")) {
-                                    dataType = xmlr.getAttributeValue(i);
-                                } else if (xmlr.getAttributeLocalName(i)
-                                        .equalsIgnoreCase("format")) {
-                                    dataFormat = xmlr.getAttributeValue(i);
-                                }
-                            }
-
-                            if (varName != null && dataType != null && dataFormat != null) {
-                                /*
-                                 * We have all of the required
-                                 * information for a variable.
-                                 * 
-                                 * Check that it's the one we're after
-                                 */
-                                if (varName.startsWith(variableId)) {
-                                    /*
-                                     * We have <DataArray
-                                     * Name="VARID...">
-                                     */
-                                    dataStr = xmlr.getElementText();
-                                    break;
-                                }
-                            }
+                        String offset = getAttribute(xmlr, "offset");
+                        if (offset == null) {
+                            throw new DataFormatException("Appended DataArray " + varName
+                                    + " has no offset");
                         }
+                        xmlr.close();
+                        readAppendedData(timestepInfo.file, Long.parseLong(offset.trim()),
+                                decoder);
+                        return decoder.getBinaryValues();
+                    } else {
+                        throw new DataFormatException(
+                                "Can only process DataArrays with the format \"binary\", \"ascii\" or \"appended\"");
                     }
                 }
-                /*
-                 * Finished parsing file
-                 */
-
-                if (dataStr != null) {
-                    data1d = VtkUtils.parseDataString(dataStr, dataFormat, dataType,
-                            timestepInfo.fillValues);
-                    vtkGridDatasetCache.put(new Element(key, data1d));
+            }
+            /*
+             * Finished parsing file
+             */
+            throw new DataReadingException("No data for variable " + variableId
+                    + " found in file: " + timestepInfo.file);
+        } catch (XMLStreamException | DataFormatException | NumberFormatException e) {
+            throw new DataReadingException("Problem reading data", e);
+        }
+    }
+
+    /*
+     * Passes the text content of the current element to the decoder in the
+     * chunks supplied by the parser
+     */
+    private static void readText(XMLStreamReader xmlr, VtkDataArrayDecoder decoder,
+            boolean ascii) throws XMLStreamException {
+        while (xmlr.hasNext()) {
+            int eventType = xmlr.next();
+            if (eventType == XMLStreamConstants.CHARACTERS
+                    || eventType == XMLStreamConstants.CDATA
+                    || eventType == XMLStreamConstants.SPACE) {
+                if (ascii) {
+                    decoder.appendAscii(xmlr.getTextCharacters(), xmlr.getTextStart(),
+                            xmlr.getTextLength());
                 } else {
-                    throw new DataReadingException("No data for variable " + variableId
-                            + " found in file: " + timestepInfo.file);
+                    decoder.appendBase64(xmlr.getTextCharacters(), xmlr.getTextStart(),
+                            xmlr.getTextLength());
                 }
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
 
-            } catch (XMLStreamException | DataFormatException e) {
-                throw new DataReadingException("Problem reading data", e);
+    /*
+     * Reads data from the <AppendedData> section of a file. This starts after
+     * an underscore, and the offset is measured from there (in encoded
+     * characters if the data is base64 encoded).
+     */
+    private static void readAppendedData(File file, long offset, VtkDataArrayDecoder decoder)
+            throws IOException, DataFormatException {
+        long dataStart;
+        boolean base64;
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            byte[] marker = "<AppendedData".getBytes(StandardCharsets.US_ASCII);
+            long position = 0;
+            int matched = 0;
+            int b;
+            while (matched < marker.length && (b = is.read()) >= 0) {
+                position++;
+                matched = (b == marker[matched]) ? matched + 1 : (b == marker[0] ? 1 : 0);
+            }
+            if (matched < marker.length) {
+                throw new DataFormatException("No <AppendedData> found in file: " + file);
             }
+            StringBuilder tag = new StringBuilder();
+            while ((b = is.read()) >= 0 && b != '_') {
+                position++;
+                tag.append((char) b);
+            }
+            if (b < 0) {
+                throw new DataFormatException("No appended data found in file: " + file);
+            }
+            dataStart = position + 1;
+            base64 = !tag.toString().matches("(?s).*encoding\\s*=\\s*[\"']raw[\"'].*");
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            char[] chars = new char[CHUNK_SIZE];
+            long position = dataStart + offset;
+            while (!decoder.hasAllBytes()) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new DataFormatException("Appended data ends unexpectedly in file: "
+                            + file);
+                }
+                position += read;
+                if (base64) {
+                    for (int i = 0; i < read; i++) {
+                        chars[i] = (char) (buffer.get(i) & 0xFF);
+                    }
+                    decoder.appendBase64(chars, 0, read);
+                } else {
+                    decoder.appendBytes(buffer.array(), 0, read);
+                }
+            }
+        }
+    }
+
+    private static String getAttribute(XMLStreamReader xmlr, String name) {
+        for (int i = 0; i < xmlr.getAttributeCount(); i++) {
+            if (xmlr.getAttributeLocalName(i).equalsIgnoreCase(name)) {
+                return xmlr.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Gets the file to cache decoded data in, or null if there is no working
+     * directory. This includes the modification time of the VTK file and the
+     * fill values, so that a cached file is never used for different data.
+     */
+    private static File getCacheFile(TimestepInfo timestepInfo, String variableId) {
+        String name = getCacheFilePrefix(timestepInfo.file)
+                + Long.toHexString(timestepInfo.file.lastModified()) + "-"
+                + Integer.toHexString(Arrays.hashCode(timestepInfo.fillValues)) + "-"
+                + variableId;
+        return WorkingFiles.getFile(CACHE_DIR, name + ".f32");
+    }
+
+    /*
+     * The part of the cache file name which identifies the VTK file, and
+     * doesn't change when it is modified
+     */
+    private static String getCacheFilePrefix(File file) {
+        return file.getName() + "-" + Integer.toHexString(file.getAbsolutePath().hashCode())
+                + "-";
+    }
+
+    /*
+     * Deletes cache files for the same VTK file and variable which were
+     * written for an earlier version of the file (or different fill values),
+     * since they will never be read again
+     */
+    private static void deleteStaleCacheFiles(File cacheFile, TimestepInfo timestepInfo,
+            String variableId) {
+        String prefix = WorkingFiles.toFilename(getCacheFilePrefix(timestepInfo.file));
+        String suffix = WorkingFiles.toFilename(variableId) + ".f32";
+        Pattern stale = Pattern.compile(Pattern.quote(prefix) + "[0-9a-f]+-[0-9a-f]+-"
+                + Pattern.quote(suffix));
+        File[] files = cacheFile.getParentFile().listFiles((dir, name) -> stale
+                .matcher(name).matches() && !name.equals(cacheFile.getName()));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.delete()) {
+                log.debug("Deleted stale VTK cache file " + file);
+            } else {
+                log.warn("Unable to delete stale VTK cache file " + file);
+            }
+        }
+    }
+
+    private static void writeCacheFile(File cacheFile, float[] values) throws IOException {
+        WorkingFiles.write(cacheFile, tmpFile -> writeValues(tmpFile, values));
+    }
+
+    private static void writeValues(File file, float[] values) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < values.length;) {
+                buffer.clear();
+                FloatBuffer floats = buffer.asFloatBuffer();
+                int n = Math.min(floats.capacity(), values.length - i);
+                floats.put(values, i, n);
+                buffer.limit(n * 4);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                i += n;
+            }
+        }
+    }
+
+    private static FloatBuffer mapCacheFile(File cacheFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            return channel.map(MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
         }
-        return data1d;
     }
     
     @Override
@@ -160,7 +400,8 @@ public class OnDemandVtkDataSource implements DataSource {
     }
     
     /*
-     * Cache management - maximum 50 cached data arrays
+     * Cache management - maximum 50 cached data arrays. These are generally
+     * memory-mapped from the decoded files in the working directory.
      */
     private static final String CACHE_NAME = "vtkDataCache";
     private static final int MAX_HEAP_ENTRIES = 50;
@@ -0,0 +1,428 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.vtk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Incrementally decodes the contents of a VTK &lt;DataArray&gt; into an array
+ * of <code>float</code>s.
+ * 
+ * The contents are supplied in chunks as they are read (e.g. from the
+ * character events of a StAX parser), so that the whole array never needs to
+ * be held as a {@link String}. ASCII data is tokenised directly into the
+ * output array. Binary data may be supplied either base64 encoded (inline
+ * "binary" data, or appended data with base64 encoding) or as raw bytes
+ * (appended data with raw encoding), and may optionally be compressed with
+ * zlib, as described by the VTK XML file format.
+ * 
+ * Values which match any of the supplied fill values are returned as
+ * {@link Float#NaN}. Integer data types are converted to <code>float</code>s,
+ * which represent them exactly up to 2<sup>24</sup>, and Float64 data is
+ * rounded to the nearest <code>float</code>. This is fine for data values, but
+ * binary metadata such as connectivity or coordinates should be decoded
+ * exactly with {@link #getBinaryNumbers()}.
+ * 
+ * @author agent
+ */
+final class VtkDataArrayDecoder {
+    private static final int[] BASE64_VALUES = new int[128];
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < chars.length(); i++) {
+            BASE64_VALUES[chars.charAt(i)] = i;
+        }
+    }
+
+    private final int typeSize;
+    private final char typeCode;
+    private final boolean compressed;
+    private final ByteOrder byteOrder;
+    private final int headerWordSize;
+    private final float[] fillVals;
+
+    /*
+     * ASCII state
+     */
+    private float[] values = new float[1024];
+    private int nValues = 0;
+    private char[] token = new char[64];
+    private int tokenLength = 0;
+
+    /*
+     * Binary state
+     */
+    private byte[] bytes = new byte[4096];
+    private int nBytes = 0;
+    private int quad = 0;
+    private int quadLength = 0;
+
+    /**
+     * Create a new {@link VtkDataArrayDecoder}
+     * 
+     * @param type
+     *            The VTK data type of the array (e.g. "Float32")
+     * @param compressed
+     *            Whether binary data is compressed with zlib
+     * @param bigEndian
+     *            Whether binary data is big-endian
+     * @param header64
+     *            Whether the headers of binary data are 64-bit
+     * @param fillVals
+     *            An array of values which are considered to be fill values
+     * @throws DataFormatException
+     *             If the data type is not supported
+     */
+    VtkDataArrayDecoder(String type, boolean compressed, boolean bigEndian, boolean header64,
+            float[] fillVals) throws DataFormatException {
+        if (type.equalsIgnoreCase("Float32")) {
+            typeCode = 'f';
+            typeSize = 4;
+        } else if (type.equalsIgnoreCase("Float64")) {
+            typeCode = 'd';
+            typeSize = 8;
+        } else if (type.equalsIgnoreCase("Int32")) {
+            typeCode = 'i';
+            typeSize = 4;
+        } else {
+            throw new DataFormatException(
+                    "Currently only \"Float32\", \"Float64\" and \"Int32\" data types are supported");
+        }
+        this.compressed = compressed;
+        this.byteOrder = bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        this.headerWordSize = header64 ? 8 : 4;
+        this.fillVals = fillVals == null ? new float[0] : fillVals;
+    }
+
+    /**
+     * Adds a chunk of ASCII data, consisting of whitespace-separated numbers
+     * 
+     * @param chars
+     *            The array containing the data
+     * @param start
+     *            The index of the first character to add
+     * @param length
+     *            The number of characters to add
+     */
+    void appendAscii(char[] chars, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            char c = chars[i];
+            if (Character.isWhitespace(c)) {
+                endToken();
+            } else {
+                if (tokenLength == token.length) {
+                    token = Arrays.copyOf(token, token.length * 2);
+                }
+                token[tokenLength++] = c;
+            }
+        }
+    }
+
+    private void endToken() {
+        if (tokenLength > 0) {
+            if (nValues == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[nValues++] = checkFill(Float.parseFloat(new String(token, 0, tokenLength)));
+            tokenLength = 0;
+        }
+    }
+
+    /**
+     * Adds a chunk of base64-encoded binary data. Padding characters end the
+     * current base64 block, so that separately-encoded headers and data can
+     * simply be concatenated.
+     * 
+     * @param chars
+     *            The array containing the data
+     * @param start
+     *            The index of the first character to add
+     * @param length
+     *            The number of characters to add
+     */
+    void appendBase64(char[] chars, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            char c = chars[i];
+            if (c == '=') {
+                /*
+                 * End of a base64 block. Flush any complete bytes.
+                 */
+                if (quadLength == 2) {
+                    appendByte(quad >> 4);
+                } else if (quadLength == 3) {
+                    appendByte(quad >> 10);
+                    appendByte(quad >> 2);
+                }
+                quad = 0;
+                quadLength = 0;
+                continue;
+            }
+            int value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value < 0) {
+                /*
+                 * Whitespace or other ignorable characters
+                 */
+                continue;
+            }
+            quad = (quad << 6) | value;
+            if (++quadLength == 4) {
+                appendByte(quad >> 16);
+                appendByte(quad >> 8);
+                appendByte(quad);
+                quad = 0;
+                quadLength = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds a chunk of raw binary data
+     * 
+     * @param data
+     *            The array containing the data
+     * @param start
+     *            The index of the first byte to add
+     * @param length
+     *            The number of bytes to add
+     */
+    void appendBytes(byte[] data, int start, int length) {
+        ensureByteCapacity(nBytes + length);
+        System.arraycopy(data, start, bytes, nBytes, length);
+        nBytes += length;
+    }
+
+    private void appendByte(int b) {
+        ensureByteCapacity(nBytes + 1);
+        bytes[nBytes++] = (byte) b;
+    }
+
+    private void ensureByteCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+    /**
+     * @return The total number of binary bytes (header plus data) which make
+     *         up this array, or -1 if not enough of the header has been added
+     *         yet to determine this
+     */
+    long getRequiredBytes() {
+        if (nBytes < headerWordSize) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, nBytes).order(byteOrder);
+        if (!compressed) {
+            return headerWordSize + getHeaderWord(buffer, 0);
+        }
+        long nBlocks = getHeaderWord(buffer, 0);
+        long headerSize = (3 + nBlocks) * headerWordSize;
+        if (nBytes < headerSize) {
+            return -1;
+        }
+        long total = headerSize;
+        for (int i = 0; i < nBlocks; i++) {
+            total += getHeaderWord(buffer, 3 + i);
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of binary bytes which have been added so far
+     */
+    int getBytesAdded() {
+        return nBytes;
+    }
+
+    /**
+     * @return <code>true</code> if all of the binary data for this array has
+     *         been added
+     */
+    boolean hasAllBytes() {
+        long required = getRequiredBytes();
+        return required >= 0 && nBytes >= required;
+    }
+
+    /**
+     * Gets the decoded values of ASCII data
+     * 
+     * @return The values
+     */
+    float[] getAsciiValues() {
+        endToken();
+        return Arrays.copyOf(values, nValues);
+    }
+
+    /**
+     * Decodes binary data which has been added
+     * 
+     * @return The values
+     * @throws DataFormatException
+     *             If the data is incomplete or cannot be decompressed
+     */
+    float[] getBinaryValues() throws DataFormatException {
+        ByteBuffer data = decodeBinary();
+        float[] ret = new float[data.remaining() / typeSize];
+        for (int i = 0; i < ret.length; i++) {
+            switch (typeCode) {
+            case 'f':
+                ret[i] = checkFill(data.getFloat());
+                break;
+            case 'd':
+                ret[i] = checkFill((float) data.getDouble());
+                break;
+            default:
+                ret[i] = checkFill(data.getInt());
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Decodes binary data which has been added, without losing precision.
+     * Values are returned as {@link Integer}s, {@link Float}s or
+     * {@link Double}s, according to the data type. Values which match a fill
+     * value are returned as {@link Float#NaN}.
+     * 
+     * @return The values
+     * @throws DataFormatException
+     *             If the data is incomplete or cannot be decompressed
+     */
+    Number[] getBinaryNumbers() throws DataFormatException {
+        ByteBuffer data = decodeBinary();
+        Number[] ret = new Number[data.remaining() / typeSize];
+        for (int i = 0; i < ret.length; i++) {
+            /*
+             * Boxed explicitly, since a conditional expression would promote
+             * the values to float
+             */
+            Number value;
+            switch (typeCode) {
+            case 'f':
+                value = Float.valueOf(data.getFloat());
+                break;
+            case 'd':
+                value = Double.valueOf(data.getDouble());
+                break;
+            default:
+                value = Integer.valueOf(data.getInt());
+                break;
+            }
+            if (isFill(value.floatValue())) {
+                value = Float.NaN;
+            }
+            ret[i] = value;
+        }
+        return ret;
+    }
+
+    /*
+     * Decompresses the binary data, and returns a buffer containing the values
+     * in the correct byte order. The binary data is discarded.
+     */
+    private ByteBuffer decodeBinary() throws DataFormatException {
+        if (!hasAllBytes()) {
+            throw new DataFormatException("Binary data array is incomplete");
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes, 0, nBytes).order(byteOrder);
+        ByteBuffer data;
+        if (!compressed) {
+            data = ByteBuffer.wrap(bytes, headerWordSize, (int) getHeaderWord(header, 0));
+        } else {
+            int nBlocks = (int) getHeaderWord(header, 0);
+            int blockSize = (int) getHeaderWord(header, 1);
+            int lastBlockSize = (int) getHeaderWord(header, 2);
+            if (lastBlockSize == 0) {
+                lastBlockSize = blockSize;
+            }
+            int uncompressedSize = nBlocks == 0 ? 0 : (nBlocks - 1) * blockSize + lastBlockSize;
+            byte[] uncompressed = new byte[uncompressedSize];
+            int inPos = (3 + nBlocks) * headerWordSize;
+            int outPos = 0;
+            Inflater inflater = new Inflater();
+            try {
+                for (int i = 0; i < nBlocks; i++) {
+                    int compressedSize = (int) getHeaderWord(header, 3 + i);
+                    int size = i == nBlocks - 1 ? lastBlockSize : blockSize;
+                    inflater.reset();
+                    inflater.setInput(bytes, inPos, compressedSize);
+                    int read = 0;
+                    while (read < size) {
+                        int count = inflater.inflate(uncompressed, outPos + read, size - read);
+                        if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                            throw new DataFormatException("Compressed block " + i
+                                    + " is shorter than expected");
+                        }
+                        read += count;
+                    }
+                    inPos += compressedSize;
+                    outPos += size;
+                }
+            } finally {
+                inflater.end();
+            }
+            data = ByteBuffer.wrap(uncompressed);
+        }
+        data.order(byteOrder);
+        /*
+         * The binary data is no longer needed
+         */
+        bytes = new byte[0];
+        nBytes = 0;
+        return data;
+    }
+
+    private long getHeaderWord(ByteBuffer buffer, int index) {
+        int position = index * headerWordSize;
+        if (headerWordSize == 8) {
+            return buffer.getLong(position);
+        } else {
+            return buffer.getInt(position) & 0xFFFFFFFFL;
+        }
+    }
+
+    private float checkFill(float value) {
+        return isFill(value) ? Float.NaN : value;
+    }
+
+    private boolean isFill(float value) {
+        for (float fill : fillVals) {
+            if (fill == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
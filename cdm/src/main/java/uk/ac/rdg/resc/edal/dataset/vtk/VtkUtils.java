@@ -28,19 +28,14 @@
 
 package uk.ac.rdg.resc.edal.dataset.vtk;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
 
-import org.apache.commons.codec.binary.Base64;
 import org.joda.time.DateTime;
 import org.w3c.dom.Node;
 
@@ -52,8 +47,8 @@ public class VtkUtils {
      * This assumes that binary data is compressed with zlib, and uses Little
      * Endian byte order.
      * 
-     * Supports "ascii" and "binary" formats, and "Float32" and "Int32" data
-     * types.
+     * Supports "ascii" and "binary" formats, and "Float32", "Float64" and
+     * "Int32" data types.
      * 
      * @param dataArrayNode
      *            The {@link Node} in the DOM
@@ -78,8 +73,8 @@ public class VtkUtils {
      * This assumes that binary data is compressed with zlib, and uses Little
      * Endian byte order.
      * 
-     * Supports "ascii" and "binary" formats, and "Float32" and "Int32" data
-     * types.
+     * Supports "ascii" and "binary" formats, and "Float32", "Float64" and
+     * "Int32" data types.
      * 
      * @param dataArrayNode
      *            The {@link Node} in the DOM
@@ -106,76 +101,72 @@ public class VtkUtils {
         return parseDataString(data, format, type, fillVals);
     }
 
+    /**
+     * Parses the contents of a &lt;DataArray&gt; and returns an array of
+     * {@link Number}s of the correct type. Values are decoded exactly -
+     * "Int32" data is returned as {@link Integer}s and "Float64" data as
+     * {@link Double}s - since this is used for metadata such as connectivity
+     * and coordinates. Large arrays of data values should be read with
+     * {@link OnDemandVtkDataSource} instead.
+     * 
+     * This assumes that binary data is compressed with zlib, and uses Little
+     * Endian byte order and 32-bit headers.
+     * 
+     * @param data
+     *            The text content of the &lt;DataArray&gt;
+     * @param format
+     *            The format of the data - "ascii" or "binary"
+     * @param type
+     *            The data type - "Float32", "Float64" or "Int32"
+     * @param fillVals
+     *            An array of values which are considered to be fill values.
+     *            These will be returned as {@link Float#NaN}.
+     * @return An array of {@link Number}s
+     * @throws DataFormatException
+     *             If the format or data type is not supported, or the data
+     *             cannot be decoded
+     */
     public static Number[] parseDataString(String data, String format, String type,
-            float[] fillVals) throws DataFormatException, IOException {
-        final boolean float32;
-        if (type.equalsIgnoreCase("Float32")) {
-            float32 = true;
-        } else if (type.equalsIgnoreCase("Int32")) {
-            float32 = false;
-        } else {
-            throw new DataFormatException(
-                    "Currently only \"Float32\" and \"Int32\" data types are supported");
-        }
-        if (format.equalsIgnoreCase("binary")) {
-            /*
-             * Ignore the header
-             */
-            String binaryData = data.substring(24);
-            byte[] decodeBase64 = Base64.decodeBase64(binaryData);
-
-            /*
-             * ...which represents bytes compressed by zlib...
-             */
-            Inflater decompresser = new Inflater();
-            decompresser.setInput(decodeBase64);
-
-            byte[] output;
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream(
-                    decodeBase64.length)) {
-                byte[] buffer = new byte[1024];
-                while (!decompresser.finished()) {
-                    int count = decompresser.inflate(buffer);
-                    outputStream.write(buffer, 0, count);
+            float[] fillVals) throws DataFormatException {
+        /*
+         * This also checks that the data type is supported
+         */
+        VtkDataArrayDecoder decoder = new VtkDataArrayDecoder(type, true, false, false,
+                fillVals);
+        if (format.equalsIgnoreCase("ascii")) {
+            String trimmed = data.trim();
+            String[] dataParts = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+            Number[] values = new Number[dataParts.length];
+            for (int i = 0; i < values.length; i++) {
+                Number value;
+                if (type.equalsIgnoreCase("Int32")) {
+                    value = Integer.parseInt(dataParts[i]);
+                } else if (type.equalsIgnoreCase("Float64")) {
+                    value = Double.parseDouble(dataParts[i]);
+                } else {
+                    value = Float.parseFloat(dataParts[i]);
                 }
-                output = outputStream.toByteArray();
-            }
-            
-            /*
-             * ...each set of 4 of which represent a 32-bit float stored in
-             * little endian form.
-             */
-            int vals = 0;
-            Number[] values = new Number[output.length / 4];
-            for (int i = 0; i < output.length; i += 4) {
-                byte[] valBytes = { output[i], output[i + 1], output[i + 2], output[i + 3] };
-                ByteBuffer value = ByteBuffer.wrap(valBytes).order(ByteOrder.LITTLE_ENDIAN);
-                Float floatVal = value.getFloat();
                 for (float fill : fillVals) {
-                    if (fill == floatVal.floatValue()) {
-                        floatVal = Float.NaN;
+                    if (fill == value.floatValue()) {
+                        value = Float.NaN;
                         break;
                     }
                 }
-                values[vals++] = floatVal;
+                values[i] = value;
             }
-
             return values;
-        } else if (format.equalsIgnoreCase("ascii")) {
-            String[] dataParts = data.split(" ");
-            Number[] values = new Number[dataParts.length];
-            for (int i = 0; i < values.length; i++) {
-                /*
-                 * If we add support for more data types, change this to a
-                 * switch
-                 */
-                if (float32) {
-                    values[i] = Float.parseFloat(dataParts[i]);
-                } else {
-                    values[i] = Integer.parseInt(dataParts[i]);
-                }
+        } else if (format.equalsIgnoreCase("binary")) {
+            /*
+             * Pass the data to the decoder in chunks, to avoid copying the
+             * whole string
+             */
+            char[] chunk = new char[8192];
+            for (int i = 0; i < data.length(); i += chunk.length) {
+                int length = Math.min(chunk.length, data.length() - i);
+                data.getChars(i, i + length, chunk, 0);
+                decoder.appendBase64(chunk, 0, length);
             }
-            return values;
+            return decoder.getBinaryNumbers();
         } else {
             throw new DataFormatException(
                     "Can only process DataArrays with the format \"binary\" or \"ascii\"");
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.zarr;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * Decompresses data in the Blosc (version 1) format, which is the default
+ * compressor for Zarr arrays.
+ * 
+ * Blosc splits the data into blocks, each of which may be byte-shuffled and
+ * split into one stream per byte of the data type before being compressed
+ * with one of several codecs. This supports the LZ4 (and LZ4HC) and zlib
+ * codecs, along with byte shuffling. Data compressed with the other codecs,
+ * or with bit shuffling, cannot be read.
+ * 
+ * @author agent
+ */
+final class BloscDecompressor {
+    private static final int HEADER_SIZE = 16;
+
+    private static final int FLAG_SHUFFLE = 0x1;
+    private static final int FLAG_MEMCPYED = 0x2;
+    private static final int FLAG_BITSHUFFLE = 0x4;
+    private static final int FLAG_DELTA = 0x8;
+    private static final int FLAG_DONT_SPLIT = 0x10;
+
+    private static final int CODEC_LZ4 = 1;
+    private static final int CODEC_ZLIB = 3;
+    private static final String[] CODEC_NAMES = new String[] { "blosclz", "lz4", "snappy",
+            "zlib", "zstd" };
+
+    private BloscDecompressor() {
+    }
+
+    /**
+     * Decompresses a Blosc-compressed buffer
+     * 
+     * @param src
+     *            The compressed data
+     * @return The decompressed data
+     * @throws DataReadingException
+     *             If the data is not valid, or uses a feature of Blosc which
+     *             is not supported
+     */
+    static byte[] decompress(byte[] src) throws DataReadingException {
+        if (src.length < HEADER_SIZE) {
+            throw new DataReadingException("Blosc data is too short to contain a header");
+        }
+        int flags = src[2] & 0xff;
+        int typesize = src[3] & 0xff;
+        int nbytes = readInt(src, 4);
+        int blocksize = readInt(src, 8);
+        int cbytes = readInt(src, 12);
+        if (cbytes > src.length || nbytes < 0) {
+            throw new DataReadingException("Blosc data is truncated or corrupt");
+        }
+
+        byte[] dest = new byte[nbytes];
+        if ((flags & FLAG_MEMCPYED) != 0) {
+            /*
+             * The data was not compressible, and is stored directly after the
+             * header
+             */
+            if (HEADER_SIZE + nbytes > src.length) {
+                throw new DataReadingException("Blosc data is truncated");
+            }
+            System.arraycopy(src, HEADER_SIZE, dest, 0, nbytes);
+            return dest;
+        }
+        if ((flags & (FLAG_BITSHUFFLE | FLAG_DELTA)) != 0) {
+            throw new DataReadingException(
+                    "Blosc data uses bit shuffling or delta filtering, which are not supported");
+        }
+        int codec = (flags & 0xe0) >> 5;
+        if (codec != CODEC_LZ4 && codec != CODEC_ZLIB) {
+            throw new DataReadingException("The Blosc codec "
+                    + (codec < CODEC_NAMES.length ? CODEC_NAMES[codec] : String.valueOf(codec))
+                    + " is not supported.  Only lz4 and zlib can be read.");
+        }
+        if (blocksize <= 0) {
+            throw new DataReadingException("Invalid Blosc block size: " + blocksize);
+        }
+
+        boolean shuffle = (flags & FLAG_SHUFFLE) != 0 && typesize > 1;
+        boolean dontSplit = (flags & FLAG_DONT_SPLIT) != 0;
+        int nblocks = (nbytes + blocksize - 1) / blocksize;
+        byte[] block = new byte[blocksize];
+        for (int b = 0; b < nblocks; b++) {
+            int destStart = b * blocksize;
+            int bsize = Math.min(blocksize, nbytes - destStart);
+            boolean leftover = bsize < blocksize;
+            int nstreams = (!dontSplit && !leftover && typesize > 0 && bsize % typesize == 0)
+                    ? typesize : 1;
+            int neblock = bsize / nstreams;
+
+            int srcPos = readInt(src, HEADER_SIZE + 4 * b);
+            int blockPos = 0;
+            for (int s = 0; s < nstreams; s++) {
+                if (srcPos + 4 > src.length) {
+                    throw new DataReadingException("Blosc data is truncated");
+                }
+                int csize = readInt(src, srcPos);
+                srcPos += 4;
+                if (csize < 0 || srcPos + csize > src.length) {
+                    throw new DataReadingException("Blosc data is truncated or corrupt");
+                }
+                if (csize == neblock) {
+                    /*
+                     * This stream was stored uncompressed
+                     */
+                    System.arraycopy(src, srcPos, block, blockPos, neblock);
+                } else if (codec == CODEC_LZ4) {
+                    int n = decompressLz4(src, srcPos, csize, block, blockPos, neblock);
+                    if (n != neblock) {
+                        throw new DataReadingException("Corrupt LZ4 stream in Blosc data");
+                    }
+                } else {
+                    inflate(src, srcPos, csize, block, blockPos, neblock);
+                }
+                srcPos += csize;
+                blockPos += neblock;
+            }
+
+            if (shuffle) {
+                unshuffle(block, bsize, typesize, dest, destStart);
+            } else {
+                System.arraycopy(block, 0, dest, destStart, bsize);
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Reverses the Blosc byte shuffle, where byte j of element i is stored at
+     * position j * nElements + i. Any bytes which do not make up a whole
+     * element are not shuffled.
+     */
+    private static void unshuffle(byte[] src, int size, int typesize, byte[] dest,
+            int destStart) {
+        int nElements = size / typesize;
+        for (int j = 0; j < typesize; j++) {
+            int srcStart = j * nElements;
+            for (int i = 0; i < nElements; i++) {
+                dest[destStart + i * typesize + j] = src[srcStart + i];
+            }
+        }
+        int shuffled = nElements * typesize;
+        System.arraycopy(src, shuffled, dest, destStart + shuffled, size - shuffled);
+    }
+
+    private static void inflate(byte[] src, int srcPos, int length, byte[] dest, int destPos,
+            int expected) throws DataReadingException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src, srcPos, length);
+            int n = 0;
+            while (n < expected && !inflater.finished()) {
+                int read = inflater.inflate(dest, destPos + n, expected - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != expected) {
+                throw new DataReadingException("Corrupt zlib stream in Blosc data");
+            }
+        } catch (DataFormatException e) {
+            throw new DataReadingException("Corrupt zlib stream in Blosc data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decompresses a single LZ4 block (i.e. raw LZ4 data, without the LZ4
+     * frame format)
+     * 
+     * @return The number of bytes written to the destination
+     */
+    static int decompressLz4(byte[] src, int srcPos, int length, byte[] dest, int destPos,
+            int maxLength) throws DataReadingException {
+        int srcEnd = srcPos + length;
+        int destEnd = destPos + maxLength;
+        int d = destPos;
+        int s = srcPos;
+        try {
+            while (s < srcEnd) {
+                int token = src[s++] & 0xff;
+
+                /*
+                 * Literals
+                 */
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xff;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                if (s + literalLength > srcEnd || d + literalLength > destEnd) {
+                    throw new DataReadingException("Corrupt LZ4 stream in Blosc data");
+                }
+                System.arraycopy(src, s, dest, d, literalLength);
+                s += literalLength;
+                d += literalLength;
+                if (s >= srcEnd) {
+                    /*
+                     * The last sequence has only literals
+                     */
+                    break;
+                }
+
+                /*
+                 * Match
+                 */
+                int offset = (src[s] & 0xff) | ((src[s + 1] & 0xff) << 8);
+                s += 2;
+                int matchLength = token & 0xf;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += 4;
+                int matchStart = d - offset;
+                if (offset == 0 || matchStart < destPos || d + matchLength > destEnd) {
+                    throw new DataReadingException("Corrupt LZ4 stream in Blosc data");
+                }
+                /*
+                 * Matches can overlap the output, so must be copied a byte at a
+                 * time
+                 */
+                for (int i = 0; i < matchLength; i++) {
+                    dest[d++] = dest[matchStart + i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new DataReadingException("Corrupt LZ4 stream in Blosc data", e);
+        }
+        return d - destPos;
+    }
+
+    private static int readInt(byte[] src, int pos) throws DataReadingException {
+        if (pos + 4 > src.length) {
+            throw new DataReadingException("Blosc data is truncated");
+        }
+        return (src[pos] & 0xff) | ((src[pos + 1] & 0xff) << 8) | ((src[pos + 2] & 0xff) << 16)
+                | ((src[pos + 3] & 0xff) << 24);
+    }
+}
@@ -0,0 +1,485 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.zarr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * The metadata of a single array in a Zarr (version 2) store, along with the
+ * methods needed to read and decode its chunks.
+ * 
+ * Values are decoded to doubles, with the CF scale_factor and add_offset
+ * applied, and with fill values (the Zarr fill_value and the CF _FillValue
+ * and missing_value attributes) replaced by {@link Double#NaN}.
+ * 
+ * @author agent
+ */
+final class ZarrArray implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final File directory;
+    private final int[] shape;
+    private final int[] chunks;
+    private final char kind;
+    private final int itemSize;
+    private final boolean littleEndian;
+    private final Map<String, Object> compressor;
+    private final String dimensionSeparator;
+    private final Map<String, Object> attributes;
+    private final List<String> dimensions;
+
+    private final double[] fillValues;
+    private final double scaleFactor;
+    private final double addOffset;
+
+    /*
+     * The index of the array dimension which corresponds to each of the t, z,
+     * y, x axes of the dataset, or -1 if the array does not have that axis
+     */
+    private int[] gridAxes = null;
+
+    /**
+     * Reads the metadata of a Zarr array
+     * 
+     * @param name
+     *            The name of the array
+     * @param directory
+     *            The directory containing the array's chunks
+     * @param zarray
+     *            The parsed contents of the .zarray file
+     * @param zattrs
+     *            The parsed contents of the .zattrs file. May be
+     *            <code>null</code>
+     * @throws DataReadingException
+     *             If the array uses a feature of Zarr which is not supported
+     */
+    @SuppressWarnings("unchecked")
+    ZarrArray(String name, File directory, Map<String, Object> zarray, Map<String, Object> zattrs)
+            throws DataReadingException {
+        this.name = name;
+        this.directory = directory;
+
+        Object zarrFormat = zarray.get("zarr_format");
+        if (zarrFormat != null && ((Number) zarrFormat).intValue() != 2) {
+            throw new DataReadingException("Array " + name + " is in Zarr format " + zarrFormat
+                    + ".  Only version 2 is supported.");
+        }
+
+        shape = toIntArray(zarray.get("shape"), "shape");
+        chunks = toIntArray(zarray.get("chunks"), "chunks");
+        if (shape.length != chunks.length) {
+            throw new DataReadingException(
+                    "Array " + name + " has different numbers of dimensions in shape and chunks");
+        }
+
+        Object dtype = zarray.get("dtype");
+        if (!(dtype instanceof String) || ((String) dtype).length() < 3) {
+            throw new DataReadingException(
+                    "Array " + name + " has an unsupported data type: " + dtype);
+        }
+        String dtypeStr = (String) dtype;
+        littleEndian = dtypeStr.charAt(0) != '>';
+        kind = dtypeStr.charAt(1);
+        try {
+            itemSize = Integer.parseInt(dtypeStr.substring(2));
+        } catch (NumberFormatException e) {
+            throw new DataReadingException(
+                    "Array " + name + " has an unsupported data type: " + dtype);
+        }
+        boolean supported;
+        switch (kind) {
+        case 'f':
+            supported = itemSize == 4 || itemSize == 8;
+            break;
+        case 'i':
+        case 'u':
+            supported = itemSize == 1 || itemSize == 2 || itemSize == 4 || itemSize == 8;
+            break;
+        case 'b':
+            supported = itemSize == 1;
+            break;
+        default:
+            supported = false;
+        }
+        if (!supported) {
+            throw new DataReadingException(
+                    "Array " + name + " has an unsupported data type: " + dtype);
+        }
+
+        Object order = zarray.get("order");
+        if (order != null && !"C".equals(order)) {
+            throw new DataReadingException(
+                    "Array " + name + " is stored in " + order + " order.  Only C is supported.");
+        }
+        Object filters = zarray.get("filters");
+        if (filters != null && !((List<?>) filters).isEmpty()) {
+            throw new DataReadingException(
+                    "Array " + name + " uses filters, which are not supported");
+        }
+
+        compressor = (Map<String, Object>) zarray.get("compressor");
+        if (compressor != null) {
+            Object id = compressor.get("id");
+            if (!"blosc".equals(id) && !"zlib".equals(id) && !"gzip".equals(id)) {
+                throw new DataReadingException("Array " + name + " uses the compressor " + id
+                        + ".  Only blosc, zlib and gzip are supported.");
+            }
+        }
+
+        Object separator = zarray.get("dimension_separator");
+        dimensionSeparator = separator == null ? "." : separator.toString();
+
+        attributes = zattrs == null ? Collections.<String, Object> emptyMap() : zattrs;
+        Object dims = attributes.get("_ARRAY_DIMENSIONS");
+        if (dims instanceof List && ((List<?>) dims).size() == shape.length) {
+            dimensions = (List<String>) dims;
+        } else {
+            dimensions = null;
+        }
+
+        /*
+         * Fill values are compared with the raw (unscaled) data
+         */
+        Double fill = toDouble(zarray.get("fill_value"));
+        Double cfFill = toDouble(attributes.get("_FillValue"));
+        Double missing = toDouble(attributes.get("missing_value"));
+        fillValues = Arrays.asList(fill, cfFill, missing).stream()
+                .filter(v -> v != null && !v.isNaN()).mapToDouble(Double::doubleValue).distinct()
+                .toArray();
+
+        Double scale = toDouble(attributes.get("scale_factor"));
+        Double offset = toDouble(attributes.get("add_offset"));
+        scaleFactor = scale == null ? 1.0 : scale;
+        addOffset = offset == null ? 0.0 : offset;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int[] getShape() {
+        return shape;
+    }
+
+    int[] getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return The modification time of this array's .zarray file, or 0 if it
+     *         does not exist
+     */
+    long getMetadataModified() {
+        return new File(directory, ZarrDatasetFactory.ZARRAY).lastModified();
+    }
+
+    /**
+     * @return The names of the dimensions of this array (from the xarray
+     *         _ARRAY_DIMENSIONS attribute), or <code>null</code> if they are
+     *         not known
+     */
+    List<String> getDimensions() {
+        return dimensions;
+    }
+
+    Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @param key
+     *            The name of the attribute
+     * @return The value of the given attribute as a string, or
+     *         <code>null</code> if it is not present
+     */
+    String getAttribute(String key) {
+        Object value = attributes.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * @return <code>true</code> if all of the decoded values of this array can
+     *         be represented exactly as floats
+     */
+    boolean hasFloatValues() {
+        if (scaleFactor != 1.0 || addOffset != 0.0) {
+            return false;
+        }
+        return kind == 'f' ? itemSize == 4 : itemSize <= 2;
+    }
+
+    /**
+     * Sets which of this array's dimensions correspond to the axes of the
+     * dataset
+     * 
+     * @param gridAxes
+     *            The index of the array dimension for each of the t, z, y and
+     *            x axes, or -1 where the array does not have that axis
+     */
+    void setGridAxes(int[] gridAxes) {
+        this.gridAxes = gridAxes;
+    }
+
+    int[] getGridAxes() {
+        return gridAxes;
+    }
+
+    /**
+     * Reads and decodes an entire (small) array, such as a coordinate
+     * variable
+     * 
+     * @return The values of the array, in C order
+     * @throws IOException
+     *             If there is a problem reading the chunks
+     * @throws DataReadingException
+     *             If the chunks cannot be decoded
+     */
+    double[] readAll() throws IOException, DataReadingException {
+        int size = 1;
+        for (int s : shape) {
+            size *= s;
+        }
+        double[] ret = new double[size];
+        if (shape.length == 0) {
+            if (size > 0) {
+                ret[0] = readChunk(new int[0])[0];
+            }
+            return ret;
+        }
+        if (shape.length != 1) {
+            throw new DataReadingException(
+                    "Only 1-dimensional arrays can be read in full: " + name);
+        }
+        for (int c = 0; c * chunks[0] < shape[0]; c++) {
+            double[] chunk = readChunk(new int[] { c });
+            int start = c * chunks[0];
+            System.arraycopy(chunk, 0, ret, start, Math.min(chunks[0], shape[0] - start));
+        }
+        return ret;
+    }
+
+    /**
+     * Reads and decodes a single chunk. Chunks which are not present in the
+     * store are entirely filled with the fill value.
+     * 
+     * @param chunkIndex
+     *            The index of the chunk along each dimension
+     * @return The values of the whole chunk, in C order. Chunks at the edges
+     *         of the array are padded to the full chunk size.
+     * @throws IOException
+     *             If there is a problem reading the chunk
+     * @throws DataReadingException
+     *             If the chunk cannot be decoded
+     */
+    double[] readChunk(int[] chunkIndex) throws IOException, DataReadingException {
+        int size = 1;
+        for (int c : chunks) {
+            size *= c;
+        }
+        double[] ret = new double[size];
+
+        File file = new File(directory, getChunkKey(chunkIndex));
+        if (!file.exists()) {
+            Arrays.fill(ret, Double.NaN);
+            return ret;
+        }
+        byte[] bytes = decompress(Files.readAllBytes(file.toPath()));
+        if (bytes.length < size * itemSize) {
+            throw new DataReadingException("Chunk " + file.getPath() + " is too short: expected "
+                    + (size * itemSize) + " bytes but got " + bytes.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes)
+                .order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < size; i++) {
+            ret[i] = decode(buffer, i * itemSize);
+        }
+        return ret;
+    }
+
+    private double decode(ByteBuffer buffer, int pos) {
+        double raw;
+        switch (kind) {
+        case 'f':
+            raw = itemSize == 4 ? buffer.getFloat(pos) : buffer.getDouble(pos);
+            break;
+        case 'i':
+            switch (itemSize) {
+            case 1:
+                raw = buffer.get(pos);
+                break;
+            case 2:
+                raw = buffer.getShort(pos);
+                break;
+            case 4:
+                raw = buffer.getInt(pos);
+                break;
+            default:
+                raw = buffer.getLong(pos);
+            }
+            break;
+        case 'u':
+            switch (itemSize) {
+            case 1:
+                raw = buffer.get(pos) & 0xff;
+                break;
+            case 2:
+                raw = buffer.getShort(pos) & 0xffff;
+                break;
+            case 4:
+                raw = buffer.getInt(pos) & 0xffffffffL;
+                break;
+            default:
+                raw = buffer.getLong(pos);
+            }
+            break;
+        default:
+            raw = buffer.get(pos) == 0 ? 0 : 1;
+        }
+        for (double fill : fillValues) {
+            if (raw == fill) {
+                return Double.NaN;
+            }
+        }
+        return raw * scaleFactor + addOffset;
+    }
+
+    private String getChunkKey(int[] chunkIndex) {
+        if (chunkIndex.length == 0) {
+            return "0";
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < chunkIndex.length; i++) {
+            if (i > 0) {
+                key.append(dimensionSeparator);
+            }
+            key.append(chunkIndex[i]);
+        }
+        return key.toString();
+    }
+
+    private byte[] decompress(byte[] data) throws IOException, DataReadingException {
+        if (compressor == null) {
+            return data;
+        }
+        Object id = compressor.get("id");
+        if ("blosc".equals(id)) {
+            return BloscDecompressor.decompress(data);
+        } else if ("gzip".equals(id)) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+                return readFully(in);
+            }
+        } else {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+                byte[] buffer = new byte[65536];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buffer);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataReadingException(
+                                "Truncated zlib data in a chunk of " + name);
+                    }
+                    out.write(buffer, 0, n);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new DataReadingException("Corrupt zlib data in a chunk of " + name, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[65536];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private int[] toIntArray(Object value, String key) throws DataReadingException {
+        if (!(value instanceof List)) {
+            throw new DataReadingException("Array " + name + " has no " + key);
+        }
+        List<?> list = (List<?>) value;
+        int[] ret = new int[list.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = ((Number) list.get(i)).intValue();
+        }
+        return ret;
+    }
+
+    /**
+     * Converts a JSON value to a Double. Zarr writes non-finite fill values as
+     * the strings "NaN", "Infinity" and "-Infinity".
+     */
+    static Double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1.0 : 0.0;
+        } else if (value instanceof List && ((List<?>) value).size() == 1) {
+            /*
+             * netCDF-style attributes are sometimes written as 1-element
+             * lists
+             */
+            return toDouble(((List<?>) value).get(0));
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,539 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.zarr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.dataset.DataReadingStrategy;
+import uk.ac.rdg.resc.edal.dataset.Dataset;
+import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.GridDataSource;
+import uk.ac.rdg.resc.edal.dataset.GriddedDataset;
+import uk.ac.rdg.resc.edal.exceptions.BadTimeFormatException;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.exceptions.EdalException;
+import uk.ac.rdg.resc.edal.grid.HorizontalGrid;
+import uk.ac.rdg.resc.edal.grid.RectilinearGridImpl;
+import uk.ac.rdg.resc.edal.grid.ReferenceableAxis;
+import uk.ac.rdg.resc.edal.grid.ReferenceableAxisImpl;
+import uk.ac.rdg.resc.edal.grid.RegularAxis;
+import uk.ac.rdg.resc.edal.grid.RegularAxisImpl;
+import uk.ac.rdg.resc.edal.grid.RegularGridImpl;
+import uk.ac.rdg.resc.edal.grid.TimeAxis;
+import uk.ac.rdg.resc.edal.grid.TimeAxisImpl;
+import uk.ac.rdg.resc.edal.grid.VerticalAxis;
+import uk.ac.rdg.resc.edal.grid.VerticalAxisImpl;
+import uk.ac.rdg.resc.edal.metadata.GridVariableMetadata;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.VerticalCrsImpl;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+import uk.ac.rdg.resc.edal.util.TimeUtils;
+import uk.ac.rdg.resc.edal.util.cdm.CdmUtils;
+
+/**
+ * {@link DatasetFactory} that reads gridded data directly from a Zarr
+ * (version 2) store in a local directory, without going through the NetCDF
+ * libraries.
+ * 
+ * The location should be the root directory of the store. If consolidated
+ * metadata (a .zmetadata file) is present it is used, otherwise the .zarray
+ * and .zattrs files of each array are read. The dimensions of each array are
+ * taken from the _ARRAY_DIMENSIONS attribute written by xarray, and the CF
+ * conventions are used to identify longitude, latitude, vertical and time
+ * coordinate variables.
+ * 
+ * Data is read one storage chunk at a time, using the
+ * {@link DataReadingStrategy#CHUNK_ALIGNED} strategy.
+ * 
+ * @author agent
+ */
+public class ZarrDatasetFactory extends DatasetFactory {
+    private static final Logger log = LoggerFactory.getLogger(ZarrDatasetFactory.class);
+
+    static final String CONSOLIDATED_METADATA = ".zmetadata";
+    static final String ZARRAY = ".zarray";
+    private static final String ZATTRS = ".zattrs";
+
+    /*
+     * Python writes NaN and infinite values in metadata as bare words
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .enable(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS);
+
+    /*
+     * Axis types of coordinate variables
+     */
+    private static final char X = 'X';
+    private static final char Y = 'Y';
+    private static final char Z = 'Z';
+    private static final char T = 'T';
+
+    @Override
+    public Dataset createDataset(String id, String location, boolean forceRefresh)
+            throws IOException, EdalException {
+        File root = new File(location);
+        if (!root.isDirectory()) {
+            throw new DataReadingException(
+                    "The location " + location + " is not a Zarr store directory");
+        }
+        Map<String, ZarrArray> arrays = readArrays(root);
+
+        /*
+         * Coordinate variables are 1D arrays with the same name as their
+         * dimension
+         */
+        Map<String, ZarrArray> coordinates = new HashMap<>();
+        for (ZarrArray array : arrays.values()) {
+            List<String> dims = array.getDimensions();
+            if (dims != null && dims.size() == 1 && dims.get(0).equals(array.getName())) {
+                coordinates.put(array.getName(), array);
+            }
+        }
+
+        /*
+         * Axes are shared between all variables which use them
+         */
+        Map<String, Object> axes = new HashMap<>();
+        List<GridVariableMetadata> vars = new ArrayList<>();
+        Map<String, ZarrArray> dataArrays = new LinkedHashMap<>();
+        for (ZarrArray array : arrays.values()) {
+            if (coordinates.containsKey(array.getName()) || array.getDimensions() == null
+                    || array.getShape().length < 2) {
+                continue;
+            }
+            int[] gridAxes = getGridAxes(array, coordinates);
+            if (gridAxes == null) {
+                log.debug("Array " + array.getName() + " in " + location
+                        + " is not on a longitude-latitude grid.  It will be ignored.");
+                continue;
+            }
+            List<String> dims = array.getDimensions();
+
+            HorizontalGrid hGrid = (HorizontalGrid) getAxis(
+                    dims.get(gridAxes[2]) + "," + dims.get(gridAxes[3]), axes,
+                    () -> createHorizontalGrid(coordinates.get(dims.get(gridAxes[3])),
+                            coordinates.get(dims.get(gridAxes[2]))));
+            VerticalAxis zAxis = gridAxes[1] < 0 ? null
+                    : (VerticalAxis) getAxis(dims.get(gridAxes[1]), axes,
+                            () -> createVerticalAxis(coordinates.get(dims.get(gridAxes[1]))));
+            TimeAxis tAxis = gridAxes[0] < 0 ? null
+                    : (TimeAxis) getAxis(dims.get(gridAxes[0]), axes,
+                            () -> createTimeAxis(coordinates.get(dims.get(gridAxes[0]))));
+
+            array.setGridAxes(gridAxes);
+            dataArrays.put(array.getName(), array);
+            vars.add(new GridVariableMetadata(getParameter(array), hGrid, zAxis, tAxis, true));
+        }
+
+        if (vars.isEmpty()) {
+            throw new DataReadingException(
+                    "The Zarr store " + location + " does not contain any gridded variables");
+        }
+        return new ZarrDataset(id, root, vars, dataArrays);
+    }
+
+    /*
+     * Reads the metadata of all of the arrays in the root group of the store
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, ZarrArray> readArrays(File root) throws IOException, DataReadingException {
+        Map<String, ZarrArray> arrays = new LinkedHashMap<>();
+        File consolidated = new File(root, CONSOLIDATED_METADATA);
+        if (consolidated.isFile()) {
+            Map<String, Object> zmetadata = readJson(consolidated);
+            Object metadata = zmetadata.get("metadata");
+            if (!(metadata instanceof Map)) {
+                throw new DataReadingException(
+                        "Consolidated metadata in " + consolidated.getPath() + " is not valid");
+            }
+            Map<String, Object> entries = (Map<String, Object>) metadata;
+            for (Entry<String, Object> entry : entries.entrySet()) {
+                String key = entry.getKey();
+                if (!key.endsWith("/" + ZARRAY)) {
+                    continue;
+                }
+                String name = key.substring(0, key.length() - ZARRAY.length() - 1);
+                if (name.contains("/")) {
+                    /*
+                     * Arrays in sub-groups are not supported
+                     */
+                    continue;
+                }
+                arrays.put(name, new ZarrArray(name, new File(root, name),
+                        (Map<String, Object>) entry.getValue(),
+                        (Map<String, Object>) entries.get(name + "/" + ZATTRS)));
+            }
+        } else {
+            File[] children = root.listFiles();
+            if (children == null) {
+                throw new IOException("Cannot list the contents of " + root.getPath());
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                File zarray = new File(child, ZARRAY);
+                if (!zarray.isFile()) {
+                    continue;
+                }
+                File zattrs = new File(child, ZATTRS);
+                arrays.put(child.getName(), new ZarrArray(child.getName(), child,
+                        readJson(zarray), zattrs.isFile() ? readJson(zattrs) : null));
+            }
+        }
+        return arrays;
+    }
+
+    /**
+     * Reads a JSON file containing an object, such as Zarr metadata (.zarray,
+     * .zattrs, .zgroup and .zmetadata).
+     * 
+     * Objects are returned as {@link Map}s, arrays as {@link List}s, and numbers
+     * as {@link Number}s. The non-standard values NaN, Infinity and -Infinity
+     * (which Python writes by default) are also accepted.
+     * 
+     * @param file
+     *            The file to read
+     * @return The parsed object
+     * @throws IOException
+     *             If the file cannot be read
+     * @throws DataReadingException
+     *             If the file does not contain a valid JSON object
+     */
+    static Map<String, Object> readJson(File file) throws IOException, DataReadingException {
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DataReadingException("Expected a JSON object in " + file.getPath());
+            }
+            Map<String, Object> ret = readJsonObject(parser);
+            if (parser.nextToken() != null) {
+                throw new DataReadingException("Unexpected content after JSON object in "
+                        + file.getPath());
+            }
+            return ret;
+        } catch (JsonProcessingException e) {
+            throw new DataReadingException("Invalid JSON in " + file.getPath(), e);
+        }
+    }
+
+    private static Map<String, Object> readJsonObject(JsonParser parser) throws IOException {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            ret.put(name, readJsonValue(parser));
+        }
+        return ret;
+    }
+
+    private static Object readJsonValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case START_OBJECT:
+            return readJsonObject(parser);
+        case START_ARRAY:
+            List<Object> list = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                list.add(readJsonValue(parser));
+            }
+            return list;
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            return parser.getNumberValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            throw new JsonParseException(parser, "Unexpected " + parser.getCurrentToken());
+        }
+    }
+
+    /*
+     * Works out which dimension of the array corresponds to each of the t, z,
+     * y, x axes. Returns null if the array does not have both a longitude and
+     * a latitude dimension, or has other dimensions which cannot be handled.
+     */
+    private static int[] getGridAxes(ZarrArray array, Map<String, ZarrArray> coordinates) {
+        int[] gridAxes = new int[] { -1, -1, -1, -1 };
+        List<String> dims = array.getDimensions();
+        for (int d = 0; d < dims.size(); d++) {
+            ZarrArray coord = coordinates.get(dims.get(d));
+            char axisType = coord == null ? 0 : getAxisType(coord);
+            int a;
+            switch (axisType) {
+            case T:
+                a = 0;
+                break;
+            case Z:
+                a = 1;
+                break;
+            case Y:
+                a = 2;
+                break;
+            case X:
+                a = 3;
+                break;
+            default:
+                a = -1;
+            }
+            if (a < 0 || gridAxes[a] >= 0) {
+                /*
+                 * Dimensions of size 1 without a known axis can be ignored.
+                 * Anything else means that this is not a variable we can read.
+                 */
+                if (array.getShape()[d] == 1) {
+                    continue;
+                }
+                return null;
+            }
+            gridAxes[a] = d;
+        }
+        if (gridAxes[2] < 0 || gridAxes[3] < 0) {
+            return null;
+        }
+        return gridAxes;
+    }
+
+    /*
+     * Identifies the type of a coordinate variable from its CF attributes, or
+     * returns 0 if it is not a recognised coordinate
+     */
+    private static char getAxisType(ZarrArray coord) {
+        String axis = coord.getAttribute("axis");
+        String units = coord.getAttribute("units");
+        String standardName = coord.getAttribute("standard_name");
+        String positive = coord.getAttribute("positive");
+        String name = coord.getName().toLowerCase();
+
+        if ((units != null && GISUtils.isLongitudeUnits(units))
+                || "longitude".equals(standardName) || name.equals("lon")
+                || name.equals("longitude")) {
+            return X;
+        }
+        if ((units != null && GISUtils.isLatitudeUnits(units)) || "latitude".equals(standardName)
+                || name.equals("lat") || name.equals("latitude")) {
+            return Y;
+        }
+        if ("T".equalsIgnoreCase(axis) || "time".equals(standardName)
+                || (units != null && units.contains(" since "))) {
+            return T;
+        }
+        if ("Z".equalsIgnoreCase(axis) || "up".equalsIgnoreCase(positive)
+                || "down".equalsIgnoreCase(positive)
+                || (units != null && GISUtils.isPressureUnits(units))) {
+            return Z;
+        }
+        return 0;
+    }
+
+    /*
+     * Creating an axis means reading the coordinate values, so each is only
+     * created once per dataset
+     */
+    private static Object getAxis(String key, Map<String, Object> axes, AxisCreator creator)
+            throws IOException, DataReadingException {
+        Object axis = axes.get(key);
+        if (axis == null) {
+            axis = creator.create();
+            axes.put(key, axis);
+        }
+        return axis;
+    }
+
+    @FunctionalInterface
+    private interface AxisCreator {
+        public Object create() throws IOException, DataReadingException;
+    }
+
+    private static HorizontalGrid createHorizontalGrid(ZarrArray xCoord, ZarrArray yCoord)
+            throws IOException, DataReadingException {
+        ReferenceableAxis<Double> xAxis = createReferenceableAxis(xCoord, true);
+        ReferenceableAxis<Double> yAxis = createReferenceableAxis(yCoord, false);
+        if (xAxis instanceof RegularAxis && yAxis instanceof RegularAxis) {
+            return new RegularGridImpl((RegularAxis) xAxis, (RegularAxis) yAxis,
+                    GISUtils.defaultGeographicCRS());
+        } else {
+            return new RectilinearGridImpl(xAxis, yAxis, GISUtils.defaultGeographicCRS());
+        }
+    }
+
+    private static ReferenceableAxis<Double> createReferenceableAxis(ZarrArray coord,
+            boolean isLongitude) throws IOException, DataReadingException {
+        double[] values = coord.readAll();
+        if (values.length == 1) {
+            /*
+             * This means that we have an axis with one single value. To allow
+             * this to be visible on a map, we give it an arbitrary size.
+             */
+            return new RegularAxisImpl(coord.getName(), values[0], 0.1, 1, isLongitude);
+        }
+        double spacing = (values[values.length - 1] - values[0]) / (values.length - 1);
+        boolean regular = spacing != 0.0;
+        for (int i = 1; i < values.length && regular; i++) {
+            double expected = values[0] + i * spacing;
+            if (Math.abs(values[i] - expected) > 1e-6 * Math.abs(spacing)) {
+                regular = false;
+            }
+        }
+        if (regular) {
+            return new RegularAxisImpl(coord.getName(), values[0], spacing, values.length,
+                    isLongitude);
+        }
+        List<Double> valuesList = new ArrayList<>();
+        for (double value : values) {
+            valuesList.add(value);
+        }
+        return new ReferenceableAxisImpl(coord.getName(), valuesList, isLongitude);
+    }
+
+    private static VerticalAxis createVerticalAxis(ZarrArray coord)
+            throws IOException, DataReadingException {
+        String units = coord.getAttribute("units");
+        if (units == null) {
+            units = "";
+        }
+        String positive = coord.getAttribute("positive");
+        boolean isPressure = GISUtils.isPressureUnits(units);
+        boolean positiveUp;
+        if (positive != null) {
+            positiveUp = positive.equalsIgnoreCase("up");
+        } else {
+            positiveUp = !isPressure;
+        }
+        List<Double> values = new ArrayList<>();
+        for (double value : coord.readAll()) {
+            values.add(value);
+        }
+        return new VerticalAxisImpl(coord.getName(), values,
+                new VerticalCrsImpl(units, isPressure, units.isEmpty(), positiveUp));
+    }
+
+    /*
+     * Creates a time axis from a CF time coordinate, which has units of the
+     * form "days since 1970-01-01 00:00:00"
+     */
+    private static TimeAxis createTimeAxis(ZarrArray coord)
+            throws IOException, DataReadingException {
+        String units = coord.getAttribute("units");
+        String calendar = coord.getAttribute("calendar");
+        Chronology chron = CdmUtils.getChronologyForString(calendar);
+        if (chron == null) {
+            throw new DataReadingException(
+                    "The calendar system " + calendar + " cannot be handled");
+        }
+        int sinceIndex = units == null ? -1 : units.indexOf(" since ");
+        if (sinceIndex < 0) {
+            throw new DataReadingException("The time coordinate " + coord.getName()
+                    + " has units " + units + ", which are not of the form \"X since Y\"");
+        }
+
+        long unitLengthMillis;
+        DateTime reference;
+        try {
+            unitLengthMillis = 1000L
+                    * TimeUtils.getUnitLengthSeconds(units.substring(0, sinceIndex));
+            /*
+             * CF reference times separate the date and time with a space, and
+             * may be followed by a time zone, which we ignore
+             */
+            String[] refParts = units.substring(sinceIndex + 7).trim().split("\\s+");
+            String refString = refParts[0];
+            if (refParts.length > 1 && refParts[1].contains(":")) {
+                refString += "T" + refParts[1];
+            }
+            reference = TimeUtils.iso8601ToDateTime(refString, chron);
+        } catch (IllegalArgumentException | BadTimeFormatException e) {
+            throw new DataReadingException(
+                    "Cannot parse the time units " + units + " of " + coord.getName(), e);
+        }
+
+        List<DateTime> times = new ArrayList<>();
+        for (double value : coord.readAll()) {
+            times.add(reference.plus(Math.round(value * unitLengthMillis)));
+        }
+        return new TimeAxisImpl(coord.getName(), times);
+    }
+
+    private static Parameter getParameter(ZarrArray array) {
+        String longName = array.getAttribute("long_name");
+        String standardName = array.getAttribute("standard_name");
+        String description = array.getAttribute("description");
+        return new Parameter(array.getName(), longName == null ? array.getName() : longName,
+                description == null ? longName : description, array.getAttribute("units"),
+                standardName == null ? longName : standardName);
+    }
+
+    /**
+     * A {@link GriddedDataset} backed by a Zarr store
+     */
+    private static final class ZarrDataset extends GriddedDataset {
+        private static final long serialVersionUID = 1L;
+        private final File root;
+        private final Map<String, ZarrArray> arrays;
+
+        public ZarrDataset(String id, File root, List<GridVariableMetadata> vars,
+                Map<String, ZarrArray> arrays) {
+            super(id, vars);
+            this.root = root;
+            this.arrays = arrays;
+        }
+
+        @Override
+        protected GridDataSource openDataSource() throws DataReadingException {
+            return new ZarrGridDataSource(root, arrays);
+        }
+
+        @Override
+        protected DataReadingStrategy getDataReadingStrategy() {
+            return DataReadingStrategy.CHUNK_ALIGNED;
+        }
+    }
+}
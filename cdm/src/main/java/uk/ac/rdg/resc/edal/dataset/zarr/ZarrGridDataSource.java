@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.zarr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import uk.ac.rdg.resc.edal.dataset.ChunkedGridDataSource;
+import uk.ac.rdg.resc.edal.dataset.DataReadExecutor;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.util.Array4D;
+
+/**
+ * A {@link ChunkedGridDataSource} which reads data directly from the chunks of
+ * a Zarr (version 2) store in a local directory.
+ * 
+ * Each read decodes only the chunks which intersect the requested range.
+ * Where a read needs more than one chunk, they are read and decompressed in
+ * parallel on the threads managed by {@link DataReadExecutor}.
+ * 
+ * @author agent
+ */
+final class ZarrGridDataSource implements ChunkedGridDataSource {
+    private final File root;
+    private final Map<String, ZarrArray> arrays;
+    /*
+     * Calculated when first needed. Chunks are looked up many times whilst a
+     * data source is open, but data sources are opened for each read.
+     */
+    private String cacheId = null;
+
+    /**
+     * @param root
+     *            The root directory of the Zarr store
+     * @param arrays
+     *            The data variables, keyed by ID. Each must have had its grid
+     *            axes set with {@link ZarrArray#setGridAxes(int[])}
+     */
+    ZarrGridDataSource(File root, Map<String, ZarrArray> arrays) {
+        this.root = root;
+        this.arrays = arrays;
+    }
+
+    @Override
+    public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin, int zmax,
+            int ymin, int ymax, int xmin, int xmax) throws IOException, DataReadingException {
+        int tSize = tmax - tmin + 1;
+        int zSize = zmax - zmin + 1;
+        int ySize = ymax - ymin + 1;
+        int xSize = xmax - xmin + 1;
+        int size = tSize * zSize * ySize * xSize;
+        ZarrArray array = getArray(variableId);
+        if (array.hasFloatValues()) {
+            float[] values = new float[size];
+            readValues(array, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax, values, null);
+            return new FloatArray4D(values, tSize, zSize, ySize, xSize);
+        } else {
+            double[] values = new double[size];
+            readValues(array, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax, null, values);
+            return new DoubleArray4D(values, tSize, zSize, ySize, xSize);
+        }
+    }
+
+    @Override
+    public boolean hasFloatValues(String variableId) throws DataReadingException {
+        return getArray(variableId).hasFloatValues();
+    }
+
+    @Override
+    public void readFloats(String variableId, int tmin, int tmax, int zmin, int zmax, int ymin,
+            int ymax, int xmin, int xmax, float[] values) throws IOException, DataReadingException {
+        readValues(getArray(variableId), tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax, values,
+                null);
+    }
+
+    /*
+     * Reads values into either an array of floats or an array of doubles,
+     * whichever is not null
+     */
+    private void readValues(ZarrArray array, int tmin, int tmax, int zmin, int zmax, int ymin,
+            int ymax, int xmin, int xmax, float[] floats, double[] doubles)
+            throws IOException, DataReadingException {
+        int[] gridAxes = array.getGridAxes();
+        int[] chunks = array.getChunks();
+
+        /*
+         * Missing axes have an index of -1, and are read as a single value
+         */
+        int[] mins = new int[] { Math.max(tmin, 0), Math.max(zmin, 0), ymin, xmin };
+        int[] maxs = new int[] { Math.max(tmax, 0), Math.max(zmax, 0), ymax, xmax };
+        int[] sizes = new int[4];
+        int nValues = 1;
+        for (int a = 0; a < 4; a++) {
+            sizes[a] = maxs[a] - mins[a] + 1;
+            nValues *= sizes[a];
+        }
+        if (floats != null) {
+            Arrays.fill(floats, 0, nValues, Float.NaN);
+        } else {
+            Arrays.fill(doubles, 0, nValues, Double.NaN);
+        }
+
+        /*
+         * Find all of the chunks which intersect the requested range. Array
+         * dimensions which do not correspond to an axis have size 1, so only
+         * the first chunk is needed.
+         */
+        int nDims = chunks.length;
+        int[] firstChunk = new int[nDims];
+        int[] lastChunk = new int[nDims];
+        for (int a = 0; a < 4; a++) {
+            int d = gridAxes[a];
+            if (d >= 0) {
+                firstChunk[d] = mins[a] / chunks[d];
+                lastChunk[d] = maxs[a] / chunks[d];
+            }
+        }
+        List<int[]> chunkIndices = new ArrayList<>();
+        int[] chunkIndex = firstChunk.clone();
+        while (true) {
+            chunkIndices.add(chunkIndex.clone());
+            int d = nDims - 1;
+            while (d >= 0 && chunkIndex[d] == lastChunk[d]) {
+                chunkIndex[d] = firstChunk[d];
+                d--;
+            }
+            if (d < 0) {
+                break;
+            }
+            chunkIndex[d]++;
+        }
+
+        if (chunkIndices.size() == 1 || DataReadExecutor.isReadThread()) {
+            /*
+             * Either there is nothing to parallelise, or we are already on a
+             * reading thread and must not wait for other reads
+             */
+            for (int[] index : chunkIndices) {
+                copyChunk(array, index, mins, sizes, floats, doubles);
+            }
+            return;
+        }
+
+        /*
+         * Each chunk writes to a separate part of the output array, so they
+         * can all be decoded at once
+         */
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            for (int[] index : chunkIndices) {
+                futures.add(DataReadExecutor.submit(() -> {
+                    copyChunk(array, index, mins, sizes, floats, doubles);
+                    return null;
+                }));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataReadingException("Interrupted whilst reading Zarr data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new DataReadingException("Problem reading Zarr data", cause);
+        } finally {
+            for (CompletableFuture<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /*
+     * Decodes a single chunk and copies the part of it which intersects the
+     * requested range into whichever of the output arrays is not null
+     */
+    private void copyChunk(ZarrArray array, int[] chunkIndex, int[] mins, int[] sizes,
+            float[] floats, double[] doubles) throws IOException, DataReadingException {
+        double[] chunk = array.readChunk(chunkIndex);
+        int[] gridAxes = array.getGridAxes();
+        int[] chunks = array.getChunks();
+
+        /*
+         * The stride of each array dimension within the chunk
+         */
+        int[] strides = new int[chunks.length];
+        int stride = 1;
+        for (int d = chunks.length - 1; d >= 0; d--) {
+            strides[d] = stride;
+            stride *= chunks[d];
+        }
+
+        /*
+         * For each of the t, z, y, x axes, the range of the requested values
+         * within this chunk, and the offset and stride of that axis within the
+         * chunk
+         */
+        int[] from = new int[4];
+        int[] to = new int[4];
+        int[] chunkStart = new int[4];
+        int[] chunkStrides = new int[4];
+        for (int a = 0; a < 4; a++) {
+            int d = gridAxes[a];
+            int start = d >= 0 ? chunkIndex[d] * chunks[d] : 0;
+            int end = d >= 0 ? start + chunks[d] - 1 : 0;
+            from[a] = Math.max(mins[a], start);
+            to[a] = Math.min(mins[a] + sizes[a] - 1, end);
+            chunkStart[a] = start;
+            chunkStrides[a] = d >= 0 ? strides[d] : 0;
+        }
+
+        for (int t = from[0]; t <= to[0]; t++) {
+            for (int z = from[1]; z <= to[1]; z++) {
+                for (int y = from[2]; y <= to[2]; y++) {
+                    int chunkOffset = (t - chunkStart[0]) * chunkStrides[0]
+                            + (z - chunkStart[1]) * chunkStrides[1]
+                            + (y - chunkStart[2]) * chunkStrides[2];
+                    int valuesOffset = (((t - mins[0]) * sizes[1] + (z - mins[1])) * sizes[2]
+                            + (y - mins[2])) * sizes[3] - mins[3];
+                    for (int x = from[3]; x <= to[3]; x++) {
+                        double value = chunk[chunkOffset + (x - chunkStart[3]) * chunkStrides[3]];
+                        if (floats != null) {
+                            floats[valuesOffset + x] = (float) value;
+                        } else {
+                            doubles[valuesOffset + x] = value;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public int[] getChunkShape(String variableId) throws DataReadingException {
+        ZarrArray array = getArray(variableId);
+        return toTZYX(array.getChunks(), array.getGridAxes());
+    }
+
+    @Override
+    public int[] getShape(String variableId) throws DataReadingException {
+        ZarrArray array = getArray(variableId);
+        return toTZYX(array.getShape(), array.getGridAxes());
+    }
+
+    @Override
+    public synchronized String getCacheId() {
+        if (cacheId == null) {
+            /*
+             * Zarr writers rewrite the .zarray of an array whenever its shape
+             * or encoding changes, and the consolidated metadata (if there is
+             * any) whenever any array changes. The latest of these times
+             * identifies the current state of the arrays we read.
+             */
+            File metadata = new File(root, ZarrDatasetFactory.CONSOLIDATED_METADATA);
+            long lastModified = (metadata.exists() ? metadata : root).lastModified();
+            for (ZarrArray array : arrays.values()) {
+                lastModified = Math.max(lastModified, array.getMetadataModified());
+            }
+            cacheId = root.getAbsolutePath() + "@" + lastModified;
+        }
+        return cacheId;
+    }
+
+    @Override
+    public void close() throws DataReadingException {
+        /*
+         * Chunk files are only open whilst they are being read
+         */
+    }
+
+    @Override
+    public boolean supportsConcurrentReads() {
+        /*
+         * Each read opens the chunk files it needs
+         */
+        return true;
+    }
+
+    private ZarrArray getArray(String variableId) throws DataReadingException {
+        ZarrArray array = arrays.get(variableId);
+        if (array == null) {
+            throw new DataReadingException("The variable " + variableId
+                    + " is not present in the Zarr store " + root.getPath());
+        }
+        return array;
+    }
+
+    private static int[] toTZYX(int[] values, int[] gridAxes) {
+        int[] ret = new int[4];
+        for (int a = 0; a < 4; a++) {
+            ret[a] = gridAxes[a] >= 0 ? values[gridAxes[a]] : 1;
+        }
+        return ret;
+    }
+
+    /**
+     * An {@link Array4D} backed by an array of floats, where NaN represents
+     * missing data
+     */
+    private static final class FloatArray4D extends Array4D<Number> {
+        private final float[] values;
+        private final int zSize;
+        private final int ySize;
+        private final int xSize;
+
+        FloatArray4D(float[] values, int tSize, int zSize, int ySize, int xSize) {
+            super(tSize, zSize, ySize, xSize);
+            this.values = values;
+            this.zSize = zSize;
+            this.ySize = ySize;
+            this.xSize = xSize;
+        }
+
+        @Override
+        public Number get(int... coords) {
+            float value = values[index(coords)];
+            return Float.isNaN(value) ? null : value;
+        }
+
+        @Override
+        public void set(Number value, int... coords) {
+            values[index(coords)] = value == null ? Float.NaN : value.floatValue();
+        }
+
+        private int index(int[] coords) {
+            return ((coords[0] * zSize + coords[1]) * ySize + coords[2]) * xSize + coords[3];
+        }
+    }
+
+    /**
+     * An {@link Array4D} backed by an array of doubles, where NaN represents
+     * missing data
+     */
+    private static final class DoubleArray4D extends Array4D<Number> {
+        private final double[] values;
+        private final int zSize;
+        private final int ySize;
+        private final int xSize;
+
+        DoubleArray4D(double[] values, int tSize, int zSize, int ySize, int xSize) {
+            super(tSize, zSize, ySize, xSize);
+            this.values = values;
+            this.zSize = zSize;
+            this.ySize = ySize;
+            this.xSize = xSize;
+        }
+
+        @Override
+        public Number get(int... coords) {
+            double value = values[index(coords)];
+            return Double.isNaN(value) ? null : value;
+        }
+
+        @Override
+        public void set(Number value, int... coords) {
+            values[index(coords)] = value == null ? Double.NaN : value.doubleValue();
+        }
+
+        private int index(int[] coords) {
+            return ((coords[0] * zSize + coords[1]) * ySize + coords[2]) * xSize + coords[3];
+        }
+    }
+}
@@ -44,8 +44,8 @@ import org.joda.time.chrono.JulianChronology;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import ucar.ma2.DataType;
 import ucar.nc2.Attribute;
+import ucar.nc2.Variable;
 import ucar.nc2.constants.AxisType;
 import ucar.nc2.dataset.CoordinateAxis;
 import ucar.nc2.dataset.CoordinateAxis1D;
@@ -53,7 +53,6 @@ import ucar.nc2.dataset.CoordinateAxis1DTime;
 import ucar.nc2.dataset.CoordinateAxis2D;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dt.GridCoordSystem;
-import ucar.nc2.dt.GridDatatype;
 import ucar.nc2.dt.grid.GridDataset;
 import ucar.nc2.time.CalendarDate;
 import uk.ac.rdg.resc.edal.dataset.DataReadingStrategy;
@@ -126,59 +125,78 @@ public final class CdmUtils {
     }
 
     /**
-     * Estimates the optimum {@link DataReadingStrategy} from the given
-     * NetcdfDataset. Essentially, if the data are remote (e.g. OPeNDAP) or
-     * compressed, this will return {@link DataReadingStrategy#BOUNDING_BOX},
-     * which makes a single i/o call, minimizing the overhead. If the data are
-     * local and uncompressed this will return
-     * {@link DataReadingStrategy#SCANLINE}, which reduces the amount of data
-     * read.
+     * Gets the optimum {@link DataReadingStrategy} for the given
+     * NetcdfDataset. This used to be a fixed choice based on the file type and
+     * the size of the grids: {@link DataReadingStrategy#SCANLINE} for local
+     * uncompressed data, {@link DataReadingStrategy#BOUNDING_BOX} for remote
+     * or compressed data, and {@link DataReadingStrategy#CHUNK_ALIGNED} for
+     * chunked data.
+     * 
+     * However, which of these is best depends on each individual request as
+     * much as on the dataset, so we now use
+     * {@link DataReadingStrategy#ADAPTIVE}, which chooses between them for
+     * each read.
+     * 
+     * The exception is remote (OPeNDAP) data, where each read is a separate
+     * HTTP request. The adaptive strategy starts from costs which suit local
+     * data, and would make many slow requests before learning otherwise, so
+     * we read the bounding box as before.
      *
      * @param nc
      *            The NetcdfDataset from which data will be read.
      * @return an optimum DataReadingStrategy for reading from the dataset
      */
     public static DataReadingStrategy getOptimumDataReadingStrategy(NetcdfDataset nc) {
-        String fileType = nc.getFileTypeId();
-        if ("netCDF".equalsIgnoreCase(fileType) || "HDF4".equalsIgnoreCase(fileType)) {
-            return DataReadingStrategy.SCANLINE;
-        } else {
-            try {
-                GridDataset gridDataset = getGridDataset(nc);
-                for (GridDatatype grid : gridDataset.getGrids()) {
-                    HorizontalGrid hGrid = CdmUtils
-                            .createHorizontalGrid(grid.getCoordinateSystem());
-                    DataType dt = grid.getDataType();
-                    long totalsize = hGrid.size() * dt.getSize();
-                    /*
-                     * If the size of the largest grid is greater than a
-                     * fraction of the maximum amount of memory, use a SCANLINE
-                     * strategy.
-                     * 
-                     * Here, we set the multiplier for the maximum memory.
-                     * Although it's relatively small, objects are actually
-                     * (considerably?) bigger than the (dimension * data type
-                     * size) result. Additionally, we need to run everything
-                     * else...
-                     * 
-                     * If we get reports that this is still too large, it can be
-                     * lowered, or we can make it configurable.
-                     */
-                    double multiplier = 0.5;
-                    if (totalsize > multiplier * Runtime.getRuntime().maxMemory()) {
-                        return DataReadingStrategy.SCANLINE;
-                    }
-                }
-            } catch (DataReadingException | IOException e) {
-                /*
-                 * Ignore exception - it's either not a GridDataset or we can't
-                 * open it. If it's not a GridDataset, we won't be reading it
-                 * with a gridded strategy. If we can't open it, we're screwed
-                 * either way.
-                 */
-            }
+        if (isRemote(nc)) {
             return DataReadingStrategy.BOUNDING_BOX;
         }
+        return DataReadingStrategy.ADAPTIVE;
+    }
+
+    private static boolean isRemote(NetcdfDataset nc) {
+        if ("OPeNDAP".equalsIgnoreCase(nc.getFileTypeId())) {
+            return true;
+        }
+        String location = nc.getLocation();
+        if (location == null) {
+            return false;
+        }
+        location = location.toLowerCase();
+        return location.startsWith("http:") || location.startsWith("https:")
+                || location.startsWith("dods:");
+    }
+
+    /**
+     * Gets the sizes of the storage chunks of a variable, as reported by the
+     * IOSP (e.g. for NetCDF-4 / HDF5 files).
+     * 
+     * @param var
+     *            The {@link Variable} to get the chunk sizes of
+     * @return The chunk size for each dimension of the variable, in the same
+     *         order as the variable's dimensions, or <code>null</code> if the
+     *         variable is not stored in chunks
+     */
+    public static int[] getChunkSizes(Variable var) {
+        /*
+         * This was called "_ChunkSize" in older versions of the NetCDF-Java
+         * library
+         */
+        Attribute chunkAttr = var.findAttribute("_ChunkSizes");
+        if (chunkAttr == null) {
+            chunkAttr = var.findAttribute("_ChunkSize");
+        }
+        if (chunkAttr == null || chunkAttr.getLength() != var.getRank()) {
+            return null;
+        }
+        int[] chunkSizes = new int[chunkAttr.getLength()];
+        for (int i = 0; i < chunkSizes.length; i++) {
+            Number size = chunkAttr.getNumericValue(i);
+            if (size == null) {
+                return null;
+            }
+            chunkSizes[i] = size.intValue();
+        }
+        return chunkSizes;
     }
 
     /**
@@ -313,10 +331,16 @@ public final class CdmUtils {
         return new TimeAxisImpl("time", timesteps);
     }
 
-    /*
-     * Gets a Chronology from its CF string representation
+    /**
+     * Gets a {@link Chronology} from its CF string representation
+     * 
+     * @param chronologyString
+     *            The value of the CF "calendar" attribute. May be
+     *            <code>null</code>, in which case the standard calendar is used
+     * @return The corresponding {@link Chronology}, or <code>null</code> if the
+     *         calendar is not supported
      */
-    private static Chronology getChronologyForString(String chronologyString) {
+    public static Chronology getChronologyForString(String chronologyString) {
         if (chronologyString == null || "gregorian".equalsIgnoreCase(chronologyString)
                 || "standard".equalsIgnoreCase(chronologyString)) {
             return ISOChronology.getInstanceUTC();
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AggregationManifestTest {
+    private static final String LOCATION = "test-*.nc";
+
+    private File dir;
+    private List<File> files;
+
+    @Before
+    public void setUp() throws Exception {
+        File testFile = new File(this.getClass().getResource("/test.nc").toURI());
+        dir = Files.createTempDirectory("manifest").toFile();
+        files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File file = new File(dir, "test-" + i + ".nc");
+            Files.copy(testFile.toPath(), file.toPath());
+            files.add(file);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testScan() {
+        AggregationManifest manifest = new AggregationManifest(LOCATION, "time");
+        List<AggregationManifest.FileSummary> summaries = manifest.update(files, 2);
+        assertEquals(3, manifest.getLastScanCount());
+        assertEquals(3, summaries.size());
+
+        AggregationManifest.FileSummary summary = summaries.get(0);
+        assertEquals(files.get(0).getAbsolutePath(), summary.path);
+        assertEquals("seconds since 1970-01-01 00:00:00", summary.timeUnits);
+        assertEquals(Arrays.asList("latitude", "longitude", "depth", "time", "vLon", "vLat",
+                "vDepth", "vTime"), new ArrayList<>(summary.varAttributes.keySet()));
+        assertEquals("latitudelongitudedepthtimevLonvLatvDepthvTime", summary.varNames);
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        File manifestFile = new File(dir, "manifest.ser");
+        AggregationManifest manifest = new AggregationManifest(LOCATION, "time");
+        manifest.update(files, 2);
+        manifest.write(manifestFile);
+
+        /*
+         * Nothing has changed, so nothing needs rescanning
+         */
+        manifest = AggregationManifest.read(manifestFile, LOCATION, "time");
+        assertEquals(3, manifest.update(files, 2).size());
+        assertEquals(0, manifest.getLastScanCount());
+
+        /*
+         * A changed file and a new file get scanned, and a removed file gets
+         * dropped
+         */
+        files.get(1).setLastModified(files.get(1).lastModified() - 10000L);
+        File newFile = new File(dir, "test-3.nc");
+        Files.copy(files.get(0).toPath(), newFile.toPath());
+        files.add(newFile);
+        files.remove(0);
+        List<AggregationManifest.FileSummary> summaries = manifest.update(files, 2);
+        assertEquals(2, manifest.getLastScanCount());
+        assertEquals(3, summaries.size());
+        assertEquals(newFile.getAbsolutePath(), summaries.get(2).path);
+
+        /*
+         * A manifest for a different location is not reused
+         */
+        manifest = AggregationManifest.read(manifestFile, "other-*.nc", "time");
+        manifest.update(files, 2);
+        assertEquals(3, manifest.getLastScanCount());
+    }
+}
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+import uk.ac.rdg.resc.edal.util.Array4D;
+
+public class CdmGridDataSourceReadTest {
+    private static final int N_MEMBERS = 2;
+    private static final int NT = 3;
+    private static final int NZ = 4;
+    private static final int NY = 5;
+    private static final int NX = 6;
+    /*
+     * Added to the values of the double variable, so that they cannot be
+     * represented as floats
+     */
+    private static final double PRESSURE_OFFSET = 0.123456789;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NetcdfDataset nc;
+    private CdmGridDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = folder.newFile("ensemble.nc");
+        writeEnsembleFile(file);
+        nc = NetcdfDatasetAggregator.getDataset(file.getAbsolutePath());
+        dataSource = new CdmGridDataSource(nc);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.close();
+        NetcdfDatasetAggregator.releaseDataset(nc);
+    }
+
+    @Test
+    public void testReadWithEnsembleDimension() throws Exception {
+        Array4D<Number> values = dataSource.read("temp", 0, NT - 1, 0, NZ - 1, 0, NY - 1, 0,
+                NX - 1);
+        for (int t = 0; t < NT; t++) {
+            for (int z = 0; z < NZ; z++) {
+                for (int y = 0; y < NY; y++) {
+                    for (int x = 0; x < NX; x++) {
+                        assertEquals(expected(0, t, z, y, x),
+                                values.get(t, z, y, x).floatValue(), 1e-6);
+                    }
+                }
+            }
+        }
+
+        /*
+         * A single level, which is wrapped rather than read at once
+         */
+        values = dataSource.read("temp", 1, 1, 2, 2, 1, 3, 2, 4);
+        assertEquals(expected(0, 1, 2, 3, 4), values.get(0, 0, 2, 2).floatValue(), 1e-6);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int t = i % NT;
+                final int z = (i / NT) % NZ;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        Array4D<Number> values = dataSource.read("temp", t, t, z, z, 0, NY - 1,
+                                0, NX - 1);
+                        for (int y = 0; y < NY; y++) {
+                            for (int x = 0; x < NX; x++) {
+                                if (values.get(0, 0, y, x).floatValue() != expected(0, t, z, y,
+                                        x)) {
+                                    return false;
+                                }
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertEquals(true, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadFloats() throws Exception {
+        float[] values = new float[NT * NZ * NY * NX];
+        dataSource.readFloats("temp", 0, NT - 1, 0, NZ - 1, 0, NY - 1, 0, NX - 1, values);
+        int i = 0;
+        for (int t = 0; t < NT; t++) {
+            for (int z = 0; z < NZ; z++) {
+                for (int y = 0; y < NY; y++) {
+                    for (int x = 0; x < NX; x++) {
+                        assertEquals(expected(0, t, z, y, x), values[i++], 1e-6);
+                    }
+                }
+            }
+        }
+
+        /*
+         * A sub-box, in x-fastest order
+         */
+        values = new float[2 * 3 * 2];
+        dataSource.readFloats("temp", 2, 2, 1, 2, 1, 3, 4, 5, values);
+        i = 0;
+        for (int z = 1; z <= 2; z++) {
+            for (int y = 1; y <= 3; y++) {
+                for (int x = 4; x <= 5; x++) {
+                    assertEquals(expected(0, 2, z, y, x), values[i++], 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadFloatsMatchesRead() throws Exception {
+        Array4D<Number> expected = dataSource.read("temp", 1, 2, 0, 1, 2, 4, 0, 3);
+        float[][] values = new float[1][2 * 2 * 3 * 4];
+        dataSource.readMany(Collections.singletonList("temp"), 1, 2, 0, 1, 2, 4, 0, 3, values);
+        int i = 0;
+        for (int t = 0; t < 2; t++) {
+            for (int z = 0; z < 2; z++) {
+                for (int y = 0; y < 3; y++) {
+                    for (int x = 0; x < 4; x++) {
+                        assertEquals(expected.get(t, z, y, x).floatValue(), values[0][i++],
+                                1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHasFloatValues() throws Exception {
+        assertTrue(dataSource.hasFloatValues("temp"));
+        assertFalse(dataSource.hasFloatValues("pressure"));
+
+        /*
+         * Doubles keep their precision when read as Numbers
+         */
+        Array4D<Number> values = dataSource.read("pressure", 1, 1, 2, 2, 3, 3, 4, 4);
+        assertEquals(expected(0, 1, 2, 3, 4) + PRESSURE_OFFSET, values.get(0, 0, 0, 0)
+                .doubleValue(), 0.0);
+    }
+
+    static float expected(int member, int t, int z, int y, int x) {
+        return member * 10000 + t * 1000 + z * 100 + y * 10 + x;
+    }
+
+    /*
+     * Writes a variable with dimensions (member, time, depth, lat, lon)
+     */
+    static void writeEnsembleFile(File file) throws Exception {
+        NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3,
+                file.getAbsolutePath());
+        Dimension member = writer.addDimension(null, "member", N_MEMBERS);
+        Dimension time = writer.addDimension(null, "time", NT);
+        Dimension depth = writer.addDimension(null, "depth", NZ);
+        Dimension lat = writer.addDimension(null, "lat", NY);
+        Dimension lon = writer.addDimension(null, "lon", NX);
+
+        Variable memberVar = writer.addVariable(null, "member", DataType.INT, "member");
+        memberVar.addAttribute(new Attribute("standard_name", "realization"));
+        memberVar.addAttribute(new Attribute("_CoordinateAxisType", "Ensemble"));
+        Variable timeVar = writer.addVariable(null, "time", DataType.DOUBLE, "time");
+        timeVar.addAttribute(new Attribute("units", "days since 2000-01-01 00:00:00"));
+        Variable depthVar = writer.addVariable(null, "depth", DataType.DOUBLE, "depth");
+        depthVar.addAttribute(new Attribute("units", "m"));
+        depthVar.addAttribute(new Attribute("positive", "down"));
+        Variable latVar = writer.addVariable(null, "lat", DataType.DOUBLE, "lat");
+        latVar.addAttribute(new Attribute("units", "degrees_north"));
+        Variable lonVar = writer.addVariable(null, "lon", DataType.DOUBLE, "lon");
+        lonVar.addAttribute(new Attribute("units", "degrees_east"));
+        List<Dimension> dims = new ArrayList<>();
+        dims.add(member);
+        dims.add(time);
+        dims.add(depth);
+        dims.add(lat);
+        dims.add(lon);
+        Variable temp = writer.addVariable(null, "temp", DataType.FLOAT, dims);
+        temp.addAttribute(new Attribute("units", "K"));
+        Variable pressure = writer.addVariable(null, "pressure", DataType.DOUBLE, dims);
+        pressure.addAttribute(new Attribute("units", "Pa"));
+        writer.create();
+        try {
+            writer.write(memberVar, Array.makeArray(DataType.INT, N_MEMBERS, 0, 1));
+            writer.write(timeVar, Array.makeArray(DataType.DOUBLE, NT, 0, 1));
+            writer.write(depthVar, Array.makeArray(DataType.DOUBLE, NZ, 0, 10));
+            writer.write(latVar, Array.makeArray(DataType.DOUBLE, NY, 0, 1));
+            writer.write(lonVar, Array.makeArray(DataType.DOUBLE, NX, 0, 1));
+            Array data = Array.factory(DataType.FLOAT, new int[] { N_MEMBERS, NT, NZ, NY, NX });
+            int i = 0;
+            for (int e = 0; e < N_MEMBERS; e++) {
+                for (int t = 0; t < NT; t++) {
+                    for (int z = 0; z < NZ; z++) {
+                        for (int y = 0; y < NY; y++) {
+                            for (int x = 0; x < NX; x++) {
+                                data.setFloat(i++, expected(e, t, z, y, x));
+                            }
+                        }
+                    }
+                }
+            }
+            writer.write(temp, data);
+            Array doubleData = Array.factory(DataType.DOUBLE, data.getShape());
+            for (i = 0; i < data.getSize(); i++) {
+                doubleData.setDouble(i, data.getFloat(i) + PRESSURE_OFFSET);
+            }
+            writer.write(pressure, doubleData);
+        } finally {
+            writer.close();
+        }
+    }
+}
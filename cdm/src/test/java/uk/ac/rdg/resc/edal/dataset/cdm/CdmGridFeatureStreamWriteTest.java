@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.junit.Before;
+import org.junit.Test;
+
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import uk.ac.rdg.resc.edal.dataset.DataReadingStrategy;
+import uk.ac.rdg.resc.edal.dataset.GridDataSource;
+import uk.ac.rdg.resc.edal.dataset.GriddedDataset;
+import uk.ac.rdg.resc.edal.dataset.InMemoryGridDataSource;
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.feature.GridFeature;
+import uk.ac.rdg.resc.edal.geometry.BoundingBoxImpl;
+import uk.ac.rdg.resc.edal.grid.RegularGridImpl;
+import uk.ac.rdg.resc.edal.grid.TimeAxisImpl;
+import uk.ac.rdg.resc.edal.grid.VerticalAxisImpl;
+import uk.ac.rdg.resc.edal.metadata.GridVariableMetadata;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.VerticalCrsImpl;
+import uk.ac.rdg.resc.edal.util.Array4D;
+import uk.ac.rdg.resc.edal.util.Extents;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+public class CdmGridFeatureStreamWriteTest {
+    private static final int T_SIZE = 4;
+    private static final int Z_SIZE = 3;
+    private static final int Y_SIZE = 10;
+    private static final int X_SIZE = 20;
+
+    private InMemoryGriddedDataset dataset;
+
+    @Before
+    public void setUp() {
+        dataset = new InMemoryGriddedDataset(true);
+    }
+
+    @Test
+    public void testStreamMatchesSubset() throws Exception {
+        Set<String> vars = new LinkedHashSet<>(Arrays.asList("a", "b"));
+        BoundingBoxImpl bbox = new BoundingBoxImpl(-100, -30, 50, 60,
+                GISUtils.defaultGeographicCRS());
+        Extent<Double> zExtent = Extents.newExtent(10.0, 20.0);
+        Extent<DateTime> tExtent = Extents.newExtent(time(1), time(3));
+
+        GridFeature feature = dataset.subsetFeatures(vars, bbox, zExtent, tExtent);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CdmGridFeatureStreamWrite.gridSubsetToNetCDF(dataset, vars, bbox, zExtent, tExtent,
+                bytes);
+
+        NetcdfFile nc = NetcdfFile.openInMemory("subset.nc", bytes.toByteArray());
+        try {
+            Variable time = nc.findVariable("time");
+            assertNotNull(time);
+            assertEquals(3, time.getShape()[0]);
+            assertEquals(time(2).getMillis() / 1000.0, time.read().getDouble(1), 0.0);
+            assertEquals(2, nc.findVariable("z").getShape()[0]);
+            assertEquals(feature.getDomain().getHorizontalGrid().getYSize(),
+                    nc.findVariable("lat").getShape()[0]);
+            assertEquals(feature.getDomain().getHorizontalGrid().getXSize(),
+                    nc.findVariable("lon").getShape()[0]);
+
+            for (String var : vars) {
+                compare(feature.getValues(var), nc.findVariable(var));
+                assertEquals("m", nc.findVariable(var).findAttribute("units").getStringValue());
+            }
+        } finally {
+            nc.close();
+        }
+    }
+
+    @Test
+    public void testStreamWithoutTime() throws Exception {
+        dataset = new InMemoryGriddedDataset(false);
+        Set<String> vars = new LinkedHashSet<>(Arrays.asList("a", "b"));
+        BoundingBoxImpl bbox = new BoundingBoxImpl(-180, -90, 180, 90,
+                GISUtils.defaultGeographicCRS());
+
+        GridFeature feature = dataset.subsetFeatures(vars, bbox, null, null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CdmGridFeatureStreamWrite.gridSubsetToNetCDF(dataset, vars, bbox, null, null, bytes);
+
+        NetcdfFile nc = NetcdfFile.openInMemory("subset.nc", bytes.toByteArray());
+        try {
+            assertNull(nc.findVariable("time"));
+            assertNull(nc.getUnlimitedDimension());
+            for (String var : vars) {
+                compare(feature.getValues(var), nc.findVariable(var));
+            }
+        } finally {
+            nc.close();
+        }
+    }
+
+    private static void compare(Array4D<Number> expected, Variable variable) throws Exception {
+        Array actual = variable.read();
+        int[] shape = actual.getShape();
+        boolean hasTime = shape.length == 4;
+        Index index = actual.getIndex();
+        assertEquals(expected.getYSize(), shape[shape.length - 2]);
+        assertEquals(expected.getXSize(), shape[shape.length - 1]);
+        for (int t = 0; t < expected.getTSize(); t++) {
+            for (int z = 0; z < expected.getZSize(); z++) {
+                for (int y = 0; y < expected.getYSize(); y++) {
+                    for (int x = 0; x < expected.getXSize(); x++) {
+                        if (hasTime) {
+                            index.set(t, z, y, x);
+                        } else {
+                            index.set(z, y, x);
+                        }
+                        Number value = expected.get(t, z, y, x);
+                        assertEquals(value == null ? Float.NEGATIVE_INFINITY : value
+                                .floatValue(), actual.getFloat(index), 0f);
+                    }
+                }
+            }
+        }
+    }
+
+    private static DateTime time(int t) {
+        return new DateTime(2000, 1, 1 + t, 0, 0, ISOChronology.getInstanceUTC());
+    }
+
+    private static final class InMemoryGriddedDataset extends GriddedDataset {
+        private static final long serialVersionUID = 1L;
+        private final Map<String, Number[][][][]> data = new HashMap<>();
+
+        public InMemoryGriddedDataset(boolean withTime) {
+            super("inmemory", getVariables(withTime));
+            int tSize = withTime ? T_SIZE : 1;
+            for (String var : new String[] { "a", "b" }) {
+                Number[][][][] values = new Number[tSize][Z_SIZE][Y_SIZE][X_SIZE];
+                for (int t = 0; t < tSize; t++) {
+                    for (int z = 0; z < Z_SIZE; z++) {
+                        for (int y = 0; y < Y_SIZE; y++) {
+                            for (int x = 0; x < X_SIZE; x++) {
+                                int value = t * 1000 + z * 100 + y * 10 + x;
+                                values[t][z][y][x] = var.equals("a") ? value : -value;
+                            }
+                        }
+                    }
+                }
+                values[tSize - 1][1][5][5] = null;
+                data.put(var, values);
+            }
+        }
+
+        private static List<GridVariableMetadata> getVariables(boolean withTime) {
+            RegularGridImpl hGrid = new RegularGridImpl(-180, -90, 180, 90,
+                    GISUtils.defaultGeographicCRS(), X_SIZE, Y_SIZE);
+            List<Double> zValues = new ArrayList<>();
+            for (int z = 0; z < Z_SIZE; z++) {
+                zValues.add(z * 10.0);
+            }
+            VerticalAxisImpl zAxis = new VerticalAxisImpl("depth", zValues,
+                    new VerticalCrsImpl("m", false, false, false));
+            TimeAxisImpl tAxis = null;
+            if (withTime) {
+                List<DateTime> tValues = new ArrayList<>();
+                for (int t = 0; t < T_SIZE; t++) {
+                    tValues.add(time(t));
+                }
+                tAxis = new TimeAxisImpl("time", tValues);
+            }
+            List<GridVariableMetadata> vars = new ArrayList<>();
+            for (String var : new String[] { "a", "b" }) {
+                vars.add(new GridVariableMetadata(new Parameter(var, var, var, "m", null), hGrid,
+                        zAxis, tAxis, true));
+            }
+            return vars;
+        }
+
+        @Override
+        protected GridDataSource openDataSource() {
+            /*
+             * A missing time axis is read with t=-1
+             */
+            return new InMemoryGridDataSource(data) {
+                @Override
+                public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin,
+                        int zmax, int ymin, int ymax, int xmin, int xmax) {
+                    return super.read(variableId, Math.max(tmin, 0), Math.max(tmax, 0), zmin,
+                            zmax, ymin, ymax, xmin, xmax);
+                }
+            };
+        }
+
+        @Override
+        protected DataReadingStrategy getDataReadingStrategy() {
+            return DataReadingStrategy.PIXEL_BY_PIXEL;
+        }
+    }
+}
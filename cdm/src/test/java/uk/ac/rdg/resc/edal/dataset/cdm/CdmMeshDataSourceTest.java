@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+import uk.ac.rdg.resc.edal.dataset.HZTDataSource.MeshCoordinates3D;
+
+public class CdmMeshDataSourceTest {
+    private static final int N_NODES = 5000;
+    private static final int N_TIMES = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        CdmMeshDataSource.setMaxNodeGap(1024);
+    }
+
+    @Test
+    public void testGetRuns() {
+        CdmMeshDataSource.setMaxNodeGap(2);
+        int[] hs = new int[] { 12, 3, 1900, 5, 4, 9, 1901, 12, -1 };
+        int[][] runs = CdmMeshDataSource.getRuns(hs, 8);
+        assertArrayEquals(new int[] { 3, 9, 1900 }, runs[0]);
+        assertArrayEquals(new int[] { 5, 12, 1901 }, runs[1]);
+
+        runs = CdmMeshDataSource.getRuns(new int[0], 0);
+        assertEquals(1, runs[0].length);
+    }
+
+    @Test
+    public void testSparseRead() throws Exception {
+        File file = folder.newFile("mesh.nc");
+        writeMeshFile(file);
+        NetcdfDataset nc = NetcdfDataset.openDataset(file.getAbsolutePath());
+        try {
+            Map<String, int[]> hztIndices = new HashMap<>();
+            hztIndices.put("var", new int[] { 1, -1, 0 });
+            CdmMeshDataSource dataSource = new CdmMeshDataSource(nc, hztIndices);
+
+            CdmMeshDataSource.setMaxNodeGap(10);
+            List<MeshCoordinates3D> coords = new ArrayList<>();
+            coords.add(new MeshCoordinates3D(4999, 0, 2));
+            coords.add(new MeshCoordinates3D(12, 0, 1));
+            coords.add(new MeshCoordinates3D(-1, 0, 1));
+            coords.add(new MeshCoordinates3D(20, 0, 2));
+            coords.add(new MeshCoordinates3D(2500, 0, 1));
+            List<Number> values = dataSource.read("var", coords);
+
+            assertEquals(coords.size(), values.size());
+            assertEquals(2 * N_NODES + 4999, values.get(0).intValue());
+            assertEquals(N_NODES + 12, values.get(1).intValue());
+            assertNull(values.get(2));
+            assertEquals(2 * N_NODES + 20, values.get(3).intValue());
+            assertEquals(N_NODES + 2500, values.get(4).intValue());
+        } finally {
+            nc.close();
+        }
+    }
+
+    private static void writeMeshFile(File file) throws Exception {
+        NetcdfFileWriter writer = NetcdfFileWriter
+                .createNew(NetcdfFileWriter.Version.netcdf3, file.getAbsolutePath());
+        Dimension time = writer.addDimension(null, "time", N_TIMES);
+        Dimension node = writer.addDimension(null, "node", N_NODES);
+        List<Dimension> dims = new ArrayList<>();
+        dims.add(time);
+        dims.add(node);
+        Variable var = writer.addVariable(null, "var", DataType.INT, dims);
+        writer.create();
+        try {
+            Array data = Array.factory(DataType.INT, new int[] { N_TIMES, N_NODES });
+            for (int i = 0; i < N_TIMES * N_NODES; i++) {
+                data.setInt(i, i);
+            }
+            writer.write(var, data);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore;
+import uk.ac.rdg.resc.edal.dataset.ColumnarPointDataset;
+import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.PointDataset;
+import uk.ac.rdg.resc.edal.feature.PointFeature;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+
+public class En3DatasetFactoryTest {
+    private static final int N_PROFILES = 40;
+    private static final int N_LEVELS = 8;
+    private static final String POTM = "POTM_CORRECTED";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File originalWorkingDir;
+    private File dataDir;
+
+    @Before
+    public void setUp() throws Exception {
+        originalWorkingDir = DatasetFactory.getWorkingDirectory();
+        DatasetFactory.setWorkingDirectory(folder.newFolder("work"));
+        dataDir = folder.newFolder("data");
+        for (int f = 0; f < 3; f++) {
+            writeEn3File(new File(dataDir, "en3_" + f + ".nc"), f);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        DatasetFactory.setWorkingDirectory(originalWorkingDir);
+        En3DatasetFactory.setMaxProfileGap(64);
+        ColumnarFeatureStore.setEnabled(false);
+    }
+
+    @Test
+    public void testReadFeatures() throws Exception {
+        PointDataset<ProfileFeature> dataset = createDataset();
+        Set<String> ids = dataset.getFeatureIds();
+        assertEquals(3 * N_PROFILES, ids.size());
+
+        /*
+         * Read a sparse selection of profiles from all files, so that several
+         * runs are read from each file
+         */
+        En3DatasetFactory.setMaxProfileGap(2);
+        List<String> wanted = new ArrayList<>();
+        for (String id : ids) {
+            int profNum = Integer.parseInt(id.split(":")[1]);
+            if (profNum % 3 == 0 || profNum > 35) {
+                wanted.add(id);
+            }
+        }
+        List<ProfileFeature> features = dataset.getFeatureReader().readFeatures(wanted, null);
+        assertEquals(wanted.size(), features.size());
+        Set<String> readIds = new HashSet<>();
+        for (ProfileFeature feature : features) {
+            readIds.add(feature.getId());
+            checkProfile(feature);
+        }
+        assertEquals(new HashSet<>(wanted), readIds);
+
+        ProfileFeature single = dataset.getFeatureReader().readFeature(wanted.get(1), null);
+        assertNotNull(single);
+        checkProfile(single);
+    }
+
+    @Test
+    public void testReadSingleLevel() throws Exception {
+        PointDataset<ProfileFeature> dataset = createDataset();
+        Set<String> ids = dataset.getFeatureIds();
+        Map<String, ProfileFeature> fullProfiles = new HashMap<>();
+        for (ProfileFeature feature : dataset.getFeatureReader().readFeatures(ids, null)) {
+            fullProfiles.put(feature.getId(), feature);
+        }
+
+        for (Double targetZ : new Double[] { null, 25.0, 1000.0 }) {
+            List<ProfileFeature> features = dataset.getFeatureReader().readFeatures(ids, null,
+                    null, targetZ);
+            assertEquals(ids.size(), features.size());
+            for (ProfileFeature feature : features) {
+                assertEquals(1, feature.getDomain().size());
+                PointFeature expected = PointDataset
+                        .convertProfileFeature(fullProfiles.get(feature.getId()), targetZ);
+                PointFeature actual = PointDataset.convertProfileFeature(feature, targetZ);
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getGeoPosition(), actual.getGeoPosition());
+                assertEquals(expected.getValues(POTM).get(0), actual.getValues(POTM).get(0));
+                assertEquals(expected.getFeatureProperties(), actual.getFeatureProperties());
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        PointDataset<ProfileFeature> dataset = createDataset();
+        assertEquals(3 * N_PROFILES, dataset.getFeatureIds().size());
+
+        /*
+         * Remove one file, add another, and recreate the dataset
+         */
+        assertTrue(new File(dataDir, "en3_0.nc").delete());
+        writeEn3File(new File(dataDir, "en3_3.nc"), 3);
+        dataset = createDataset();
+        assertEquals(3 * N_PROFILES, dataset.getFeatureIds().size());
+
+        Map<Integer, Integer> profilesPerFile = new HashMap<>();
+        for (ProfileFeature feature : dataset.getFeatureReader()
+                .readFeatures(dataset.getFeatureIds(), null)) {
+            checkProfile(feature);
+            int fileNum = (int) feature.getHorizontalPosition().getX();
+            Integer count = profilesPerFile.get(fileNum);
+            profilesPerFile.put(fileNum, count == null ? 1 : count + 1);
+        }
+        Map<Integer, Integer> expected = new HashMap<>();
+        expected.put(1, N_PROFILES);
+        expected.put(2, N_PROFILES);
+        expected.put(3, N_PROFILES);
+        assertEquals(expected, profilesPerFile);
+        BoundingBox bbox = dataset.getVariableMetadata(POTM).getHorizontalDomain()
+                .getBoundingBox();
+        assertEquals(1.0, bbox.getMinX(), 1e-6);
+        assertEquals(3.0, bbox.getMaxX(), 1e-6);
+    }
+
+    @Test
+    public void testColumnarStore() throws Exception {
+        ColumnarFeatureStore.setEnabled(true);
+        /*
+         * The store is written in the background, so the first dataset reads
+         * from the spatial index
+         */
+        PointDataset<ProfileFeature> dataset = createDataset();
+        assertFalse(dataset instanceof ColumnarPointDataset);
+        ColumnarFeatureStore.awaitIngest("en3");
+        dataset = createDataset();
+        assertTrue(dataset instanceof ColumnarPointDataset);
+        assertEquals(3 * N_PROFILES, dataset.getFeatureIds().size());
+        for (ProfileFeature feature : dataset.getFeatureReader()
+                .readFeatures(dataset.getFeatureIds(), null)) {
+            checkProfile(feature);
+        }
+        BoundingBox bbox = dataset.getVariableMetadata(POTM).getHorizontalDomain()
+                .getBoundingBox();
+        assertEquals(0.0, bbox.getMinX(), 1e-6);
+        assertEquals(2.0, bbox.getMaxX(), 1e-6);
+
+        /*
+         * The store should be reused until the data changes
+         */
+        File storeFile = ColumnarFeatureStore.getStoreFile("en3");
+        long written = storeFile.lastModified();
+        Thread.sleep(1000);
+        createDataset();
+        assertEquals(written, storeFile.lastModified());
+
+        writeEn3File(new File(dataDir, "en3_3.nc"), 3);
+        dataset = createDataset();
+        assertFalse(dataset instanceof ColumnarPointDataset);
+        assertEquals(4 * N_PROFILES, dataset.getFeatureIds().size());
+        ColumnarFeatureStore.awaitIngest("en3");
+        dataset = createDataset();
+        assertTrue(dataset instanceof ColumnarPointDataset);
+        assertEquals(4 * N_PROFILES, dataset.getFeatureIds().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private PointDataset<ProfileFeature> createDataset() throws Exception {
+        return (PointDataset<ProfileFeature>) new En3DatasetFactory().createDataset("en3",
+                dataDir.getAbsolutePath() + "/*.nc");
+    }
+
+    /*
+     * Profiles are positioned at (fileNum, profNum) and have values which can
+     * be calculated from their position
+     */
+    private static void checkProfile(ProfileFeature feature) {
+        int fileNum = (int) feature.getHorizontalPosition().getX();
+        int profNum = (int) feature.getHorizontalPosition().getY();
+        assertEquals(profNum % 5 + 2, feature.getDomain().size());
+        for (int level = 0; level < feature.getDomain().size(); level++) {
+            assertEquals(level * 10.0, feature.getDomain().getCoordinateValue(level), 1e-6);
+            assertEquals(fileNum * 1000 + profNum * 10 + level,
+                    feature.getValues(POTM).get(level).doubleValue(), 1e-3);
+        }
+        assertEquals(profNum % 2 == 0 ? "Accept" : "Reject",
+                feature.getFeatureProperties().get("Potential temperature QC"));
+        assertEquals("EN platform P" + fileNum + "_" + profNum, feature.getName());
+    }
+
+    private static void writeEn3File(File file, int fileNum) throws Exception {
+        NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3,
+                file.getAbsolutePath());
+        Dimension prof = writer.addDimension(null, "N_PROF", N_PROFILES);
+        Dimension levels = writer.addDimension(null, "N_LEVELS", N_LEVELS);
+        Dimension string8 = writer.addDimension(null, "STRING8", 8);
+        List<Dimension> profDims = new ArrayList<>();
+        profDims.add(prof);
+        List<Dimension> levelDims = new ArrayList<>(profDims);
+        levelDims.add(levels);
+        List<Dimension> stringDims = new ArrayList<>(profDims);
+        stringDims.add(string8);
+
+        Variable lat = writer.addVariable(null, "LATITUDE", DataType.DOUBLE, profDims);
+        Variable lon = writer.addVariable(null, "LONGITUDE", DataType.DOUBLE, profDims);
+        Variable time = writer.addVariable(null, "JULD", DataType.DOUBLE, profDims);
+        time.addAttribute(new Attribute("units", "days since 1950-01-01 00:00:00 utc"));
+        Variable depth = writer.addVariable(null, "DEPH_CORRECTED", DataType.FLOAT, levelDims);
+        Variable potm = writer.addVariable(null, POTM, DataType.FLOAT, levelDims);
+        Variable psal = writer.addVariable(null, "PSAL_CORRECTED", DataType.FLOAT, levelDims);
+        Variable platform = writer.addVariable(null, "PLATFORM_NUMBER", DataType.CHAR,
+                stringDims);
+        Variable posQc = writer.addVariable(null, "POSITION_QC", DataType.CHAR, profDims);
+        Variable potmQc = writer.addVariable(null, "PROFILE_POTM_QC", DataType.CHAR, profDims);
+        Variable psalQc = writer.addVariable(null, "PROFILE_PSAL_QC", DataType.CHAR, profDims);
+        writer.create();
+        try {
+            Array latData = Array.factory(DataType.DOUBLE, new int[] { N_PROFILES });
+            Array lonData = Array.factory(DataType.DOUBLE, new int[] { N_PROFILES });
+            Array timeData = Array.factory(DataType.DOUBLE, new int[] { N_PROFILES });
+            Array depthData = Array.factory(DataType.FLOAT, new int[] { N_PROFILES, N_LEVELS });
+            Array potmData = Array.factory(DataType.FLOAT, new int[] { N_PROFILES, N_LEVELS });
+            ArrayChar.D2 platformData = new ArrayChar.D2(N_PROFILES, 8);
+            ArrayChar.D1 posQcData = new ArrayChar.D1(N_PROFILES);
+            ArrayChar.D1 potmQcData = new ArrayChar.D1(N_PROFILES);
+            for (int p = 0; p < N_PROFILES; p++) {
+                latData.setDouble(p, p);
+                lonData.setDouble(p, fileNum);
+                timeData.setDouble(p, 20000 + fileNum * 100 + p);
+                for (int l = 0; l < N_LEVELS; l++) {
+                    boolean valid = l < p % 5 + 2;
+                    depthData.setFloat(p * N_LEVELS + l, valid ? l * 10f : 99999f);
+                    potmData.setFloat(p * N_LEVELS + l,
+                            valid ? fileNum * 1000 + p * 10 + l : Float.NaN);
+                }
+                platformData.setString(p, "P" + fileNum + "_" + p);
+                posQcData.set(p, '1');
+                potmQcData.set(p, p % 2 == 0 ? '1' : '4');
+            }
+            writer.write(lat, latData);
+            writer.write(lon, lonData);
+            writer.write(time, timeData);
+            writer.write(depth, depthData);
+            writer.write(potm, potmData);
+            writer.write(psal, potmData);
+            writer.write(platform, platformData);
+            writer.write(posQc, posQcData);
+            writer.write(potmQc, potmQcData);
+            writer.write(psalQc, potmQcData);
+        } finally {
+            writer.close();
+        }
+    }
+}
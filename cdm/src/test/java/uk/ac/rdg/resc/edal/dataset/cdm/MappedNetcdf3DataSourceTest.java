@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+
+public class MappedNetcdf3DataSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadMatchesCdm() throws Exception {
+        String location = this.getClass().getResource("/test.nc").getPath();
+        NetcdfDataset nc = NetcdfDatasetAggregator.getDataset(location);
+        try {
+            assertTrue(MappedNetcdf3DataSource.canMap(nc));
+            CdmGridDataSource cdm = new CdmGridDataSource(nc);
+            MappedNetcdf3DataSource mapped = new MappedNetcdf3DataSource(nc, cdm);
+            for (String var : new String[] { "vLon", "vLat", "vDepth", "vTime" }) {
+                compare(cdm, mapped, var, 0, 9, 0, 10, 0, 18, 0, 35);
+                compare(cdm, mapped, var, 3, 5, 2, 2, 4, 11, 7, 30);
+            }
+        } finally {
+            NetcdfDatasetAggregator.releaseDataset(nc);
+        }
+    }
+
+    @Test
+    public void testRecordVariablesWithScaleAndFill() throws Exception {
+        File file = folder.newFile("records.nc");
+        writeRecordFile(file);
+        NetcdfDataset nc = NetcdfDatasetAggregator.getDataset(file.getAbsolutePath());
+        try {
+            assertTrue(MappedNetcdf3DataSource.canMap(nc));
+            CdmGridDataSource cdm = new CdmGridDataSource(nc);
+            MappedNetcdf3DataSource mapped = new MappedNetcdf3DataSource(nc, cdm);
+            for (String var : new String[] { "sst", "other" }) {
+                compare(cdm, mapped, var, 0, 3, 0, 0, 0, 4, 0, 4);
+                compare(cdm, mapped, var, 1, 2, 0, 0, 1, 3, 2, 3);
+            }
+
+            float[] values = new float[1];
+            mapped.readFloats("sst", 2, 2, 0, 0, 1, 1, 3, 3, values);
+            assertEquals(10.0f + 0.01f * (2 * 100 + 1 * 10 + 3), values[0], 1e-4);
+            mapped.readFloats("sst", 3, 3, 0, 0, 4, 4, 4, 4, values);
+            assertTrue(Float.isNaN(values[0]));
+            mapped.readFloats("other", 0, 0, 0, 0, 0, 0, 0, 0, values);
+            assertTrue(Float.isNaN(values[0]));
+        } finally {
+            NetcdfDatasetAggregator.releaseDataset(nc);
+        }
+    }
+
+    private static void compare(CdmGridDataSource cdm, MappedNetcdf3DataSource mapped,
+            String var, int tmin, int tmax, int zmin, int zmax, int ymin, int ymax, int xmin,
+            int xmax) throws Exception {
+        int size = (tmax - tmin + 1) * (zmax - zmin + 1) * (ymax - ymin + 1) * (xmax - xmin + 1);
+        float[] expected = new float[size];
+        float[] actual = new float[size];
+        cdm.readFloats(var, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax, expected);
+        mapped.readFloats(var, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax, actual);
+        assertArrayEquals(expected, actual, 0f);
+    }
+
+    /*
+     * Writes a NetCDF-3 file with two record variables. The short variable
+     * has 25 values per record, so each of its records is padded.
+     */
+    private static void writeRecordFile(File file) throws Exception {
+        NetcdfFileWriter writer = NetcdfFileWriter
+                .createNew(NetcdfFileWriter.Version.netcdf3, file.getAbsolutePath());
+        Dimension time = writer.addUnlimitedDimension("time");
+        Dimension lat = writer.addDimension(null, "lat", 5);
+        Dimension lon = writer.addDimension(null, "lon", 5);
+        List<Dimension> dims = new ArrayList<>();
+        dims.add(time);
+        dims.add(lat);
+        dims.add(lon);
+
+        Variable timeVar = writer.addVariable(null, "time", DataType.DOUBLE, "time");
+        timeVar.addAttribute(new Attribute("units", "days since 2000-01-01 00:00:00"));
+        Variable latVar = writer.addVariable(null, "lat", DataType.FLOAT, "lat");
+        latVar.addAttribute(new Attribute("units", "degrees_north"));
+        Variable lonVar = writer.addVariable(null, "lon", DataType.FLOAT, "lon");
+        lonVar.addAttribute(new Attribute("units", "degrees_east"));
+        Variable sst = writer.addVariable(null, "sst", DataType.SHORT, dims);
+        sst.addAttribute(new Attribute("scale_factor", 0.01f));
+        sst.addAttribute(new Attribute("add_offset", 10.0f));
+        sst.addAttribute(new Attribute("_FillValue", (short) -999));
+        Variable other = writer.addVariable(null, "other", DataType.FLOAT, dims);
+        other.addAttribute(new Attribute("_FillValue", -1.0f));
+        writer.create();
+
+        try {
+            Array coords = Array.factory(DataType.FLOAT, new int[] { 5 });
+            for (int i = 0; i < 5; i++) {
+                coords.setFloat(i, 10f * i);
+            }
+            writer.write(latVar, coords);
+            writer.write(lonVar, coords);
+
+            Array times = Array.factory(DataType.DOUBLE, new int[] { 4 });
+            Array sstData = Array.factory(DataType.SHORT, new int[] { 4, 5, 5 });
+            Array otherData = Array.factory(DataType.FLOAT, new int[] { 4, 5, 5 });
+            int n = 0;
+            for (int t = 0; t < 4; t++) {
+                times.setDouble(t, t);
+                for (int y = 0; y < 5; y++) {
+                    for (int x = 0; x < 5; x++) {
+                        sstData.setShort(n, (short) (t * 100 + y * 10 + x));
+                        otherData.setFloat(n, n);
+                        n++;
+                    }
+                }
+            }
+            sstData.setShort(n - 1, (short) -999);
+            otherData.setFloat(0, -1.0f);
+            writer.write(timeVar, times);
+            writer.write(sst, sstData);
+            writer.write(other, otherData);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.cdm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ucar.nc2.dataset.NetcdfDataset;
+import uk.ac.rdg.resc.edal.dataset.cdm.NetcdfDatasetPool.DatasetOpener;
+
+public class NetcdfDatasetPoolTest {
+    private String location;
+    private DatasetOpener opener = new DatasetOpener() {
+        @Override
+        public NetcdfDataset open(String location) throws java.io.IOException {
+            return NetcdfDataset.openDataset(location);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = this.getClass().getResource("/test.nc");
+        location = url.getPath();
+    }
+
+    @Test
+    public void testHandlesPerLocation() throws Exception {
+        NetcdfDatasetPool pool = new NetcdfDatasetPool(2, 10);
+
+        NetcdfDataset nc1 = pool.acquire(location, opener);
+        /*
+         * The first handle is in use, so a second one should get opened
+         */
+        NetcdfDataset nc2 = pool.acquire(location, opener);
+        assertNotSame(nc1, nc2);
+        assertEquals(2, pool.getStatistics().getMisses());
+        assertEquals(2, pool.getStatistics().getOpenHandles());
+
+        /*
+         * We're at the limit for this location, so the handles get shared
+         */
+        NetcdfDataset nc3 = pool.acquire(location, opener);
+        assertEquals(2, pool.getStatistics().getOpenHandles());
+        assertEquals(1, pool.getStatistics().getHits());
+
+        pool.release(nc1);
+        pool.release(nc2);
+        pool.release(nc3);
+
+        /*
+         * Once released, the handles are reused rather than reopened
+         */
+        NetcdfDataset nc4 = pool.acquire(location, opener);
+        assertEquals(2, pool.getStatistics().getHits());
+        assertEquals(2, pool.getStatistics().getMisses());
+        pool.release(nc4);
+    }
+
+    @Test
+    public void testTotalLimit() throws Exception {
+        NetcdfDatasetPool pool = new NetcdfDatasetPool(1, 1);
+
+        NetcdfDataset nc1 = pool.acquire(location, opener);
+        /*
+         * nc1 is in use, so can't be closed even though we are over the limit
+         */
+        NetcdfDataset nc2 = pool.acquire(location + "#other", opener2());
+        assertEquals(2, pool.getStatistics().getOpenHandles());
+
+        pool.release(nc2);
+        /*
+         * nc2 was the only idle handle, so it has been closed
+         */
+        assertEquals(1, pool.getStatistics().getOpenHandles());
+
+        pool.release(nc1);
+        NetcdfDataset nc3 = pool.acquire(location, opener);
+        assertSame(nc1, nc3);
+        pool.release(nc3);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        NetcdfDatasetPool pool = new NetcdfDatasetPool(1, 10);
+
+        NetcdfDataset nc1 = pool.acquire(location, opener);
+        pool.invalidate(location);
+        /*
+         * The old handle is still in use, but will not be handed out again
+         */
+        NetcdfDataset nc2 = pool.acquire(location, opener);
+        assertNotSame(nc1, nc2);
+        assertEquals(2, pool.getStatistics().getOpenHandles());
+
+        pool.release(nc1);
+        assertEquals(1, pool.getStatistics().getOpenHandles());
+        pool.release(nc2);
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        NetcdfDatasetPool pool = new NetcdfDatasetPool(1, 10);
+
+        NetcdfDataset nc1 = pool.acquire(location, opener);
+        long handleBytes = pool.getStatistics().getEstimatedBytes();
+        assertEquals(NetcdfDatasetPool.estimateMemory(nc1), handleBytes);
+        pool.release(nc1);
+
+        /*
+         * Only allow room for one handle
+         */
+        pool.setMaxOpenBytes(handleBytes);
+        NetcdfDataset nc2 = pool.acquire(location + "#other", opener2());
+        /*
+         * The idle handle has been closed to make room
+         */
+        assertEquals(1, pool.getStatistics().getOpenHandles());
+        assertEquals(handleBytes, pool.getStatistics().getEstimatedBytes());
+        pool.release(nc2);
+
+        NetcdfDataset nc3 = pool.acquire(location + "#other", opener2());
+        assertSame(nc2, nc3);
+        pool.release(nc3);
+    }
+
+    /*
+     * Opens the test file, ignoring the (fake) location which is used to
+     * distinguish it in the pool
+     */
+    private DatasetOpener opener2() {
+        return new DatasetOpener() {
+            @Override
+            public NetcdfDataset open(String ignored) throws java.io.IOException {
+                return NetcdfDataset.openDataset(location);
+            }
+        };
+    }
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.vtk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.ac.rdg.resc.edal.cache.EdalCache;
+import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.vtk.HydromodelVtkDatasetFactory.TimestepInfo;
+
+public class OnDemandVtkDataSourceTest {
+    private static final float FILL = -999f;
+    private static final int N_VALUES = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File originalWorkingDir;
+    private float[] expected;
+
+    @Before
+    public void setUp() {
+        originalWorkingDir = DatasetFactory.getWorkingDirectory();
+        expected = new float[N_VALUES];
+        for (int i = 0; i < N_VALUES; i++) {
+            expected[i] = i * 0.5f;
+        }
+        expected[10] = FILL;
+    }
+
+    @After
+    public void tearDown() {
+        DatasetFactory.setWorkingDirectory(originalWorkingDir);
+    }
+
+    @Test
+    public void testAscii() throws Exception {
+        StringBuilder ascii = new StringBuilder();
+        for (int i = 0; i < N_VALUES; i++) {
+            /*
+             * Include some other whitespace
+             */
+            ascii.append(expected[i]).append(i % 7 == 0 ? "\n  " : " ");
+        }
+        File file = writeFile("", "<DataArray Name=\"varA\" type=\"Float32\" format=\"ascii\">"
+                + ascii + "</DataArray>", null);
+        check(file, "varA");
+    }
+
+    @Test
+    public void testCompressedBinary() throws Exception {
+        /*
+         * Compress in blocks of 1200 bytes, so that we have multiple blocks
+         */
+        byte[] raw = toBytes(expected, ByteOrder.LITTLE_ENDIAN);
+        int blockSize = 1200;
+        int nBlocks = (raw.length + blockSize - 1) / blockSize;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate((3 + nBlocks) * 4).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(nBlocks).putInt(blockSize).putInt(raw.length - (nBlocks - 1) * blockSize);
+        for (int b = 0; b < nBlocks; b++) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(raw, b * blockSize, Math.min(blockSize, raw.length - b * blockSize));
+            deflater.finish();
+            byte[] buffer = new byte[2 * blockSize];
+            int size = deflater.deflate(buffer);
+            deflater.end();
+            compressed.write(buffer, 0, size);
+            header.putInt(size);
+        }
+        String data = Base64.encodeBase64String(header.array())
+                + Base64.encodeBase64String(compressed.toByteArray());
+        File file = writeFile("compressor=\"vtkZLibDataCompressor\"",
+                "<DataArray Name=\"other\" type=\"Float32\" format=\"ascii\">1 2 3</DataArray>"
+                        + "<DataArray Name=\"varB\" type=\"Float32\" format=\"binary\">\n"
+                        + data + "\n</DataArray>", null);
+        check(file, "varB");
+
+        assertArrayEquals(new Number[] { 1.0f, 2.0f, 3.0f }, VtkUtils.parseDataString(
+                "1 2 3", "ascii", "Float32", new float[0]));
+        Number[] parsed = VtkUtils.parseDataString(data, "binary", "Float32",
+                new float[] { FILL });
+        assertEquals(N_VALUES, parsed.length);
+        assertEquals(expected[999], parsed[999].floatValue(), 0f);
+    }
+
+    @Test
+    public void testParseMetadataExactly() throws Exception {
+        /*
+         * Neither of these can be represented exactly as a float
+         */
+        int bigInt = (1 << 24) + 1;
+        double preciseDouble = 51.123456789;
+        assertArrayEquals(new Number[] { 0, bigInt }, VtkUtils.parseDataString("0 " + bigInt,
+                "ascii", "Int32", new float[0]));
+        assertArrayEquals(new Number[] { preciseDouble }, VtkUtils.parseDataString(" "
+                + preciseDouble + "\n", "ascii", "Float64", new float[0]));
+
+        ByteBuffer ints = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(0)
+                .putInt(bigInt);
+        assertArrayEquals(new Number[] { 0, bigInt }, VtkUtils.parseDataString(
+                compress(ints.array()), "binary", "Int32", new float[0]));
+        ByteBuffer doubles = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                .putDouble(preciseDouble);
+        assertArrayEquals(new Number[] { preciseDouble }, VtkUtils.parseDataString(
+                compress(doubles.array()), "binary", "Float64", new float[0]));
+    }
+
+    @Test
+    public void testAppendedRaw() throws Exception {
+        /*
+         * Uncompressed, big-endian, 64-bit headers. The first array is a dummy
+         * one, so that the offset is non-zero.
+         */
+        byte[] dummy = ByteBuffer.allocate(12).putLong(4).putFloat(1f).array();
+        ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        ByteBuffer doubles = ByteBuffer.allocate(N_VALUES * 8);
+        for (float value : expected) {
+            doubles.putDouble(value);
+        }
+        appended.write(dummy);
+        appended.write(ByteBuffer.allocate(8).putLong(N_VALUES * 8).array());
+        appended.write(doubles.array());
+        File file = writeFile("byte_order=\"BigEndian\" header_type=\"UInt64\"",
+                "<DataArray Name=\"dummy\" type=\"Float32\" format=\"appended\" offset=\"0\"/>"
+                        + "<DataArray Name=\"varC\" type=\"Float64\" format=\"appended\" offset=\"12\"/>",
+                appended.toByteArray());
+        check(file, "varC");
+    }
+
+    @Test
+    public void testDiskCache() throws Exception {
+        File workingDir = folder.newFolder("working");
+        DatasetFactory.setWorkingDirectory(workingDir);
+        StringBuilder ascii = new StringBuilder();
+        for (float value : expected) {
+            ascii.append(value).append(' ');
+        }
+        File file = writeFile("", "<DataArray Name=\"varD\" type=\"Float32\" format=\"ascii\">"
+                + ascii + "</DataArray>"
+                + "<DataArray Name=\"other\" type=\"Float32\" format=\"ascii\">1 2 3</DataArray>",
+                null);
+        check(file, "varD");
+        File[] cached = new File(workingDir, "vtk").listFiles();
+        assertEquals(1, cached.length);
+        assertEquals(N_VALUES * 4, cached[0].length());
+
+        new OnDemandVtkDataSource().getData1D(new TimestepInfo(file, "", FILL), "other");
+        assertEquals(2, new File(workingDir, "vtk").listFiles().length);
+
+        /*
+         * Once the VTK file has changed, the old cache file for the variable
+         * should be replaced, but the other variable's should be kept
+         */
+        assertTrue(file.setLastModified(file.lastModified() + 10_000L));
+        EdalCache.cacheManager.getCache("vtkDataCache").removeAll();
+        check(file, "varD");
+        File[] recached = new File(workingDir, "vtk").listFiles();
+        assertEquals(2, recached.length);
+        for (File cacheFile : recached) {
+            assertTrue(!cacheFile.getName().equals(cached[0].getName()));
+        }
+    }
+
+    private void check(File file, String varId) throws Exception {
+        OnDemandVtkDataSource dataSource = new OnDemandVtkDataSource();
+        FloatBuffer data = dataSource.getData1D(new TimestepInfo(file, "", FILL), varId);
+        assertEquals(N_VALUES, data.limit());
+        for (int i = 0; i < N_VALUES; i++) {
+            if (i == 10) {
+                assertTrue(Float.isNaN(data.get(i)));
+                assertNull(OnDemandVtkDataSource.getValue(data, i));
+            } else {
+                assertEquals(expected[i], data.get(i), 0f);
+            }
+        }
+    }
+
+    private File writeFile(String attributes, String dataArrays, byte[] appended)
+            throws Exception {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(("<?xml version=\"1.0\"?>\n<VTKFile type=\"UnstructuredGrid\" version=\"1.0\" "
+                    + attributes + ">\n<UnstructuredGrid><Piece><PointData>" + dataArrays
+                    + "</PointData></Piece></UnstructuredGrid>\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            if (appended != null) {
+                out.write("<AppendedData encoding=\"raw\">\n_"
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.write(appended);
+                out.write("\n</AppendedData>\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            out.write("</VTKFile>\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return file;
+    }
+
+    /*
+     * Compresses data as a single block, and base64 encodes it with its
+     * header
+     */
+    private static String compress(byte[] raw) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[raw.length + 64];
+        int size = deflater.deflate(buffer);
+        deflater.end();
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(1).putInt(raw.length).putInt(raw.length).putInt(size);
+        ByteBuffer all = ByteBuffer.allocate(16 + size).put(header.array()).put(buffer, 0,
+                size);
+        return Base64.encodeBase64String(all.array());
+    }
+
+    private static byte[] toBytes(float[] values, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(order);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+}
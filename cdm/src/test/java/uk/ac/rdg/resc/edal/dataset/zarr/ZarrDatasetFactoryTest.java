@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset.zarr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.ac.rdg.resc.edal.dataset.GriddedDataset;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.feature.GridFeature;
+import uk.ac.rdg.resc.edal.grid.HorizontalGrid;
+import uk.ac.rdg.resc.edal.grid.RegularGrid;
+import uk.ac.rdg.resc.edal.grid.TimeAxis;
+import uk.ac.rdg.resc.edal.grid.VerticalAxis;
+import uk.ac.rdg.resc.edal.metadata.GridVariableMetadata;
+import uk.ac.rdg.resc.edal.util.Array4D;
+
+public class ZarrDatasetFactoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final double[] LONS = new double[] { -10, -5, 0, 5, 10 };
+    private static final double[] LATS = new double[] { 50, 51, 52 };
+
+    @Test
+    public void testZlibFloatArray() throws Exception {
+        File root = folder.newFolder("zlib.zarr");
+        writeCoordinates(root, true);
+        writeDoubleArray(root, "time", new double[] { 0, 1.5 },
+                "{\"_ARRAY_DIMENSIONS\": [\"time\"], \"units\": \"days since 2000-01-01 00:00:00\", \"calendar\": \"standard\"}");
+
+        /*
+         * 2 x 3 x 5, in chunks of 1 x 2 x 3, so that there are partial chunks
+         * at the edges of the array
+         */
+        writeZarray(root, "sst", "[2, 3, 5]", "[1, 2, 3]", "<f4", "{\"id\": \"zlib\", \"level\": 1}",
+                "NaN");
+        writeZattrs(root, "sst",
+                "{\"_ARRAY_DIMENSIONS\": [\"time\", \"lat\", \"lon\"], \"units\": \"K\", \"long_name\": \"Sea surface temperature\", \"standard_name\": \"sea_surface_temperature\"}");
+        for (int t = 0; t < 2; t++) {
+            for (int yc = 0; yc < 2; yc++) {
+                for (int xc = 0; xc < 2; xc++) {
+                    ByteBuffer chunk = ByteBuffer.allocate(6 * 4).order(ByteOrder.LITTLE_ENDIAN);
+                    for (int y = yc * 2; y < yc * 2 + 2; y++) {
+                        for (int x = xc * 3; x < xc * 3 + 3; x++) {
+                            chunk.putFloat(sstValue(t, y, x));
+                        }
+                    }
+                    writeChunk(root, "sst", t + "." + yc + "." + xc, deflate(chunk.array()));
+                }
+            }
+        }
+
+        GriddedDataset dataset = (GriddedDataset) new ZarrDatasetFactory().createDataset("zlib",
+                root.getAbsolutePath());
+        assertEquals(1, dataset.getVariableIds().size());
+
+        GridVariableMetadata metadata = dataset.getVariableMetadata("sst");
+        assertEquals("Sea surface temperature", metadata.getParameter().getTitle());
+        assertEquals("K", metadata.getParameter().getUnits());
+        assertEquals("sea_surface_temperature", metadata.getParameter().getStandardName());
+
+        HorizontalGrid hGrid = metadata.getHorizontalDomain();
+        assertTrue(hGrid instanceof RegularGrid);
+        assertEquals(5, hGrid.getXSize());
+        assertEquals(3, hGrid.getYSize());
+        assertEquals(-10.0, ((RegularGrid) hGrid).getXAxis().getCoordinateValue(0), 1e-8);
+        assertEquals(52.0, ((RegularGrid) hGrid).getYAxis().getCoordinateValue(2), 1e-8);
+
+        assertNull(metadata.getVerticalDomain());
+        TimeAxis tAxis = metadata.getTemporalDomain();
+        assertEquals(2, tAxis.size());
+        assertEquals(new DateTime(2000, 1, 1, 0, 0, ISOChronology.getInstanceUTC()),
+                tAxis.getCoordinateValue(0));
+        assertEquals(new DateTime(2000, 1, 2, 12, 0, ISOChronology.getInstanceUTC()),
+                tAxis.getCoordinateValue(1));
+
+        GridFeature feature = dataset.readFeature("sst");
+        Array4D<Number> values = feature.getValues("sst");
+        assertArrayEquals(new int[] { 2, 1, 3, 5 }, values.getShape());
+        for (int t = 0; t < 2; t++) {
+            for (int y = 0; y < 3; y++) {
+                for (int x = 0; x < 5; x++) {
+                    assertEquals(sstValue(t, y, x), values.get(t, 0, y, x).floatValue(), 1e-6);
+                }
+            }
+        }
+
+        /*
+         * A read from a single chunk
+         */
+        ZarrArray sst = readArray(root, "sst");
+        sst.setGridAxes(new int[] { 0, -1, 1, 2 });
+        ZarrGridDataSource dataSource = new ZarrGridDataSource(root,
+                Collections.singletonMap("sst", sst));
+        float[] subset = new float[4];
+        dataSource.readFloats("sst", 1, 1, -1, -1, 1, 2, 3, 4, subset);
+        assertEquals(sstValue(1, 1, 3), subset[0], 1e-6);
+        assertEquals(sstValue(1, 1, 4), subset[1], 1e-6);
+        assertEquals(sstValue(1, 2, 3), subset[2], 1e-6);
+        assertEquals(sstValue(1, 2, 4), subset[3], 1e-6);
+        assertArrayEquals(new int[] { 2, 1, 3, 5 }, dataSource.getShape("sst"));
+        assertArrayEquals(new int[] { 1, 1, 2, 3 }, dataSource.getChunkShape("sst"));
+    }
+
+    @Test
+    public void testBloscConsolidatedArray() throws Exception {
+        File root = folder.newFolder("blosc.zarr");
+
+        /*
+         * 2 depths x 3 lats x 5 lons of scaled shorts, where each depth level
+         * is a single chunk. The chunk for the second depth is not written, so
+         * should be read as missing data.
+         */
+        ByteBuffer chunk = ByteBuffer.allocate(15 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short i = 0; i < 15; i++) {
+            chunk.putShort(i == 5 ? -999 : i);
+        }
+        writeChunk(root, "temp", "0.0.0", bloscLz4Shuffled(chunk.array(), 2));
+        writeDoubleArray(root, "depth", new double[] { 5, 15 }, null);
+        writeCoordinates(root, false);
+
+        String consolidated = "{\"zarr_consolidated_format\": 1, \"metadata\": {"
+                + "\".zgroup\": {\"zarr_format\": 2},"
+                + "\"lon/.zarray\": " + zarray("[5]", "[5]", "<f8", "null", "NaN") + ","
+                + "\"lon/.zattrs\": {\"_ARRAY_DIMENSIONS\": [\"lon\"], \"units\": \"degrees_east\"},"
+                + "\"lat/.zarray\": " + zarray("[3]", "[3]", "<f8", "null", "NaN") + ","
+                + "\"lat/.zattrs\": {\"_ARRAY_DIMENSIONS\": [\"lat\"], \"standard_name\": \"latitude\"},"
+                + "\"depth/.zarray\": " + zarray("[2]", "[2]", "<f8", "null", "NaN") + ","
+                + "\"depth/.zattrs\": {\"_ARRAY_DIMENSIONS\": [\"depth\"], \"units\": \"m\", \"positive\": \"down\"},"
+                + "\"temp/.zarray\": "
+                + zarray("[2, 3, 5]", "[1, 3, 5]", "<i2", "{\"id\": \"blosc\", \"cname\": \"lz4\", \"clevel\": 5, \"shuffle\": 1}", "-999")
+                + ","
+                + "\"temp/.zattrs\": {\"_ARRAY_DIMENSIONS\": [\"depth\", \"lat\", \"lon\"], \"scale_factor\": 0.5, \"add_offset\": 10.0, \"units\": \"degC\"}"
+                + "}}";
+        Files.write(new File(root, ".zmetadata").toPath(),
+                consolidated.getBytes(StandardCharsets.UTF_8));
+
+        GriddedDataset dataset = (GriddedDataset) new ZarrDatasetFactory().createDataset("blosc",
+                root.getAbsolutePath());
+        GridVariableMetadata metadata = dataset.getVariableMetadata("temp");
+        assertNull(metadata.getTemporalDomain());
+        VerticalAxis zAxis = metadata.getVerticalDomain();
+        assertEquals(Arrays.asList(5.0, 15.0), zAxis.getCoordinateValues());
+        assertEquals(false, zAxis.getVerticalCrs().isPositiveUpwards());
+
+        Array4D<Number> values = dataset.readFeature("temp").getValues("temp");
+        assertArrayEquals(new int[] { 1, 2, 3, 5 }, values.getShape());
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                int i = y * 5 + x;
+                if (i == 5) {
+                    assertNull(values.get(0, 0, y, x));
+                } else {
+                    assertEquals(i * 0.5 + 10.0, values.get(0, 0, y, x).doubleValue(), 1e-6);
+                }
+                assertNull(values.get(0, 1, y, x));
+            }
+        }
+    }
+
+    @Test
+    public void testLz4Matches() throws Exception {
+        /*
+         * 2 literals, then a match of length 6 at offset 2 (which overlaps the
+         * output), then a final literal
+         */
+        byte[] src = new byte[] { 0x22, 'a', 'b', 0x02, 0x00, 0x10, 'x' };
+        byte[] dest = new byte[9];
+        assertEquals(9, BloscDecompressor.decompressLz4(src, 0, src.length, dest, 0, 9));
+        assertEquals("abababab" + "x", new String(dest, StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = DataReadingException.class)
+    public void testUnsupportedCodec() throws Exception {
+        byte[] src = new byte[32];
+        src[0] = 2;
+        src[2] = (byte) (4 << 5);
+        src[3] = 4;
+        src[4] = 16;
+        src[8] = 16;
+        src[12] = 32;
+        BloscDecompressor.decompress(src);
+    }
+
+    @Test
+    public void testReadJson() throws Exception {
+        File file = folder.newFile(".zattrs");
+        Files.write(file.toPath(), ("{\"a\": [1, 2.5, NaN, -Infinity], \"b\": {\"c\": null},"
+                + " \"d\": true, \"e\": \"text\"}").getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> json = ZarrDatasetFactory.readJson(file);
+        List<?> a = (List<?>) json.get("a");
+        assertEquals(1, ((Number) a.get(0)).intValue());
+        assertEquals(2.5, ((Number) a.get(1)).doubleValue(), 0.0);
+        assertTrue(Double.isNaN(((Number) a.get(2)).doubleValue()));
+        assertEquals(Double.NEGATIVE_INFINITY, ((Number) a.get(3)).doubleValue(), 0.0);
+        assertTrue(((Map<?, ?>) json.get("b")).containsKey("c"));
+        assertEquals(Boolean.TRUE, json.get("d"));
+        assertEquals("text", json.get("e"));
+    }
+
+    @Test(expected = DataReadingException.class)
+    public void testReadInvalidJson() throws Exception {
+        File file = folder.newFile(".zarray");
+        Files.write(file.toPath(), "{\"a\": [1, 2}".getBytes(StandardCharsets.UTF_8));
+        ZarrDatasetFactory.readJson(file);
+    }
+
+    @Test
+    public void testCacheIdChangesWithArrayMetadata() throws Exception {
+        File root = folder.newFolder("cacheid.zarr");
+        writeCoordinates(root, true);
+        File zarray = new File(new File(root, "lon"), ".zarray");
+        zarray.setLastModified(1000000000000L);
+        ZarrGridDataSource dataSource = new ZarrGridDataSource(root,
+                Collections.singletonMap("lon", readArray(root, "lon")));
+        String cacheId = dataSource.getCacheId();
+        assertEquals(cacheId, new ZarrGridDataSource(root,
+                Collections.singletonMap("lon", readArray(root, "lon"))).getCacheId());
+
+        zarray.setLastModified(System.currentTimeMillis() + 60000);
+        assertNotEquals(cacheId, new ZarrGridDataSource(root,
+                Collections.singletonMap("lon", readArray(root, "lon"))).getCacheId());
+    }
+
+    private static float sstValue(int t, int y, int x) {
+        return 270f + 10 * t + y + x / 10f;
+    }
+
+    private static ZarrArray readArray(File root, String name) throws IOException {
+        File dir = new File(root, name);
+        return new ZarrArray(name, dir, ZarrDatasetFactory.readJson(new File(dir, ".zarray")),
+                ZarrDatasetFactory.readJson(new File(dir, ".zattrs")));
+    }
+
+    private static void writeCoordinates(File root, boolean withMetadata) throws IOException {
+        writeDoubleArray(root, "lon", LONS, withMetadata
+                ? "{\"_ARRAY_DIMENSIONS\": [\"lon\"], \"units\": \"degrees_east\"}" : null);
+        writeDoubleArray(root, "lat", LATS, withMetadata
+                ? "{\"_ARRAY_DIMENSIONS\": [\"lat\"], \"units\": \"degrees_north\"}" : null);
+    }
+
+    /*
+     * Writes an uncompressed 1D array of doubles in a single chunk
+     */
+    private static void writeDoubleArray(File root, String name, double[] values, String zattrs)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+        writeChunk(root, name, "0", buffer.array());
+        if (zattrs != null) {
+            String shape = "[" + values.length + "]";
+            writeZarray(root, name, shape, shape, "<f8", "null", "NaN");
+            writeZattrs(root, name, zattrs);
+        }
+    }
+
+    private static String zarray(String shape, String chunks, String dtype, String compressor,
+            String fill) {
+        return "{\"zarr_format\": 2, \"shape\": " + shape + ", \"chunks\": " + chunks
+                + ", \"dtype\": \"" + dtype + "\", \"compressor\": " + compressor
+                + ", \"fill_value\": " + fill + ", \"order\": \"C\", \"filters\": null}";
+    }
+
+    private static void writeZarray(File root, String name, String shape, String chunks,
+            String dtype, String compressor, String fill) throws IOException {
+        write(new File(new File(root, name), ".zarray"),
+                zarray(shape, chunks, dtype, compressor, fill).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeZattrs(File root, String name, String zattrs) throws IOException {
+        write(new File(new File(root, name), ".zattrs"), zattrs.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeChunk(File root, String name, String key, byte[] data)
+            throws IOException {
+        write(new File(new File(root, name), key), data);
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), data);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(1);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /*
+     * Builds a Blosc frame containing a single byte-shuffled block, split into
+     * one LZ4 stream per byte of the data type. Each stream is encoded as a
+     * single run of LZ4 literals.
+     */
+    private static byte[] bloscLz4Shuffled(byte[] data, int typesize) throws IOException {
+        int nElements = data.length / typesize;
+        ByteArrayOutputStream streams = new ByteArrayOutputStream();
+        for (int j = 0; j < typesize; j++) {
+            byte[] stream = new byte[nElements];
+            for (int i = 0; i < nElements; i++) {
+                stream[i] = data[i * typesize + j];
+            }
+            byte[] lz4 = lz4Literals(stream);
+            streams.write(intBytes(lz4.length));
+            streams.write(lz4);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] { 2, 1, (byte) (0x1 | (1 << 5)), (byte) typesize });
+        out.write(intBytes(data.length));
+        out.write(intBytes(data.length));
+        out.write(intBytes(16 + 4 + streams.size()));
+        out.write(intBytes(16 + 4));
+        out.write(streams.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static byte[] lz4Literals(byte[] literals) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length = literals.length;
+        if (length < 15) {
+            out.write(length << 4);
+        } else {
+            out.write(15 << 4);
+            int remaining = length - 15;
+            while (remaining >= 255) {
+                out.write(255);
+                remaining -= 255;
+            }
+            out.write(remaining);
+        }
+        out.write(literals, 0, literals.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+}
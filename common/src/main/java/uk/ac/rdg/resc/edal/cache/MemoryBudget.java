@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.cache;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.exceptions.InsufficientMemoryException;
+
+/**
+ * A process-wide budget for the memory used by large, short-lived allocations
+ * (e.g. arrays of data read from disk, or images being rendered) and by
+ * caches.
+ * 
+ * Checking {@link Runtime#freeMemory()} before an allocation does not work
+ * when several requests are running at once, since they can all see enough
+ * free memory and then all allocate it together. Instead, operations reserve
+ * the memory they need before allocating it, and release it once they have
+ * finished. If not enough memory is available, they either wait for other
+ * operations to release some, or fail with an
+ * {@link InsufficientMemoryException}, rather than causing an
+ * {@link OutOfMemoryError}.
+ * 
+ * Caches register a fixed reservation equal to their maximum size, which
+ * reduces the budget available to everything else.
+ * 
+ * Where memory is handed on to a caller which has no way of saying when it has
+ * finished with it (e.g. an array returned from a data read), the reservation
+ * can instead be {@link Reservation#releaseWhenUnreachable(Object) tied to the
+ * object holding the memory}, and is released once that object has been
+ * garbage collected.
+ * 
+ * Memory should be reserved once, by the outermost operation which allocates
+ * it. Where an operation reserves memory for data which it then asks a data
+ * source to read (which may itself reserve memory for the array it reads),
+ * it should use {@link #reserveForRead(long)}. Whilst that reservation is
+ * open, reservations of no more than its size made on the same thread are
+ * covered by it, rather than being taken from the budget a second time.
+ * 
+ * @author agent
+ */
+public final class MemoryBudget {
+    private static final Logger log = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final double DEFAULT_BUDGET_FRACTION = 0.8;
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 30_000L;
+    /*
+     * How often to check for reservations whose owners have been garbage
+     * collected, whilst waiting for memory
+     */
+    private static final long COLLECTED_POLL_MILLIS = 100L;
+
+    private static final Object lock = new Object();
+    private static long budget = (long) (DEFAULT_BUDGET_FRACTION
+            * Runtime.getRuntime().maxMemory());
+    private static long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private static long reservedBytes = 0L;
+    private static final Map<String, Long> fixedReservations = new HashMap<>();
+    private static long fixedBytes = 0L;
+
+    /*
+     * Reservations which are released when their owning objects are garbage
+     * collected. The references must be kept reachable until then.
+     */
+    private static final ReferenceQueue<Object> collectedOwners = new ReferenceQueue<>();
+    private static final Set<OwnerReference> ownerReferences = new HashSet<>();
+
+    /*
+     * The open reservation (if any) made by each thread with
+     * reserveForRead(), which covers any nested reservations on that thread
+     */
+    private static final ThreadLocal<Reservation> coveringReservation = new ThreadLocal<>();
+
+    private MemoryBudget() {
+    }
+
+    /**
+     * A reservation of memory from the budget. This should be closed once the
+     * memory is no longer in use, ideally with a try-with-resources block.
+     */
+    public static final class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean released = false;
+        private OwnerReference ownerReference = null;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return The number of bytes reserved
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Keeps this reservation until the given object is no longer in use,
+         * and then releases it. This is for memory which is held by an object
+         * returned to a caller, where the caller cannot be relied upon to
+         * close the reservation. The memory is returned to the budget once
+         * the object has been garbage collected, or when {@link #close()} is
+         * called, whichever is first.
+         * 
+         * @param owner
+         *            The object which holds the reserved memory
+         */
+        public void releaseWhenUnreachable(Object owner) {
+            synchronized (lock) {
+                if (!released && ownerReference == null) {
+                    /*
+                     * The memory now outlives the current operation, so it
+                     * can no longer cover nested reservations
+                     */
+                    stopCovering(this);
+                    ownerReference = new OwnerReference(owner, this);
+                    ownerReferences.add(ownerReference);
+                }
+            }
+        }
+
+        /**
+         * Returns the reserved memory to the budget. Calling this more than
+         * once has no effect.
+         */
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (!released) {
+                    released = true;
+                    stopCovering(this);
+                    reservedBytes -= bytes;
+                    if (ownerReference != null) {
+                        ownerReferences.remove(ownerReference);
+                        ownerReference.clear();
+                    }
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static final class OwnerReference extends PhantomReference<Object> {
+        private final Reservation reservation;
+
+        private OwnerReference(Object owner, Reservation reservation) {
+            super(owner, collectedOwners);
+            this.reservation = reservation;
+        }
+    }
+
+    /*
+     * Stops the given reservation from covering nested reservations on this
+     * thread
+     */
+    private static void stopCovering(Reservation reservation) {
+        if (coveringReservation.get() == reservation) {
+            coveringReservation.remove();
+        }
+    }
+
+    /*
+     * Returns a reservation of no memory if the given number of bytes is
+     * covered by an open reservation made by this thread, otherwise null. Must
+     * be called whilst holding the lock.
+     */
+    private static Reservation coveredReservation(long bytes) {
+        Reservation covering = coveringReservation.get();
+        if (covering != null && !covering.released && bytes <= covering.bytes) {
+            return new Reservation(0L);
+        }
+        return null;
+    }
+
+    /*
+     * Releases the reservations whose owners have been garbage collected. Must
+     * be called whilst holding the lock.
+     */
+    private static void releaseCollected() {
+        Reference<?> reference;
+        while ((reference = collectedOwners.poll()) != null) {
+            ((OwnerReference) reference).reservation.close();
+        }
+    }
+
+    /**
+     * Sets the total amount of memory which can be reserved. Defaults to 80%
+     * of the maximum heap size.
+     * 
+     * @param bytes
+     *            The size of the budget, in bytes
+     */
+    public static void setBudget(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        synchronized (lock) {
+            budget = bytes;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return The total amount of memory which can be reserved, in bytes
+     */
+    public static long getBudget() {
+        synchronized (lock) {
+            return budget;
+        }
+    }
+
+    /**
+     * Sets the maximum time which {@link #reserve(long)} will wait for memory
+     * to become available before failing. Defaults to 30s.
+     * 
+     * @param millis
+     *            The maximum time to wait, in milliseconds. Zero means that
+     *            reservations fail immediately if the memory is not available.
+     */
+    public static void setMaxWait(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Maximum wait cannot be negative");
+        }
+        synchronized (lock) {
+            maxWaitMillis = millis;
+        }
+    }
+
+    /**
+     * @return The number of bytes which can currently be reserved without
+     *         waiting
+     */
+    public static long getAvailableBytes() {
+        synchronized (lock) {
+            releaseCollected();
+            return Math.max(0L, budget - fixedBytes - reservedBytes);
+        }
+    }
+
+    /**
+     * @return The number of bytes currently reserved, including fixed
+     *         reservations
+     */
+    public static long getReservedBytes() {
+        synchronized (lock) {
+            releaseCollected();
+            return reservedBytes + fixedBytes;
+        }
+    }
+
+    /**
+     * Sets a long-lived reservation, such as the maximum size of a cache. This
+     * replaces any previous fixed reservation with the same name. Fixed
+     * reservations never wait or fail, but reduce the memory available to
+     * other reservations.
+     * 
+     * @param name
+     *            A name identifying the owner of the reservation
+     * @param bytes
+     *            The number of bytes to reserve. Zero removes the reservation.
+     */
+    public static void setFixedReservation(String name, long bytes) {
+        synchronized (lock) {
+            Long previous = bytes > 0 ? fixedReservations.put(name, bytes)
+                    : fixedReservations.remove(name);
+            fixedBytes += bytes - (previous == null ? 0L : previous);
+            if (fixedBytes > budget) {
+                log.warn("Fixed memory reservations (" + (fixedBytes / 1_000_000L)
+                        + "MB) exceed the memory budget (" + (budget / 1_000_000L) + "MB)");
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Reserves memory, without waiting.
+     * 
+     * @param bytes
+     *            The number of bytes to reserve
+     * @return A {@link Reservation} which must be closed once the memory is no
+     *         longer in use, or <code>null</code> if the memory is not currently
+     *         available
+     */
+    public static Reservation tryReserve(long bytes) {
+        synchronized (lock) {
+            Reservation covered = coveredReservation(bytes);
+            if (covered != null) {
+                return covered;
+            }
+            releaseCollected();
+            if (bytes > budget - fixedBytes - reservedBytes) {
+                return null;
+            }
+            reservedBytes += bytes;
+            return new Reservation(bytes);
+        }
+    }
+
+    /**
+     * Reserves memory, waiting for other operations to release memory if
+     * necessary.
+     * 
+     * @param bytes
+     *            The number of bytes to reserve
+     * @return A {@link Reservation} which must be closed once the memory is no
+     *         longer in use
+     * @throws InsufficientMemoryException
+     *             If the memory does not become available within the maximum
+     *             waiting time, or the thread is interrupted whilst waiting
+     */
+    public static Reservation reserve(long bytes) throws InsufficientMemoryException {
+        synchronized (lock) {
+            Reservation covered = coveredReservation(bytes);
+            if (covered != null) {
+                return covered;
+            }
+            if (bytes > budget - fixedBytes) {
+                /*
+                 * This can never succeed, so don't make the caller wait
+                 */
+                throw new InsufficientMemoryException("Operation needs " + (bytes / 1_000_000L)
+                        + "MB of memory, but only " + ((budget - fixedBytes) / 1_000_000L)
+                        + "MB is available in total");
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            releaseCollected();
+            while (bytes > budget - fixedBytes - reservedBytes) {
+                long remainingMillis = TimeUnit.NANOSECONDS
+                        .toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    throw new InsufficientMemoryException("Timed out waiting for "
+                            + (bytes / 1_000_000L) + "MB of memory to become available");
+                }
+                try {
+                    lock.wait(ownerReferences.isEmpty() ? remainingMillis
+                            : Math.min(remainingMillis, COLLECTED_POLL_MILLIS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InsufficientMemoryException(
+                            "Interrupted whilst waiting for memory to become available");
+                }
+                releaseCollected();
+            }
+            reservedBytes += bytes;
+            return new Reservation(bytes);
+        }
+    }
+
+    /**
+     * Reserves memory for data which is to be read from a data source,
+     * waiting for other operations to release memory if necessary. Whilst
+     * the returned reservation is open, any reservations of no more than
+     * its size made on this thread (e.g. by the data source, for the array
+     * it reads into) are covered by it, so that the same data is not
+     * reserved twice.
+     * 
+     * @param bytes
+     *            The number of bytes to reserve, including any memory used by
+     *            the data source whilst reading
+     * @return A {@link Reservation} which must be closed once the memory is no
+     *         longer in use
+     * @throws InsufficientMemoryException
+     *             If the memory does not become available within the maximum
+     *             waiting time, or the thread is interrupted whilst waiting
+     */
+    public static Reservation reserveForRead(long bytes) throws InsufficientMemoryException {
+        Reservation reservation = reserve(bytes);
+        if (reservation.bytes > 0 && coveringReservation.get() == null) {
+            coveringReservation.set(reservation);
+        }
+        return reservation;
+    }
+}
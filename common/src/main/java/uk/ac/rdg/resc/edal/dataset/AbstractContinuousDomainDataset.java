@@ -58,17 +58,27 @@ import uk.ac.rdg.resc.edal.util.GISUtils;
  */
 public abstract class AbstractContinuousDomainDataset extends AbstractDataset implements ContinuousDomainDataset {
     private static final long serialVersionUID = 1L;
-    protected FeatureIndexer featureIndexer;
+    protected FeatureIndex featureIndexer;
+    /*
+     * Identifies this instance of the dataset in the FeatureCache
+     */
+    private final long cacheGeneration;
+    private transient DiscreteFeatureReader<? extends DiscreteFeature<?, ?>> cachingReader = null;
 
     public AbstractContinuousDomainDataset(String id, Collection<? extends VariableMetadata> vars,
-            FeatureIndexer featureIndexer) {
+            FeatureIndex featureIndexer) {
         super(id, vars);
         this.featureIndexer = featureIndexer;
+        /*
+         * A new instance of a dataset means that it has been refreshed, so any
+         * cached features from previous instances are no longer valid
+         */
+        this.cacheGeneration = FeatureCache.newGeneration(id);
     }
 
     @Override
     public DiscreteFeature<?, ?> readFeature(String featureId) throws DataReadingException {
-        return getFeatureReader().readFeature(featureId, null);
+        return getCachingFeatureReader().readFeature(featureId, null);
     }
 
     @Override
@@ -113,10 +123,35 @@ public abstract class AbstractContinuousDomainDataset extends AbstractDataset im
         List<DiscreteFeature<?, ?>> features = new ArrayList<>();
         Collection<String> featureIds = featureIndexer.findFeatureIds(hExtent, zExtent, tExtent,
                 varIds);
-        features.addAll(getFeatureReader().readFeatures(featureIds, varIds));
+        features.addAll(readMapFeatures(featureIds, varIds, zExtent, targetZ));
         return features;
     }
 
+    /**
+     * Reads the features found for a map. By default this reads the entire
+     * features. Subclasses which only use the features at the target
+     * elevation can override this to use
+     * {@link DiscreteFeatureReader#readFeatures(Collection, Set, Extent, Double)}
+     * instead.
+     * 
+     * @param featureIds
+     *            The IDs of the features to read
+     * @param varIds
+     *            The IDs of the variables to read
+     * @param zExtent
+     *            The vertical extent of the map
+     * @param targetZ
+     *            The target elevation of the map
+     * @return The features which have been read
+     * @throws DataReadingException
+     *             If there is a problem reading the underlying data
+     */
+    protected List<? extends DiscreteFeature<?, ?>> readMapFeatures(
+            Collection<String> featureIds, Set<String> varIds, Extent<Double> zExtent,
+            Double targetZ) throws DataReadingException {
+        return getCachingFeatureReader().readFeatures(featureIds, varIds);
+    }
+
     @Override
     public List<? extends ProfileFeature> extractProfileFeatures(Set<String> varIds,
             BoundingBox bbox, Extent<Double> zExtent, Extent<DateTime> tExtent,
@@ -148,7 +183,7 @@ public abstract class AbstractContinuousDomainDataset extends AbstractDataset im
         Collection<String> featureIds = featureIndexer.findFeatureIds(bbox, zExtent, tExtent,
                 varIds);
         @SuppressWarnings("unchecked")
-        Collection<? extends ProfileFeature> readFeatures = (Collection<? extends ProfileFeature>) getFeatureReader()
+        Collection<? extends ProfileFeature> readFeatures = (Collection<? extends ProfileFeature>) getCachingFeatureReader()
                 .readFeatures(featureIds, varIds);
         features.addAll(readFeatures);
 
@@ -197,7 +232,7 @@ public abstract class AbstractContinuousDomainDataset extends AbstractDataset im
         Collection<String> featureIds = featureIndexer.findFeatureIds(bbox, zExtent, tExtent,
                 varIds);
         @SuppressWarnings("unchecked")
-        Collection<? extends PointSeriesFeature> readFeatures = (Collection<? extends PointSeriesFeature>) getFeatureReader()
+        Collection<? extends PointSeriesFeature> readFeatures = (Collection<? extends PointSeriesFeature>) getCachingFeatureReader()
                 .readFeatures(featureIds, varIds);
         features.addAll(readFeatures);
         if (targetPos != null) {
@@ -229,4 +264,17 @@ public abstract class AbstractContinuousDomainDataset extends AbstractDataset im
     protected abstract Extent<DateTime> getDatasetTimeExtent();
 
     public abstract DiscreteFeatureReader<? extends DiscreteFeature<?, ?>> getFeatureReader();
+
+    /**
+     * @return A {@link DiscreteFeatureReader} which reads features using
+     *         {@link AbstractContinuousDomainDataset#getFeatureReader()},
+     *         caching them in the {@link FeatureCache}. All features read by
+     *         this class are read through this.
+     */
+    protected DiscreteFeatureReader<? extends DiscreteFeature<?, ?>> getCachingFeatureReader() {
+        if (cachingReader == null) {
+            cachingReader = FeatureCache.wrap(getFeatureReader(), getId(), cacheGeneration);
+        }
+        return cachingReader;
+    }
 }
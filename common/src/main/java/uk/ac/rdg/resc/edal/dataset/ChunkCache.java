@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.CacheConfiguration.TransactionalMode;
+import net.sf.ehcache.config.MemoryUnit;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+import uk.ac.rdg.resc.edal.cache.EdalCache;
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * A cache of decompressed storage chunks read from
+ * {@link ChunkedGridDataSource}s, shared between all requests. Each chunk is
+ * the 2D x-y slice of a storage chunk at a single time and depth, held as a
+ * float array with x varying fastest and NaN representing missing data.
+ * 
+ * The cache is limited by the amount of memory it uses, and evicts the least
+ * recently used chunks once it is full.
+ * 
+ * @author agent
+ */
+public final class ChunkCache {
+    private static final Logger log = LoggerFactory.getLogger(ChunkCache.class);
+
+    private static final String CACHE_NAME = "chunkCache";
+    private static final long DEFAULT_SIZE_MB = 64;
+    private static final MemoryStoreEvictionPolicy EVICTION_POLICY = MemoryStoreEvictionPolicy.LRU;
+    private static final Strategy PERSISTENCE_STRATEGY = Strategy.NONE;
+    private static final TransactionalMode TRANSACTIONAL_MODE = TransactionalMode.OFF;
+    private static Cache chunkCache;
+
+    static {
+        if (EdalCache.cacheManager.cacheExists(CACHE_NAME) == false) {
+            /*
+             * Configure cache
+             */
+            log.debug("Creating chunkCache, with maximum size " + DEFAULT_SIZE_MB + "MB");
+            CacheConfiguration config = new CacheConfiguration(CACHE_NAME, 0)
+                    .eternal(true)
+                    .maxBytesLocalHeap(DEFAULT_SIZE_MB, MemoryUnit.MEGABYTES)
+                    .memoryStoreEvictionPolicy(EVICTION_POLICY)
+                    .persistence(new PersistenceConfiguration().strategy(PERSISTENCE_STRATEGY))
+                    .transactionalMode(TRANSACTIONAL_MODE);
+            chunkCache = new Cache(config);
+            EdalCache.cacheManager.addCache(chunkCache);
+        } else {
+            log.debug("Loading existing chunkCache");
+            chunkCache = EdalCache.cacheManager.getCache(CACHE_NAME);
+        }
+        MemoryBudget.setFixedReservation(CACHE_NAME,
+                chunkCache.getCacheConfiguration().getMaxBytesLocalHeap());
+    }
+
+    private ChunkCache() {
+    }
+
+    /**
+     * Sets the maximum amount of memory used to cache chunks
+     * 
+     * @param sizeMB
+     *            The maximum size of the cache, in megabytes
+     */
+    public static void setMaxSizeMB(long sizeMB) {
+        chunkCache.getCacheConfiguration().setMaxBytesLocalHeap(sizeMB * 1024 * 1024);
+        MemoryBudget.setFixedReservation(CACHE_NAME, sizeMB * 1024 * 1024);
+    }
+
+    /**
+     * Removes all cached chunks
+     */
+    public static void clear() {
+        chunkCache.removeAll();
+    }
+
+    /**
+     * Gets a chunk of data, either from the cache or by reading it from the
+     * data source.
+     * 
+     * @param dataSource
+     *            The {@link ChunkedGridDataSource} to read from
+     * @param varId
+     *            The ID of the variable to read
+     * @param tIndex
+     *            The time index to read
+     * @param zIndex
+     *            The z index to read
+     * @param ymin
+     *            The minimum y index of the chunk
+     * @param ymax
+     *            The maximum y index of the chunk
+     * @param xmin
+     *            The minimum x index of the chunk
+     * @param xmax
+     *            The maximum x index of the chunk
+     * @return The values of the chunk, with x varying fastest and NaN
+     *         representing missing data
+     * @throws IOException
+     *             If there is a problem reading the data
+     * @throws DataReadingException
+     *             If there is a problem reading the data
+     */
+    static float[] getChunk(ChunkedGridDataSource dataSource, String varId, int tIndex,
+            int zIndex, int ymin, int ymax, int xmin, int xmax)
+            throws IOException, DataReadingException {
+        String cacheId = dataSource.getCacheId();
+        ChunkKey key = null;
+        if (cacheId != null) {
+            key = new ChunkKey(cacheId, varId, tIndex, zIndex, ymin, xmin);
+            Element element = chunkCache.get(key);
+            if (element != null) {
+                return (float[]) element.getObjectValue();
+            }
+        }
+
+        int xSize = xmax - xmin + 1;
+        int ySize = ymax - ymin + 1;
+        /*
+         * Once it is cached, the chunk is covered by the fixed reservation for
+         * the cache, but whilst reading we also need room for the data
+         * source's copy of it
+         */
+        float[] chunk;
+        try (MemoryBudget.Reservation reservation = MemoryBudget
+                .reserveForRead(2L * xSize * ySize * 4)) {
+            chunk = new float[xSize * ySize];
+            dataSource.readFloats(varId, tIndex, tIndex, zIndex, zIndex, ymin, ymax, xmin, xmax,
+                    chunk);
+        }
+
+        if (key != null) {
+            chunkCache.put(new Element(key, chunk));
+        }
+        return chunk;
+    }
+
+    private static final class ChunkKey {
+        private final String cacheId;
+        private final String varId;
+        private final int tIndex;
+        private final int zIndex;
+        private final int ymin;
+        private final int xmin;
+
+        public ChunkKey(String cacheId, String varId, int tIndex, int zIndex, int ymin,
+                int xmin) {
+            this.cacheId = cacheId;
+            this.varId = varId;
+            this.tIndex = tIndex;
+            this.zIndex = zIndex;
+            this.ymin = ymin;
+            this.xmin = xmin;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + cacheId.hashCode();
+            result = prime * result + varId.hashCode();
+            result = prime * result + tIndex;
+            result = prime * result + zIndex;
+            result = prime * result + ymin;
+            result = prime * result + xmin;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            ChunkKey other = (ChunkKey) obj;
+            return tIndex == other.tIndex && zIndex == other.zIndex && ymin == other.ymin
+                    && xmin == other.xmin && cacheId.equals(other.cacheId)
+                    && varId.equals(other.varId);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * A {@link GridDataSource} whose underlying data is stored in chunks (e.g.
+ * NetCDF-4 / HDF5 chunked storage). Reads which are aligned to the storage
+ * chunks avoid decompressing the same chunk more than once. This is used by
+ * {@link DataReadingStrategy#CHUNK_ALIGNED}.
+ * 
+ * All arrays returned by this interface are in the order t, z, y, x, with
+ * missing axes having a size of 1.
+ * 
+ * @author agent
+ */
+public interface ChunkedGridDataSource extends GridDataSource {
+    /**
+     * @param variableId
+     *            The ID of the variable
+     * @return The shape of a storage chunk of the given variable, or
+     *         <code>null</code> if the variable is not stored in chunks
+     * @throws DataReadingException
+     *             If there is a problem reading the storage layout
+     */
+    public int[] getChunkShape(String variableId) throws DataReadingException;
+
+    /**
+     * @param variableId
+     *            The ID of the variable
+     * @return The full shape of the given variable
+     * @throws DataReadingException
+     *             If there is a problem reading the variable
+     */
+    public int[] getShape(String variableId) throws DataReadingException;
+
+    /**
+     * @return An identifier for the underlying data, which is the same for
+     *         every {@link ChunkedGridDataSource} reading the same data. This
+     *         is used to share cached chunks between data sources, so it must
+     *         change if the underlying data changes. May be <code>null</code>,
+     *         in which case chunks will not be cached between reads.
+     */
+    public String getCacheId();
+}
@@ -0,0 +1,744 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.InflaterInputStream;
+
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.opengis.metadata.extent.GeographicBoundingBox;
+
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore.FeatureEntry;
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore.FeatureType;
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore.Footer;
+import uk.ac.rdg.resc.edal.dataset.ColumnarFeatureStore.RowGroup;
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
+import uk.ac.rdg.resc.edal.feature.PointSeriesFeature;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.geometry.BoundingBoxImpl;
+import uk.ac.rdg.resc.edal.grid.TimeAxisImpl;
+import uk.ac.rdg.resc.edal.grid.VerticalAxis;
+import uk.ac.rdg.resc.edal.grid.VerticalAxisImpl;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+import uk.ac.rdg.resc.edal.position.VerticalCrs;
+import uk.ac.rdg.resc.edal.position.VerticalPosition;
+import uk.ac.rdg.resc.edal.util.Array1D;
+import uk.ac.rdg.resc.edal.util.Extents;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+import uk.ac.rdg.resc.edal.util.ValuesArray1D;
+
+/**
+ * Reads features from a {@link ColumnarFeatureStore}. This acts as both the
+ * {@link DiscreteFeatureReader} and the {@link FeatureIndex} of a dataset,
+ * so that spatial, temporal and variable constraints are applied to the
+ * statistics of each row group before any data is read:
+ * <ul>
+ * <li>{@link #findFeatureIds(BoundingBox, Extent, Extent, Collection)} only
+ * examines the features of row groups whose extents overlap the query, and
+ * which contain all of the requested variables</li>
+ * <li>{@link #readFeatures(Collection, Set)} only reads the columns of the
+ * requested variables, from the row groups containing the requested
+ * features. Row groups are read in parallel.</li>
+ * </ul>
+ *
+ * @param <F>
+ *            The type of {@link DiscreteFeature} in the store - either
+ *            {@link ProfileFeature} or {@link PointSeriesFeature}
+ * 
+ * @author agent
+ */
+public class ColumnarFeatureReader<F extends DiscreteFeature<?, ?>>
+        implements DiscreteFeatureReader<F>, FeatureIndex {
+    private static final long serialVersionUID = 1L;
+
+    private final File file;
+    /*
+     * The footer is loaded when first needed, so that this reader can be
+     * serialised cheaply
+     */
+    private transient Footer footer;
+    private transient Map<String, FeatureEntry> entries;
+    private transient Map<String, Integer> varIndices;
+
+    /**
+     * Opens a columnar store
+     * 
+     * @param file
+     *            The file containing the store
+     * @throws IOException
+     *             If the file does not exist, or is not a valid store
+     */
+    public ColumnarFeatureReader(File file) throws IOException {
+        this.file = file;
+        getFooter();
+    }
+
+    /**
+     * @return The file containing the store
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The key describing the source data which the store was created
+     *         from. This may be <code>null</code>
+     */
+    public String getSourceKey() {
+        return footer().sourceKey;
+    }
+
+    /**
+     * @return The {@link Parameter}s of the variables in the store
+     */
+    public List<Parameter> getParameters() {
+        return Collections.unmodifiableList(footer().parameters);
+    }
+
+    /**
+     * @return <code>true</code> if the store contains {@link ProfileFeature}s,
+     *         <code>false</code> if it contains {@link PointSeriesFeature}s
+     */
+    public boolean containsProfiles() {
+        return footer().featureType != FeatureType.POINT_SERIES;
+    }
+
+    /**
+     * @return The {@link VerticalCrs} of the features in the store, or
+     *         <code>null</code> if they have no vertical component
+     */
+    public VerticalCrs getVerticalCrs() {
+        return footer().verticalCrs;
+    }
+
+    /**
+     * @return The horizontal extent of all features in the store, in WGS84,
+     *         or <code>null</code> if the store is empty
+     */
+    public BoundingBox getBoundingBox() {
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (RowGroup rowGroup : footer().rowGroups) {
+            minX = Math.min(minX, rowGroup.minX);
+            maxX = Math.max(maxX, rowGroup.maxX);
+            minY = Math.min(minY, rowGroup.minY);
+            maxY = Math.max(maxY, rowGroup.maxY);
+        }
+        if (minX > maxX) {
+            return null;
+        }
+        return new BoundingBoxImpl(minX, minY, maxX, maxY, GISUtils.defaultGeographicCRS());
+    }
+
+    /**
+     * @return The vertical extent of all features in the store, or
+     *         <code>null</code> if they have no vertical component
+     */
+    public Extent<Double> getVerticalExtent() {
+        double minZ = Double.MAX_VALUE;
+        double maxZ = -Double.MAX_VALUE;
+        for (FeatureEntry entry : footer().features) {
+            if (entry.minZ <= entry.maxZ) {
+                minZ = Math.min(minZ, entry.minZ);
+                maxZ = Math.max(maxZ, entry.maxZ);
+            }
+        }
+        if (minZ > maxZ) {
+            return null;
+        }
+        return Extents.newExtent(minZ, maxZ);
+    }
+
+    /**
+     * @return The time extent of all features in the store, or
+     *         <code>null</code> if they have no time component
+     */
+    public Extent<DateTime> getTimeExtent() {
+        long minT = Long.MAX_VALUE;
+        long maxT = Long.MIN_VALUE;
+        for (FeatureEntry entry : footer().features) {
+            if (hasTime(entry)) {
+                minT = Math.min(minT, entry.minT);
+                maxT = Math.max(maxT, entry.maxT);
+            }
+        }
+        if (minT > maxT) {
+            return null;
+        }
+        return Extents.newExtent(new DateTime(minT, getChronology()),
+                new DateTime(maxT, getChronology()));
+    }
+
+    @Override
+    public Collection<String> findFeatureIds(BoundingBox horizontalExtent,
+            Extent<Double> verticalExtent, Extent<DateTime> timeExtent,
+            Collection<String> variableIds) {
+        /*
+         * Features are stored in WGS84, so transform the bounding box in the
+         * same way as MappedFeatureIndexer
+         */
+        if (!GISUtils.isWgs84LonLat(horizontalExtent.getCoordinateReferenceSystem())) {
+            GeographicBoundingBox geographicBoundingBox = GISUtils
+                    .toGeographicBoundingBox(horizontalExtent);
+            horizontalExtent = new BoundingBoxImpl(geographicBoundingBox.getWestBoundLongitude(),
+                    geographicBoundingBox.getSouthBoundLatitude(),
+                    geographicBoundingBox.getEastBoundLongitude(),
+                    geographicBoundingBox.getNorthBoundLatitude(), GISUtils.defaultGeographicCRS());
+        }
+        horizontalExtent = PRTreeFeatureIndexer
+                .moveBoundingBoxToConstrainMinTo180(horizontalExtent);
+
+        Query query = new Query(horizontalExtent, verticalExtent, timeExtent);
+        Collection<String> featureIds = new LinkedHashSet<>();
+        int[] queryVars = getQueryVariables(variableIds);
+        if (queryVars == null) {
+            /*
+             * We have a variable which no features contain
+             */
+            return featureIds;
+        }
+
+        Footer footer = footer();
+        for (RowGroup rowGroup : getMatchingRowGroups(query, queryVars)) {
+            for (int f = rowGroup.firstFeature; f < rowGroup.firstFeature
+                    + rowGroup.nFeatures; f++) {
+                FeatureEntry entry = footer.features.get(f);
+                if (query.matches(entry) && containsAll(entry.varIndices, queryVars)) {
+                    featureIds.add(entry.id);
+                }
+            }
+        }
+        return featureIds;
+    }
+
+    /**
+     * Finds the row groups which may contain features matching a query. This
+     * uses only the statistics of the row groups, not their features.
+     * 
+     * @param query
+     *            The {@link Query} to match
+     * @param queryVars
+     *            The indices of the variables which must be present
+     * @return The row groups which cannot be ruled out
+     */
+    List<RowGroup> getMatchingRowGroups(Query query, int[] queryVars) {
+        List<RowGroup> ret = new ArrayList<>();
+        rowGroups: for (RowGroup rowGroup : footer().rowGroups) {
+            if (!query.matches(rowGroup)) {
+                continue;
+            }
+            for (int varIndex : queryVars) {
+                if (rowGroup.getVariablePosition(varIndex) < 0) {
+                    continue rowGroups;
+                }
+            }
+            ret.add(rowGroup);
+        }
+        return ret;
+    }
+
+    @Override
+    public Set<String> getAllFeatureIds() {
+        return Collections.unmodifiableSet(entries().keySet());
+    }
+
+    @Override
+    public F readFeature(String id, Set<String> variableIds) throws DataReadingException {
+        List<F> features = readFeatures(Collections.singleton(id), variableIds);
+        return features.isEmpty() ? null : features.get(0);
+    }
+
+    @Override
+    public List<F> readFeatures(Collection<String> ids, Set<String> variableIds)
+            throws DataReadingException {
+        return readFeatures(ids, variableIds, false, null);
+    }
+
+    @Override
+    public List<F> readFeatures(Collection<String> ids, Set<String> variableIds,
+            Extent<Double> zExtent, Double targetZ) throws DataReadingException {
+        return readFeatures(ids, variableIds, containsProfiles(), targetZ);
+    }
+
+    private List<F> readFeatures(Collection<String> ids, Set<String> variableIds,
+            final boolean singleLevel, final Double targetZ) throws DataReadingException {
+        Footer footer = footer();
+        Map<String, FeatureEntry> entries = entries();
+
+        /*
+         * The variables to read. Unknown variables are ignored.
+         */
+        final List<Integer> readVars = new ArrayList<>();
+        if (variableIds == null) {
+            for (int v = 0; v < footer.parameters.size(); v++) {
+                readVars.add(v);
+            }
+        } else {
+            for (String varId : variableIds) {
+                Integer varIndex = varIndices().get(varId);
+                if (varIndex != null) {
+                    readVars.add(varIndex);
+                }
+            }
+        }
+
+        /*
+         * Group the features by row group, so that each row group is read once
+         */
+        Map<Integer, List<FeatureEntry>> rowGroup2Entries = new TreeMap<>();
+        for (String id : ids) {
+            FeatureEntry entry = entries.get(id);
+            if (entry != null) {
+                List<FeatureEntry> rowGroupEntries = rowGroup2Entries.get(entry.rowGroup);
+                if (rowGroupEntries == null) {
+                    rowGroupEntries = new ArrayList<>();
+                    rowGroup2Entries.put(entry.rowGroup, rowGroupEntries);
+                }
+                rowGroupEntries.add(entry);
+            }
+        }
+
+        Map<String, F> features = new HashMap<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            /*
+             * Positional reads on a FileChannel are safe from multiple threads
+             */
+            final FileChannel channel = raf.getChannel();
+            if (rowGroup2Entries.size() < 2 || DataReadExecutor.isReadThread()) {
+                for (Entry<Integer, List<FeatureEntry>> entry : rowGroup2Entries.entrySet()) {
+                    features.putAll(readRowGroup(channel, footer.rowGroups.get(entry.getKey()),
+                            entry.getValue(), readVars, singleLevel, targetZ));
+                }
+            } else {
+                List<CompletableFuture<Map<String, F>>> futures = new ArrayList<>();
+                for (final Entry<Integer, List<FeatureEntry>> entry : rowGroup2Entries
+                        .entrySet()) {
+                    final RowGroup rowGroup = footer.rowGroups.get(entry.getKey());
+                    futures.add(DataReadExecutor.submit(() -> readRowGroup(channel, rowGroup,
+                            entry.getValue(), readVars, singleLevel, targetZ)));
+                }
+                try {
+                    for (CompletableFuture<Map<String, F>> future : futures) {
+                        features.putAll(future.get());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DataReadingException("Interrupted whilst reading columnar store "
+                            + file, e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new DataReadingException("Problem reading columnar store " + file,
+                            cause);
+                } finally {
+                    /*
+                     * Any reads which are still waiting are no longer needed,
+                     * but reads which have started must finish before the
+                     * file is closed
+                     */
+                    for (CompletableFuture<Map<String, F>> future : futures) {
+                        DataReadExecutor.cancelAndWait(future);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new DataReadingException("Problem reading columnar store " + file, e);
+        }
+
+        /*
+         * Return the features in the order they were requested
+         */
+        List<F> ret = new ArrayList<>();
+        for (String id : ids) {
+            F feature = features.get(id);
+            if (feature != null) {
+                ret.add(feature);
+            }
+        }
+        return ret;
+    }
+
+    /*
+     * Reads the requested features from a single row group, reading only the
+     * columns of the requested variables
+     */
+    private Map<String, F> readRowGroup(FileChannel channel, RowGroup rowGroup,
+            List<FeatureEntry> rowGroupEntries, List<Integer> readVars, boolean singleLevel,
+            Double targetZ) throws IOException {
+        Footer footer = footer();
+        double[] z = readDoubles(channel, rowGroup, ColumnarFeatureStore.Z_COLUMN);
+        long[] t = readLongs(channel, rowGroup, ColumnarFeatureStore.T_COLUMN);
+        Map<Integer, double[]> columns = new HashMap<>();
+        for (Integer varIndex : readVars) {
+            int position = rowGroup.getVariablePosition(varIndex);
+            if (position >= 0) {
+                columns.put(varIndex, readDoubles(channel, rowGroup,
+                        ColumnarFeatureStore.N_COORDINATE_COLUMNS + position));
+            }
+        }
+
+        Chronology chronology = getChronology();
+        Map<String, F> ret = new HashMap<>();
+        for (FeatureEntry entry : rowGroupEntries) {
+            HorizontalPosition hPos = new HorizontalPosition(entry.x, entry.y,
+                    GISUtils.defaultGeographicCRS());
+            Map<String, Parameter> parameters = new HashMap<>();
+            Map<String, double[]> featureColumns = new HashMap<>();
+            for (int varIndex : entry.varIndices) {
+                double[] column = columns.get(varIndex);
+                if (column != null) {
+                    Parameter parameter = footer.parameters.get(varIndex);
+                    parameters.put(parameter.getVariableId(), parameter);
+                    featureColumns.put(parameter.getVariableId(), column);
+                }
+            }
+
+            DiscreteFeature<?, ?> feature;
+            if (footer.featureType == FeatureType.POINT_SERIES) {
+                List<DateTime> times = new ArrayList<>();
+                for (int i = 0; i < entry.nRows; i++) {
+                    times.add(new DateTime(t[entry.firstRow + i], chronology));
+                }
+                double zValue = entry.nRows > 0 ? z[entry.firstRow] : Double.NaN;
+                VerticalPosition zPos = Double.isNaN(zValue) ? null
+                        : new VerticalPosition(zValue, footer.verticalCrs);
+                feature = new PointSeriesFeature(entry.id, entry.name, entry.description,
+                        new TimeAxisImpl("Time axis for " + entry.id, times), hPos, zPos,
+                        parameters, getValues(featureColumns, entry.firstRow, entry.nRows));
+            } else {
+                List<Double> levels = new ArrayList<>();
+                for (int i = 0; i < entry.nRows; i++) {
+                    levels.add(z[entry.firstRow + i]);
+                }
+                VerticalAxis domain = new VerticalAxisImpl("Depth axis of profile", levels,
+                        footer.verticalCrs);
+                int firstRow = entry.firstRow;
+                int nRows = entry.nRows;
+                if (singleLevel) {
+                    /*
+                     * Choose the level in the same way as
+                     * PointDataset.convertProfileFeature()
+                     */
+                    int zIndex;
+                    if (targetZ == null) {
+                        zIndex = domain
+                                .findIndexOf(GISUtils.getClosestElevationToSurface(domain));
+                    } else {
+                        zIndex = GISUtils.getIndexOfClosestElevationTo(targetZ, domain);
+                    }
+                    if (zIndex < 0) {
+                        continue;
+                    }
+                    domain = new VerticalAxisImpl("Depth axis of profile",
+                            Collections.singletonList(levels.get(zIndex)), footer.verticalCrs);
+                    firstRow += zIndex;
+                    nRows = 1;
+                }
+                DateTime time = hasTime(entry) ? new DateTime(entry.minT, chronology) : null;
+                feature = new ProfileFeature(entry.id, entry.name, entry.description, domain,
+                        hPos, time, parameters, getValues(featureColumns, firstRow, nRows));
+            }
+            feature.getFeatureProperties().putAll(entry.properties);
+
+            @SuppressWarnings("unchecked")
+            F typedFeature = (F) feature;
+            ret.put(entry.id, typedFeature);
+        }
+        return ret;
+    }
+
+    private static Map<String, Array1D<Number>> getValues(Map<String, double[]> columns,
+            int firstRow, int nRows) {
+        Map<String, Array1D<Number>> values = new HashMap<>();
+        for (Entry<String, double[]> column : columns.entrySet()) {
+            Array1D<Number> varValues = new ValuesArray1D(nRows);
+            for (int i = 0; i < nRows; i++) {
+                double value = column.getValue()[firstRow + i];
+                varValues.set(Double.isNaN(value) ? null : value, i);
+            }
+            values.put(column.getKey(), varValues);
+        }
+        return values;
+    }
+
+    private static DataInputStream openColumn(FileChannel channel, RowGroup rowGroup, int column)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(rowGroup.columnLengths[column]);
+        long position = rowGroup.columnOffsets[column];
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of columnar store");
+            }
+        }
+        return new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(buffer.array())));
+    }
+
+    private static double[] readDoubles(FileChannel channel, RowGroup rowGroup, int column)
+            throws IOException {
+        double[] values = new double[rowGroup.nRows];
+        try (DataInputStream in = openColumn(channel, rowGroup, column)) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readDouble();
+            }
+        }
+        return values;
+    }
+
+    private static long[] readLongs(FileChannel channel, RowGroup rowGroup, int column)
+            throws IOException {
+        long[] values = new long[rowGroup.nRows];
+        try (DataInputStream in = openColumn(channel, rowGroup, column)) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readLong();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Converts variable IDs to their indices in the store
+     * 
+     * @param variableIds
+     *            The variable IDs. May be <code>null</code>
+     * @return The indices of the variables, or <code>null</code> if any of
+     *         the variables are not in the store
+     */
+    int[] getQueryVariables(Collection<String> variableIds) {
+        if (variableIds == null) {
+            return new int[0];
+        }
+        int[] ret = new int[variableIds.size()];
+        int i = 0;
+        for (String varId : variableIds) {
+            Integer varIndex = varIndices().get(varId);
+            if (varIndex == null) {
+                return null;
+            }
+            ret[i++] = varIndex;
+        }
+        return ret;
+    }
+
+    private static boolean containsAll(int[] varIndices, int[] required) {
+        outer: for (int r : required) {
+            for (int v : varIndices) {
+                if (v == r) {
+                    continue outer;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean hasTime(FeatureEntry entry) {
+        /*
+         * Profiles without a time are stored with the minimum time
+         */
+        return entry.minT <= entry.maxT && entry.maxT != Long.MIN_VALUE;
+    }
+
+    private Chronology getChronology() {
+        Chronology chronology = footer().chronology;
+        return chronology == null ? ISOChronology.getInstanceUTC() : chronology;
+    }
+
+    private Footer footer() {
+        try {
+            return getFooter();
+        } catch (IOException e) {
+            throw new DataReadingException("Problem reading columnar store " + file, e);
+        }
+    }
+
+    private synchronized Footer getFooter() throws IOException {
+        if (footer != null) {
+            return footer;
+        }
+        Footer footer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            if (length < 8 + ColumnarFeatureStore.TRAILER_SIZE
+                    || raf.readInt() != ColumnarFeatureStore.MAGIC) {
+                throw new IOException(file + " is not a columnar feature store");
+            }
+            int version = raf.readInt();
+            if (version != ColumnarFeatureStore.VERSION) {
+                throw new IOException("Columnar feature store " + file + " has version "
+                        + version + ", but only version " + ColumnarFeatureStore.VERSION
+                        + " is supported");
+            }
+            raf.seek(length - ColumnarFeatureStore.TRAILER_SIZE);
+            long footerOffset = raf.readLong();
+            if (raf.readInt() != ColumnarFeatureStore.MAGIC || footerOffset < 8
+                    || footerOffset > length - ColumnarFeatureStore.TRAILER_SIZE) {
+                throw new IOException("Columnar feature store " + file + " is incomplete");
+            }
+            byte[] footerBytes = new byte[(int) (length - ColumnarFeatureStore.TRAILER_SIZE
+                    - footerOffset)];
+            raf.seek(footerOffset);
+            raf.readFully(footerBytes);
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new ByteArrayInputStream(footerBytes))) {
+                footer = (Footer) in.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Columnar feature store " + file + " has an invalid footer",
+                        e);
+            }
+        }
+
+        Map<String, FeatureEntry> entries = new HashMap<>();
+        for (FeatureEntry entry : footer.features) {
+            entries.put(entry.id, entry);
+        }
+        Map<String, Integer> varIndices = new HashMap<>();
+        for (int v = 0; v < footer.parameters.size(); v++) {
+            varIndices.put(footer.parameters.get(v).getVariableId(), v);
+        }
+        this.entries = entries;
+        this.varIndices = varIndices;
+        this.footer = footer;
+        return footer;
+    }
+
+    private Map<String, FeatureEntry> entries() {
+        footer();
+        return entries;
+    }
+
+    private Map<String, Integer> varIndices() {
+        footer();
+        return varIndices;
+    }
+
+    /*
+     * A query against the extents of row groups and features
+     */
+    static final class Query {
+        private final double minX;
+        private final double maxX;
+        private final double minY;
+        private final double maxY;
+        private final double minZ;
+        private final double maxZ;
+        private final long minT;
+        private final long maxT;
+
+        /**
+         * @param bbox
+         *            A WGS84 bounding box with its minimum x-value in the range
+         *            [-180,180]
+         * @param zExtent
+         *            The vertical extent. May be <code>null</code>
+         * @param tExtent
+         *            The time extent. May be <code>null</code>
+         */
+        Query(BoundingBox bbox, Extent<Double> zExtent, Extent<DateTime> tExtent) {
+            if (bbox.getMaxX() > 540) {
+                /*
+                 * We have a bounding box that spans the date line at both ends
+                 */
+                minX = -180;
+                maxX = 180;
+            } else {
+                minX = bbox.getMinX();
+                maxX = bbox.getMaxX();
+            }
+            minY = bbox.getMinY();
+            maxY = bbox.getMaxY();
+            minZ = zExtent == null ? -Double.MAX_VALUE : zExtent.getLow();
+            maxZ = zExtent == null ? Double.MAX_VALUE : zExtent.getHigh();
+            minT = tExtent == null ? Long.MIN_VALUE : tExtent.getLow().getMillis();
+            maxT = tExtent == null ? Long.MAX_VALUE : tExtent.getHigh().getMillis();
+        }
+
+        boolean matches(RowGroup rowGroup) {
+            return matchesX(rowGroup.minX, rowGroup.maxX) && rowGroup.minY <= maxY
+                    && rowGroup.maxY >= minY && matchesZ(rowGroup.minZ, rowGroup.maxZ)
+                    && rowGroup.minT <= maxT && rowGroup.maxT >= minT;
+        }
+
+        boolean matches(FeatureEntry entry) {
+            return matchesX(entry.x, entry.x) && entry.y <= maxY && entry.y >= minY
+                    && matchesZ(entry.minZ, entry.maxZ)
+                    && (!hasTime(entry) || (entry.minT <= maxT && entry.maxT >= minT));
+        }
+
+        private boolean matchesX(double low, double high) {
+            if (maxX > 180) {
+                /*
+                 * The query crosses the date line, so is split into
+                 * [minX,180] and [-180,maxX-360]
+                 */
+                return (high >= minX && low <= 180) || (low <= maxX - 360 && high >= -180);
+            }
+            return high >= minX && low <= maxX;
+        }
+
+        private boolean matchesZ(double low, double high) {
+            /*
+             * Features with no vertical position match any vertical extent
+             */
+            return low > high || (low <= maxZ && high >= minZ);
+        }
+    }
+}
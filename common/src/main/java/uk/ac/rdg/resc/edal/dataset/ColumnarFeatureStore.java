@@ -0,0 +1,927 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
+import uk.ac.rdg.resc.edal.feature.PointSeriesFeature;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+import uk.ac.rdg.resc.edal.position.VerticalCrs;
+import uk.ac.rdg.resc.edal.position.VerticalPosition;
+import uk.ac.rdg.resc.edal.util.Array;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+/**
+ * A local, columnar copy of the {@link ProfileFeature}s or
+ * {@link PointSeriesFeature}s of a {@link PointDataset}. This allows datasets
+ * whose features are slow to read from their original source (e.g. large
+ * collections of NetCDF or XML files) to be read from a single file, using a
+ * {@link ColumnarFeatureReader}.
+ * 
+ * Each measurement in a feature is stored as a row. Rows are grouped into row
+ * groups of (approximately) {@link #setRowGroupSize(int) a fixed size}, and
+ * within each row group every coordinate and variable is stored as a separate
+ * compressed column, so that only the variables which are needed have to be
+ * read. Features are sorted by location and then time before being written,
+ * so that each row group covers a small area. The minimum and maximum of each
+ * coordinate and variable in every row group are stored in the footer of the
+ * file, which allows readers to skip row groups which cannot match a query.
+ * 
+ * The file layout is:
+ * <ul>
+ * <li>A header: a magic number and format version</li>
+ * <li>The columns of each row group, each compressed with Deflate</li>
+ * <li>A footer, containing the parameters, row group statistics and feature
+ * table, written with Java serialisation</li>
+ * <li>A trailer: the offset of the footer, and the magic number</li>
+ * </ul>
+ * 
+ * Stores are written to a temporary file which is only moved into place once
+ * complete, so a store is never seen partially written. {@link DatasetFactory}s
+ * ingest datasets {@link #ingestInBackground(PointDataset, String) in the
+ * background}, reading from the original source until the store is ready.
+ * 
+ * @author agent
+ */
+public final class ColumnarFeatureStore {
+    private static final Logger log = LoggerFactory.getLogger(ColumnarFeatureStore.class);
+
+    static final int MAGIC = 0x45444346;
+    /*
+     * Increment this if the format of the store changes
+     */
+    static final int VERSION = 1;
+    /*
+     * The offset of the footer (a long) and the magic number (an int)
+     */
+    static final int TRAILER_SIZE = 12;
+
+    /*
+     * The columns which every row group has, before the variable columns
+     */
+    static final int Z_COLUMN = 0;
+    static final int T_COLUMN = 1;
+    static final int N_COORDINATE_COLUMNS = 2;
+
+    private static final String STORE_DIR = "columns";
+    private static final String SUFFIX = ".columns";
+
+    /*
+     * The number of features read at once when ingesting a dataset
+     */
+    private static final int INGEST_BATCH_SIZE = 10000;
+
+    private static boolean enabled = false;
+    private static int rowGroupSize = 8192;
+
+    /*
+     * Datasets are ingested one at a time, on a single background thread
+     */
+    private static final ExecutorService ingester = Executors
+            .newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "edal-columnar-ingest");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /*
+     * The most recent ingest of each dataset
+     */
+    private static final Map<String, PendingIngest> pendingIngests = new HashMap<>();
+
+    private ColumnarFeatureStore() {
+    }
+
+    /**
+     * Sets whether {@link DatasetFactory}s which support it should ingest
+     * their datasets into columnar stores, and read features from them. This
+     * is off by default, since ingesting a large dataset takes a long time and
+     * needs a lot of disk space.
+     * 
+     * @param enabled
+     *            Whether to use columnar stores
+     */
+    public static void setEnabled(boolean enabled) {
+        ColumnarFeatureStore.enabled = enabled;
+    }
+
+    /**
+     * @return Whether {@link DatasetFactory}s should use columnar stores
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the number of rows in each row group of newly written stores.
+     * Smaller row groups can be pruned more precisely, but mean more reads.
+     * Features are never split between row groups, so row groups can be
+     * larger than this.
+     * 
+     * @param rowGroupSize
+     *            The target number of rows in each row group
+     */
+    public static void setRowGroupSize(int rowGroupSize) {
+        if (rowGroupSize < 1) {
+            throw new IllegalArgumentException("Row groups must contain at least one row");
+        }
+        ColumnarFeatureStore.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * Gets the location of the columnar store for a dataset
+     * 
+     * @param datasetId
+     *            The ID of the dataset
+     * @return The file in the working directory of the {@link DatasetFactory}s
+     *         which holds the store for the given dataset, or
+     *         <code>null</code> if there is no working directory
+     */
+    public static File getStoreFile(String datasetId) {
+        if (datasetId == null) {
+            return null;
+        }
+        return WorkingFiles.getFile(STORE_DIR, datasetId + SUFFIX);
+    }
+
+    /**
+     * Generates a key describing the current state of a set of source files.
+     * This is stored in each columnar store so that readers can tell whether
+     * the store is still current.
+     * 
+     * @param files
+     *            The files which a store was (or would be) created from
+     * @return A key which changes if any of the files are added, removed or
+     *         modified
+     */
+    public static String getSourceKey(Collection<File> files) {
+        List<String> entries = new ArrayList<>();
+        for (File file : files) {
+            entries.add(file.getAbsolutePath() + "|" + file.lastModified() + "|" + file.length());
+        }
+        Collections.sort(entries);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String entry : entries) {
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /*
+             * All Java platforms must support SHA-1
+             */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Opens the columnar store of a dataset as a {@link PointDataset}, if
+     * columnar stores are {@link #setEnabled(boolean) enabled} and the store
+     * was written from the current source data.
+     * 
+     * @param datasetId
+     *            The ID of the dataset
+     * @param sourceKey
+     *            A key describing the current source data (see
+     *            {@link #getSourceKey(Collection)})
+     * @return A {@link PointDataset} reading from the store, or
+     *         <code>null</code> if there is no usable store for the dataset
+     */
+    public static <F extends DiscreteFeature<?, ?>> PointDataset<F> openDataset(
+            String datasetId, String sourceKey) {
+        File file = getStoreFile(datasetId);
+        if (!enabled || file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            ColumnarFeatureReader<F> reader = new ColumnarFeatureReader<>(file);
+            if (sourceKey != null && sourceKey.equals(reader.getSourceKey())) {
+                log.debug("Reading dataset " + datasetId + " from columnar store " + file);
+                return new ColumnarPointDataset<>(datasetId, reader);
+            }
+            log.debug("Columnar store " + file + " is out of date");
+        } catch (IOException | DataReadingException e) {
+            /*
+             * Log this error, but otherwise ignore it - the store will be
+             * recreated
+             */
+            log.warn("Problem reading columnar store " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Ingests a dataset into its columnar store in the background. Creating a
+     * dataset is never held up by ingesting it: the new store is used the next
+     * time the dataset is created (see {@link #openDataset(String, String)}).
+     * 
+     * Datasets are ingested one at a time. If the same source data is already
+     * waiting to be ingested, no new ingest is started, and any waiting ingest
+     * of older source data for the same dataset is cancelled.
+     * 
+     * @param dataset
+     *            The {@link PointDataset} to ingest
+     * @param sourceKey
+     *            A key describing the current source data (see
+     *            {@link #getSourceKey(Collection)})
+     * @return A {@link Future} which completes once the ingest has finished
+     *         (whether or not it succeeded), or <code>null</code> if columnar
+     *         stores are not {@link #setEnabled(boolean) enabled}
+     */
+    public static Future<?> ingestInBackground(final PointDataset<?> dataset,
+            final String sourceKey) {
+        final File file = getStoreFile(dataset.getId());
+        if (!enabled || file == null) {
+            return null;
+        }
+        synchronized (pendingIngests) {
+            PendingIngest pending = pendingIngests.get(dataset.getId());
+            if (pending != null && !pending.future.isDone()) {
+                if (sourceKey != null && sourceKey.equals(pending.sourceKey)) {
+                    return pending.future;
+                }
+                /*
+                 * This only cancels the ingest if it hasn't started. If it
+                 * has, it will write a store which is already out of date,
+                 * and this one will replace it.
+                 */
+                pending.future.cancel(false);
+            }
+            Future<?> future = ingester.submit(() -> {
+                try {
+                    ingest(dataset, file, sourceKey);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Unable to write columnar store for dataset " + dataset.getId()
+                            + ".  Reading from the original source instead", e);
+                }
+            });
+            pendingIngests.put(dataset.getId(), new PendingIngest(sourceKey, future));
+            return future;
+        }
+    }
+
+    /**
+     * Waits for any background ingest of a dataset to finish
+     * 
+     * @param datasetId
+     *            The ID of the dataset
+     * @throws InterruptedException
+     *             If the thread is interrupted whilst waiting
+     */
+    public static void awaitIngest(String datasetId) throws InterruptedException {
+        while (true) {
+            PendingIngest pending;
+            synchronized (pendingIngests) {
+                pending = pendingIngests.get(datasetId);
+            }
+            if (pending == null) {
+                return;
+            }
+            try {
+                pending.future.get();
+                return;
+            } catch (CancellationException e) {
+                /*
+                 * This ingest was replaced by a newer one, so wait for that
+                 */
+            } catch (ExecutionException e) {
+                /*
+                 * Failed ingests have already been logged
+                 */
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes all of the features of a {@link PointDataset} to a columnar
+     * store. Features are read from the dataset's {@link DiscreteFeatureReader}
+     * in batches, so that the whole dataset does not need to be held in
+     * memory. Each batch is sorted by location and time separately.
+     * 
+     * @param dataset
+     *            The {@link PointDataset} to ingest. Its features must be
+     *            {@link ProfileFeature}s or {@link PointSeriesFeature}s
+     * @param file
+     *            The file to write the store to
+     * @param sourceKey
+     *            A key describing the source data (see
+     *            {@link #getSourceKey(Collection)}). May be <code>null</code>
+     * @throws IOException
+     *             If there is a problem writing the store
+     * @throws DataReadingException
+     *             If there is a problem reading features from the dataset
+     */
+    public static void ingest(PointDataset<?> dataset, File file, String sourceKey)
+            throws IOException, DataReadingException {
+        long t1 = System.currentTimeMillis();
+        List<String> ids = new ArrayList<>(dataset.getFeatureIds());
+        Collections.sort(ids);
+        DiscreteFeatureReader<?> reader = dataset.getFeatureReader();
+
+        Writer writer = new Writer(file, sourceKey);
+        boolean complete = false;
+        try {
+            for (int i = 0; i < ids.size(); i += INGEST_BATCH_SIZE) {
+                writer.add(reader.readFeatures(
+                        ids.subList(i, Math.min(i + INGEST_BATCH_SIZE, ids.size())), null));
+            }
+            writer.close();
+            complete = true;
+        } finally {
+            if (!complete) {
+                writer.abort();
+            }
+        }
+        log.debug("Ingested " + ids.size() + " features from dataset " + dataset.getId()
+                + " into " + file + " in " + ((System.currentTimeMillis() - t1) / 1000.0) + "s");
+    }
+
+    /**
+     * Writes features to a columnar store. Features are written in batches
+     * with {@link #add(Collection)}, and the store is only moved into place
+     * once {@link #close()} is called.
+     */
+    public static final class Writer implements Closeable {
+        private final File file;
+        private final File tmpFile;
+        private final DataOutputStream out;
+        private final Footer footer;
+        private final Map<String, Integer> varIndices = new HashMap<>();
+        private long position;
+        private boolean closed = false;
+
+        /**
+         * @param file
+         *            The file to write the store to
+         * @param sourceKey
+         *            A key describing the source data (see
+         *            {@link ColumnarFeatureStore#getSourceKey(Collection)}).
+         *            May be <code>null</code>
+         * @throws IOException
+         *             If the file cannot be created
+         */
+        public Writer(File file, String sourceKey) throws IOException {
+            this.file = file;
+            tmpFile = WorkingFiles.createTempFile(file);
+            try {
+                out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            } catch (IOException e) {
+                tmpFile.delete();
+                throw e;
+            }
+            position = 8;
+            footer = new Footer(sourceKey);
+        }
+
+        /**
+         * Adds a batch of features to the store. The features are sorted by
+         * location and time, and written as one or more row groups.
+         * 
+         * @param features
+         *            The features to add. These must all be
+         *            {@link ProfileFeature}s, or all be
+         *            {@link PointSeriesFeature}s. <code>null</code> entries are
+         *            ignored.
+         * @throws IOException
+         *             If there is a problem writing the features
+         */
+        public void add(Collection<? extends DiscreteFeature<?, ?>> features) throws IOException {
+            List<FeatureRows> batch = new ArrayList<>();
+            for (DiscreteFeature<?, ?> feature : features) {
+                if (feature != null) {
+                    batch.add(toRows(feature));
+                }
+            }
+            Collections.sort(batch);
+
+            List<FeatureRows> group = new ArrayList<>();
+            int nRows = 0;
+            for (FeatureRows rows : batch) {
+                group.add(rows);
+                nRows += rows.z.length;
+                if (nRows >= rowGroupSize) {
+                    writeRowGroup(group);
+                    group.clear();
+                    nRows = 0;
+                }
+            }
+            if (!group.isEmpty()) {
+                writeRowGroup(group);
+            }
+        }
+
+        /**
+         * Writes the footer and moves the store into place
+         * 
+         * @throws IOException
+         *             If there is a problem writing the footer, or moving the store
+         *             into place
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                try {
+                    long footerOffset = position;
+                    ObjectOutputStream footerOut = new ObjectOutputStream(out);
+                    footerOut.writeObject(footer);
+                    footerOut.flush();
+                    out.writeLong(footerOffset);
+                    out.writeInt(MAGIC);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                tmpFile.delete();
+                throw e;
+            }
+            WorkingFiles.moveIntoPlace(tmpFile, file);
+            log.debug("Wrote " + footer.features.size() + " features in "
+                    + footer.rowGroups.size() + " row groups to " + file);
+        }
+
+        /**
+         * Abandons writing the store, removing the partially-written file
+         */
+        public void abort() {
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                /*
+                 * We are deleting the file anyway
+                 */
+            }
+            tmpFile.delete();
+        }
+
+        private FeatureRows toRows(DiscreteFeature<?, ?> feature) {
+            FeatureEntry entry = new FeatureEntry();
+            entry.id = feature.getId();
+            entry.name = feature.getName();
+            entry.description = feature.getDescription();
+            for (Entry<Object, Object> property : feature.getFeatureProperties().entrySet()) {
+                entry.properties.put(property.getKey().toString(),
+                        property.getValue().toString());
+            }
+
+            HorizontalPosition hPos;
+            double[] z;
+            long[] t;
+            if (feature instanceof ProfileFeature) {
+                ProfileFeature profile = (ProfileFeature) feature;
+                checkType(FeatureType.PROFILE);
+                hPos = profile.getHorizontalPosition();
+                List<Double> levels = profile.getDomain().getCoordinateValues();
+                z = new double[levels.size()];
+                t = new long[levels.size()];
+                long time = profile.getTime() == null ? Long.MIN_VALUE
+                        : profile.getTime().getMillis();
+                for (int i = 0; i < z.length; i++) {
+                    z[i] = levels.get(i);
+                    t[i] = time;
+                }
+                if (footer.verticalCrs == null) {
+                    footer.verticalCrs = profile.getDomain().getVerticalCrs();
+                }
+                if (footer.chronology == null && profile.getTime() != null) {
+                    footer.chronology = profile.getTime().getChronology();
+                }
+            } else if (feature instanceof PointSeriesFeature) {
+                PointSeriesFeature series = (PointSeriesFeature) feature;
+                checkType(FeatureType.POINT_SERIES);
+                hPos = series.getHorizontalPosition();
+                List<DateTime> times = series.getDomain().getCoordinateValues();
+                VerticalPosition zPos = series.getVerticalPosition();
+                z = new double[times.size()];
+                t = new long[times.size()];
+                for (int i = 0; i < z.length; i++) {
+                    z[i] = zPos == null ? Double.NaN : zPos.getZ();
+                    t[i] = times.get(i).getMillis();
+                }
+                if (footer.verticalCrs == null && zPos != null) {
+                    footer.verticalCrs = zPos.getCoordinateReferenceSystem();
+                }
+                if (footer.chronology == null && !times.isEmpty()) {
+                    footer.chronology = times.get(0).getChronology();
+                }
+            } else {
+                throw new IllegalArgumentException("Only profile and point series features "
+                        + "can be written to a columnar store, not " + feature.getClass());
+            }
+
+            /*
+             * All positions are stored in WGS84, with longitudes in the range
+             * (-180,180]
+             */
+            if (!GISUtils.isDefaultGeographicCRS(hPos.getCoordinateReferenceSystem())) {
+                hPos = GISUtils.transformPosition(hPos, GISUtils.defaultGeographicCRS());
+            }
+            entry.x = GISUtils.constrainLongitude180(hPos.getX());
+            entry.y = hPos.getY();
+
+            FeatureRows rows = new FeatureRows(entry, z, t);
+            for (String varId : feature.getVariableIds()) {
+                Integer varIndex = varIndices.get(varId);
+                if (varIndex == null) {
+                    varIndex = footer.parameters.size();
+                    varIndices.put(varId, varIndex);
+                    footer.parameters.add(feature.getParameter(varId));
+                }
+                Array<Number> values = feature.getValues(varId);
+                double[] column = new double[z.length];
+                for (int i = 0; i < column.length; i++) {
+                    Number value = values.get(i);
+                    column[i] = value == null ? Double.NaN : value.doubleValue();
+                }
+                rows.values.put(varIndex, column);
+            }
+            entry.varIndices = new int[rows.values.size()];
+            int i = 0;
+            for (Integer varIndex : new TreeSet<>(rows.values.keySet())) {
+                entry.varIndices[i++] = varIndex;
+            }
+            return rows;
+        }
+
+        private void checkType(FeatureType type) {
+            if (footer.featureType == null) {
+                footer.featureType = type;
+            } else if (footer.featureType != type) {
+                throw new IllegalArgumentException(
+                        "A columnar store can only contain one type of feature");
+            }
+        }
+
+        private void writeRowGroup(List<FeatureRows> group) throws IOException {
+            RowGroup rowGroup = new RowGroup();
+            rowGroup.firstFeature = footer.features.size();
+            rowGroup.nFeatures = group.size();
+
+            SortedSet<Integer> groupVars = new TreeSet<>();
+            for (FeatureRows rows : group) {
+                rowGroup.nRows += rows.z.length;
+                groupVars.addAll(rows.values.keySet());
+            }
+            rowGroup.varIndices = new int[groupVars.size()];
+            int v = 0;
+            for (Integer varIndex : groupVars) {
+                rowGroup.varIndices[v++] = varIndex;
+            }
+
+            /*
+             * Build the columns and their statistics
+             */
+            double[] z = new double[rowGroup.nRows];
+            long[] t = new long[rowGroup.nRows];
+            double[][] values = new double[rowGroup.varIndices.length][rowGroup.nRows];
+            rowGroup.validCounts = new int[rowGroup.varIndices.length];
+            rowGroup.minValues = new double[rowGroup.varIndices.length];
+            rowGroup.maxValues = new double[rowGroup.varIndices.length];
+            for (v = 0; v < values.length; v++) {
+                rowGroup.minValues[v] = Double.NaN;
+                rowGroup.maxValues[v] = Double.NaN;
+            }
+
+            int row = 0;
+            for (FeatureRows rows : group) {
+                FeatureEntry entry = rows.entry;
+                entry.rowGroup = footer.rowGroups.size();
+                entry.firstRow = row;
+                entry.nRows = rows.z.length;
+                rowGroup.minX = Math.min(rowGroup.minX, entry.x);
+                rowGroup.maxX = Math.max(rowGroup.maxX, entry.x);
+                rowGroup.minY = Math.min(rowGroup.minY, entry.y);
+                rowGroup.maxY = Math.max(rowGroup.maxY, entry.y);
+                for (int i = 0; i < entry.nRows; i++) {
+                    z[row + i] = rows.z[i];
+                    t[row + i] = rows.t[i];
+                    if (!Double.isNaN(rows.z[i])) {
+                        entry.minZ = Math.min(entry.minZ, rows.z[i]);
+                        entry.maxZ = Math.max(entry.maxZ, rows.z[i]);
+                    }
+                    entry.minT = Math.min(entry.minT, rows.t[i]);
+                    entry.maxT = Math.max(entry.maxT, rows.t[i]);
+                }
+                if (entry.minZ > entry.maxZ) {
+                    /*
+                     * This feature has no vertical position, so it matches
+                     * any vertical extent
+                     */
+                    rowGroup.minZ = -Double.MAX_VALUE;
+                    rowGroup.maxZ = Double.MAX_VALUE;
+                } else {
+                    rowGroup.minZ = Math.min(rowGroup.minZ, entry.minZ);
+                    rowGroup.maxZ = Math.max(rowGroup.maxZ, entry.maxZ);
+                }
+                if (entry.maxT == Long.MIN_VALUE) {
+                    /*
+                     * This profile has no time, so it matches any time extent
+                     */
+                    rowGroup.minT = Long.MIN_VALUE;
+                    rowGroup.maxT = Long.MAX_VALUE;
+                } else {
+                    rowGroup.minT = Math.min(rowGroup.minT, entry.minT);
+                    rowGroup.maxT = Math.max(rowGroup.maxT, entry.maxT);
+                }
+
+                for (v = 0; v < rowGroup.varIndices.length; v++) {
+                    double[] featureValues = rows.values.get(rowGroup.varIndices[v]);
+                    for (int i = 0; i < entry.nRows; i++) {
+                        double value = featureValues == null ? Double.NaN : featureValues[i];
+                        values[v][row + i] = value;
+                        if (!Double.isNaN(value)) {
+                            rowGroup.validCounts[v]++;
+                            if (!(value >= rowGroup.minValues[v])) {
+                                rowGroup.minValues[v] = value;
+                            }
+                            if (!(value <= rowGroup.maxValues[v])) {
+                                rowGroup.maxValues[v] = value;
+                            }
+                        }
+                    }
+                }
+                footer.features.add(entry);
+                row += entry.nRows;
+            }
+
+            /*
+             * Now write the columns
+             */
+            int nColumns = N_COORDINATE_COLUMNS + values.length;
+            rowGroup.columnOffsets = new long[nColumns];
+            rowGroup.columnLengths = new int[nColumns];
+            writeColumn(rowGroup, Z_COLUMN, encode(z));
+            writeColumn(rowGroup, T_COLUMN, encode(t));
+            for (v = 0; v < values.length; v++) {
+                writeColumn(rowGroup, N_COORDINATE_COLUMNS + v, encode(values[v]));
+            }
+            footer.rowGroups.add(rowGroup);
+        }
+
+        private void writeColumn(RowGroup rowGroup, int column, byte[] bytes) throws IOException {
+            rowGroup.columnOffsets[column] = position;
+            rowGroup.columnLengths[column] = bytes.length;
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        private static byte[] encode(double[] values) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DataOutputStream column = new DataOutputStream(
+                    new DeflaterOutputStream(bytes, deflater, 8192))) {
+                for (double value : values) {
+                    column.writeDouble(value);
+                }
+            } finally {
+                deflater.end();
+            }
+            return bytes.toByteArray();
+        }
+
+        private static byte[] encode(long[] values) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DataOutputStream column = new DataOutputStream(
+                    new DeflaterOutputStream(bytes, deflater, 8192))) {
+                for (long value : values) {
+                    column.writeLong(value);
+                }
+            } finally {
+                deflater.end();
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /*
+     * An ingest which has been submitted, and the source data it is for
+     */
+    private static final class PendingIngest {
+        private final String sourceKey;
+        private final Future<?> future;
+
+        public PendingIngest(String sourceKey, Future<?> future) {
+            this.sourceKey = sourceKey;
+            this.future = future;
+        }
+    }
+
+    /*
+     * The rows of a single feature, waiting to be written. These are sorted by
+     * a space-filling curve through their position, and then by time.
+     */
+    private static final class FeatureRows implements Comparable<FeatureRows> {
+        private final FeatureEntry entry;
+        private final double[] z;
+        private final long[] t;
+        private final Map<Integer, double[]> values = new HashMap<>();
+        private final long locationKey;
+
+        public FeatureRows(FeatureEntry entry, double[] z, long[] t) {
+            this.entry = entry;
+            this.z = z;
+            this.t = t;
+            locationKey = mortonCode(entry.x, entry.y);
+        }
+
+        @Override
+        public int compareTo(FeatureRows other) {
+            int ret = Long.compare(locationKey, other.locationKey);
+            if (ret == 0) {
+                ret = Long.compare(t.length == 0 ? Long.MIN_VALUE : t[0],
+                        other.t.length == 0 ? Long.MIN_VALUE : other.t[0]);
+            }
+            if (ret == 0) {
+                ret = entry.id.compareTo(other.entry.id);
+            }
+            return ret;
+        }
+
+        /*
+         * Interleaves the bits of the longitude and latitude, quantised to 16
+         * bits each, so that nearby positions have nearby keys
+         */
+        private static long mortonCode(double x, double y) {
+            long qx = Math.max(0, Math.min(65535, (long) ((x + 180.0) / 360.0 * 65535)));
+            long qy = Math.max(0, Math.min(65535, (long) ((y + 90.0) / 180.0 * 65535)));
+            long code = 0;
+            for (int bit = 0; bit < 16; bit++) {
+                code |= ((qx >> bit) & 1L) << (2 * bit);
+                code |= ((qy >> bit) & 1L) << (2 * bit + 1);
+            }
+            return code;
+        }
+    }
+
+    /*
+     * The types of feature which can be stored
+     */
+    enum FeatureType {
+        PROFILE, POINT_SERIES
+    }
+
+    /*
+     * The footer of a store, containing everything except the data columns
+     */
+    static final class Footer implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String sourceKey;
+        final long created = System.currentTimeMillis();
+        FeatureType featureType;
+        VerticalCrs verticalCrs;
+        Chronology chronology;
+        final List<Parameter> parameters = new ArrayList<>();
+        final List<RowGroup> rowGroups = new ArrayList<>();
+        /*
+         * Features are in the same order as their rows, so the features of
+         * each row group are contiguous
+         */
+        final List<FeatureEntry> features = new ArrayList<>();
+
+        Footer(String sourceKey) {
+            this.sourceKey = sourceKey;
+        }
+    }
+
+    /*
+     * The location and statistics of a row group
+     */
+    static final class RowGroup implements Serializable {
+        private static final long serialVersionUID = 1L;
+        int nRows;
+        int firstFeature;
+        int nFeatures;
+        /*
+         * The variables which have columns in this row group, in column order
+         */
+        int[] varIndices;
+        long[] columnOffsets;
+        int[] columnLengths;
+
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        double minZ = Double.MAX_VALUE;
+        double maxZ = -Double.MAX_VALUE;
+        long minT = Long.MAX_VALUE;
+        long maxT = Long.MIN_VALUE;
+        /*
+         * The number of non-missing values, and their range, for each variable
+         */
+        int[] validCounts;
+        double[] minValues;
+        double[] maxValues;
+
+        /**
+         * @param varIndex
+         *            The index of a variable in the store
+         * @return The position of the variable in this row group's variables,
+         *         or -1 if this row group has no values for it
+         */
+        int getVariablePosition(int varIndex) {
+            for (int v = 0; v < varIndices.length; v++) {
+                if (varIndices[v] == varIndex) {
+                    return validCounts[v] > 0 ? v : -1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /*
+     * The metadata of a single feature, and the location of its rows
+     */
+    static final class FeatureEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String id;
+        String name;
+        String description;
+        final Map<String, String> properties = new HashMap<>();
+        double x;
+        double y;
+        double minZ = Double.MAX_VALUE;
+        double maxZ = -Double.MAX_VALUE;
+        long minT = Long.MAX_VALUE;
+        long maxT = Long.MIN_VALUE;
+        int[] varIndices;
+        int rowGroup;
+        int firstRow;
+        int nRows;
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.domain.SimpleHorizontalDomain;
+import uk.ac.rdg.resc.edal.domain.SimpleTemporalDomain;
+import uk.ac.rdg.resc.edal.domain.SimpleVerticalDomain;
+import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
+import uk.ac.rdg.resc.edal.feature.PointFeature;
+import uk.ac.rdg.resc.edal.feature.PointSeriesFeature;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.geometry.BoundingBoxImpl;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.metadata.VariableMetadata;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+/**
+ * A {@link PointDataset} whose features are read from a
+ * {@link ColumnarFeatureStore}. The {@link ColumnarFeatureReader} is used both
+ * to find and to read features, and the metadata of the dataset is taken from
+ * the store, so the original source data is not needed.
+ *
+ * @param <F>
+ *            The type of {@link DiscreteFeature} in the store - either
+ *            {@link ProfileFeature} or {@link PointSeriesFeature}
+ * 
+ * @author agent
+ */
+public class ColumnarPointDataset<F extends DiscreteFeature<?, ?>> extends PointDataset<F> {
+    private static final long serialVersionUID = 1L;
+    private final ColumnarFeatureReader<F> reader;
+
+    /**
+     * @param id
+     *            The ID of the dataset
+     * @param reader
+     *            The {@link ColumnarFeatureReader} for the store containing
+     *            the features of the dataset
+     */
+    public ColumnarPointDataset(String id, ColumnarFeatureReader<F> reader) {
+        this(id, reader, getBoundingBox(reader), reader.getVerticalExtent(),
+                reader.getTimeExtent());
+    }
+
+    private ColumnarPointDataset(String id, ColumnarFeatureReader<F> reader, BoundingBox bbox,
+            Extent<Double> zExtent, Extent<DateTime> tExtent) {
+        super(id, getMetadata(reader, bbox, zExtent, tExtent), reader, bbox, zExtent, tExtent);
+        this.reader = reader;
+    }
+
+    private static BoundingBox getBoundingBox(ColumnarFeatureReader<?> reader) {
+        BoundingBox bbox = reader.getBoundingBox();
+        if (bbox == null) {
+            /*
+             * The store is empty
+             */
+            bbox = new BoundingBoxImpl(-180, -90, 180, 90, GISUtils.defaultGeographicCRS());
+        }
+        return bbox;
+    }
+
+    private static List<VariableMetadata> getMetadata(ColumnarFeatureReader<?> reader,
+            BoundingBox bbox, Extent<Double> zExtent, Extent<DateTime> tExtent) {
+        SimpleHorizontalDomain hDomain = new SimpleHorizontalDomain(bbox);
+        SimpleVerticalDomain zDomain = zExtent == null || reader.getVerticalCrs() == null ? null
+                : new SimpleVerticalDomain(zExtent, reader.getVerticalCrs());
+        SimpleTemporalDomain tDomain = tExtent == null ? null
+                : new SimpleTemporalDomain(tExtent);
+        List<VariableMetadata> metadata = new ArrayList<>();
+        for (Parameter parameter : reader.getParameters()) {
+            metadata.add(new VariableMetadata(parameter, hDomain, zDomain, tDomain));
+        }
+        return metadata;
+    }
+
+    @Override
+    public Class<? extends DiscreteFeature<?, ?>> getFeatureType(String variableId) {
+        return reader.containsProfiles() ? ProfileFeature.class : PointSeriesFeature.class;
+    }
+
+    @Override
+    public DiscreteFeatureReader<F> getFeatureReader() {
+        return reader;
+    }
+
+    @Override
+    public boolean supportsProfileFeatureExtraction(String varId) {
+        return reader.containsProfiles();
+    }
+
+    @Override
+    public boolean supportsTimeseriesExtraction(String varId) {
+        return !reader.containsProfiles();
+    }
+
+    @Override
+    protected PointFeature convertFeature(F feature, BoundingBox hExtent,
+            Extent<Double> zExtent, Extent<DateTime> tExtent, Double targetZ, DateTime targetT) {
+        if (feature instanceof ProfileFeature) {
+            return convertProfileFeature((ProfileFeature) feature, targetZ);
+        } else {
+            return convertPointSeriesFeature((PointSeriesFeature) feature, targetT);
+        }
+    }
+}
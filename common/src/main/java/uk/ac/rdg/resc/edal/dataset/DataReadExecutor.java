@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * A bounded pool of threads used for asynchronous data reading - see
+ * {@link GridDataSource#readAsync(String, int, int, int, int, int, int, int, int)}.
+ * 
+ * Reads are returned as {@link CompletableFuture}s. Cancelling one of these
+ * before the read has started means that it will never be run. Reads which
+ * have already started cannot be cancelled, and run to completion, since
+ * interrupting a thread part way through reading from a file can leave the
+ * file closed for all other users of it. Callers which are about to close the
+ * data being read should use {@link #cancelAndWait(CompletableFuture)}.
+ * 
+ * The number of threads limits the number of reads which can be in progress
+ * at once, and the queue of waiting reads is also bounded, so that a burst of
+ * requests cannot use up all available memory. Once the queue is full, new
+ * reads fail immediately with a {@link RejectedExecutionException}.
+ * 
+ * @author agent
+ */
+public final class DataReadExecutor {
+    private static final Logger log = LoggerFactory.getLogger(DataReadExecutor.class);
+
+    private static final int DEFAULT_THREADS = Math.max(2,
+            Runtime.getRuntime().availableProcessors());
+    private static final int MAX_QUEUED_READS = 1000;
+    private static final String THREAD_NAME_PREFIX = "edal-data-reader-";
+
+    private static final AtomicInteger threadCount = new AtomicInteger(0);
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_THREADS,
+            DEFAULT_THREADS, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(MAX_QUEUED_READS), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                            THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * A read operation to run asynchronously
+     * 
+     * @param <T>
+     *            The type of data returned by the read
+     */
+    @FunctionalInterface
+    public interface ReadTask<T> {
+        public T read() throws IOException, DataReadingException;
+    }
+
+    private DataReadExecutor() {
+    }
+
+    /**
+     * Sets the maximum number of reads which can run at once
+     * 
+     * @param maxThreads
+     *            The maximum number of threads used for reading data
+     */
+    public static void setMaxThreads(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed to read data");
+        }
+        log.debug("Setting number of data reading threads to " + maxThreads);
+        /*
+         * The order matters, since the core size cannot be larger than the
+         * maximum size
+         */
+        if (maxThreads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(maxThreads);
+            executor.setCorePoolSize(maxThreads);
+        } else {
+            executor.setCorePoolSize(maxThreads);
+            executor.setMaximumPoolSize(maxThreads);
+        }
+    }
+
+    /**
+     * @return The maximum number of reads which can run at once
+     */
+    public static int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return Whether the current thread is one of the data reading threads.
+     *         Code which may run on these threads should read synchronously
+     *         rather than waiting for other reads, since otherwise all of the
+     *         threads could end up waiting for reads which can never start.
+     */
+    public static boolean isReadThread() {
+        return Thread.currentThread().getName().startsWith(THREAD_NAME_PREFIX);
+    }
+
+    /**
+     * Runs a read operation on the data reading threads
+     * 
+     * @param task
+     *            The {@link ReadTask} to run
+     * @return A {@link CompletableFuture} which will complete with the result
+     *         of the read, or exceptionally if the read fails or there are too
+     *         many reads waiting. Cancelling this will stop the read if it has
+     *         not yet started. Once the read has started it cannot be
+     *         cancelled.
+     */
+    public static <T> CompletableFuture<T> submit(final ReadTask<T> task) {
+        final ReadFuture<T> ret = new ReadFuture<>(task);
+        try {
+            executor.execute(ret.read);
+        } catch (RejectedExecutionException e) {
+            log.warn("Too many data reads waiting - rejecting read");
+            ret.completeExceptionally(e);
+        }
+        return ret;
+    }
+
+    /**
+     * Cancels a read if it has not yet started, and otherwise waits for it to
+     * finish, ignoring its result. This should be used when a read is no
+     * longer needed, but the resources it uses (e.g. an open
+     * {@link DataSource}) are about to be closed.
+     * 
+     * If the current thread is interrupted whilst waiting, it continues to
+     * wait, and the interrupt status is preserved.
+     * 
+     * @param future
+     *            A {@link CompletableFuture} returned from
+     *            {@link #submit(ReadTask)}. May be <code>null</code>.
+     */
+    public static void cancelAndWait(CompletableFuture<?> future) {
+        if (future == null || future.cancel(false)) {
+            return;
+        }
+        try {
+            future.join();
+        } catch (CancellationException | CompletionException e) {
+            /*
+             * The result is not needed
+             */
+        }
+    }
+
+    /*
+     * A CompletableFuture which can only be cancelled before its read starts,
+     * at which point it is removed from the queue
+     */
+    private static final class ReadFuture<T> extends CompletableFuture<T> {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final Runnable read;
+
+        private ReadFuture(final ReadTask<T> task) {
+            read = new Runnable() {
+                @Override
+                public void run() {
+                    if (!state.compareAndSet(WAITING, RUNNING)) {
+                        /*
+                         * Cancelled whilst waiting to run
+                         */
+                        return;
+                    }
+                    try {
+                        complete(task.read());
+                    } catch (Throwable e) {
+                        completeExceptionally(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return isCancelled();
+            }
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            /*
+             * Removes the read from the queue, so that it no longer counts
+             * towards the maximum number of waiting reads
+             */
+            executor.remove(read);
+            return cancelled;
+        }
+    }
+}
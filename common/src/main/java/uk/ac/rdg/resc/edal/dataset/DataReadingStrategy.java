@@ -28,11 +28,16 @@
 package uk.ac.rdg.resc.edal.dataset;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.h2.store.DataReader;
 
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
 import uk.ac.rdg.resc.edal.dataset.DomainMapper.DomainMapperEntry;
 import uk.ac.rdg.resc.edal.dataset.DomainMapper.Scanline;
 import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
@@ -111,6 +116,41 @@ import uk.ac.rdg.resc.edal.util.ValuesArray2D;
  * there are much fewer individual read operations than in Strategy 1.
  * </p>
  * <img src="doc-files/pixelmap_scanline.png">
+ * <p>
+ * When the source grid is much finer than the output, consecutive scanlines are
+ * often neighbouring rows covering much the same range of i indices, and
+ * reading them separately just multiplies the overhead of each read. The
+ * {@link #COALESCED_SCANLINE coalesced-scanline} strategy merges such
+ * scanlines into a single rectangular read, as long as this does not read too
+ * many unneeded data points - see {@link ScanlineCoalescer}.
+ * </p>
+ * 
+ * <h3>Strategy 4: Read whole storage chunks</h3>
+ * <p>
+ * Compressed data (e.g. NetCDF-4 / HDF5) is stored in chunks, each of which
+ * must be decompressed in its entirety, however little of it is needed. Both
+ * of the previous strategies can therefore decompress the same chunk many
+ * times - once per scanline, and again for each adjacent map tile.
+ * </p>
+ * <p>
+ * For data sources which implement {@link ChunkedGridDataSource}, this strategy
+ * reads each storage chunk which contains required data points exactly once,
+ * and keeps the decompressed chunks in a {@link ChunkCache} which is shared
+ * between all requests. This is the {@link #CHUNK_ALIGNED chunk-aligned}
+ * strategy. For other data sources it is the same as the
+ * {@link #BOUNDING_BOX bounding-box} strategy.
+ * </p>
+ * 
+ * <h3>Choosing a strategy for each read</h3>
+ * <p>
+ * Which of these is quickest depends on the request as well as on the data: a
+ * zoomed-out map needs most of the points in its bounding box, whereas a thin
+ * diagonal section needs very few of them. The {@link #ADAPTIVE adaptive}
+ * strategy estimates the cost of each of the above for every read, using the
+ * number of read operations and the number of values each would need, and
+ * uses the cheapest. The costs per operation and per value are adjusted from
+ * the measured times of previous reads from the same data.
+ * </p>
  * 
  * @author Jon
  * @author Guy Griffiths
@@ -126,26 +166,40 @@ public enum DataReadingStrategy {
         @Override
         public Array2D<Number> readMapData(GridDataSource dataSource, String varId, int tIndex,
                 int zIndex, Domain2DMapper domainMapper) throws IOException, DataReadingException {
-            Array2D<Number> ret = new ValuesArray2D(domainMapper.getTargetYSize(),
-                    domainMapper.getTargetXSize());
+            return readMapData(dataSource, Collections.singletonList(varId), tIndex, zIndex,
+                    domainMapper).get(0);
+        }
 
-            Iterator<Scanline<int[]>> it = domainMapper.scanlineIterator();
-            while (it.hasNext()) {
-                Scanline<int[]> scanline = it.next();
-                List<DomainMapperEntry<int[]>> entries = scanline.getPixelMapEntries();
+        @Override
+        public List<Array2D<Number>> readMapData(GridDataSource dataSource, List<String> varIds,
+                int tIndex, int zIndex, Domain2DMapper domainMapper)
+                throws IOException, DataReadingException {
+            List<Array2D<Number>> ret = newTargetArrays(varIds.size(), domainMapper);
+            if (domainMapper.isEmpty()) {
+                return ret;
+            }
 
-                int j = scanline.getSourceGridJIndex();
-                int imin = entries.get(0).getSourceGridIIndex();
-                int imax = entries.get(entries.size() - 1).getSourceGridIIndex();
+            /*
+             * Reused for each scanline. No scanline is wider than the bounding
+             * box, so we reserve memory for that (and the same again for the
+             * data source to read into) once.
+             */
+            int maxWidth = domainMapper.getMaxIIndex() - domainMapper.getMinIIndex() + 1;
+            try (MemoryBudget.Reservation reservation = MemoryBudget
+                    .reserveForRead(2L * varIds.size() * maxWidth * 4)) {
+                BlockReader reader = new BlockReader(dataSource, varIds, tIndex, zIndex);
+                Iterator<Scanline<int[]>> it = domainMapper.scanlineIterator();
+                while (it.hasNext()) {
+                    Scanline<int[]> scanline = it.next();
+                    List<DomainMapperEntry<int[]>> entries = scanline.getPixelMapEntries();
 
-                Array4D<Number> data = dataSource.read(varId, tIndex, tIndex, zIndex, zIndex, j, j,
-                        imin, imax);
+                    int j = scanline.getSourceGridJIndex();
+                    int imin = entries.get(0).getSourceGridIIndex();
+                    int imax = entries.get(entries.size() - 1).getSourceGridIIndex();
 
-                for (DomainMapperEntry<int[]> dme : entries) {
-                    List<int[]> targetGridPoints = dme.getTargetIndices();
-                    for (int[] targetPoint : targetGridPoints) {
-                        ret.set(data.get(0, 0, 0, dme.getSourceGridIIndex() - imin), new int[] {
-                                targetPoint[1], targetPoint[0] });
+                    reader.read(j, j, imin, imax);
+                    for (DomainMapperEntry<int[]> dme : entries) {
+                        reader.setValues(ret, dme.getSourceGridIIndex() - imin, dme);
                     }
                 }
             }
@@ -162,27 +216,16 @@ public enum DataReadingStrategy {
         @Override
         public Array2D<Number> readMapData(GridDataSource dataSource, String varId, int tIndex,
                 int zIndex, Domain2DMapper domainMapper) throws IOException, DataReadingException {
-            Array2D<Number> ret = new ValuesArray2D(domainMapper.getTargetYSize(),
-                    domainMapper.getTargetXSize());
-            if (domainMapper.isEmpty()) {
-                return ret;
-            }
-            int imin = domainMapper.getMinIIndex();
-            int imax = domainMapper.getMaxIIndex();
-            int jmin = domainMapper.getMinJIndex();
-            int jmax = domainMapper.getMaxJIndex();
-            Array4D<Number> data = dataSource.read(varId, tIndex, tIndex, zIndex, zIndex, jmin,
-                    jmax, imin, imax);
-            for (DomainMapperEntry<int[]> pme : domainMapper) {
-                List<int[]> targetGridPoints = pme.getTargetIndices();
-                Number value = data.get(0, 0, pme.getSourceGridJIndex() - jmin,
-                        pme.getSourceGridIIndex() - imin);
-                for (int[] targetPoint : targetGridPoints) {
-                    ret.set(value, new int[] { targetPoint[1],
-                            targetPoint[0] });
-                }
-            }
-            return ret;
+            return readMapData(dataSource, Collections.singletonList(varId), tIndex, zIndex,
+                    domainMapper).get(0);
+        }
+
+        @Override
+        public List<Array2D<Number>> readMapData(GridDataSource dataSource, List<String> varIds,
+                int tIndex, int zIndex, Domain2DMapper domainMapper)
+                throws IOException, DataReadingException {
+            return readBoundingBox(dataSource, varIds, tIndex, zIndex, domainMapper,
+                    MAX_ARRAY_SIZE);
         }
     },
 
@@ -196,6 +239,10 @@ public enum DataReadingStrategy {
                 int zIndex, Domain2DMapper domainMapper) throws IOException, DataReadingException {
             Array2D<Number> ret = new ValuesArray2D(domainMapper.getTargetYSize(),
                     domainMapper.getTargetXSize());
+            /*
+             * There is no advantage to using readFloats() for single values, so
+             * we read them as-is.
+             */
             for (DomainMapperEntry<int[]> pme : domainMapper) {
                 Array4D<Number> data = dataSource.read(varId, tIndex, tIndex, zIndex, zIndex,
                         pme.getSourceGridJIndex(), pme.getSourceGridJIndex(),
@@ -207,9 +254,392 @@ public enum DataReadingStrategy {
             }
             return ret;
         }
+    },
+
+    /**
+     * Reads whole storage chunks, caching them between requests. Recommended
+     * for chunked, compressed files such as NetCDF-4. Falls back to
+     * {@link #BOUNDING_BOX} if the data source is not a
+     * {@link ChunkedGridDataSource}, or the variable is not chunked. Since
+     * chunks are cached as <code>float</code>s, it also falls back for
+     * variables whose values are not all floats (see
+     * {@link GridDataSource#hasFloatValues(String)}).
+     */
+    CHUNK_ALIGNED {
+        @Override
+        public Array2D<Number> readMapData(GridDataSource dataSource, String varId, int tIndex,
+                int zIndex, Domain2DMapper domainMapper) throws IOException, DataReadingException {
+            if (!(dataSource instanceof ChunkedGridDataSource)
+                    || !dataSource.hasFloatValues(varId)) {
+                return BOUNDING_BOX.readMapData(dataSource, varId, tIndex, zIndex, domainMapper);
+            }
+            ChunkedGridDataSource chunkedDataSource = (ChunkedGridDataSource) dataSource;
+            int[] chunkShape = chunkedDataSource.getChunkShape(varId);
+            if (chunkShape == null) {
+                return BOUNDING_BOX.readMapData(dataSource, varId, tIndex, zIndex, domainMapper);
+            }
+            int[] shape = chunkedDataSource.getShape(varId);
+            int ySize = shape[2];
+            int xSize = shape[3];
+            int yChunkSize = chunkShape[2];
+            int xChunkSize = chunkShape[3];
+            int nXChunks = (xSize + xChunkSize - 1) / xChunkSize;
+
+            Array2D<Number> ret = new ValuesArray2D(domainMapper.getTargetYSize(),
+                    domainMapper.getTargetXSize());
+            /*
+             * The chunks used by this request, so that we only go to the shared
+             * cache once per chunk
+             */
+            Map<Integer, float[]> chunks = new HashMap<>();
+            for (DomainMapperEntry<int[]> pme : domainMapper) {
+                int i = pme.getSourceGridIIndex();
+                int j = pme.getSourceGridJIndex();
+                int xChunk = i / xChunkSize;
+                int yChunk = j / yChunkSize;
+                int xmin = xChunk * xChunkSize;
+                int ymin = yChunk * yChunkSize;
+                int xmax = Math.min(xmin + xChunkSize, xSize) - 1;
+                int ymax = Math.min(ymin + yChunkSize, ySize) - 1;
+
+                Integer chunkIndex = yChunk * nXChunks + xChunk;
+                float[] chunk = chunks.get(chunkIndex);
+                if (chunk == null) {
+                    chunk = ChunkCache.getChunk(chunkedDataSource, varId, tIndex, zIndex, ymin,
+                            ymax, xmin, xmax);
+                    chunks.put(chunkIndex, chunk);
+                }
+                setValue(ret, chunk[(j - ymin) * (xmax - xmin + 1) + (i - xmin)], pme);
+            }
+            return ret;
+        }
+    },
+
+    /**
+     * Reads scanlines of data, merging nearby scanlines into a single read when
+     * few unneeded data points would be read as a result. Falls back to reading
+     * individual scanlines where they are far apart. Recommended in place of
+     * {@link #SCANLINE} where the source data is of a higher resolution than
+     * the output.
+     */
+    COALESCED_SCANLINE {
+        @Override
+        public Array2D<Number> readMapData(GridDataSource dataSource, String varId, int tIndex,
+                int zIndex, Domain2DMapper domainMapper) throws IOException, DataReadingException {
+            return readMapData(dataSource, Collections.singletonList(varId), tIndex, zIndex,
+                    domainMapper).get(0);
+        }
+
+        @Override
+        public List<Array2D<Number>> readMapData(GridDataSource dataSource, List<String> varIds,
+                int tIndex, int zIndex, Domain2DMapper domainMapper)
+                throws IOException, DataReadingException {
+            List<Array2D<Number>> ret = newTargetArrays(varIds.size(), domainMapper);
+
+            /*
+             * The arrays read into are reused for each block. The memory
+             * reserved for them (and the same again for the data source to
+             * read into) grows with the largest block.
+             */
+            BlockReader reader = new BlockReader(dataSource, varIds, tIndex, zIndex);
+            int allocated = 0;
+            MemoryBudget.Reservation reservation = null;
+            try {
+                for (ScanlineCoalescer.Block block : ScanlineCoalescer.coalesce(domainMapper)) {
+                    int width = block.getWidth();
+                    int size = width * (block.jmax - block.jmin + 1);
+                    if (size > allocated) {
+                        if (reservation != null) {
+                            reservation.close();
+                        }
+                        reservation = MemoryBudget
+                                .reserveForRead(2L * varIds.size() * size * 4);
+                        allocated = size;
+                    }
+                    reader.read(block.jmin, block.jmax, block.imin, block.imax);
+
+                    for (Scanline<int[]> scanline : block.scanlines) {
+                        int rowOffset = (scanline.getSourceGridJIndex() - block.jmin) * width;
+                        for (DomainMapperEntry<int[]> dme : scanline.getPixelMapEntries()) {
+                            reader.setValues(ret,
+                                    rowOffset + dme.getSourceGridIIndex() - block.imin, dme);
+                        }
+                    }
+                }
+            } finally {
+                if (reservation != null) {
+                    reservation.close();
+                }
+            }
+            return ret;
+        }
+    },
+
+    /**
+     * Chooses one of the other strategies for each read, based on the shape of
+     * the data required and the measured cost of previous reads.
+     */
+    ADAPTIVE {
+        @Override
+        public Array2D<Number> readMapData(GridDataSource dataSource, String varId, int tIndex,
+                int zIndex, Domain2DMapper domainMapper) throws IOException, DataReadingException {
+            if (domainMapper.isEmpty()) {
+                return BOUNDING_BOX.readMapData(dataSource, varId, tIndex, zIndex, domainMapper);
+            }
+            ReadCostModel model = ReadCostModel.forDataSource(dataSource);
+            ReadCostModel.ReadPlan plan = model.choosePlan(dataSource, varId, domainMapper);
+            long start = System.nanoTime();
+            Array2D<Number> ret = plan.strategy.readMapData(dataSource, varId, tIndex, zIndex,
+                    domainMapper);
+            model.record(plan, System.nanoTime() - start);
+            return ret;
+        }
+
+        @Override
+        public List<Array2D<Number>> readMapData(GridDataSource dataSource, List<String> varIds,
+                int tIndex, int zIndex, Domain2DMapper domainMapper)
+                throws IOException, DataReadingException {
+            if (domainMapper.isEmpty() || varIds.isEmpty()) {
+                return BOUNDING_BOX.readMapData(dataSource, varIds, tIndex, zIndex,
+                        domainMapper);
+            }
+            /*
+             * All variables are read in the same way, so we plan for the first
+             * and record the average time taken per variable
+             */
+            ReadCostModel model = ReadCostModel.forDataSource(dataSource);
+            ReadCostModel.ReadPlan plan = model.choosePlan(dataSource, varIds.get(0),
+                    domainMapper);
+            long start = System.nanoTime();
+            List<Array2D<Number>> ret = plan.strategy.readMapData(dataSource, varIds, tIndex,
+                    zIndex, domainMapper);
+            model.record(plan, (System.nanoTime() - start) / varIds.size());
+            return ret;
+        }
     };
 
+    /*
+     * The largest array which can safely be allocated
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /*
+     * Reads the bounding box of the data needed by a Domain2DMapper. This is
+     * done in a single read unless the bounding box holds more than maxValues
+     * values, or more than will fit in the memory currently available from
+     * the MemoryBudget, in which case it is split into bands of whole rows.
+     */
+    static List<Array2D<Number>> readBoundingBox(GridDataSource dataSource,
+            List<String> varIds, int tIndex, int zIndex, Domain2DMapper domainMapper,
+            int maxValues) throws IOException, DataReadingException {
+        List<Array2D<Number>> ret = newTargetArrays(varIds.size(), domainMapper);
+        if (domainMapper.isEmpty()) {
+            return ret;
+        }
+        int imin = domainMapper.getMinIIndex();
+        int imax = domainMapper.getMaxIIndex();
+        int jmin = domainMapper.getMinJIndex();
+        int jmax = domainMapper.getMaxJIndex();
+        int width = imax - imin + 1;
+        if (width > maxValues) {
+            throw new DataReadingException("Cannot read " + width
+                    + " values from a single row into an array");
+        }
+        /*
+         * Each row needs memory for the float arrays, and the same again for
+         * the data source to read into. If not even one row fits in the
+         * memory available now, we read a row at a time and wait for memory
+         * to be released.
+         */
+        long rowBytes = 2L * varIds.size() * width * 4;
+        long budgetRows = Math.max(1L, MemoryBudget.getAvailableBytes() / rowBytes);
+        int bandHeight = (int) Math.min(Math.min((long) jmax - jmin + 1, maxValues / width),
+                budgetRows);
+        /*
+         * The entries are in order of source grid index, and so of j index,
+         * so a single pass over them covers the bands in turn
+         */
+        BlockReader reader = new BlockReader(dataSource, varIds, tIndex, zIndex);
+        Iterator<DomainMapperEntry<int[]>> it = domainMapper.iterator();
+        DomainMapperEntry<int[]> pme = it.next();
+        for (int bandMin = jmin; bandMin <= jmax; bandMin += bandHeight) {
+            int bandMax = Math.min(bandMin + bandHeight - 1, jmax);
+            try (MemoryBudget.Reservation reservation = MemoryBudget
+                    .reserveForRead(rowBytes * (bandMax - bandMin + 1))) {
+                reader.read(bandMin, bandMax, imin, imax);
+                while (pme != null && pme.getSourceGridJIndex() <= bandMax) {
+                    reader.setValues(ret, (pme.getSourceGridJIndex() - bandMin) * width
+                            + pme.getSourceGridIIndex() - imin, pme);
+                    pme = it.hasNext() ? it.next() : null;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Sets a value read from the source grid at all of the target points which
+     * it maps to. NaN values are treated as missing data.
+     */
+    private static void setValue(Array2D<Number> ret, float value,
+            DomainMapperEntry<int[]> pme) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+        Number boxedValue = value;
+        for (int[] targetPoint : pme.getTargetIndices()) {
+            ret.set(boxedValue, new int[] { targetPoint[1], targetPoint[0] });
+        }
+    }
+
+    /*
+     * Sets a value read as a Number at all of the target points which it maps
+     * to. Null values are treated as missing data.
+     */
+    private static void setValue(Array2D<Number> ret, Number value,
+            DomainMapperEntry<int[]> pme) {
+        if (value == null) {
+            return;
+        }
+        for (int[] targetPoint : pme.getTargetIndices()) {
+            ret.set(value, new int[] { targetPoint[1], targetPoint[0] });
+        }
+    }
+
+    /*
+     * Reads rectangular blocks of the source grid for several variables.
+     * Variables whose values are all floats (see
+     * GridDataSource.hasFloatValues()) are read together into reusable
+     * primitive arrays. Other variables are read as Numbers, so that no
+     * precision is lost.
+     */
+    private static final class BlockReader {
+        private final GridDataSource dataSource;
+        private final List<String> varIds;
+        private final int tIndex;
+        private final int zIndex;
+        private final List<String> floatVarIds = new ArrayList<>();
+        /*
+         * For each variable, its index in floatVarIds, or -1 if it is read as
+         * Numbers
+         */
+        private final int[] floatIndices;
+        private final float[][] floats;
+        private final List<Array4D<Number>> numbers;
+        private int width;
+
+        private BlockReader(GridDataSource dataSource, List<String> varIds, int tIndex,
+                int zIndex) throws DataReadingException {
+            this.dataSource = dataSource;
+            this.varIds = varIds;
+            this.tIndex = tIndex;
+            this.zIndex = zIndex;
+            floatIndices = new int[varIds.size()];
+            for (int v = 0; v < varIds.size(); v++) {
+                if (dataSource.hasFloatValues(varIds.get(v))) {
+                    floatIndices[v] = floatVarIds.size();
+                    floatVarIds.add(varIds.get(v));
+                } else {
+                    floatIndices[v] = -1;
+                }
+            }
+            floats = new float[floatVarIds.size()][0];
+            numbers = new ArrayList<>(Collections.nCopies(varIds.size(), null));
+        }
+
+        private void read(int jmin, int jmax, int imin, int imax)
+                throws IOException, DataReadingException {
+            width = imax - imin + 1;
+            if (!floatVarIds.isEmpty()) {
+                ensureSize(floats, width * (jmax - jmin + 1));
+                dataSource.readMany(floatVarIds, tIndex, tIndex, zIndex, zIndex, jmin, jmax,
+                        imin, imax, floats);
+            }
+            for (int v = 0; v < varIds.size(); v++) {
+                if (floatIndices[v] < 0) {
+                    numbers.set(v, dataSource.read(varIds.get(v), tIndex, tIndex, zIndex,
+                            zIndex, jmin, jmax, imin, imax));
+                }
+            }
+        }
+
+        /*
+         * Sets the values of all variables at the given index in the block
+         * which was last read (with x varying fastest) at all of the target
+         * points which the source point maps to
+         */
+        private void setValues(List<Array2D<Number>> ret, int index,
+                DomainMapperEntry<int[]> pme) {
+            for (int v = 0; v < ret.size(); v++) {
+                if (floatIndices[v] >= 0) {
+                    setValue(ret.get(v), floats[floatIndices[v]][index], pme);
+                } else {
+                    setValue(ret.get(v), numbers.get(v).get(0, 0, index / width, index % width),
+                            pme);
+                }
+            }
+        }
+    }
+
+    private static List<Array2D<Number>> newTargetArrays(int nVars, Domain2DMapper domainMapper) {
+        List<Array2D<Number>> ret = new ArrayList<>(nVars);
+        for (int v = 0; v < nVars; v++) {
+            ret.add(new ValuesArray2D(domainMapper.getTargetYSize(),
+                    domainMapper.getTargetXSize()));
+        }
+        return ret;
+    }
+
+    /*
+     * Grows each of a set of reusable arrays to at least the given size
+     */
+    private static void ensureSize(float[][] data, int size) {
+        for (int v = 0; v < data.length; v++) {
+            if (data[v].length < size) {
+                data[v] = new float[size];
+            }
+        }
+    }
+
     abstract public Array2D<Number> readMapData(GridDataSource dataSource, String varId,
             int tIndex, int zIndex, Domain2DMapper domainMapper) throws IOException,
             DataReadingException;
+
+    /**
+     * Reads data for several variables which share the same source grid, on
+     * the same target domain. The {@link Domain2DMapper} is walked once for all
+     * variables, and strategies which support it read each part of the source
+     * grid for all variables at once using
+     * {@link GridDataSource#readMany(List, int, int, int, int, int, int, int, int, float[][])}.
+     * Variables whose values are not all floats (see
+     * {@link GridDataSource#hasFloatValues(String)}) are read as {@link Number}s
+     * instead, so that they keep their precision.
+     * 
+     * @param dataSource
+     *            The {@link GridDataSource} to read from
+     * @param varIds
+     *            The IDs of the variables to read
+     * @param tIndex
+     *            The time index to read
+     * @param zIndex
+     *            The vertical index to read
+     * @param domainMapper
+     *            The {@link Domain2DMapper} mapping the source grid onto the
+     *            target domain
+     * @return A {@link List} containing an {@link Array2D} of data for each
+     *         variable, in the same order as the variable IDs
+     * @throws IOException
+     *             If there is an IO problem accessing the data
+     * @throws DataReadingException
+     *             If there is another issue reading the data
+     */
+    public List<Array2D<Number>> readMapData(GridDataSource dataSource, List<String> varIds,
+            int tIndex, int zIndex, Domain2DMapper domainMapper)
+            throws IOException, DataReadingException {
+        List<Array2D<Number>> ret = new ArrayList<>(varIds.size());
+        for (String varId : varIds) {
+            ret.add(readMapData(dataSource, varId, tIndex, zIndex, domainMapper));
+        }
+        return ret;
+    }
 }
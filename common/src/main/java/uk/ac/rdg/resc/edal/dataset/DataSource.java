@@ -38,4 +38,14 @@ public interface DataSource extends AutoCloseable {
      *             If the underlying data cannot be closed for some reason
      */
     public void close() throws DataReadingException;
+
+    /**
+     * @return Whether this {@link DataSource} can safely be read from by
+     *         several threads at once. If so, data for several variables may
+     *         be read concurrently. The default implementation returns
+     *         <code>false</code>, so implementations must opt in to this.
+     */
+    public default boolean supportsConcurrentReads() {
+        return false;
+    }
 }
@@ -74,6 +74,15 @@ public abstract class DatasetFactory {
         DatasetFactory.workingDir = workingDir;
     }
 
+    /**
+     * @return The default working directory which {@link DatasetFactory}
+     *         subclasses (and their helpers) can use to store data, or
+     *         <code>null</code> if none has been set
+     */
+    public static File getWorkingDirectory() {
+        return workingDir;
+    }
+
     /**
      * Gets a {@link DatasetFactory} from the class name
      * 
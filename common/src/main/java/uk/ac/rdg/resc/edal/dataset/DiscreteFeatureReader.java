@@ -32,8 +32,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import uk.ac.rdg.resc.edal.domain.Extent;
 import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
 import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
 
 /**
  * Defines an interface for reading {@link DiscreteFeature}s. This is used for
@@ -90,4 +92,38 @@ public interface DiscreteFeatureReader<F extends DiscreteFeature<?, ?>> {
      */
     public List<F> readFeatures(Collection<String> ids, Set<String> variableIds)
             throws DataReadingException;
+
+    /**
+     * Reads {@link DiscreteFeature}s from the underlying data source, for use
+     * in a map at a given elevation (see
+     * {@link PointDataset#convertProfileFeature(ProfileFeature, Double)}).
+     * 
+     * Readers of {@link ProfileFeature}s which can read individual levels
+     * efficiently may return profiles which only contain the level closest to
+     * the target elevation (or the level closest to the surface if no target
+     * is given), rather than reading the whole profile. Other levels within
+     * the vertical extent may also be included. The default implementation
+     * reads whole features with
+     * {@link DiscreteFeatureReader#readFeatures(Collection, Set)}.
+     * 
+     * @param ids
+     *            The identifier of the features within their collection.
+     * @param variableIds
+     *            The variables which must be included in the feature. If this
+     *            argument is <code>null</code> then all available variables
+     *            should be included
+     * @param zExtent
+     *            The vertical extent of the map. This may be <code>null</code>
+     * @param targetZ
+     *            The target elevation of the map. This may be
+     *            <code>null</code>, in which case the level closest to the
+     *            surface is required.
+     * @return A {@link List} of {@link DiscreteFeature}s containing
+     *         measurements for all of the supplied variables at (at least)
+     *         the required level.
+     */
+    public default List<F> readFeatures(Collection<String> ids, Set<String> variableIds,
+            Extent<Double> zExtent, Double targetZ) throws DataReadingException {
+        return readFeatures(ids, variableIds);
+    }
 }
@@ -100,6 +100,35 @@ public abstract class DiscreteLayeredDataset<DS extends DataSource, VM extends D
         return extractHorizontalData(metadata, tIndex, zIndex, domain.getHorizontalGrid(), dataSource);
     }
 
+    @Override
+    protected final List<Array2D<Number>> readUnderlyingHorizontalData(List<String> varIds,
+            MapDomain domain, DS dataSource)
+            throws DataReadingException, VariableNotFoundException {
+        /*
+         * Variables can only be extracted together if they share the same
+         * horizontal domain, and the requested time and depth are at the same
+         * indices
+         */
+        List<VM> metadataList = new ArrayList<>();
+        int tIndex = -1;
+        int zIndex = -1;
+        for (String varId : varIds) {
+            VM metadata = getVariableMetadata(varId);
+            int varTIndex = getTimeIndex(domain.getTime(), metadata.getTemporalDomain(), varId);
+            int varZIndex = getVerticalIndex(domain.getZ(), metadata.getVerticalDomain(), varId);
+            if (!metadataList.isEmpty() && (varTIndex != tIndex || varZIndex != zIndex
+                    || !metadata.getHorizontalDomain()
+                            .equals(metadataList.get(0).getHorizontalDomain()))) {
+                return super.readUnderlyingHorizontalData(varIds, domain, dataSource);
+            }
+            tIndex = varTIndex;
+            zIndex = varZIndex;
+            metadataList.add(metadata);
+        }
+        return extractHorizontalData(metadataList, tIndex, zIndex, domain.getHorizontalGrid(),
+                dataSource);
+    }
+
     @Override
     protected final Map<ProfileLocation, Array1D<Number>> readUnderlyingVerticalData(String varId,
             VerticalAxis zAxis, BoundingBox bbox, DateTime targetT, Extent<DateTime> tExtent,
@@ -383,6 +412,37 @@ public abstract class DiscreteLayeredDataset<DS extends DataSource, VM extends D
     protected abstract Array2D<Number> extractHorizontalData(VM metadata, int tIndex, int zIndex,
             HorizontalGrid targetGrid, DS dataSource) throws DataReadingException;
 
+    /**
+     * Extracts data for several variables which share the same horizontal
+     * domain onto a {@link HorizontalGrid}. The default implementation extracts
+     * each variable separately.
+     * 
+     * @param metadata
+     *            The {@link DiscreteLayeredVariableMetadata} objects
+     *            representing the variables to extract data for
+     * @param tIndex
+     *            The time index at which to extract data
+     * @param zIndex
+     *            The z index at which to extract data
+     * @param targetGrid
+     *            The {@link HorizontalGrid} to extract data onto
+     * @param dataSource
+     *            The {@link DataSource} used to extract data
+     * @return A {@link List} of {@link Array2D}s containing data which should
+     *         map onto the requested {@link HorizontalGrid}, in the same order
+     *         as the supplied metadata
+     * @throws DataReadingException
+     *             If there is a problem reading the underlying data
+     */
+    protected List<Array2D<Number>> extractHorizontalData(List<VM> metadata, int tIndex,
+            int zIndex, HorizontalGrid targetGrid, DS dataSource) throws DataReadingException {
+        List<Array2D<Number>> ret = new ArrayList<>(metadata.size());
+        for (VM varMetadata : metadata) {
+            ret.add(extractHorizontalData(varMetadata, tIndex, zIndex, targetGrid, dataSource));
+        }
+        return ret;
+    }
+
     /**
      * Extracts data corresponding to a vertical profile
      * 
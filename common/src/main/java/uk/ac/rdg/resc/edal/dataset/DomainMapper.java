@@ -390,6 +390,25 @@ abstract class DomainMapper<T> implements Iterable<DomainMapper.DomainMapperEntr
         return count;
     }
 
+    /*
+     * The raw (source, target) pairs, sorted by source grid index, for code
+     * which needs to scan them without creating an entry for each point
+     */
+    int getNumPairs() {
+        return sourceGridIndices.size();
+    }
+
+    /*
+     * The source grid index of a pair, which is j * (source grid i size) + i
+     */
+    long getSourceGridIndex(int pair) {
+        return sourceGridIndices.getLong(pair);
+    }
+
+    int getSourceGridISize() {
+        return sourceGridISize;
+    }
+
     /**
      * Gets the size of the i-j bounding box that encompasses all data. This is
      * the number of data points that will be extracted using the
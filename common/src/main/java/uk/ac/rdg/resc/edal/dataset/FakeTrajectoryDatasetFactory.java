@@ -152,6 +152,10 @@ public class FakeTrajectoryDatasetFactory extends DatasetFactory {
                 @Override
                 public void addFeatures(List<FeatureBounds> features) {
                 }
+
+                @Override
+                public void removeFeatures(Collection<String> featureIds) {
+                }
             });
         }
     }
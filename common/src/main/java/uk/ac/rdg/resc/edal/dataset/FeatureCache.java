@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.CacheConfiguration.TransactionalMode;
+import net.sf.ehcache.config.MemoryUnit;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+import uk.ac.rdg.resc.edal.cache.EdalCache;
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
+
+/**
+ * A cache of {@link DiscreteFeature}s read by {@link DiscreteFeatureReader}s,
+ * shared between all {@link AbstractContinuousDomainDataset}s. Features are
+ * cached by dataset, feature ID and the set of variables which were read.
+ * 
+ * The cache is limited by the amount of memory it uses, and evicts the least
+ * recently used features once it is full.
+ * 
+ * Each instance of a dataset has its own generation number, which forms part
+ * of the key. When a dataset is refreshed (i.e. a new instance is created with
+ * the same ID) all features cached for that ID are removed, and the previous
+ * instance can no longer affect the features returned by the new one.
+ * 
+ * Cached features are shared between requests, so they must not be modified
+ * by callers.
+ * 
+ * @author agent
+ */
+public final class FeatureCache {
+    private static final Logger log = LoggerFactory.getLogger(FeatureCache.class);
+
+    private static final String CACHE_NAME = "discreteFeatureCache";
+    private static final long DEFAULT_SIZE_MB = 64;
+    private static final MemoryStoreEvictionPolicy EVICTION_POLICY = MemoryStoreEvictionPolicy.LRU;
+    private static final Strategy PERSISTENCE_STRATEGY = Strategy.NONE;
+    private static final TransactionalMode TRANSACTIONAL_MODE = TransactionalMode.OFF;
+    private static final AtomicLong generations = new AtomicLong(0L);
+    private static Cache featureCache;
+    private static boolean enabled = true;
+
+    static {
+        if (EdalCache.cacheManager.cacheExists(CACHE_NAME) == false) {
+            /*
+             * Configure cache
+             */
+            log.debug("Creating discreteFeatureCache, with maximum size " + DEFAULT_SIZE_MB
+                    + "MB");
+            CacheConfiguration config = new CacheConfiguration(CACHE_NAME, 0)
+                    .eternal(true)
+                    .maxBytesLocalHeap(DEFAULT_SIZE_MB, MemoryUnit.MEGABYTES)
+                    .memoryStoreEvictionPolicy(EVICTION_POLICY)
+                    .persistence(new PersistenceConfiguration().strategy(PERSISTENCE_STRATEGY))
+                    .transactionalMode(TRANSACTIONAL_MODE);
+            featureCache = new Cache(config);
+            EdalCache.cacheManager.addCache(featureCache);
+        } else {
+            log.debug("Loading existing discreteFeatureCache");
+            featureCache = EdalCache.cacheManager.getCache(CACHE_NAME);
+        }
+        MemoryBudget.setFixedReservation(CACHE_NAME,
+                featureCache.getCacheConfiguration().getMaxBytesLocalHeap());
+    }
+
+    private FeatureCache() {
+    }
+
+    /**
+     * Sets the maximum amount of memory used to cache features
+     * 
+     * @param sizeMB
+     *            The maximum size of the cache, in megabytes
+     */
+    public static void setMaxSizeMB(long sizeMB) {
+        featureCache.getCacheConfiguration().setMaxBytesLocalHeap(sizeMB * 1024 * 1024);
+        if (enabled) {
+            MemoryBudget.setFixedReservation(CACHE_NAME, sizeMB * 1024 * 1024);
+        }
+    }
+
+    /**
+     * Sets whether features are cached. When disabled, all reads go straight
+     * to the {@link DiscreteFeatureReader}s.
+     * 
+     * @param enabled
+     *            <code>true</code> to cache features
+     */
+    public static void setEnabled(boolean enabled) {
+        FeatureCache.enabled = enabled;
+        if (!enabled) {
+            featureCache.removeAll();
+        }
+        MemoryBudget.setFixedReservation(CACHE_NAME,
+                enabled ? featureCache.getCacheConfiguration().getMaxBytesLocalHeap() : 0L);
+    }
+
+    /**
+     * Removes all cached features
+     */
+    public static void clear() {
+        featureCache.removeAll();
+    }
+
+    /**
+     * Removes all cached features for a dataset, and returns a new generation
+     * number for it. This should be called when a new instance of a dataset
+     * is created.
+     * 
+     * @param datasetId
+     *            The ID of the dataset
+     * @return A generation number which is unique to the new instance
+     */
+    static long newGeneration(String datasetId) {
+        for (Object key : featureCache.getKeys()) {
+            if (key instanceof FeatureKey && ((FeatureKey) key).datasetId.equals(datasetId)) {
+                featureCache.remove(key);
+            }
+        }
+        return generations.incrementAndGet();
+    }
+
+    /**
+     * Wraps a {@link DiscreteFeatureReader} so that the features it reads are
+     * cached
+     * 
+     * @param reader
+     *            The {@link DiscreteFeatureReader} to wrap
+     * @param datasetId
+     *            The ID of the dataset which the reader reads from
+     * @param generation
+     *            The generation number of the dataset instance - see
+     *            {@link FeatureCache#newGeneration(String)}
+     * @return A {@link DiscreteFeatureReader} which uses the cache
+     */
+    static <F extends DiscreteFeature<?, ?>> DiscreteFeatureReader<F> wrap(
+            DiscreteFeatureReader<F> reader, String datasetId, long generation) {
+        return new CachingFeatureReader<>(reader, datasetId, generation);
+    }
+
+    private static final class CachingFeatureReader<F extends DiscreteFeature<?, ?>>
+            implements DiscreteFeatureReader<F> {
+        private final DiscreteFeatureReader<F> reader;
+        private final String datasetId;
+        private final long generation;
+
+        public CachingFeatureReader(DiscreteFeatureReader<F> reader, String datasetId,
+                long generation) {
+            this.reader = reader;
+            this.datasetId = datasetId;
+            this.generation = generation;
+        }
+
+        @Override
+        public F readFeature(String id, Set<String> variableIds) throws DataReadingException {
+            if (!enabled) {
+                return reader.readFeature(id, variableIds);
+            }
+            FeatureKey key = new FeatureKey(datasetId, generation, id, variableIds, false, null);
+            F feature = get(key);
+            if (feature == null) {
+                feature = reader.readFeature(id, variableIds);
+                if (feature != null) {
+                    featureCache.put(new Element(key, feature));
+                }
+            }
+            return feature;
+        }
+
+        @Override
+        public List<F> readFeatures(Collection<String> ids, Set<String> variableIds)
+                throws DataReadingException {
+            if (!enabled) {
+                return reader.readFeatures(ids, variableIds);
+            }
+            List<F> ret = new ArrayList<>();
+            List<String> idsToRead = new ArrayList<>();
+            for (String id : ids) {
+                F feature = get(
+                        new FeatureKey(datasetId, generation, id, variableIds, false, null));
+                if (feature != null) {
+                    ret.add(feature);
+                } else {
+                    idsToRead.add(id);
+                }
+            }
+            if (!idsToRead.isEmpty()) {
+                for (F feature : reader.readFeatures(idsToRead, variableIds)) {
+                    featureCache.put(new Element(new FeatureKey(datasetId, generation,
+                            feature.getId(), variableIds, false, null), feature));
+                    ret.add(feature);
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        public List<F> readFeatures(Collection<String> ids, Set<String> variableIds,
+                Extent<Double> zExtent, Double targetZ) throws DataReadingException {
+            if (!enabled) {
+                return reader.readFeatures(ids, variableIds, zExtent, targetZ);
+            }
+            List<F> ret = new ArrayList<>();
+            List<String> idsToRead = new ArrayList<>();
+            for (String id : ids) {
+                /*
+                 * A whole feature can be used at any elevation
+                 */
+                F feature = get(
+                        new FeatureKey(datasetId, generation, id, variableIds, false, null));
+                if (feature == null) {
+                    feature = get(
+                            new FeatureKey(datasetId, generation, id, variableIds, true, targetZ));
+                }
+                if (feature != null) {
+                    ret.add(feature);
+                } else {
+                    idsToRead.add(id);
+                }
+            }
+            if (!idsToRead.isEmpty()) {
+                for (F feature : reader.readFeatures(idsToRead, variableIds, zExtent, targetZ)) {
+                    featureCache.put(new Element(new FeatureKey(datasetId, generation,
+                            feature.getId(), variableIds, true, targetZ), feature));
+                    ret.add(feature);
+                }
+            }
+            return ret;
+        }
+
+        @SuppressWarnings("unchecked")
+        private F get(FeatureKey key) {
+            Element element = featureCache.get(key);
+            return element == null ? null : (F) element.getObjectValue();
+        }
+    }
+
+    private static final class FeatureKey {
+        private final String datasetId;
+        private final long generation;
+        private final String featureId;
+        /*
+         * null means that all variables were read
+         */
+        private final Set<String> variableIds;
+        /*
+         * Whether the feature was read for a map at targetZ, in which case it
+         * may only contain a single level
+         */
+        private final boolean mapLevel;
+        private final Double targetZ;
+
+        public FeatureKey(String datasetId, long generation, String featureId,
+                Set<String> variableIds, boolean mapLevel, Double targetZ) {
+            this.datasetId = datasetId;
+            this.generation = generation;
+            this.featureId = featureId;
+            this.variableIds = variableIds == null ? null : new HashSet<>(variableIds);
+            this.mapLevel = mapLevel;
+            this.targetZ = targetZ;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + datasetId.hashCode();
+            result = prime * result + (int) (generation ^ (generation >>> 32));
+            result = prime * result + featureId.hashCode();
+            result = prime * result + ((variableIds == null) ? 0 : variableIds.hashCode());
+            result = prime * result + (mapLevel ? 1231 : 1237);
+            result = prime * result + ((targetZ == null) ? 0 : targetZ.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            FeatureKey other = (FeatureKey) obj;
+            if (variableIds == null) {
+                if (other.variableIds != null)
+                    return false;
+            } else if (!variableIds.equals(other.variableIds))
+                return false;
+            if (targetZ == null) {
+                if (other.targetZ != null)
+                    return false;
+            } else if (!targetZ.equals(other.targetZ))
+                return false;
+            return generation == other.generation && mapLevel == other.mapLevel
+                    && datasetId.equals(other.datasetId) && featureId.equals(other.featureId);
+        }
+    }
+}
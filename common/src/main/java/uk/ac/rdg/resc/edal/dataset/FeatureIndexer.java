@@ -31,7 +31,6 @@ package uk.ac.rdg.resc.edal.dataset;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 
 import org.joda.time.DateTime;
 
@@ -46,36 +45,12 @@ import uk.ac.rdg.resc.edal.position.VerticalPosition;
 import uk.ac.rdg.resc.edal.util.Extents;
 
 /**
- * A class representing a spatial indexer for features.
+ * A class representing a spatial indexer for features. Features can be added
+ * to and removed from the index.
  * 
  * @author Guy Griffiths
  */
-public interface FeatureIndexer extends Serializable {
-
-    /**
-     * Finds the IDs of features with the given spatio-temporal constraints. If
-     * any constraint is <code>null</code> it is considered to be unconstrained
-     * in that dimension.
-     * 
-     * @param horizontalExtent
-     *            The {@link BoundingBox} which features must have positions in.
-     * @param verticalExtent
-     *            The vertical range which features must have positions in.
-     * @param timeExtent
-     *            The time range which features must have positions in.
-     * @param variableIds
-     *            The variable IDs which features must contain
-     * @return A {@link Collection} of IDs for features which match all of the
-     *         given constraints
-     */
-    public Collection<String> findFeatureIds(BoundingBox horizontalExtent,
-            Extent<Double> verticalExtent, Extent<DateTime> timeExtent,
-            Collection<String> variableIds);
-
-    /**
-     * @return All feature IDs present in this {@link FeatureIndexer}
-     */
-    public Set<String> getAllFeatureIds();
+public interface FeatureIndexer extends FeatureIndex {
 
     /**
      * Adds features to this indexer. Features are defined in terms of
@@ -86,6 +61,15 @@ public interface FeatureIndexer extends Serializable {
      */
     public void addFeatures(List<FeatureBounds> features);
 
+    /**
+     * Removes features from this indexer. Any IDs which are not present in
+     * this indexer are ignored.
+     * 
+     * @param featureIds
+     *            The IDs of the features to remove
+     */
+    public void removeFeatures(Collection<String> featureIds);
+
     /**
      * A class representing the spatial bounds of a feature with a single point.
      * This is used to index features.
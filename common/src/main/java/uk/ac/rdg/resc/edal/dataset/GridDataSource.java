@@ -29,7 +29,10 @@
 package uk.ac.rdg.resc.edal.dataset;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
 import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
 import uk.ac.rdg.resc.edal.util.Array4D;
 
@@ -67,7 +70,11 @@ public interface GridDataSource extends DataSource {
      *            The minimum x index in the underlying data
      * @param xmax
      *            The maximum x index in the underlying data
-     * @return An {@link Array4D} containing the data which was read
+     * @return An {@link Array4D} containing the data which was read. If
+     *         this holds a large amount of data in memory, implementations
+     *         should keep a {@link MemoryBudget} reservation for it until it
+     *         is no longer reachable (see
+     *         {@link MemoryBudget.Reservation#releaseWhenUnreachable(Object)})
      * @throws IOException
      *             If there is an IO problem accessing the data
      * @throws DataReadingException
@@ -75,4 +82,176 @@ public interface GridDataSource extends DataSource {
      */
     public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin, int zmax,
             int ymin, int ymax, int xmin, int xmax) throws IOException, DataReadingException;
+
+    /**
+     * Whether all of the values of a variable can be represented exactly as
+     * <code>float</code>s. Only such variables can be read with
+     * {@link #readFloats(String, int, int, int, int, int, int, int, int, float[])}
+     * without losing precision, so {@link DataReadingStrategy}s read other
+     * variables (e.g. doubles or large integers) with
+     * {@link #read(String, int, int, int, int, int, int, int, int)}.
+     * 
+     * The default implementation returns <code>false</code>, since the type of
+     * the values is not known. Implementations which override
+     * {@link #readFloats(String, int, int, int, int, int, int, int, int, float[])}
+     * should override this.
+     * 
+     * @param variableId
+     *            The variable ID
+     * @return <code>true</code> if no precision is lost by reading the values
+     *         of the variable as <code>float</code>s
+     * @throws DataReadingException
+     *             If there is a problem determining the type of the variable
+     */
+    public default boolean hasFloatValues(String variableId) throws DataReadingException {
+        return false;
+    }
+
+    /**
+     * Reads data from the underlying data source into a primitive array. This
+     * avoids creating a {@link Number} object for each value, and so should be
+     * preferred when reading large amounts of data.
+     * 
+     * The default implementation uses
+     * {@link #read(String, int, int, int, int, int, int, int, int)}.
+     * Implementations should override this if they can do better.
+     * 
+     * The caller owns the array which is read into, and so is responsible for
+     * reserving memory for it from the {@link MemoryBudget}. Implementations
+     * may hold a temporary copy of the data whilst reading, so callers should
+     * reserve twice the size of the values which are read, using
+     * {@link MemoryBudget#reserveForRead(long)} so that any reservation the
+     * implementation makes for its copy is covered by the caller's.
+     * 
+     * @param variableId
+     *            The variable ID to read
+     * @param tmin
+     *            The minimum time index in the underlying data
+     * @param tmax
+     *            The maximum time index in the underlying data
+     * @param zmin
+     *            The minimum z index in the underlying data
+     * @param zmax
+     *            The maximum z index in the underlying data
+     * @param ymin
+     *            The minimum y index in the underlying data
+     * @param ymax
+     *            The maximum y index in the underlying data
+     * @param xmin
+     *            The minimum x index in the underlying data
+     * @param xmax
+     *            The maximum x index in the underlying data
+     * @param values
+     *            The array to read the data into. This must be at least as
+     *            large as the requested data. Values are written in t,z,y,x
+     *            order (x varying fastest) from the start of the array, with
+     *            missing data represented by {@link Float#NaN}.
+     * @throws IOException
+     *             If there is an IO problem accessing the data
+     * @throws DataReadingException
+     *             If there is another issue reading the data
+     */
+    public default void readFloats(String variableId, int tmin, int tmax, int zmin, int zmax,
+            int ymin, int ymax, int xmin, int xmax, float[] values)
+            throws IOException, DataReadingException {
+        Array4D<Number> data = read(variableId, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax);
+        int n = 0;
+        for (int t = 0; t <= tmax - tmin; t++) {
+            for (int z = 0; z <= zmax - zmin; z++) {
+                for (int y = 0; y <= ymax - ymin; y++) {
+                    for (int x = 0; x <= xmax - xmin; x++) {
+                        Number value = data.get(t, z, y, x);
+                        values[n++] = value == null ? Float.NaN : value.floatValue();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the same range of data for several variables into primitive
+     * arrays. This is used where several variables are needed on the same
+     * domain (e.g. vector components), so that the domain only needs to be
+     * worked out once, and the reads can be grouped together.
+     * 
+     * The default implementation calls
+     * {@link #readFloats(String, int, int, int, int, int, int, int, int, float[])}
+     * for each variable. Implementations should override this if they can do
+     * better.
+     * 
+     * @param variableIds
+     *            The IDs of the variables to read
+     * @param tmin
+     *            The minimum time index in the underlying data
+     * @param tmax
+     *            The maximum time index in the underlying data
+     * @param zmin
+     *            The minimum z index in the underlying data
+     * @param zmax
+     *            The maximum z index in the underlying data
+     * @param ymin
+     *            The minimum y index in the underlying data
+     * @param ymax
+     *            The maximum y index in the underlying data
+     * @param xmin
+     *            The minimum x index in the underlying data
+     * @param xmax
+     *            The maximum x index in the underlying data
+     * @param values
+     *            The arrays to read the data into, one per variable, in the
+     *            same order as the variable IDs. Each is filled as described
+     *            in
+     *            {@link #readFloats(String, int, int, int, int, int, int, int, int, float[])}
+     * @throws IOException
+     *             If there is an IO problem accessing the data
+     * @throws DataReadingException
+     *             If there is another issue reading the data
+     */
+    public default void readMany(List<String> variableIds, int tmin, int tmax, int zmin,
+            int zmax, int ymin, int ymax, int xmin, int xmax, float[][] values)
+            throws IOException, DataReadingException {
+        if (values.length < variableIds.size()) {
+            throw new IllegalArgumentException("Need " + variableIds.size()
+                    + " arrays to read data into, but only " + values.length + " were supplied");
+        }
+        for (int i = 0; i < variableIds.size(); i++) {
+            readFloats(variableIds.get(i), tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax,
+                    values[i]);
+        }
+    }
+
+    /**
+     * Reads an {@link Array4D} of data from the underlying data source
+     * asynchronously, on the threads managed by {@link DataReadExecutor}.
+     * Unless {@link #supportsConcurrentReads()} returns <code>true</code>,
+     * callers must not read from this {@link GridDataSource} again until the
+     * read has completed.
+     * 
+     * @param variableId
+     *            The variable ID to read
+     * @param tmin
+     *            The minimum time index in the underlying data
+     * @param tmax
+     *            The maximum time index in the underlying data
+     * @param zmin
+     *            The minimum z index in the underlying data
+     * @param zmax
+     *            The maximum z index in the underlying data
+     * @param ymin
+     *            The minimum y index in the underlying data
+     * @param ymax
+     *            The maximum y index in the underlying data
+     * @param xmin
+     *            The minimum x index in the underlying data
+     * @param xmax
+     *            The maximum x index in the underlying data
+     * @return A {@link CompletableFuture} which will complete with the data
+     *         which was read. Cancelling this before the read starts means
+     *         that no data will be read.
+     */
+    public default CompletableFuture<Array4D<Number>> readAsync(String variableId, int tmin,
+            int tmax, int zmin, int zmax, int ymin, int ymax, int xmin, int xmax) {
+        return DataReadExecutor.submit(
+                () -> read(variableId, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax));
+    }
 }
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.IOException;
+import java.util.Map;
+
+import uk.ac.rdg.resc.edal.domain.GridDomain;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.util.Array2D;
+
+/**
+ * Receives a 4d subset of a {@link GriddedDataset} one horizontal slice at a
+ * time, as extracted by {@link GriddedDataset#streamSubsetFeatures}. This
+ * allows arbitrarily large subsets to be written out without ever holding the
+ * entire subset in memory.
+ * 
+ * @author agent
+ */
+public interface GridSliceWriter {
+    /**
+     * Called once, before any data has been read.
+     * 
+     * @param name
+     *            A name for the subset
+     * @param description
+     *            A description of the subset
+     * @param domain
+     *            The {@link GridDomain} of the subset
+     * @param parameters
+     *            The {@link Parameter}s of the variables in the subset, in the
+     *            order in which their slices will be written
+     * @throws IOException
+     *             If there is a problem writing the header
+     */
+    public void writeHeader(String name, String description, GridDomain domain,
+            Map<String, Parameter> parameters) throws IOException;
+
+    /**
+     * Called for each horizontal slice of data. Slices are supplied in order
+     * of time index, then variable, then z index.
+     * 
+     * @param varId
+     *            The ID of the variable
+     * @param t
+     *            The time index within the subset (0 if there is no time axis)
+     * @param z
+     *            The z index within the subset (0 if there is no vertical
+     *            axis)
+     * @param values
+     *            The values of the slice, indexed by [y][x]. This may contain
+     *            <code>null</code>s where there is no data.
+     * @throws IOException
+     *             If there is a problem writing the slice
+     */
+    public void writeSlice(String varId, int t, int z, Array2D<Number> values)
+            throws IOException;
+
+    /**
+     * Called once all slices have been written.
+     * 
+     * @throws IOException
+     *             If there is a problem finishing the output
+     */
+    public void finish() throws IOException;
+}
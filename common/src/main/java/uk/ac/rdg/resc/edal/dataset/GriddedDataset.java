@@ -38,6 +38,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -200,229 +202,362 @@ public abstract class GriddedDataset extends
          * Open the GridDataSource as a resource, so it gets closed automatically.
          */
         try (GridDataSource dataSource = this.openDataSource()) {
-            Map<String, Parameter> parameters = new HashMap<>();
+            GridSubset subset = getGridSubset(variables, hBox, zExtent, tExtent);
             Map<String, Array4D<Number>> valuesMap = new HashMap<>();
+            for (String var : subset.parameters.keySet()) {
+                Array4D<Number> data = dataSource.read(var, subset.minT, subset.maxT,
+                        subset.minZ, subset.maxZ, subset.minY, subset.maxY, subset.minX,
+                        subset.maxX);
+                valuesMap.put(var, data);
+            }
+
+            return new GridFeature(id, subset.name, subset.description, subset.domain,
+                    subset.parameters, valuesMap);
+        } catch (Exception e) {
             /*
-             * Used to check that all variables share a common domain
+             * Catch and rethrow any exceptions. This try-catch block is just to
+             * auto-close the GridDataSource
              */
-            RectilinearGrid commonGrid = null;
-            VerticalAxis commonZAxis = null;
-            TimeAxis commonTAxis = null;
+            log.error("Problem subsetting feature", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Extracts the same 4d subset as
+     * {@link GriddedDataset#subsetFeatures(Set, BoundingBox, Extent, Extent)},
+     * but rather than building the whole feature in memory, it passes the data
+     * to a {@link GridSliceWriter} one horizontal slice at a time. Only a
+     * single slice is held in memory at once (plus the next one, which is read
+     * whilst the current one is being written), regardless of the size of the
+     * subset.
+     * 
+     * The header is written before any data is read, and slices are written
+     * in order of time, then variable, then depth.
+     * 
+     * @param variables
+     *            The variable IDs to extract
+     * @param hBox
+     *            The {@link BoundingBox} in which to extract data
+     * @param zExtent
+     *            The {@link Extent} in the z-direction to subset. If
+     *            <code>null</code>, all available z-values (if there are any)
+     *            will be extracted
+     * @param tExtent
+     *            The {@link Extent} in time to subset. If <code>null</code>,
+     *            all available time values (if there are any) will be extracted
+     * @param writer
+     *            The {@link GridSliceWriter} to pass the data to
+     */
+    public void streamSubsetFeatures(Set<String> variables, BoundingBox hBox,
+            Extent<Double> zExtent, Extent<DateTime> tExtent, GridSliceWriter writer)
+            throws EdalException, IOException {
+        try (GridDataSource dataSource = this.openDataSource()) {
+            GridSubset subset = getGridSubset(variables, hBox, zExtent, tExtent);
+            writer.writeHeader(subset.name, subset.description, subset.domain, subset.parameters);
 
-            StringBuilder nameStr = new StringBuilder("Subset of: ");
-            StringBuilder descriptionStr = new StringBuilder("Variables: ");
             /*
-             * The domain of the final GridFeature
+             * A missing axis is represented by indices of -1, which the data
+             * source expects, but we still need to loop once over it.
              */
-            GridDomain outputDomain = null;
+            int tSize = subset.domain.getTimeAxis() == null ? 1 : subset.maxT - subset.minT + 1;
+            int zSize = subset.domain.getVerticalAxis() == null ? 1
+                    : subset.maxZ - subset.minZ + 1;
+            List<String> varIds = new ArrayList<>(subset.parameters.keySet());
+            int nSlices = tSize * varIds.size() * zSize;
+
             /*
-             * Extraction indices
+             * Read ahead by one slice, so that the underlying storage is being
+             * read whilst the previous slice is being written. If we're already
+             * on a read thread, we read synchronously to avoid deadlocks.
              */
-            int minX = -1;
-            int maxX = -1;
-            int minY = -1;
-            int maxY = -1;
-            int minZ = -1;
-            int maxZ = -1;
-            int minT = -1;
-            int maxT = -1;
-            
-            if(variables == null) {
-                variables = getVariableIds();
-            }
-            for (String var : variables) {
-                nameStr.append(var + ",");
-                descriptionStr.append(var + ",");
-
-                GridVariableMetadata metadata = this.getVariableMetadata(var);
+            boolean readAhead = !DataReadExecutor.isReadThread();
+            CompletableFuture<Array4D<Number>> next = null;
+            try {
+                for (int i = 0; i < nSlices; i++) {
+                    String varId = varIds.get((i / zSize) % varIds.size());
+                    int t = i / (zSize * varIds.size());
+                    int z = i % zSize;
+
+                    Array4D<Number> slice;
+                    if (readAhead) {
+                        if (next == null) {
+                            next = readSlice(dataSource, subset, varIds, zSize, i);
+                        }
+                        slice = next.get();
+                        next = i + 1 < nSlices ? readSlice(dataSource, subset, varIds, zSize,
+                                i + 1) : null;
+                    } else {
+                        slice = dataSource.read(varId, offsetIndex(subset.minT, t),
+                                offsetIndex(subset.minT, t), offsetIndex(subset.minZ, z),
+                                offsetIndex(subset.minZ, z), subset.minY, subset.maxY,
+                                subset.minX, subset.maxX);
+                    }
+                    writer.writeSlice(varId, t, z, new Array2D<Number>(slice.getYSize(),
+                            slice.getXSize()) {
+                        private static final long serialVersionUID = 1L;
 
+                        @Override
+                        public Number get(int... coords) {
+                            return slice.get(0, 0, coords[0], coords[1]);
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataReadingException("Interrupted whilst streaming subset", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new DataReadingException("Problem reading data for subset", e.getCause());
+            } finally {
                 /*
-                 * First check that we can do this subset.
+                 * If the writer failed, a read may still be in progress, which
+                 * must finish before the data source is closed
                  */
-                HorizontalGrid hGrid = metadata.getHorizontalDomain();
-                if (!(hGrid instanceof RectilinearGrid)) {
+                DataReadExecutor.cancelAndWait(next);
+            }
+            writer.finish();
+        } catch (Exception e) {
+            log.error("Problem streaming subset", e);
+            throw e;
+        }
+    }
+
+    private static CompletableFuture<Array4D<Number>> readSlice(GridDataSource dataSource,
+            GridSubset subset, List<String> varIds, int zSize, int slice) {
+        int t = offsetIndex(subset.minT, slice / (zSize * varIds.size()));
+        int z = offsetIndex(subset.minZ, slice % zSize);
+        return dataSource.readAsync(varIds.get((slice / zSize) % varIds.size()), t, t, z, z,
+                subset.minY, subset.maxY, subset.minX, subset.maxX);
+    }
+
+    /*
+     * Offsets an index into a subset, preserving -1 (i.e. a missing axis)
+     */
+    private static int offsetIndex(int min, int offset) {
+        return min < 0 ? min : min + offset;
+    }
+
+    /*
+     * The output domain, parameters and extraction indices of a subset
+     */
+    private static final class GridSubset {
+        private String name;
+        private String description;
+        private GridDomain domain;
+        private Map<String, Parameter> parameters = new LinkedHashMap<>();
+        private int minX = -1;
+        private int maxX = -1;
+        private int minY = -1;
+        private int maxY = -1;
+        private int minZ = -1;
+        private int maxZ = -1;
+        private int minT = -1;
+        private int maxT = -1;
+    }
+
+    private GridSubset getGridSubset(Set<String> variables, BoundingBox hBox,
+            Extent<Double> zExtent, Extent<DateTime> tExtent) throws EdalException {
+        GridSubset subset = new GridSubset();
+        /*
+         * Used to check that all variables share a common domain
+         */
+        RectilinearGrid commonGrid = null;
+        VerticalAxis commonZAxis = null;
+        TimeAxis commonTAxis = null;
+
+        StringBuilder nameStr = new StringBuilder("Subset of: ");
+        StringBuilder descriptionStr = new StringBuilder("Variables: ");
+
+        if(variables == null) {
+            variables = getVariableIds();
+        }
+        for (String var : variables) {
+            nameStr.append(var + ",");
+            descriptionStr.append(var + ",");
+
+            GridVariableMetadata metadata = this.getVariableMetadata(var);
+
+            /*
+             * First check that we can do this subset.
+             */
+            HorizontalGrid hGrid = metadata.getHorizontalDomain();
+            if (!(hGrid instanceof RectilinearGrid)) {
+                throw new IncorrectDomainException(
+                        "Feature subsetting is currently only supported for rectilinear grids");
+            }
+            RectilinearGrid grid = (RectilinearGrid) hGrid;
+            if (commonGrid == null) {
+                commonGrid = grid;
+            } else {
+                if (!commonGrid.equals(grid)) {
                     throw new IncorrectDomainException(
-                            "Feature subsetting is currently only supported for rectilinear grids");
+                            "All variables must be on the same horizontal grid");
                 }
-                RectilinearGrid grid = (RectilinearGrid) hGrid;
-                if (commonGrid == null) {
-                    commonGrid = grid;
-                } else {
-                    if (!commonGrid.equals(grid)) {
-                        throw new IncorrectDomainException(
-                                "All variables must be on the same horizontal grid");
-                    }
+            }
+            VerticalAxis zAxis = metadata.getVerticalDomain();
+            if (commonZAxis == null) {
+                commonZAxis = zAxis;
+            } else {
+                if (!commonZAxis.equals(zAxis)) {
+                    throw new IncorrectDomainException(
+                            "All variables must share a common z axis");
                 }
-                VerticalAxis zAxis = metadata.getVerticalDomain();
-                if (commonZAxis == null) {
-                    commonZAxis = zAxis;
-                } else {
-                    if (!commonZAxis.equals(zAxis)) {
-                        throw new IncorrectDomainException(
-                                "All variables must share a common z axis");
-                    }
+            }
+            TimeAxis tAxis = metadata.getTemporalDomain();
+            if (commonTAxis == null) {
+                commonTAxis = tAxis;
+            } else {
+                if (!commonTAxis.equals(tAxis)) {
+                    throw new IncorrectDomainException(
+                            "All variables must share a common time axis");
                 }
-                TimeAxis tAxis = metadata.getTemporalDomain();
-                if (commonTAxis == null) {
-                    commonTAxis = tAxis;
+            }
+
+            if (subset.domain == null) {
+                /*
+                 * We only need to set the min/max vars once.
+                 * 
+                 * At the same time, we construct the output domain
+                 */
+                ReferenceableAxis<Double> xAxis = grid.getXAxis();
+                if(xAxis.isAscending()) {
+                    subset.minX = xAxis.findIndexOf(hBox.getMinX());
+                    subset.maxX = xAxis.findIndexOf(hBox.getMaxX());
                 } else {
-                    if (!commonTAxis.equals(tAxis)) {
-                        throw new IncorrectDomainException(
-                                "All variables must share a common time axis");
-                    }
+                    subset.minX = xAxis.findIndexOf(hBox.getMaxX());
+                    subset.maxX = xAxis.findIndexOf(hBox.getMinX());
+                }
+                /*
+                 * If either limit is out of range, set it correctly
+                 */
+                if(subset.minX < 0) {
+                    subset.minX = 0;
+                }
+                if(subset.maxX < 0) {
+                    subset.maxX = xAxis.size() - 1;
                 }
 
-                if (outputDomain == null) {
-                    /*
-                     * We only need to set the min/max vars once.
-                     * 
-                     * At the same time, we construct the output domain
-                     */
-                    ReferenceableAxis<Double> xAxis = grid.getXAxis();
-                    if(xAxis.isAscending()) {
-                        minX = xAxis.findIndexOf(hBox.getMinX());
-                        maxX = xAxis.findIndexOf(hBox.getMaxX());
-                    } else {
-                        minX = xAxis.findIndexOf(hBox.getMaxX());
-                        maxX = xAxis.findIndexOf(hBox.getMinX());
-                    }
-                    /*
-                     * If either limit is out of range, set it correctly
-                     */
-                    if(minX < 0) {
-                        minX = 0;
-                    }
-                    if(maxX < 0) {
-                        maxX = xAxis.size() - 1;
-                    }
+                ReferenceableAxis<Double> yAxis = grid.getYAxis();
+                if(yAxis.isAscending()) {
+                    subset.minY = yAxis.findIndexOf(hBox.getMinY());
+                    subset.maxY = yAxis.findIndexOf(hBox.getMaxY());
+                } else {
+                    subset.minY = yAxis.findIndexOf(hBox.getMaxY());
+                    subset.maxY = yAxis.findIndexOf(hBox.getMinY());
+                }
+                /*
+                 * If either limit is out of range, set it correctly
+                 */
+                if(subset.minY < 0) {
+                    subset.minY = 0;
+                }
+                if(subset.maxY < 0) {
+                    subset.maxY = yAxis.size() - 1;
+                }
 
-                    ReferenceableAxis<Double> yAxis = grid.getYAxis();
-                    if(yAxis.isAscending()) {
-                        minY = yAxis.findIndexOf(hBox.getMinY());
-                        maxY = yAxis.findIndexOf(hBox.getMaxY());
-                    } else {
-                        minY = yAxis.findIndexOf(hBox.getMaxY());
-                        maxY = yAxis.findIndexOf(hBox.getMinY());
-                    }
+                if (zExtent != null) {
+                    subset.minZ = zAxis.findIndexOf(zExtent.getLow());
+                    subset.maxZ = zAxis.findIndexOf(zExtent.getHigh());
+                } else if (metadata.getVerticalDomain() != null) {
                     /*
-                     * If either limit is out of range, set it correctly
+                     * null extent means we want the entire range (which may
+                     * be non-existent)
                      */
-                    if(minY < 0) {
-                        minY = 0;
-                    }
-                    if(maxY < 0) {
-                        maxY = yAxis.size() - 1;
-                    }
+                    subset.minZ = zAxis.findIndexOf(metadata.getVerticalDomain().getExtent()
+                            .getLow());
+                    subset.maxZ = zAxis.findIndexOf(metadata.getVerticalDomain().getExtent()
+                            .getHigh());
+                }
 
-                    if (zExtent != null) {
-                        minZ = zAxis.findIndexOf(zExtent.getLow());
-                        maxZ = zAxis.findIndexOf(zExtent.getHigh());
-                    } else if (metadata.getVerticalDomain() != null) {
-                        /*
-                         * null extent means we want the entire range (which may
-                         * be non-existent)
-                         */
-                        minZ = zAxis.findIndexOf(metadata.getVerticalDomain().getExtent().getLow());
-                        maxZ = zAxis
-                                .findIndexOf(metadata.getVerticalDomain().getExtent().getHigh());
+                if (tExtent != null) {
+                    subset.minT = tAxis.findIndexOf(tExtent.getLow());
+                    if(subset.minT == -1) {
+                        subset.minT = 0; 
                     }
-
-                    if (tExtent != null) {
-                        minT = tAxis.findIndexOf(tExtent.getLow());
-                        if(minT == -1) {
-                            minT = 0; 
-                        }
-                        maxT = tAxis.findIndexOf(tExtent.getHigh());
-                        if(maxT == -1) {
-                            maxT = tAxis.size() - 1;
-                        }
-                    } else if (metadata.getTemporalDomain() != null) {
-                        /*
-                         * null extent means we want the entire range (which may
-                         * be non-existent)
-                         */
-                        minT = tAxis.findIndexOf(metadata.getTemporalDomain().getExtent().getLow());
-                        maxT = tAxis
-                                .findIndexOf(metadata.getTemporalDomain().getExtent().getHigh());
+                    subset.maxT = tAxis.findIndexOf(tExtent.getHigh());
+                    if(subset.maxT == -1) {
+                        subset.maxT = tAxis.size() - 1;
                     }
-
+                } else if (metadata.getTemporalDomain() != null) {
                     /*
-                     * Now construct the subset domain
+                     * null extent means we want the entire range (which may
+                     * be non-existent)
                      */
-                    List<Double> xAxisOutputValues = new ArrayList<>();
-                    List<Double> xAxisValues = xAxis.getCoordinateValues();
-                    for (int i = minX; i <= maxX; i++) {
-                        xAxisOutputValues.add(xAxisValues.get(i));
-                    }
-                    ReferenceableAxis<Double> xOutputAxis = new ReferenceableAxisImpl(
-                            xAxis.getName(), xAxisOutputValues, xAxis.wraps());
-
-                    List<Double> yAxisOutputValues = new ArrayList<>();
-                    List<Double> yAxisValues = yAxis.getCoordinateValues();
-                    for (int i = minY; i <= maxY; i++) {
-                        yAxisOutputValues.add(yAxisValues.get(i));
-                    }
-                    ReferenceableAxis<Double> yOutputAxis = new ReferenceableAxisImpl(
-                            yAxis.getName(), yAxisOutputValues, yAxis.wraps());
-
-                    RectilinearGridImpl outputGrid = new RectilinearGridImpl(xOutputAxis,
-                            yOutputAxis, grid.getCoordinateReferenceSystem());
-
-                    VerticalAxisImpl outputZAxis = null;
-                    if (zAxis != null) {
-                        List<Double> zAxisOutputValues = new ArrayList<>();
-                        List<Double> zAxisValues = zAxis.getCoordinateValues();
-                        for (int i = minZ; i <= maxZ; i++) {
-                            zAxisOutputValues.add(zAxisValues.get(i));
-                        }
-                        outputZAxis = new VerticalAxisImpl(zAxis.getName(), zAxisOutputValues,
-                                zAxis.getVerticalCrs());
-                    }
-
-                    TimeAxisImpl outputTAxis = null;
-                    if (tAxis != null) {
-                        List<DateTime> tAxisOutputValues = new ArrayList<>();
-                        List<DateTime> tAxisValues = tAxis.getCoordinateValues();
-                        for (int i = minT; i <= maxT; i++) {
-                            tAxisOutputValues.add(tAxisValues.get(i));
-                        }
-                        outputTAxis = new TimeAxisImpl(tAxis.getName(), tAxisOutputValues);
-                    }
-                    outputDomain = new SimpleGridDomain(outputGrid, outputZAxis, outputTAxis);
+                    subset.minT = tAxis.findIndexOf(metadata.getTemporalDomain().getExtent()
+                            .getLow());
+                    subset.maxT = tAxis.findIndexOf(metadata.getTemporalDomain().getExtent()
+                            .getHigh());
                 }
-                
+
                 /*
-                 * Remove trailing commas, and finalise the name/description
+                 * Now construct the subset domain
                  */
-                nameStr.deleteCharAt(nameStr.length() - 1);
-                descriptionStr.deleteCharAt(nameStr.length() - 1);
-                descriptionStr.append(" extracted over the region: " + hBox.toString());
-                if (zExtent != null) {
-                    descriptionStr.append(", the vertical extent: " + zExtent.toString());
+                List<Double> xAxisOutputValues = new ArrayList<>();
+                List<Double> xAxisValues = xAxis.getCoordinateValues();
+                for (int i = subset.minX; i <= subset.maxX; i++) {
+                    xAxisOutputValues.add(xAxisValues.get(i));
                 }
-                if (tExtent != null) {
-                    descriptionStr.append(", the time extent: " + tExtent.toString());
+                ReferenceableAxis<Double> xOutputAxis = new ReferenceableAxisImpl(
+                        xAxis.getName(), xAxisOutputValues, xAxis.wraps());
+
+                List<Double> yAxisOutputValues = new ArrayList<>();
+                List<Double> yAxisValues = yAxis.getCoordinateValues();
+                for (int i = subset.minY; i <= subset.maxY; i++) {
+                    yAxisOutputValues.add(yAxisValues.get(i));
+                }
+                ReferenceableAxis<Double> yOutputAxis = new ReferenceableAxisImpl(
+                        yAxis.getName(), yAxisOutputValues, yAxis.wraps());
+
+                RectilinearGridImpl outputGrid = new RectilinearGridImpl(xOutputAxis,
+                        yOutputAxis, grid.getCoordinateReferenceSystem());
+
+                VerticalAxisImpl outputZAxis = null;
+                if (zAxis != null) {
+                    List<Double> zAxisOutputValues = new ArrayList<>();
+                    List<Double> zAxisValues = zAxis.getCoordinateValues();
+                    for (int i = subset.minZ; i <= subset.maxZ; i++) {
+                        zAxisOutputValues.add(zAxisValues.get(i));
+                    }
+                    outputZAxis = new VerticalAxisImpl(zAxis.getName(), zAxisOutputValues,
+                            zAxis.getVerticalCrs());
                 }
 
-                /*
-                 * Store the Parameter data + values
-                 */
-                parameters.put(var, metadata.getParameter());
-                Array4D<Number> data = dataSource.read(var, minT, maxT, minZ, maxZ, minY, maxY,
-                        minX, maxX);
-                valuesMap.put(var, data);
+                TimeAxisImpl outputTAxis = null;
+                if (tAxis != null) {
+                    List<DateTime> tAxisOutputValues = new ArrayList<>();
+                    List<DateTime> tAxisValues = tAxis.getCoordinateValues();
+                    for (int i = subset.minT; i <= subset.maxT; i++) {
+                        tAxisOutputValues.add(tAxisValues.get(i));
+                    }
+                    outputTAxis = new TimeAxisImpl(tAxis.getName(), tAxisOutputValues);
+                }
+                subset.domain = new SimpleGridDomain(outputGrid, outputZAxis, outputTAxis);
             }
 
-            return new GridFeature(id, nameStr.toString(), descriptionStr.toString(), outputDomain,
-                    parameters, valuesMap);
-        } catch (Exception e) {
             /*
-             * Catch and rethrow any exceptions. This try-catch block is just to
-             * auto-close the GridDataSource
+             * Remove trailing commas, and finalise the name/description
              */
-            log.error("Problem subsetting feature", e);
-            throw e;
+            nameStr.deleteCharAt(nameStr.length() - 1);
+            descriptionStr.deleteCharAt(nameStr.length() - 1);
+            descriptionStr.append(" extracted over the region: " + hBox.toString());
+            if (zExtent != null) {
+                descriptionStr.append(", the vertical extent: " + zExtent.toString());
+            }
+            if (tExtent != null) {
+                descriptionStr.append(", the time extent: " + tExtent.toString());
+            }
+
+            /*
+             * Store the Parameter
+             */
+            subset.parameters.put(var, metadata.getParameter());
         }
+        subset.name = nameStr.toString();
+        subset.description = descriptionStr.toString();
+        return subset;
     }
 
     private Set<String> recursivelyGetChildIds(VariableMetadata metadata, Set<String> ids) {
@@ -566,6 +701,28 @@ public abstract class GriddedDataset extends
         return data;
     }
 
+    @Override
+    protected List<Array2D<Number>> extractHorizontalData(List<GridVariableMetadata> metadata,
+            int tIndex, int zIndex, HorizontalGrid targetGrid, GridDataSource dataSource)
+            throws DataReadingException {
+        /*
+         * All variables share the same source grid, so we only need a single
+         * DomainMapper, and can read the variables together
+         */
+        HorizontalGrid sourceGrid = metadata.get(0).getHorizontalDomain();
+        Domain2DMapper domainMapper = Domain2DMapper.forGrid(sourceGrid, targetGrid);
+        List<String> varIds = new ArrayList<>();
+        for (GridVariableMetadata varMetadata : metadata) {
+            varIds.add(varMetadata.getId());
+        }
+        try {
+            return getDataReadingStrategy().readMapData(dataSource, varIds, tIndex, zIndex,
+                    domainMapper);
+        } catch (IOException e) {
+            throw new DataReadingException("Could not read underlying data", e);
+        }
+    }
+
     @Override
     protected Array1D<Number> extractProfileData(GridVariableMetadata metadata, List<Integer> zs,
             int tIndex, HorizontalPosition hPos, GridDataSource dataSource)
@@ -610,6 +767,29 @@ public abstract class GriddedDataset extends
          */
         int tMin = Collections.min(ts);
         int tMax = Collections.max(ts);
+
+        /*
+         * If a time-major copy of this variable has been built, the whole
+         * timeseries can be read in a single sequential read
+         */
+        TimeseriesStore store = TimeseriesStore.getStore(getId(), metadata.getId(), dataSource,
+                getShape(metadata));
+        if (store != null) {
+            try {
+                float[] values = store.readSeries(zIndex, yIndex, xIndex, tMin, tMax);
+                Array1D<Number> data = new ValuesArray1D(ts.size());
+                int i = 0;
+                for (Integer t : ts) {
+                    float value = values[t - tMin];
+                    data.set(Float.isNaN(value) ? null : value, new int[] { i++ });
+                }
+                return data;
+            } catch (IOException e) {
+                log.warn("Problem reading timeseries store for " + metadata.getId()
+                        + ".  Reading from the underlying data instead.", e);
+            }
+        }
+
         Array4D<Number> data4d;
         try {
             data4d = dataSource.read(metadata.getId(), tMin, tMax, zIndex, zIndex, yIndex, yIndex,
@@ -647,5 +827,74 @@ public abstract class GriddedDataset extends
         }
     }
 
+    /**
+     * Builds a local copy of a variable with the time axis varying fastest,
+     * which will subsequently be used to extract timeseries from that
+     * variable. This reads the entire variable, so may take a long time for
+     * large datasets. Any existing copy of the variable will be replaced.
+     * 
+     * This requires a {@link DatasetFactory#getWorkingDirectory() working
+     * directory} to have been set. Values are stored as floats, so timeseries
+     * of variables which are not read as floats (see
+     * {@link GridDataSource#hasFloatValues(String)}) lose precision once a
+     * store is built for them.
+     * 
+     * @param varId
+     *            The ID of the variable to build a {@link TimeseriesStore}
+     *            for
+     * @throws DataReadingException
+     *             If there is a problem reading the data or writing the store
+     * @throws VariableNotFoundException
+     *             If the variable is not present in this dataset
+     */
+    public void buildTimeseriesStore(String varId) throws DataReadingException,
+            VariableNotFoundException {
+        VariableMetadata variableMetadata = getVariableMetadata(varId);
+        if (!(variableMetadata instanceof GridVariableMetadata)
+                || variableMetadata.getTemporalDomain() == null) {
+            throw new DataReadingException(
+                    "Timeseries stores can only be built for gridded variables with a time axis");
+        }
+        GridVariableMetadata metadata = (GridVariableMetadata) variableMetadata;
+        try (GridDataSource dataSource = openDataSource()) {
+            TimeseriesStore.build(getId(), varId, dataSource, getShape(metadata));
+        }
+    }
+
+    /**
+     * @param varId
+     *            The ID of the variable to check
+     * @return <code>true</code> if a {@link TimeseriesStore} has been built
+     *         for the given variable and is up to date with the underlying
+     *         data
+     * @throws DataReadingException
+     *             If there is a problem opening the underlying data
+     * @throws VariableNotFoundException
+     *             If the variable is not present in this dataset
+     */
+    public boolean hasTimeseriesStore(String varId) throws DataReadingException,
+            VariableNotFoundException {
+        VariableMetadata variableMetadata = getVariableMetadata(varId);
+        if (!(variableMetadata instanceof GridVariableMetadata)) {
+            return false;
+        }
+        try (GridDataSource dataSource = openDataSource()) {
+            return TimeseriesStore.getStore(getId(), varId, dataSource,
+                    getShape((GridVariableMetadata) variableMetadata)) != null;
+        }
+    }
+
+    /*
+     * The shape of a variable in the order t,z,y,x, with absent axes having
+     * size 1
+     */
+    private static int[] getShape(GridVariableMetadata metadata) {
+        HorizontalGrid hGrid = metadata.getHorizontalDomain();
+        return new int[] {
+                metadata.getTemporalDomain() == null ? 1 : metadata.getTemporalDomain().size(),
+                metadata.getVerticalDomain() == null ? 1 : metadata.getVerticalDomain().size(),
+                hGrid.getYSize(), hGrid.getXSize() };
+    }
+
     protected abstract DataReadingStrategy getDataReadingStrategy();
 }
@@ -32,7 +32,13 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +80,24 @@ public abstract class HorizontalMesh4dDataset extends
     private static final long serialVersionUID = 1L;
     private static Logger log = LoggerFactory.getLogger(HorizontalMesh4dDataset.class);
 
+    /*
+     * Local copies of the variables are built one at a time, on a single
+     * background thread
+     */
+    private static final ExecutorService reorderer = Executors
+            .newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "edal-mesh-reorder");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /*
+     * The local copies of variables to read from, keyed on variable ID. This
+     * is replaced rather than modified, so it can be read without locking.
+     */
+    private transient volatile Map<String, ReorderedMeshStore> reorderedStores = Collections
+            .emptyMap();
+
     public HorizontalMesh4dDataset(String id, Collection<HorizontalMesh4dVariableMetadata> vars) {
         super(id, vars);
     }
@@ -221,6 +245,143 @@ public abstract class HorizontalMesh4dDataset extends
                 Collections.singletonList(new MeshCoordinates3D(hIndex, z, t))).get(0);
     }
 
+    /**
+     * Uses any existing local copies made by {@link #buildReorderedStore()}
+     * which are up to date for reading data. This is done once, rather than
+     * each time a data source is opened, so it should be called again if the
+     * source data changes without the dataset being reloaded.
+     */
+    public void openReorderedStore() {
+        String sourceId = getSourceId();
+        if (sourceId == null || DatasetFactory.getWorkingDirectory() == null) {
+            reorderedStores = Collections.emptyMap();
+            return;
+        }
+        Map<String, ReorderedMeshStore> stores = new HashMap<>();
+        for (String varId : getVariableIds()) {
+            if (isDerivedVariable(varId) != null) {
+                continue;
+            }
+            ReorderedMeshStore store = ReorderedMeshStore.getStore(getId(),
+                    getVariableMetadata(varId), sourceId);
+            if (store != null) {
+                stores.put(varId, store);
+            }
+        }
+        reorderedStores = stores;
+    }
+
+    /**
+     * Builds local copies of the variables in this dataset with the mesh
+     * nodes reordered along a space-filling curve, which will subsequently be
+     * used for reading data. Variables which already have an up to date copy
+     * are not rebuilt. Each copy is used as soon as it has been built.
+     * 
+     * This requires a {@link DatasetFactory#getWorkingDirectory() working
+     * directory} to have been set, and for {@link #getSourceId()} to be
+     * implemented.
+     * 
+     * @throws DataReadingException
+     *             If there is a problem reading the data or writing the copies
+     */
+    public void buildReorderedStore() throws DataReadingException {
+        String sourceId = getSourceId();
+        if (sourceId == null) {
+            throw new DataReadingException("Dataset " + getId()
+                    + " cannot be reordered, since its source cannot be identified");
+        }
+        openReorderedStore();
+        /*
+         * Variables generally share a small number of meshes, so only
+         * calculate the order once for each
+         */
+        Map<HorizontalMesh, int[]> orders = new IdentityHashMap<>();
+        try (HZTDataSource dataSource = openDataSource()) {
+            for (String varId : getVariableIds()) {
+                if (isDerivedVariable(varId) != null || reorderedStores.containsKey(varId)) {
+                    /*
+                     * Derived variables are not read from the data source, and
+                     * up to date copies don't need rebuilding
+                     */
+                    continue;
+                }
+                HorizontalMesh4dVariableMetadata metadata = getVariableMetadata(varId);
+                HorizontalMesh mesh = metadata.getHorizontalDomain();
+                int[] order = orders.get(mesh);
+                if (order == null) {
+                    order = ReorderedMeshStore.getHilbertOrder(mesh);
+                    orders.put(mesh, order);
+                }
+                ReorderedMeshStore.build(getId(), metadata, sourceId, order, dataSource);
+                ReorderedMeshStore store = ReorderedMeshStore.getStore(getId(), metadata,
+                        sourceId);
+                if (store != null) {
+                    /*
+                     * Data sources which are already open keep the stores
+                     * they were opened with
+                     */
+                    Map<String, ReorderedMeshStore> stores = new HashMap<>(reorderedStores);
+                    stores.put(varId, store);
+                    reorderedStores = stores;
+                }
+            }
+        }
+    }
+
+    /**
+     * Uses the existing local copies of this dataset's variables (see
+     * {@link #openReorderedStore()}), and then builds any which are missing
+     * or out of date on a background thread (see
+     * {@link #buildReorderedStore()}). Until then, data is read from the
+     * source. Datasets are reordered one at a time.
+     * 
+     * @return A {@link Future} which completes when the copies have been
+     *         built
+     */
+    public Future<?> buildReorderedStoreInBackground() {
+        openReorderedStore();
+        return reorderer.submit(() -> {
+            try {
+                buildReorderedStore();
+            } catch (RuntimeException e) {
+                log.warn("Unable to reorder the nodes of dataset " + getId()
+                        + ".  Data will be read from the source files.", e);
+            }
+        });
+    }
+
+    /**
+     * Gets a string which identifies the source data of this dataset, and
+     * which changes whenever the source data changes. This is used to
+     * determine whether local copies made by {@link #buildReorderedStore()}
+     * are up to date.
+     * 
+     * @return The source ID, or <code>null</code> if the source data cannot be
+     *         identified, in which case local copies will not be used
+     */
+    protected String getSourceId() {
+        return null;
+    }
+
+    /**
+     * Wraps a {@link HZTDataSource} so that data is read from the local copies
+     * made by {@link #buildReorderedStore()} where they are available.
+     * Subclasses should call this from {@link #openDataSource()}.
+     * 
+     * @param dataSource
+     *            The {@link HZTDataSource} to read the source data from
+     * @return A {@link HZTDataSource} which reads from the local copies where
+     *         available, or the original {@link HZTDataSource} if there are
+     *         none
+     */
+    protected HZTDataSource useReorderedStore(HZTDataSource dataSource) {
+        Map<String, ReorderedMeshStore> stores = reorderedStores;
+        if (stores == null || stores.isEmpty()) {
+            return dataSource;
+        }
+        return ReorderedMeshStore.wrap(dataSource, stores);
+    }
+
     /*
      * Cache management
      * - 50 maps of in-out coordinate mappings
@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -43,6 +44,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.joda.time.Chronology;
 import org.joda.time.DateTime;
@@ -148,6 +151,7 @@ public abstract class HorizontallyDiscreteDataset<DS extends DataSource> extends
             StringBuilder name = new StringBuilder("Map of ");
 
             VerticalCrs vCrs = null;
+            List<String> varIdsToRead = new ArrayList<>();
             for (int i = 0; i < variableIds.size(); i++) {
                 String varId = variableIds.get(i);
                 VariableMetadata metadata = getVariableMetadata(varId);
@@ -170,15 +174,14 @@ public abstract class HorizontallyDiscreteDataset<DS extends DataSource> extends
                 }
 
                 name.append(varId + ", ");
-
-                /*
-                 * Do the actual data reading
-                 */
-                Array2D<Number> data = readHorizontalData(varId, domain, dataSource);
-
-                values.put(varId, data);
+                varIdsToRead.add(varId);
             }
 
+            /*
+             * Do the actual data reading
+             */
+            values.putAll(readHorizontalData(varIdsToRead, domain, dataSource));
+
             name.delete(name.length() - 2, name.length() - 1);
 
             String description = generateDescription("Map of variables:", varIds);
@@ -249,6 +252,69 @@ public abstract class HorizontallyDiscreteDataset<DS extends DataSource> extends
         return description.toString();
     }
 
+    /**
+     * Reads horizontal data for several variables, regardless of whether they
+     * are derived or not. If the {@link DataSource} supports it, the variables
+     * are read concurrently using the {@link DataReadExecutor}, and if any of
+     * the reads fail (or this thread is interrupted) the remaining reads are
+     * cancelled, or waited for if they have already started.
+     * 
+     * @param varIds
+     *            The IDs of the variables to read
+     * @param domain
+     *            The {@link MapDomain} on which to read data
+     * @param dataSource
+     *            The {@link DS} to read data from
+     * @return A {@link Map} of variable ID to the data read
+     */
+    private Map<String, Array2D<Number>> readHorizontalData(List<String> varIds,
+            final MapDomain domain, final DS dataSource)
+            throws IOException, DataReadingException, VariableNotFoundException {
+        Map<String, Array2D<Number>> ret = new HashMap<>();
+        if (varIds.size() < 2 || !dataSource.supportsConcurrentReads()
+                || DataReadExecutor.isReadThread()) {
+            for (String varId : varIds) {
+                ret.put(varId, readHorizontalData(varId, domain, dataSource));
+            }
+            return ret;
+        }
+
+        List<CompletableFuture<Array2D<Number>>> futures = new ArrayList<>();
+        for (final String varId : varIds) {
+            futures.add(
+                    DataReadExecutor.submit(() -> readHorizontalData(varId, domain, dataSource)));
+        }
+        try {
+            for (int i = 0; i < varIds.size(); i++) {
+                ret.put(varIds.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataReadingException("Interrupted whilst reading data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                /*
+                 * Includes DataReadingException and VariableNotFoundException
+                 */
+                throw (RuntimeException) cause;
+            }
+            throw new DataReadingException("Problem reading data", cause);
+        } finally {
+            /*
+             * Any reads which are still waiting are no longer needed. Reads
+             * which have started must finish before the caller closes the
+             * data source.
+             */
+            for (CompletableFuture<Array2D<Number>> future : futures) {
+                DataReadExecutor.cancelAndWait(future);
+            }
+        }
+        return ret;
+    }
+
     /**
      * Reads horizontal data for a variable, regardless of whether it is derived
      * or not
@@ -282,10 +348,30 @@ public abstract class HorizontallyDiscreteDataset<DS extends DataSource> extends
              * If we have already read the data, add it to the array, otherwise
              * read the data first.
              */
-            for (int i = 0; i < pluginSourceData.length; i++) {
-                String pluginSourceVarId = plugin.usesVariables()[i];
-                pluginSourceData[i] = readHorizontalData(pluginSourceVarId, domain, dataSource);
-                pluginSourceMetadata[i] = getVariableMetadata(pluginSourceVarId);
+            boolean allUnderlying = true;
+            for (String pluginSourceVarId : plugin.usesVariables()) {
+                if (isDerivedVariable(pluginSourceVarId) != null) {
+                    allUnderlying = false;
+                }
+            }
+            if (allUnderlying) {
+                /*
+                 * None of the variables are derived, so they can all be read
+                 * together (e.g. the components of a vector)
+                 */
+                List<Array2D<Number>> underlyingData = readUnderlyingHorizontalData(
+                        Arrays.asList(plugin.usesVariables()), domain, dataSource);
+                for (int i = 0; i < pluginSourceData.length; i++) {
+                    pluginSourceData[i] = underlyingData.get(i);
+                    pluginSourceMetadata[i] = getVariableMetadata(plugin.usesVariables()[i]);
+                }
+            } else {
+                for (int i = 0; i < pluginSourceData.length; i++) {
+                    String pluginSourceVarId = plugin.usesVariables()[i];
+                    pluginSourceData[i] = readHorizontalData(pluginSourceVarId, domain,
+                            dataSource);
+                    pluginSourceMetadata[i] = getVariableMetadata(pluginSourceVarId);
+                }
             }
 
             return plugin.generateArray2D(varId, new Array2D<HorizontalPosition>(domain.getYSize(),
@@ -1464,6 +1550,36 @@ public abstract class HorizontallyDiscreteDataset<DS extends DataSource> extends
     protected abstract Array2D<Number> readUnderlyingHorizontalData(String varId, MapDomain domain,
             DS dataSource) throws DataReadingException, VariableNotFoundException;
 
+    /**
+     * Reads horizontal data for several non-derived variables on the same
+     * {@link MapDomain}. The default implementation reads each variable
+     * separately. Subclasses should override this if they can read several
+     * variables more efficiently together.
+     * 
+     * @param varIds
+     *            The IDs of the variables to read
+     * @param domain
+     *            The {@link MapDomain} on which to read data
+     * @param dataSource
+     *            The {@link DS} to read data from
+     * @return A {@link List} of {@link Array2D}s containing the data for each
+     *         variable, in the same order as the variable IDs
+     * @throws DataReadingException
+     *             If there is a problem reading the data
+     * @throws VariableNotFoundException
+     *             If any of the requested variables are not present in the
+     *             {@link Dataset}
+     */
+    protected List<Array2D<Number>> readUnderlyingHorizontalData(List<String> varIds,
+            MapDomain domain, DS dataSource)
+            throws DataReadingException, VariableNotFoundException {
+        List<Array2D<Number>> ret = new ArrayList<>(varIds.size());
+        for (String varId : varIds) {
+            ret.add(readUnderlyingHorizontalData(varId, domain, dataSource));
+        }
+        return ret;
+    }
+
     /**
      * Reads profile data for a given non-derived variable
      * 
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.util.Map;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.util.Array4D;
+import uk.ac.rdg.resc.edal.util.ValuesArray4D;
+
+/**
+ * A simple in-memory implementation of a {@link GridDataSource}, mainly
+ * useful for testing.
+ * 
+ * @author agent
+ */
+public class InMemoryGridDataSource implements GridDataSource {
+
+    /*
+     * Map of variable ID to data, indexed by [t][z][y][x]
+     */
+    private final Map<String, Number[][][][]> data;
+
+    public InMemoryGridDataSource(Map<String, Number[][][][]> data) {
+        this.data = data;
+    }
+
+    @Override
+    public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin, int zmax,
+            int ymin, int ymax, int xmin, int xmax) throws DataReadingException {
+        Number[][][][] values = data.get(variableId);
+        if (values == null) {
+            throw new DataReadingException("Variable " + variableId + " not found");
+        }
+        Array4D<Number> ret = new ValuesArray4D(tmax - tmin + 1, zmax - zmin + 1,
+                ymax - ymin + 1, xmax - xmin + 1);
+        for (int t = tmin; t <= tmax; t++) {
+            for (int z = zmin; z <= zmax; z++) {
+                for (int y = ymin; y <= ymax; y++) {
+                    for (int x = xmin; x <= xmax; x++) {
+                        ret.set(values[t][z][y][x], t - tmin, z - zmin, y - ymin, x - xmin);
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void close() throws DataReadingException {
+    }
+
+    @Override
+    public boolean supportsConcurrentReads() {
+        /*
+         * The data is never modified
+         */
+        return true;
+    }
+}
@@ -0,0 +1,638 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.joda.time.DateTime;
+import org.opengis.metadata.extent.GeographicBoundingBox;
+
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.geometry.BoundingBoxImpl;
+import uk.ac.rdg.resc.edal.util.Extents;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+/**
+ * A {@link FeatureIndexer} which stores its index in a compact binary file,
+ * which is memory-mapped rather than read into memory. Opening an existing
+ * index therefore takes a constant time, and the index can be larger than the
+ * heap.
+ * 
+ * The index is a packed R-tree. Features are sorted along a Hilbert curve
+ * (based on the centres of their horizontal bounds) and stored as fixed-size
+ * records, along with a bitmask of the variables they contain. Consecutive
+ * runs of records are then grouped into nodes, each of which stores the
+ * bounds of its children, and so on up to a single root node.
+ * 
+ * As with {@link PRTreeFeatureIndexer}, all positions are stored in WGS84 with
+ * longitudes in the range (-180:180]. A single index can contain features with
+ * at most 64 different variables, and the IDs of all of its features can take
+ * up at most 2GB.
+ * 
+ * Adding or removing features rewrites the index file, so changes should be
+ * made in as few batches as possible - see
+ * {@link MappedFeatureIndexer#updateFeatures(Collection, List)}.
+ * 
+ * @author agent
+ */
+public class MappedFeatureIndexer implements FeatureIndexer {
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * The second version of the format added the revision
+     */
+    private static final int MAGIC = 0x45464932;
+    /*
+     * The number of children of each node in the tree
+     */
+    private static final int NODE_SIZE = 32;
+    /*
+     * minX, maxX, minY, maxY, minZ, maxZ, minT, maxT, variable mask
+     */
+    private static final int BOUNDS_SIZE = 9 * 8;
+    /*
+     * Records also contain the offset of their ID
+     */
+    private static final int RECORD_SIZE = BOUNDS_SIZE + 4;
+    /*
+     * Records are mapped in segments of this many, since each mapping is
+     * limited to 2GB
+     */
+    private static final int SEGMENT_BITS = 24;
+    private static final int RECORDS_PER_SEGMENT = 1 << SEGMENT_BITS;
+    private static final int HILBERT_ORDER = 16;
+
+    private final File file;
+    private transient Index index;
+
+    /**
+     * Creates a {@link MappedFeatureIndexer} backed by the given file. If the
+     * file exists, the existing index will be used.
+     * 
+     * @param file
+     *            The file to store the index in
+     * @throws DataReadingException
+     *             If the file exists but is not a valid index
+     */
+    public MappedFeatureIndexer(File file) throws DataReadingException {
+        this.file = file;
+        this.index = openIndex(file);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        index = openIndex(file);
+    }
+
+    private static Index openIndex(File file) throws DataReadingException {
+        if (!file.exists()) {
+            return Index.EMPTY;
+        }
+        try {
+            return new Index(file);
+        } catch (IOException | RuntimeException e) {
+            throw new DataReadingException("Problem reading feature index from " + file, e);
+        }
+    }
+
+    /**
+     * @return The number of features in this index
+     */
+    public int size() {
+        return index.nRecords;
+    }
+
+    /**
+     * @return An identifier for the current contents of the index file, which
+     *         changes every time it is rewritten. Information stored alongside
+     *         the index can record this, and be checked against it, to ensure
+     *         that the two were written together. This is 0 if no index has
+     *         been written.
+     */
+    public long getRevision() {
+        return index.revision;
+    }
+
+    @Override
+    public void addFeatures(List<FeatureBounds> features) {
+        updateFeatures(Collections.<String> emptySet(), features);
+    }
+
+    @Override
+    public void removeFeatures(Collection<String> featureIds) {
+        updateFeatures(featureIds, Collections.<FeatureBounds> emptyList());
+    }
+
+    /**
+     * Removes and adds features to this index, rewriting the index file once
+     * 
+     * @param removeIds
+     *            The IDs of features to remove from the index. Any IDs which
+     *            are not present are ignored.
+     * @param features
+     *            The features to add to the index
+     */
+    public synchronized void updateFeatures(Collection<String> removeIds,
+            List<FeatureBounds> features) {
+        if (removeIds.isEmpty() && features.isEmpty() && file.exists()) {
+            return;
+        }
+        Set<String> removeSet = removeIds instanceof Set ? (Set<String>) removeIds
+                : new HashSet<>(removeIds);
+        for (FeatureBounds feature : features) {
+            /*
+             * Transform to WGS84 if required
+             */
+            if (!GISUtils.isWgs84LonLat(feature.hBbox.getCoordinateReferenceSystem())) {
+                feature.hBbox = GISUtils.toWGS84BoundingBox(feature.hBbox);
+            }
+            /*
+             * Now ensure minimum x value of bounding box is in the range
+             * (-180:180]
+             */
+            feature.hBbox = PRTreeFeatureIndexer.moveBoundingBoxToConstrainMinTo180(feature.hBbox);
+        }
+
+        List<FeatureBounds> allFeatures = new ArrayList<>(index.nRecords + features.size());
+        for (FeatureBounds feature : index.readAll()) {
+            if (!removeSet.contains(feature.id)) {
+                allFeatures.add(feature);
+            }
+        }
+        allFeatures.addAll(features);
+        try {
+            write(file, allFeatures);
+        } catch (IOException e) {
+            throw new DataReadingException("Problem writing feature index to " + file, e);
+        }
+        index = openIndex(file);
+    }
+
+    @Override
+    public Collection<String> findFeatureIds(BoundingBox horizontalExtent,
+            Extent<Double> verticalExtent, Extent<DateTime> timeExtent,
+            Collection<String> variableIds) {
+        if (!GISUtils.isWgs84LonLat(horizontalExtent.getCoordinateReferenceSystem())) {
+            GeographicBoundingBox geographicBoundingBox = GISUtils
+                    .toGeographicBoundingBox(horizontalExtent);
+            horizontalExtent = new BoundingBoxImpl(geographicBoundingBox.getWestBoundLongitude(),
+                    geographicBoundingBox.getSouthBoundLatitude(),
+                    geographicBoundingBox.getEastBoundLongitude(),
+                    geographicBoundingBox.getNorthBoundLatitude(), GISUtils.defaultGeographicCRS());
+        }
+        horizontalExtent = PRTreeFeatureIndexer
+                .moveBoundingBoxToConstrainMinTo180(horizontalExtent);
+
+        double[] query = new double[6];
+        query[2] = horizontalExtent.getMinY();
+        query[3] = horizontalExtent.getMaxY();
+        query[4] = verticalExtent == null ? -Double.MAX_VALUE : verticalExtent.getLow();
+        query[5] = verticalExtent == null ? Double.MAX_VALUE : verticalExtent.getHigh();
+        long tLow = timeExtent == null ? -Long.MAX_VALUE : timeExtent.getLow().getMillis();
+        long tHigh = timeExtent == null ? Long.MAX_VALUE : timeExtent.getHigh().getMillis();
+
+        Index index = this.index;
+        long mask = index.getVariableMask(variableIds);
+        Collection<String> featureIds = new LinkedHashSet<>();
+        if (mask < 0) {
+            /*
+             * We have a variable which no features contain
+             */
+            return featureIds;
+        }
+
+        /*
+         * Check to see if we have a bounding box which crosses the date line.
+         * If so, make 2 queries.
+         */
+        if (horizontalExtent.getMaxX() > 180) {
+            if (horizontalExtent.getMaxX() > 540) {
+                /*
+                 * We have a bounding box that spans the date line at both ends
+                 */
+                query[0] = -180;
+                query[1] = 180;
+                index.find(query, tLow, tHigh, mask, featureIds);
+            } else {
+                query[0] = horizontalExtent.getMinX();
+                query[1] = 180;
+                index.find(query, tLow, tHigh, mask, featureIds);
+                query[0] = -180;
+                query[1] = GISUtils.constrainLongitude180(horizontalExtent.getMaxX());
+                index.find(query, tLow, tHigh, mask, featureIds);
+            }
+        } else {
+            query[0] = horizontalExtent.getMinX();
+            query[1] = horizontalExtent.getMaxX();
+            index.find(query, tLow, tHigh, mask, featureIds);
+        }
+        return featureIds;
+    }
+
+    @Override
+    public Set<String> getAllFeatureIds() {
+        Index index = this.index;
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < index.nRecords; i++) {
+            ids.add(index.getId(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Writes a complete index to a file. Features must already be in WGS84
+     * with minimum longitudes in the range (-180:180]
+     */
+    private static void write(File file, List<FeatureBounds> features) throws IOException {
+        /*
+         * Build the table of variable IDs
+         */
+        List<String> varIds = new ArrayList<>();
+        for (FeatureBounds feature : features) {
+            if (feature.variableIds != null) {
+                for (String varId : feature.variableIds) {
+                    if (!varIds.contains(varId)) {
+                        varIds.add(varId);
+                    }
+                }
+            }
+        }
+        if (varIds.size() > 64) {
+            throw new IllegalArgumentException(
+                    "A MappedFeatureIndexer can only index features with up to 64 variables");
+        }
+
+        /*
+         * Sort the features along a Hilbert curve. The distance is less than
+         * 2^32, so we pack it (unsigned - it overflows an int) above the
+         * feature index to sort both together.
+         */
+        int nRecords = features.size();
+        int cells = 1 << HILBERT_ORDER;
+        long[] keys = new long[nRecords];
+        for (int i = 0; i < nRecords; i++) {
+            BoundingBox bbox = features.get(i).hBbox;
+            double x = GISUtils.constrainLongitude180((bbox.getMinX() + bbox.getMaxX()) / 2.0);
+            double y = (bbox.getMinY() + bbox.getMaxY()) / 2.0;
+            int xCell = (int) Math.max(0, Math.min(cells - 1, (x + 180.0) / 360.0 * cells));
+            int yCell = (int) Math.max(0, Math.min(cells - 1, (y + 90.0) / 180.0 * cells));
+            keys[i] = ((ReorderedMeshStore.getHilbertDistance(cells, xCell, yCell)
+                    & 0xFFFFFFFFL) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        /*
+         * Calculate the number of nodes on each level of the tree, from the
+         * level directly above the records to the root
+         */
+        List<Integer> levelCounts = new ArrayList<>();
+        int count = nRecords;
+        do {
+            count = (count + NODE_SIZE - 1) / NODE_SIZE;
+            levelCounts.add(count);
+        } while (count > 1);
+
+        long revision;
+        do {
+            revision = ThreadLocalRandom.current().nextLong();
+        } while (revision == 0L);
+
+        File tmpFile = WorkingFiles.createTempFile(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmpFile)))) {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeLong(revision);
+            header.writeInt(nRecords);
+            header.writeInt(varIds.size());
+            for (String varId : varIds) {
+                header.writeUTF(varId);
+            }
+            header.writeInt(levelCounts.size());
+            for (Integer levelCount : levelCounts) {
+                header.writeInt(levelCount);
+            }
+            header.close();
+            out.writeInt(MAGIC);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+
+            /*
+             * Write the records, keeping their bounds to calculate the nodes
+             */
+            double[][] bounds = new double[nRecords][];
+            long[][] times = new long[nRecords][];
+            long[] masks = new long[nRecords];
+            long idOffset = 0;
+            for (int i = 0; i < nRecords; i++) {
+                FeatureBounds feature = features.get((int) keys[i]);
+                bounds[i] = new double[] { feature.hBbox.getMinX(), feature.hBbox.getMaxX(),
+                        feature.hBbox.getMinY(), feature.hBbox.getMaxY(),
+                        feature.verticalExtent.getLow(), feature.verticalExtent.getHigh() };
+                times[i] = new long[] { feature.timeExtent.getLow(),
+                        feature.timeExtent.getHigh() };
+                if (feature.variableIds != null) {
+                    for (String varId : feature.variableIds) {
+                        masks[i] |= 1L << varIds.indexOf(varId);
+                    }
+                }
+                writeBounds(out, bounds[i], times[i], masks[i]);
+                if (idOffset > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(
+                            "The feature IDs are too large to fit into a MappedFeatureIndexer");
+                }
+                out.writeInt((int) idOffset);
+                idOffset += 2 + feature.id.getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            /*
+             * Write the nodes, merging the bounds of each level's children
+             */
+            for (int levelCount : levelCounts) {
+                double[][] nodeBounds = new double[levelCount][];
+                long[][] nodeTimes = new long[levelCount][];
+                long[] nodeMasks = new long[levelCount];
+                for (int n = 0; n < levelCount; n++) {
+                    nodeBounds[n] = new double[] { Double.MAX_VALUE, -Double.MAX_VALUE,
+                            Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE,
+                            -Double.MAX_VALUE };
+                    nodeTimes[n] = new long[] { Long.MAX_VALUE, Long.MIN_VALUE };
+                    int end = Math.min((n + 1) * NODE_SIZE, bounds.length);
+                    for (int c = n * NODE_SIZE; c < end; c++) {
+                        for (int d = 0; d < 6; d += 2) {
+                            nodeBounds[n][d] = Math.min(nodeBounds[n][d], bounds[c][d]);
+                            nodeBounds[n][d + 1] = Math.max(nodeBounds[n][d + 1],
+                                    bounds[c][d + 1]);
+                        }
+                        nodeTimes[n][0] = Math.min(nodeTimes[n][0], times[c][0]);
+                        nodeTimes[n][1] = Math.max(nodeTimes[n][1], times[c][1]);
+                        nodeMasks[n] |= masks[c];
+                    }
+                    writeBounds(out, nodeBounds[n], nodeTimes[n], nodeMasks[n]);
+                }
+                bounds = nodeBounds;
+                times = nodeTimes;
+                masks = nodeMasks;
+            }
+
+            /*
+             * Finally write the IDs
+             */
+            for (int i = 0; i < nRecords; i++) {
+                byte[] id = features.get((int) keys[i]).id.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+            }
+        } catch (IOException | RuntimeException e) {
+            tmpFile.delete();
+            throw e;
+        }
+        WorkingFiles.moveIntoPlace(tmpFile, file);
+    }
+
+    private static void writeBounds(DataOutputStream out, double[] bounds, long[] times,
+            long mask) throws IOException {
+        for (double bound : bounds) {
+            out.writeDouble(bound);
+        }
+        out.writeLong(times[0]);
+        out.writeLong(times[1]);
+        out.writeLong(mask);
+    }
+
+    /**
+     * A memory-mapped index file
+     */
+    private static final class Index {
+        private static final Index EMPTY = new Index();
+
+        private final long revision;
+        private final int nRecords;
+        private final List<String> varIds;
+        private final int[] levelCounts;
+        private final ByteBuffer[] records;
+        private final ByteBuffer[] levels;
+        private final ByteBuffer ids;
+
+        private Index() {
+            revision = 0L;
+            nRecords = 0;
+            varIds = Collections.emptyList();
+            levelCounts = new int[0];
+            records = new ByteBuffer[0];
+            levels = new ByteBuffer[0];
+            ids = null;
+        }
+
+        private Index(File file) throws IOException {
+            long headerEnd;
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a feature index");
+                }
+                int headerLength = in.readInt();
+                headerEnd = 8 + headerLength;
+                revision = in.readLong();
+                nRecords = in.readInt();
+                int nVars = in.readInt();
+                varIds = new ArrayList<>();
+                for (int i = 0; i < nVars; i++) {
+                    varIds.add(in.readUTF());
+                }
+                levelCounts = new int[in.readInt()];
+                for (int i = 0; i < levelCounts.length; i++) {
+                    levelCounts[i] = in.readInt();
+                }
+            }
+
+            /*
+             * Map each section separately, since each mapping is limited to
+             * 2GB
+             */
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long position = headerEnd;
+                records = new ByteBuffer[(nRecords + RECORDS_PER_SEGMENT - 1)
+                        / RECORDS_PER_SEGMENT];
+                for (int i = 0; i < records.length; i++) {
+                    long size = (long) Math.min(RECORDS_PER_SEGMENT,
+                            nRecords - i * RECORDS_PER_SEGMENT) * RECORD_SIZE;
+                    records[i] = channel.map(MapMode.READ_ONLY, position, size);
+                    position += size;
+                }
+                levels = new ByteBuffer[levelCounts.length];
+                for (int i = 0; i < levelCounts.length; i++) {
+                    levels[i] = channel.map(MapMode.READ_ONLY, position,
+                            (long) levelCounts[i] * BOUNDS_SIZE);
+                    position += (long) levelCounts[i] * BOUNDS_SIZE;
+                }
+                ids = channel.map(MapMode.READ_ONLY, position, channel.size() - position);
+            }
+        }
+
+        /*
+         * Gets the bitmask of the given variables, or -1 if any of them are
+         * not in this index
+         */
+        private long getVariableMask(Collection<String> variableIds) {
+            long mask = 0L;
+            if (variableIds != null) {
+                for (String varId : variableIds) {
+                    int index = varIds.indexOf(varId);
+                    if (index < 0) {
+                        return -1L;
+                    }
+                    mask |= 1L << index;
+                }
+            }
+            return mask;
+        }
+
+        private void find(double[] query, long tLow, long tHigh, long mask,
+                Collection<String> featureIds) {
+            if (nRecords == 0) {
+                return;
+            }
+            /*
+             * Search down from the root node
+             */
+            find(levels.length - 1, 0, query, tLow, tHigh, mask, featureIds);
+        }
+
+        private void find(int level, int node, double[] query, long tLow, long tHigh, long mask,
+                Collection<String> featureIds) {
+            int start = node * NODE_SIZE;
+            if (level == 0) {
+                int end = Math.min(start + NODE_SIZE, nRecords);
+                for (int r = start; r < end; r++) {
+                    if (intersects(getRecords(r), getRecordOffset(r), query, tLow, tHigh,
+                            mask)) {
+                        featureIds.add(getId(r));
+                    }
+                }
+            } else {
+                ByteBuffer children = levels[level - 1];
+                int end = Math.min(start + NODE_SIZE, levelCounts[level - 1]);
+                for (int c = start; c < end; c++) {
+                    if (intersects(children, c * BOUNDS_SIZE, query, tLow, tHigh, mask)) {
+                        find(level - 1, c, query, tLow, tHigh, mask, featureIds);
+                    }
+                }
+            }
+        }
+
+        private static boolean intersects(ByteBuffer buffer, int offset, double[] query,
+                long tLow, long tHigh, long mask) {
+            if ((buffer.getLong(offset + 64) & mask) != mask) {
+                return false;
+            }
+            for (int d = 0; d < 6; d += 2) {
+                if (buffer.getDouble(offset + d * 8) > query[d + 1]
+                        || buffer.getDouble(offset + (d + 1) * 8) < query[d]) {
+                    return false;
+                }
+            }
+            return buffer.getLong(offset + 48) <= tHigh && buffer.getLong(offset + 56) >= tLow;
+        }
+
+        /*
+         * The mapped segment containing a record
+         */
+        private ByteBuffer getRecords(int record) {
+            return records[record >>> SEGMENT_BITS];
+        }
+
+        /*
+         * The offset of a record within its segment
+         */
+        private static int getRecordOffset(int record) {
+            return (record & (RECORDS_PER_SEGMENT - 1)) * RECORD_SIZE;
+        }
+
+        private String getId(int record) {
+            int offset = getRecords(record).getInt(getRecordOffset(record) + BOUNDS_SIZE);
+            byte[] bytes = new byte[ids.getShort(offset) & 0xFFFF];
+            ByteBuffer id = ids.duplicate();
+            id.position(offset + 2);
+            id.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /*
+         * Reads all of the features back from the index
+         */
+        private List<FeatureBounds> readAll() {
+            List<FeatureBounds> features = new ArrayList<>(nRecords);
+            for (int r = 0; r < nRecords; r++) {
+                ByteBuffer records = getRecords(r);
+                int offset = getRecordOffset(r);
+                BoundingBox bbox = new BoundingBoxImpl(records.getDouble(offset),
+                        records.getDouble(offset + 16), records.getDouble(offset + 8),
+                        records.getDouble(offset + 24), GISUtils.defaultGeographicCRS());
+                Extent<Double> zExtent = Extents.newExtent(records.getDouble(offset + 32),
+                        records.getDouble(offset + 40));
+                long mask = records.getLong(offset + 64);
+                Set<String> vars = new HashSet<>();
+                for (int v = 0; v < varIds.size(); v++) {
+                    if ((mask & (1L << v)) != 0) {
+                        vars.add(varIds.get(v));
+                    }
+                }
+                FeatureBounds feature = new FeatureBounds(getId(r), bbox, zExtent, null, vars);
+                feature.timeExtent = Extents.newExtent(records.getLong(offset + 48),
+                        records.getLong(offset + 56));
+                features.add(feature);
+            }
+            return features;
+        }
+    }
+}
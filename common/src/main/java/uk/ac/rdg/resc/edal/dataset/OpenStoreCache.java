@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of stores which have been opened from files in the working
+ * directory, keyed on their file. A store is reopened if its file has been
+ * rewritten since it was opened.
+ * 
+ * @param <S>
+ *            The type of store
+ * 
+ * @author agent
+ */
+final class OpenStoreCache<S extends Closeable> {
+    private static final Logger log = LoggerFactory.getLogger(OpenStoreCache.class);
+
+    /**
+     * Opens a store from its file
+     */
+    @FunctionalInterface
+    interface Opener<S> {
+        S open(File file) throws IOException;
+    }
+
+    private static final class Entry<S> {
+        private final S store;
+        private final long lastModified;
+
+        private Entry(S store, long lastModified) {
+            this.store = store;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final Map<File, Entry<S>> stores = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the open store for a file, opening it if necessary
+     * 
+     * @param file
+     *            The file containing the store. This must exist
+     * @param opener
+     *            Used to open the store if it is not open, or its file has
+     *            changed since it was opened
+     * @return The open store
+     * @throws IOException
+     *             If the store needed opening, and could not be opened
+     */
+    S get(File file, Opener<S> opener) throws IOException {
+        /*
+         * Read before opening the file, so that a store written in between is
+         * reopened next time
+         */
+        long lastModified = file.lastModified();
+        Entry<S> entry = stores.get(file);
+        if (entry != null && entry.lastModified != lastModified) {
+            /*
+             * The store has been rewritten since we opened it
+             */
+            if (stores.remove(file, entry)) {
+                close(file, entry);
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            Entry<S> opened = new Entry<>(opener.open(file), lastModified);
+            entry = stores.putIfAbsent(file, opened);
+            if (entry == null) {
+                entry = opened;
+            } else {
+                close(file, opened);
+            }
+        }
+        return entry.store;
+    }
+
+    /**
+     * Closes and removes the store for a file, if it is open. This should be
+     * called before the file is replaced.
+     * 
+     * @param file
+     *            The file containing the store
+     */
+    void remove(File file) {
+        Entry<S> entry = stores.remove(file);
+        if (entry != null) {
+            close(file, entry);
+        }
+    }
+
+    private void close(File file, Entry<S> entry) {
+        try {
+            entry.store.close();
+        } catch (IOException e) {
+            log.debug("Problem closing store " + file, e);
+        }
+    }
+}
@@ -31,7 +31,9 @@ package uk.ac.rdg.resc.edal.dataset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.joda.time.DateTime;
@@ -49,6 +51,11 @@ import uk.ac.rdg.resc.edal.util.GISUtils;
 /**
  * This uses a {@link PRTree} to index features spatially.
  *
+ * A {@link PRTree} can only be loaded once, so adding or removing features
+ * means rebuilding the tree from all of the features in the index. This is
+ * done lazily, the next time features are searched for, so that a series of
+ * changes only causes a single rebuild.
+ *
  * All features within this {@link PRTree} have their positions specified in
  * WGS84 with longitudes in the range (-180:180] - this is guaranteed by the
  * {@link PRTreeFeatureIndexer#addFeatures} method.
@@ -58,19 +65,19 @@ import uk.ac.rdg.resc.edal.util.GISUtils;
 public class PRTreeFeatureIndexer
         implements FeatureIndexer, MBRConverter<FeatureIndexer.FeatureBounds> {
 
-    private static final long serialVersionUID = 1L;
-    private PRTree<FeatureBounds> prTree;
-    private Set<String> featureIds;
+    private static final long serialVersionUID = 2L;
+    /* null when the features have changed since the tree was last loaded */
+    private volatile PRTree<FeatureBounds> prTree;
+    private Map<String, FeatureBounds> features;
 
     public PRTreeFeatureIndexer() {
         prTree = new PRTree<FeatureBounds>(this, 2);
-        featureIds = new HashSet<>();
+        features = new LinkedHashMap<>();
     }
 
     @Override
-    public void addFeatures(final List<FeatureBounds> features) {
+    public synchronized void addFeatures(final List<FeatureBounds> features) {
         for (FeatureBounds feature : features) {
-            featureIds.add(feature.id);
 
             /*
              * Transform to WGS84 if required
@@ -83,12 +90,38 @@ public class PRTreeFeatureIndexer
              * Now ensure minimum x value of bounding box is in the range (-180:180]
              */
             feature.hBbox = moveBoundingBoxToConstrainMinTo180(feature.hBbox);
+            this.features.put(feature.id, feature);
         }
 
-        prTree.load(features);
+        prTree = null;
+    }
+
+    @Override
+    public synchronized void removeFeatures(Collection<String> featureIds) {
+        if (features.keySet().removeAll(featureIds)) {
+            prTree = null;
+        }
     }
 
-    private static BoundingBox moveBoundingBoxToConstrainMinTo180(BoundingBox bbox) {
+    /*
+     * Gets the tree, loading it first if the features have changed
+     */
+    private PRTree<FeatureBounds> getTree() {
+        PRTree<FeatureBounds> tree = prTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = prTree;
+                if (tree == null) {
+                    tree = new PRTree<FeatureBounds>(this, 2);
+                    tree.load(new ArrayList<>(features.values()));
+                    prTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    static BoundingBox moveBoundingBoxToConstrainMinTo180(BoundingBox bbox) {
         /*
          * Transform bounding box to lat-lon here with min value in range
          * (-180:180].
@@ -151,6 +184,7 @@ public class PRTreeFeatureIndexer
          * Check to see if we have a bounding box which crosses the date line.
          * If so, make 2 requests to the PRTree
          */
+        PRTree<FeatureBounds> prTree = getTree();
         Collection<String> featureIds = new ArrayList<>();
         Iterable<FeatureBounds> features;
         if (horizontalExtent.getMaxX() > 180) {
@@ -204,8 +238,8 @@ public class PRTreeFeatureIndexer
     }
 
     @Override
-    public Set<String> getAllFeatureIds() {
-        return featureIds;
+    public synchronized Set<String> getAllFeatureIds() {
+        return new HashSet<>(features.keySet());
     }
 
     @Override
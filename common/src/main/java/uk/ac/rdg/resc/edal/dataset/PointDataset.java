@@ -78,7 +78,7 @@ public abstract class PointDataset<F extends DiscreteFeature<?, ?>>
     private Extent<DateTime> tExtent;
 
     public PointDataset(String id, Collection<? extends VariableMetadata> vars,
-            FeatureIndexer featureIndexer, BoundingBox bbox, Extent<Double> zExtent,
+            FeatureIndex featureIndexer, BoundingBox bbox, Extent<Double> zExtent,
             Extent<DateTime> tExtent) {
         super(id, vars, featureIndexer);
         this.bbox = bbox;
@@ -87,7 +87,7 @@ public abstract class PointDataset<F extends DiscreteFeature<?, ?>>
     }
 
     public PointDataset(String id, Collection<? extends VariableMetadata> vars,
-            FeatureIndexer featureIndexer) {
+            FeatureIndex featureIndexer) {
         super(id, vars, featureIndexer);
         double minX = Double.MAX_VALUE;
         double maxX = -Double.MAX_VALUE;
@@ -143,7 +143,7 @@ public abstract class PointDataset<F extends DiscreteFeature<?, ?>>
              * This conversion is safe because:
              * 
              * AbstractContinuousDomainDataset reads all features with
-             * getFeatureReader().readFeatures()
+             * getCachingFeatureReader(), which wraps getFeatureReader()
              * 
              * This class overrides getFeatureReader() to ensure that it returns
              * features of type F
@@ -158,6 +158,21 @@ public abstract class PointDataset<F extends DiscreteFeature<?, ?>>
         return pointFeatures;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Since every feature is converted to a single {@link PointFeature}, the
+     * {@link DiscreteFeatureReader} is given the target elevation so that it
+     * can avoid reading levels which will not be used.
+     */
+    @Override
+    protected List<? extends DiscreteFeature<?, ?>> readMapFeatures(
+            Collection<String> featureIds, Set<String> varIds, Extent<Double> zExtent,
+            Double targetZ) throws DataReadingException {
+        return getCachingFeatureReader().readFeatures(featureIds, varIds, zExtent, targetZ);
+    }
+
     /**
      * {@inheritDoc}
      * 
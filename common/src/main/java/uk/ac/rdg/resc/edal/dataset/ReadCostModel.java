@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * A simple cost model for reading data from a {@link GridDataSource}, used by
+ * {@link DataReadingStrategy#ADAPTIVE} to choose the cheapest
+ * {@link DataReadingStrategy} for each read.
+ * 
+ * The cost of a read is modelled as a fixed cost for each call to
+ * {@link GridDataSource#read} plus a cost for each value read. These start at
+ * default values and are then adjusted from the measured time of each read, so
+ * that e.g. remote datasets (where each call is expensive) and compressed
+ * datasets (where each value is expensive) each end up with appropriate
+ * strategies.
+ * 
+ * @author agent
+ */
+final class ReadCostModel {
+    private static final Logger log = LoggerFactory.getLogger(ReadCostModel.class);
+
+    /*
+     * Initial estimates of the costs
+     */
+    private static final double DEFAULT_NANOS_PER_CALL = 200_000;
+    private static final double DEFAULT_NANOS_PER_VALUE = 20;
+    private static final double MIN_NANOS = 1;
+    /*
+     * How much weight to give to each new measurement
+     */
+    private static final double LEARNING_RATE = 0.2;
+    /*
+     * The bounding box strategy is not considered if it would need to hold
+     * more than this fraction of the memory currently available in the
+     * MemoryBudget
+     */
+    private static final double MAX_BOUNDING_BOX_MEMORY_FRACTION = 0.25;
+    private static final int BYTES_PER_VALUE = 8;
+
+    /*
+     * The models, keyed on the data source they apply to. Cache IDs change
+     * whenever the underlying data does, so we only keep the most recently
+     * used models.
+     */
+    private static final int MAX_MODELS = 1000;
+    private static final Map<String, ReadCostModel> models = new LinkedHashMap<String, ReadCostModel>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, ReadCostModel> eldest) {
+            return size() > MAX_MODELS;
+        }
+    };
+
+    /**
+     * A possible way of performing a read, with its estimated size
+     */
+    static final class ReadPlan {
+        final DataReadingStrategy strategy;
+        final long calls;
+        final long values;
+
+        ReadPlan(DataReadingStrategy strategy, long calls, long values) {
+            this.strategy = strategy;
+            this.calls = calls;
+            this.values = values;
+        }
+
+        @Override
+        public String toString() {
+            return strategy + " (" + calls + " calls, " + values + " values)";
+        }
+    }
+
+    private double nanosPerCall = DEFAULT_NANOS_PER_CALL;
+    private double nanosPerValue = DEFAULT_NANOS_PER_VALUE;
+
+    ReadCostModel() {
+    }
+
+    /**
+     * Gets the model for a data source. Data sources which read the same
+     * underlying data share a model.
+     * 
+     * @param dataSource
+     *            The {@link GridDataSource} to be read
+     * @return The {@link ReadCostModel} for that data source
+     */
+    static ReadCostModel forDataSource(GridDataSource dataSource) {
+        String key = dataSource.getClass().getName();
+        if (dataSource instanceof ChunkedGridDataSource) {
+            String cacheId = ((ChunkedGridDataSource) dataSource).getCacheId();
+            if (cacheId != null) {
+                key = cacheId;
+            }
+        }
+        synchronized (models) {
+            ReadCostModel model = models.get(key);
+            if (model == null) {
+                model = new ReadCostModel();
+                models.put(key, model);
+            }
+            return model;
+        }
+    }
+
+    /**
+     * Chooses the cheapest way of reading the data for a
+     * {@link Domain2DMapper}
+     * 
+     * @param dataSource
+     *            The {@link GridDataSource} which will be read
+     * @param varId
+     *            The ID of the variable which will be read
+     * @param domainMapper
+     *            The {@link Domain2DMapper} describing the data required. This
+     *            must not be empty.
+     * @return The {@link ReadPlan} with the lowest estimated cost
+     * @throws DataReadingException
+     *             If there is a problem getting the chunk layout of the data
+     */
+    ReadPlan choosePlan(GridDataSource dataSource, String varId, Domain2DMapper domainMapper)
+            throws DataReadingException {
+        int[] chunkShape = null;
+        if (dataSource instanceof ChunkedGridDataSource) {
+            chunkShape = ((ChunkedGridDataSource) dataSource).getChunkShape(varId);
+        }
+
+        /*
+         * Count the unique points, scanlines, coalesced blocks and chunks in a
+         * single pass over the source grid indices. These are sorted, so each
+         * scanline is contiguous, and points which map to several target
+         * points are repeated.
+         */
+        int iSize = domainMapper.getSourceGridISize();
+        BitSet chunks = null;
+        int minXChunk = 0;
+        int minYChunk = 0;
+        int nXChunks = 0;
+        if (chunkShape != null) {
+            chunks = new BitSet();
+            minXChunk = domainMapper.getMinIIndex() / chunkShape[3];
+            minYChunk = domainMapper.getMinJIndex() / chunkShape[2];
+            nXChunks = domainMapper.getMaxIIndex() / chunkShape[3] - minXChunk + 1;
+        }
+        ScanlineCoalescer.Counter coalesced = new ScanlineCoalescer.Counter();
+        long nPoints = 0;
+        long nScanlines = 0;
+        long scanlineValues = 0;
+        long previousIndex = -1;
+        int j = -1;
+        int imin = 0;
+        int imax = 0;
+        int nPairs = domainMapper.getNumPairs();
+        for (int pair = 0; pair < nPairs; pair++) {
+            long index = domainMapper.getSourceGridIndex(pair);
+            if (index == previousIndex) {
+                continue;
+            }
+            previousIndex = index;
+            int i = (int) (index % iSize);
+            int pointJ = (int) (index / iSize);
+            nPoints++;
+            if (pointJ != j) {
+                if (j >= 0) {
+                    nScanlines++;
+                    scanlineValues += imax - imin + 1;
+                    coalesced.addScanline(j, imin, imax);
+                }
+                j = pointJ;
+                imin = i;
+            }
+            imax = i;
+            if (chunks != null) {
+                chunks.set((pointJ / chunkShape[2] - minYChunk) * nXChunks + i / chunkShape[3]
+                        - minXChunk);
+            }
+        }
+        nScanlines++;
+        scanlineValues += imax - imin + 1;
+        coalesced.addScanline(j, imin, imax);
+
+        long boundingBoxSize = (long) (domainMapper.getMaxIIndex() - domainMapper.getMinIIndex() + 1)
+                * (domainMapper.getMaxJIndex() - domainMapper.getMinJIndex() + 1);
+
+        ReadPlan best = new ReadPlan(DataReadingStrategy.PIXEL_BY_PIXEL, nPoints, nPoints);
+        best = cheapest(best, new ReadPlan(DataReadingStrategy.SCANLINE, nScanlines,
+                scanlineValues));
+        best = cheapest(best, new ReadPlan(DataReadingStrategy.COALESCED_SCANLINE,
+                coalesced.getReads(), coalesced.getCells()));
+        if (boundingBoxSize * BYTES_PER_VALUE < MAX_BOUNDING_BOX_MEMORY_FRACTION
+                * MemoryBudget.getAvailableBytes()) {
+            best = cheapest(best,
+                    new ReadPlan(DataReadingStrategy.BOUNDING_BOX, 1, boundingBoxSize));
+        }
+        if (chunkShape != null) {
+            int nChunks = chunks.cardinality();
+            best = cheapest(best, new ReadPlan(DataReadingStrategy.CHUNK_ALIGNED, nChunks,
+                    (long) nChunks * chunkShape[2] * chunkShape[3]));
+        }
+        log.debug("Chose " + best + " for " + varId);
+        return best;
+    }
+
+    private ReadPlan cheapest(ReadPlan a, ReadPlan b) {
+        return estimateNanos(b) < estimateNanos(a) ? b : a;
+    }
+
+    /**
+     * @param plan
+     *            A {@link ReadPlan}
+     * @return The estimated time to carry out the plan, in nanoseconds
+     */
+    synchronized double estimateNanos(ReadPlan plan) {
+        return plan.calls * nanosPerCall + plan.values * nanosPerValue;
+    }
+
+    /**
+     * Updates the model with the measured time of a read.
+     * 
+     * A single measurement cannot separate the cost per call from the cost per
+     * value, so we attribute the difference between the measured and estimated
+     * time to whichever of these dominated the estimate.
+     * 
+     * @param plan
+     *            The {@link ReadPlan} which was carried out
+     * @param nanos
+     *            The time it took, in nanoseconds
+     */
+    synchronized void record(ReadPlan plan, long nanos) {
+        double callNanos = plan.calls * nanosPerCall;
+        double valueNanos = plan.values * nanosPerValue;
+        if (callNanos >= valueNanos) {
+            double measured = Math.max(MIN_NANOS, (nanos - valueNanos) / plan.calls);
+            nanosPerCall += LEARNING_RATE * (measured - nanosPerCall);
+        } else {
+            double measured = Math.max(MIN_NANOS, (nanos - callNanos) / plan.values);
+            nanosPerValue += LEARNING_RATE * (measured - nanosPerValue);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.dataset.HZTDataSource.MeshCoordinates3D;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.grid.HorizontalMesh;
+import uk.ac.rdg.resc.edal.metadata.HorizontalMesh4dVariableMetadata;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+
+/**
+ * A copy of a variable on an unstructured mesh, stored on local disk with the
+ * mesh nodes reordered along a Hilbert curve.
+ * 
+ * The order of nodes in mesh files is generally arbitrary, so that the nodes
+ * needed to draw a small area can be spread throughout the whole variable.
+ * Ordering them along a space-filling curve means that nodes which are close
+ * together in space are (mostly) close together on disk, so that a map tile
+ * can be read with a few contiguous reads.
+ * 
+ * Each store contains the permutation from the new node order to the original
+ * one, so that reads can still be made in terms of the original node indices.
+ * Stores are built with
+ * {@link HorizontalMesh4dDataset#buildReorderedStore()}, kept in the
+ * {@link DatasetFactory#getWorkingDirectory() working directory}, and ignored
+ * if the source data has changed since they were built.
+ * 
+ * @author agent
+ */
+public final class ReorderedMeshStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ReorderedMeshStore.class);
+
+    private static final int MAGIC = 0x45524D31;
+    private static final String STORE_DIR = "meshorder";
+    private static final String SUFFIX = ".nodes";
+    /*
+     * The order of the Hilbert curve used. Positions are quantised onto a grid
+     * of 2^HILBERT_ORDER cells in each direction.
+     */
+    private static final int HILBERT_ORDER = 15;
+    /*
+     * The maximum number of unused values which will be read between two
+     * required ones, rather than splitting them into separate reads
+     */
+    private static final int MAX_GAP = 1024;
+
+    /*
+     * Open stores, keyed on their file
+     */
+    private static final OpenStoreCache<ReorderedMeshStore> stores = new OpenStoreCache<>();
+
+    private final File file;
+    private final FileChannel channel;
+    private final String sourceId;
+    private final int tSize;
+    private final int zSize;
+    private final int nNodes;
+    /*
+     * Maps original node indices to their index in this store
+     */
+    private final int[] newIndices;
+    private final long dataOffset;
+
+    private ReorderedMeshStore(File file) throws IOException {
+        this.file = file;
+        @SuppressWarnings("resource")
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a reordered mesh store");
+            }
+            int headerLength = in.readInt();
+            byte[] headerBytes = new byte[headerLength];
+            in.readFully(headerBytes);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+            tSize = header.readInt();
+            zSize = header.readInt();
+            nNodes = header.readInt();
+            sourceId = header.readUTF();
+            newIndices = new int[nNodes];
+            for (int i = 0; i < nNodes; i++) {
+                newIndices[in.readInt()] = i;
+            }
+            dataOffset = 8 + headerLength + 4L * nNodes;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads values from this store
+     * 
+     * @param coordsToRead
+     *            The co-ordinates to read, with horizontal indices in the
+     *            original node order
+     * @return The values, in the same order as the co-ordinates. Missing
+     *         values are represented by <code>null</code>
+     * @throws IOException
+     *             If there is a problem reading the store
+     */
+    List<Number> read(List<MeshCoordinates3D> coordsToRead) throws IOException {
+        /*
+         * Find the position of each value in the store
+         */
+        int nCoords = coordsToRead.size();
+        long[] positions = new long[nCoords];
+        for (int i = 0; i < nCoords; i++) {
+            positions[i] = getPosition(coordsToRead.get(i));
+        }
+
+        /*
+         * Read the required values in contiguous runs
+         */
+        long[] sorted = positions.clone();
+        Arrays.sort(sorted);
+        float[] sortedValues = new float[nCoords];
+        int start = 0;
+        while (start < nCoords && sorted[start] < 0) {
+            start++;
+        }
+        while (start < nCoords) {
+            int end = start;
+            while (end + 1 < nCoords && sorted[end + 1] - sorted[end] - 1 <= MAX_GAP) {
+                end++;
+            }
+            long first = sorted[start];
+            ByteBuffer buffer = ByteBuffer.allocate((int) (sorted[end] - first + 1) * 4);
+            long offset = dataOffset + first * 4;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of reordered mesh store " + file);
+                }
+            }
+            for (int i = start; i <= end; i++) {
+                sortedValues[i] = buffer.getFloat((int) (sorted[i] - first) * 4);
+            }
+            start = end + 1;
+        }
+
+        List<Number> ret = new ArrayList<>(nCoords);
+        for (long position : positions) {
+            if (position < 0) {
+                ret.add(null);
+            } else {
+                float value = sortedValues[Arrays.binarySearch(sorted, position)];
+                ret.add(Float.isNaN(value) ? null : value);
+            }
+        }
+        return ret;
+    }
+
+    /*
+     * Gets the position (in values) of the given co-ordinates, or -1 if they
+     * are outside the variable
+     */
+    private long getPosition(MeshCoordinates3D coords) {
+        /*
+         * Absent axes have a size of 1 here, but may be given any index
+         */
+        int z = zSize == 1 ? 0 : coords.z;
+        int t = tSize == 1 ? 0 : coords.t;
+        if (coords.h < 0 || coords.h >= nNodes || z < 0 || z >= zSize || t < 0 || t >= tSize) {
+            return -1;
+        }
+        return ((long) t * zSize + z) * nNodes + newIndices[coords.h];
+    }
+
+    private boolean matches(String sourceId, int[] shape) {
+        return this.sourceId.equals(sourceId) && tSize == shape[0] && zSize == shape[1]
+                && nNodes == shape[2];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Gets the store for a variable, if one has been built and is up to date
+     * 
+     * @param datasetId
+     *            The ID of the dataset containing the variable
+     * @param metadata
+     *            The metadata of the variable
+     * @param sourceId
+     *            A string identifying the source data, which changes if the
+     *            source data changes
+     * @return The {@link ReorderedMeshStore}, or <code>null</code> if there is
+     *         no usable store for this variable
+     */
+    static ReorderedMeshStore getStore(String datasetId,
+            HorizontalMesh4dVariableMetadata metadata, String sourceId) {
+        File file = getStoreFile(datasetId, metadata.getId());
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        ReorderedMeshStore store;
+        try {
+            store = stores.get(file, ReorderedMeshStore::new);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to open reordered mesh store " + file, e);
+            return null;
+        }
+        return store.matches(sourceId, getShape(metadata)) ? store : null;
+    }
+
+    /**
+     * Builds a store for a variable, replacing any existing one
+     * 
+     * @param datasetId
+     *            The ID of the dataset containing the variable
+     * @param metadata
+     *            The metadata of the variable
+     * @param sourceId
+     *            A string identifying the source data, which changes if the
+     *            source data changes
+     * @param order
+     *            The new order of the nodes, as returned by
+     *            {@link #getHilbertOrder(HorizontalMesh)}
+     * @param dataSource
+     *            The {@link HZTDataSource} to read the data from
+     * @throws DataReadingException
+     *             If there is no working directory, or there is a problem
+     *             reading the source data or writing the store
+     */
+    static void build(String datasetId, HorizontalMesh4dVariableMetadata metadata,
+            String sourceId, int[] order, HZTDataSource dataSource) throws DataReadingException {
+        String varId = metadata.getId();
+        File file = getStoreFile(datasetId, varId);
+        if (file == null) {
+            throw new DataReadingException(
+                    "A working directory must be set to build a reordered mesh store");
+        }
+        log.debug("Building reordered mesh store for " + datasetId + "/" + varId + " in " + file);
+
+        try {
+            WorkingFiles.write(file, tmpFile -> {
+                writeStore(tmpFile, metadata, sourceId, order, dataSource);
+                /*
+                 * Replacing a file which is open fails on some platforms
+                 */
+                stores.remove(file);
+            });
+        } catch (IOException e) {
+            throw new DataReadingException("Problem building reordered mesh store for " + varId,
+                    e);
+        }
+    }
+
+    private static void writeStore(File tmpFile, HorizontalMesh4dVariableMetadata metadata,
+            String sourceId, int[] order, HZTDataSource dataSource) throws IOException {
+        String varId = metadata.getId();
+        int[] shape = getShape(metadata);
+        int nNodes = shape[2];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmpFile)));
+                MemoryBudget.Reservation reservation = MemoryBudget.reserve(64L * nNodes)) {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(shape[0]);
+            header.writeInt(shape[1]);
+            header.writeInt(nNodes);
+            header.writeUTF(sourceId);
+            header.close();
+            out.writeInt(MAGIC);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+            for (int node : order) {
+                out.writeInt(node);
+            }
+
+            List<MeshCoordinates3D> coordsToRead = new ArrayList<>(nNodes);
+            for (int t = 0; t < shape[0]; t++) {
+                for (int z = 0; z < shape[1]; z++) {
+                    coordsToRead.clear();
+                    for (int node : order) {
+                        coordsToRead.add(new MeshCoordinates3D(node, z, t));
+                    }
+                    for (Number value : dataSource.read(varId, coordsToRead)) {
+                        out.writeFloat(value == null ? Float.NaN : value.floatValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the order of the nodes of a mesh along a Hilbert curve
+     * 
+     * @param mesh
+     *            The {@link HorizontalMesh} to order
+     * @return An array containing the original indices of the nodes, in their
+     *         new order
+     */
+    static int[] getHilbertOrder(HorizontalMesh mesh) {
+        int nNodes = (int) mesh.size();
+        double[] xs = new double[nNodes];
+        double[] ys = new double[nNodes];
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nNodes; i++) {
+            HorizontalPosition pos = mesh.getDomainObjects().get(i).getCentre();
+            xs[i] = pos.getX();
+            ys[i] = pos.getY();
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        /*
+         * Quantise the positions and sort on their distance along the curve.
+         * The distance fits into 30 bits, so we pack it above the node index
+         * to sort both together.
+         */
+        int cells = 1 << HILBERT_ORDER;
+        double xScale = maxX > minX ? (cells - 1) / (maxX - minX) : 0;
+        double yScale = maxY > minY ? (cells - 1) / (maxY - minY) : 0;
+        long[] keys = new long[nNodes];
+        for (int i = 0; i < nNodes; i++) {
+            int x = (int) ((xs[i] - minX) * xScale);
+            int y = (int) ((ys[i] - minY) * yScale);
+            keys[i] = ((long) getHilbertDistance(cells, x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[nNodes];
+        for (int i = 0; i < nNodes; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Calculates the distance along a Hilbert curve of a cell
+     * 
+     * @param n
+     *            The number of cells in each direction. Must be a power of 2
+     * @param x
+     *            The x-index of the cell
+     * @param y
+     *            The y-index of the cell
+     * @return The distance of the cell along the curve
+     */
+    static int getHilbertDistance(int n, int x, int y) {
+        int d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            /*
+             * Rotate the quadrant
+             */
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Wraps a {@link HZTDataSource} so that variables which have an up to
+     * date store are read from it
+     * 
+     * @param dataSource
+     *            The {@link HZTDataSource} to read any other variables from
+     * @param stores
+     *            A {@link Map} of variable ID to the store to read it from
+     * @return The wrapped {@link HZTDataSource}
+     */
+    static HZTDataSource wrap(final HZTDataSource dataSource,
+            final Map<String, ReorderedMeshStore> stores) {
+        return new HZTDataSource() {
+            @Override
+            public List<Number> read(String variableId, List<MeshCoordinates3D> coordsToRead)
+                    throws DataReadingException {
+                ReorderedMeshStore store = stores.get(variableId);
+                if (store == null) {
+                    return dataSource.read(variableId, coordsToRead);
+                }
+                try {
+                    return store.read(coordsToRead);
+                } catch (IOException e) {
+                    log.warn("Problem reading reordered mesh store for " + variableId
+                            + ".  Reading from the underlying data instead.", e);
+                    return dataSource.read(variableId, coordsToRead);
+                }
+            }
+
+            @Override
+            public void close() throws DataReadingException {
+                dataSource.close();
+            }
+        };
+    }
+
+    /*
+     * The shape of a variable in the order t,z,h, with absent axes having size
+     * 1
+     */
+    private static int[] getShape(HorizontalMesh4dVariableMetadata metadata) {
+        return new int[] {
+                metadata.getTemporalDomain() == null ? 1 : metadata.getTemporalDomain().size(),
+                metadata.getVerticalDomain() == null ? 1 : metadata.getVerticalDomain().size(),
+                (int) metadata.getHorizontalDomain().size() };
+    }
+
+    private static File getStoreFile(String datasetId, String varId) {
+        return WorkingFiles.getFile(STORE_DIR, datasetId, varId + SUFFIX);
+    }
+}
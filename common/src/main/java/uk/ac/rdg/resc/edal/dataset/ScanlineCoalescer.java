@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.ac.rdg.resc.edal.dataset.DomainMapper.Scanline;
+
+/**
+ * Groups the scanlines of a {@link Domain2DMapper} into rectangular blocks,
+ * each of which can be read from a {@link GridDataSource} in a single
+ * operation. This is used by the {@link DataReadingStrategy#COALESCED_SCANLINE
+ * coalesced-scanline} strategy.
+ * 
+ * Neighbouring scanlines are merged into a block as long as the number of
+ * "wasted" cells - those in the block which would not have been read by the
+ * {@link DataReadingStrategy#SCANLINE scanline} strategy - stays within a
+ * configurable limit, and is no more than the number of cells which are
+ * needed. The latter condition means that sparse mappings, where scanlines are
+ * far apart, are still read one row at a time.
+ * 
+ * The total number of reads saved and cells wasted are recorded, so that the
+ * limit can be tuned.
+ * 
+ * @author agent
+ */
+public final class ScanlineCoalescer {
+    private static final int DEFAULT_MAX_WASTED_CELLS = 4096;
+
+    private static volatile int maxWastedCells = DEFAULT_MAX_WASTED_CELLS;
+    private static final AtomicLong mergedReads = new AtomicLong(0);
+    private static final AtomicLong wastedCells = new AtomicLong(0);
+
+    private ScanlineCoalescer() {
+    }
+
+    /**
+     * Sets the maximum number of unneeded cells which may be read in order to
+     * merge scanlines into a single read. Setting this to zero means that only
+     * scanlines which are adjacent and have the same extent will be merged.
+     * 
+     * @param maxWastedCells
+     *            The maximum number of wasted cells in each merged read
+     */
+    public static void setMaxWastedCells(int maxWastedCells) {
+        if (maxWastedCells < 0) {
+            throw new IllegalArgumentException("Maximum wasted cells cannot be negative");
+        }
+        ScanlineCoalescer.maxWastedCells = maxWastedCells;
+    }
+
+    /**
+     * @return The maximum number of unneeded cells which may be read in order to
+     *         merge scanlines into a single read
+     */
+    public static int getMaxWastedCells() {
+        return maxWastedCells;
+    }
+
+    /**
+     * @return The total number of reads which have been saved by merging
+     *         scanlines, since the statistics were last reset
+     */
+    public static long getMergedReads() {
+        return mergedReads.get();
+    }
+
+    /**
+     * @return The total number of cells which have been read but not needed
+     *         as a result of merging scanlines, since the statistics were last
+     *         reset
+     */
+    public static long getWastedCells() {
+        return wastedCells.get();
+    }
+
+    /**
+     * Resets the merged read and wasted cell counts to zero
+     */
+    public static void resetStatistics() {
+        mergedReads.set(0);
+        wastedCells.set(0);
+    }
+
+    /**
+     * Groups the scanlines of a {@link Domain2DMapper} into blocks, and
+     * records the resulting statistics
+     * 
+     * @param domainMapper
+     *            The {@link Domain2DMapper} to read data for
+     * @return The blocks to read, in increasing j order
+     */
+    static List<Block> coalesce(Domain2DMapper domainMapper) {
+        int maxWasted = maxWastedCells;
+        List<Block> blocks = new ArrayList<>();
+        Block current = null;
+        Iterator<Scanline<int[]>> it = domainMapper.scanlineIterator();
+        while (it.hasNext()) {
+            Scanline<int[]> scanline = it.next();
+            if (current == null || !current.add(scanline, maxWasted)) {
+                current = new Block(scanline);
+                blocks.add(current);
+            }
+        }
+
+        long merged = 0;
+        long wasted = 0;
+        for (Block block : blocks) {
+            merged += block.scanlines.size() - 1;
+            wasted += block.getWastedCells();
+        }
+        mergedReads.addAndGet(merged);
+        wastedCells.addAndGet(wasted);
+        return blocks;
+    }
+
+    /*
+     * Whether a scanline can be added to a block without wasting too many
+     * cells
+     */
+    private static boolean canMerge(int blockImin, int blockImax, int blockJmin,
+            long blockUsedCells, int j, int imin, int imax, int maxWasted) {
+        int newImin = Math.min(blockImin, imin);
+        int newImax = Math.max(blockImax, imax);
+        long newUsedCells = blockUsedCells + imax - imin + 1;
+        long newWasted = (long) (newImax - newImin + 1) * (j - blockJmin + 1) - newUsedCells;
+        return newWasted <= maxWasted && newWasted <= newUsedCells;
+    }
+
+    /**
+     * Counts the reads and cells which coalescing would need, from the extents
+     * of scanlines supplied in increasing j order. This gives the same totals
+     * as {@link ScanlineCoalescer#coalesce(Domain2DMapper)} without creating
+     * the blocks, and does not affect the recorded statistics.
+     */
+    static final class Counter {
+        private final int maxWasted = maxWastedCells;
+        private long reads = 0;
+        private long closedCells = 0;
+        private int imin;
+        private int imax;
+        private int jmin;
+        private int jmax;
+        private long usedCells;
+
+        void addScanline(int j, int scanlineImin, int scanlineImax) {
+            if (reads > 0
+                    && canMerge(imin, imax, jmin, usedCells, j, scanlineImin, scanlineImax,
+                            maxWasted)) {
+                imin = Math.min(imin, scanlineImin);
+                imax = Math.max(imax, scanlineImax);
+                jmax = j;
+                usedCells += scanlineImax - scanlineImin + 1;
+                return;
+            }
+            closedCells += getOpenCells();
+            reads++;
+            imin = scanlineImin;
+            imax = scanlineImax;
+            jmin = j;
+            jmax = j;
+            usedCells = scanlineImax - scanlineImin + 1;
+        }
+
+        /**
+         * @return The number of read operations needed
+         */
+        long getReads() {
+            return reads;
+        }
+
+        /**
+         * @return The total number of cells which would be read
+         */
+        long getCells() {
+            return closedCells + getOpenCells();
+        }
+
+        private long getOpenCells() {
+            return reads == 0 ? 0 : (long) (imax - imin + 1) * (jmax - jmin + 1);
+        }
+    }
+
+    /**
+     * A rectangle of the source grid, covering one or more scanlines
+     */
+    static final class Block {
+        int imin;
+        int imax;
+        final int jmin;
+        int jmax;
+        /*
+         * The number of cells which would be read by separate scanline reads
+         */
+        long usedCells;
+        final List<Scanline<int[]>> scanlines = new ArrayList<>();
+
+        private Block(Scanline<int[]> scanline) {
+            jmin = scanline.getSourceGridJIndex();
+            jmax = jmin;
+            imin = getIMin(scanline);
+            imax = getIMax(scanline);
+            usedCells = imax - imin + 1;
+            scanlines.add(scanline);
+        }
+
+        /*
+         * Adds the scanline to this block if doing so does not waste too many
+         * cells
+         */
+        private boolean add(Scanline<int[]> scanline, int maxWasted) {
+            int scanlineImin = getIMin(scanline);
+            int scanlineImax = getIMax(scanline);
+            int j = scanline.getSourceGridJIndex();
+            if (!canMerge(imin, imax, jmin, usedCells, j, scanlineImin, scanlineImax,
+                    maxWasted)) {
+                return false;
+            }
+            imin = Math.min(imin, scanlineImin);
+            imax = Math.max(imax, scanlineImax);
+            jmax = j;
+            usedCells += scanlineImax - scanlineImin + 1;
+            scanlines.add(scanline);
+            return true;
+        }
+
+        int getWidth() {
+            return imax - imin + 1;
+        }
+
+        long getWastedCells() {
+            return (long) getWidth() * (jmax - jmin + 1) - usedCells;
+        }
+
+        private static int getIMin(Scanline<int[]> scanline) {
+            return scanline.getPixelMapEntries().get(0).getSourceGridIIndex();
+        }
+
+        private static int getIMax(Scanline<int[]> scanline) {
+            return scanline.getPixelMapEntries().get(scanline.getPixelMapEntries().size() - 1)
+                    .getSourceGridIIndex();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+/**
+ * A copy of a gridded variable stored on local disk with the time axis varying
+ * fastest, so that the whole timeseries at a single point can be read in one
+ * sequential read.
+ * 
+ * Gridded data is normally stored with the horizontal axes varying fastest, so
+ * that extracting a timeseries at a point needs a separate (small) read for
+ * every time step. For datasets with long time axes, it can be worth building
+ * a {@link TimeseriesStore} for variables which are often used for
+ * timeseries. This is done using
+ * {@link GriddedDataset#buildTimeseriesStore(String)}, and once built, the
+ * store is used automatically for timeseries extraction.
+ * 
+ * Stores are kept in the {@link DatasetFactory#getWorkingDirectory() working
+ * directory}. Each records the identity of the data it was built from (see
+ * {@link ChunkedGridDataSource#getCacheId()}) and its shape, and is ignored if
+ * either no longer matches the source data. Stores can therefore only be built
+ * for data sources which provide such an identity.
+ * 
+ * Values are stored as 32-bit floats, which is how most gridded data is held.
+ * Variables which the data source reads with more precision (see
+ * {@link GridDataSource#hasFloatValues(String)}) are rounded to floats in the
+ * store, and so in any timeseries read from it.
+ * 
+ * @author agent
+ */
+public final class TimeseriesStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TimeseriesStore.class);
+
+    private static final int MAGIC = 0x45545331;
+    private static final String STORE_DIR = "timeseries";
+    private static final String SUFFIX = ".tseries";
+    /*
+     * The maximum amount of data to transpose in memory at once whilst
+     * building a store
+     */
+    private static final long BUILD_BLOCK_BYTES = 32L * 1024 * 1024;
+
+    /*
+     * Open stores, keyed on their file
+     */
+    private static final OpenStoreCache<TimeseriesStore> stores = new OpenStoreCache<>();
+
+    private final File file;
+    private final FileChannel channel;
+    private final String sourceId;
+    private final int tSize;
+    private final int zSize;
+    private final int ySize;
+    private final int xSize;
+    private final long dataOffset;
+
+    private TimeseriesStore(File file) throws IOException {
+        this.file = file;
+        @SuppressWarnings("resource")
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a timeseries store");
+                }
+                int headerLength = in.readInt();
+                tSize = in.readInt();
+                zSize = in.readInt();
+                ySize = in.readInt();
+                xSize = in.readInt();
+                sourceId = in.readUTF();
+                dataOffset = 8 + headerLength;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the timeseries at a single point
+     * 
+     * @param z
+     *            The z index to read
+     * @param y
+     *            The y index to read
+     * @param x
+     *            The x index to read
+     * @param tmin
+     *            The first time index to read
+     * @param tmax
+     *            The last time index to read
+     * @return The values, with missing data represented by {@link Float#NaN}
+     * @throws IOException
+     *             If there is a problem reading the store
+     */
+    float[] readSeries(int z, int y, int x, int tmin, int tmax) throws IOException {
+        int nValues = tmax - tmin + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(nValues * 4);
+        long position = dataOffset + (getOffset(z, y, x) + tmin) * 4;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of timeseries store " + file);
+            }
+        }
+        buffer.flip();
+        float[] ret = new float[nValues];
+        buffer.asFloatBuffer().get(ret);
+        return ret;
+    }
+
+    private long getOffset(int z, int y, int x) {
+        return (((long) z * ySize + y) * xSize + x) * tSize;
+    }
+
+    private boolean matches(String sourceId, int[] shape) {
+        return this.sourceId.equals(sourceId) && tSize == shape[0] && zSize == shape[1]
+                && ySize == shape[2] && xSize == shape[3];
+    }
+
+    /**
+     * Gets the store for a variable, if one has been built and is up to date
+     * 
+     * @param datasetId
+     *            The ID of the dataset containing the variable
+     * @param varId
+     *            The ID of the variable
+     * @param dataSource
+     *            The {@link GridDataSource} which the data would otherwise be
+     *            read from
+     * @param shape
+     *            The shape of the variable, in the order t,z,y,x
+     * @return The {@link TimeseriesStore}, or <code>null</code> if there is no
+     *         usable store for this variable
+     */
+    static TimeseriesStore getStore(String datasetId, String varId, GridDataSource dataSource,
+            int[] shape) {
+        File file = getStoreFile(datasetId, varId);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        TimeseriesStore store;
+        try {
+            store = stores.get(file, TimeseriesStore::new);
+        } catch (IOException e) {
+            log.warn("Unable to open timeseries store " + file, e);
+            return null;
+        }
+        String sourceId = getSourceId(dataSource);
+        return sourceId != null && store.matches(sourceId, shape) ? store : null;
+    }
+
+    /**
+     * Builds a store for a variable, replacing any existing one
+     * 
+     * @param datasetId
+     *            The ID of the dataset containing the variable
+     * @param varId
+     *            The ID of the variable
+     * @param dataSource
+     *            The {@link GridDataSource} to read the data from
+     * @param shape
+     *            The shape of the variable, in the order t,z,y,x
+     * @throws DataReadingException
+     *             If there is no working directory, the data source cannot
+     *             identify its data, or there is a problem reading the source
+     *             data or writing the store
+     */
+    static void build(String datasetId, String varId, GridDataSource dataSource, int[] shape)
+            throws DataReadingException {
+        build(datasetId, varId, dataSource, shape, BUILD_BLOCK_BYTES);
+    }
+
+    /*
+     * Builds a store, transposing at most blockBytes of data in memory at once
+     */
+    static void build(String datasetId, String varId, GridDataSource dataSource, int[] shape,
+            long blockBytes) throws DataReadingException {
+        File file = getStoreFile(datasetId, varId);
+        if (file == null) {
+            throw new DataReadingException(
+                    "A working directory must be set to build a timeseries store");
+        }
+        String sourceId = getSourceId(dataSource);
+        if (sourceId == null) {
+            /*
+             * Without this, we could never tell whether the store was out of
+             * date
+             */
+            throw new DataReadingException("Cannot build a timeseries store for " + varId
+                    + ", since its data source does not identify the data it reads");
+        }
+        log.debug("Building timeseries store for " + datasetId + "/" + varId + " in " + file);
+
+        try {
+            WorkingFiles.write(file, tmpFile -> {
+                writeStore(tmpFile, varId, dataSource, sourceId, shape, blockBytes);
+                /*
+                 * Replacing a file which is open fails on some platforms
+                 */
+                stores.remove(file);
+            });
+        } catch (IOException e) {
+            throw new DataReadingException("Problem building timeseries store for " + varId, e);
+        }
+    }
+
+    private static void writeStore(File tmpFile, String varId, GridDataSource dataSource,
+            String sourceId, int[] shape, long blockBytes) throws IOException {
+        int tSize = shape[0];
+        int zSize = shape[1];
+        int ySize = shape[2];
+        int xSize = shape[3];
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+                FileChannel out = raf.getChannel()) {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(tSize);
+            header.writeInt(zSize);
+            header.writeInt(ySize);
+            header.writeInt(xSize);
+            header.writeUTF(sourceId);
+            header.close();
+            ByteBuffer headerBuffer = ByteBuffer.allocate(8 + headerBytes.size());
+            headerBuffer.putInt(MAGIC);
+            headerBuffer.putInt(headerBytes.size());
+            headerBuffer.put(headerBytes.toByteArray());
+            headerBuffer.flip();
+            out.write(headerBuffer, 0);
+            long dataOffset = headerBuffer.capacity();
+
+            /*
+             * Read the data in tiles which (once transposed) fit into a block
+             * of the given size, covering as many time steps as possible. This
+             * is normally all of them, but very long time axes are split up as
+             * well. Each tile is read in a single operation, and written out
+             * with time varying fastest.
+             */
+            int tileT = (int) Math.max(1, Math.min(tSize, blockBytes / 4));
+            int tilePoints = (int) Math.max(1, blockBytes / (4L * tileT));
+            int tileX = Math.min(xSize, tilePoints);
+            int tileY = Math.min(ySize, Math.max(1, tilePoints / tileX));
+            int tileValues = tileT * tileY * tileX;
+            /*
+             * The values read, the data source's copy of them, and the
+             * transposed block
+             */
+            try (MemoryBudget.Reservation reservation = MemoryBudget
+                    .reserveForRead(3L * tileValues * 4)) {
+                float[] tile = new float[tileValues];
+                ByteBuffer block = ByteBuffer.allocate(tileValues * 4);
+                for (int z = 0; z < zSize; z++) {
+                    for (int ymin = 0; ymin < ySize; ymin += tileY) {
+                        int ymax = Math.min(ymin + tileY, ySize) - 1;
+                        for (int xmin = 0; xmin < xSize; xmin += tileX) {
+                            int xmax = Math.min(xmin + tileX, xSize) - 1;
+                            for (int tmin = 0; tmin < tSize; tmin += tileT) {
+                                int tmax = Math.min(tmin + tileT, tSize) - 1;
+                                dataSource.readFloats(varId, tmin, tmax, z, z, ymin, ymax, xmin,
+                                        xmax, tile);
+                                writeTile(out, dataOffset, tile, block, tSize, ySize, xSize, z,
+                                        tmin, tmax, ymin, ymax, xmin, xmax);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Transposes a tile of data in t,y,x order so that time varies fastest,
+     * and writes it to the correct positions in the store
+     */
+    private static void writeTile(FileChannel out, long dataOffset, float[] tile,
+            ByteBuffer block, int tSize, int ySize, int xSize, int z, int tmin, int tmax,
+            int ymin, int ymax, int xmin, int xmax) throws IOException {
+        int nT = tmax - tmin + 1;
+        int nY = ymax - ymin + 1;
+        int nX = xmax - xmin + 1;
+        int nPoints = nY * nX;
+        for (int t = 0; t < nT; t++) {
+            for (int p = 0; p < nPoints; p++) {
+                block.putFloat((p * nT + t) * 4, tile[t * nPoints + p]);
+            }
+        }
+        /*
+         * If the tile covers all time steps, each of its rows is contiguous in
+         * the store. Otherwise each point is written separately.
+         */
+        int pointsPerRun = nT == tSize ? nX : 1;
+        for (int p = 0; p < nPoints; p += pointsPerRun) {
+            int y = ymin + p / nX;
+            int x = xmin + p % nX;
+            block.limit((p + pointsPerRun) * nT * 4);
+            block.position(p * nT * 4);
+            long position = dataOffset
+                    + ((((long) z * ySize + y) * xSize + x) * tSize + tmin) * 4;
+            while (block.hasRemaining()) {
+                position += out.write(block, position);
+            }
+        }
+        block.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+     * The identity of the source data, or null if it cannot be identified
+     */
+    private static String getSourceId(GridDataSource dataSource) {
+        if (dataSource instanceof ChunkedGridDataSource) {
+            return ((ChunkedGridDataSource) dataSource).getCacheId();
+        }
+        return null;
+    }
+
+    private static File getStoreFile(String datasetId, String varId) {
+        return WorkingFiles.getFile(STORE_DIR, datasetId, varId + SUFFIX);
+    }
+}
@@ -67,7 +67,7 @@ public class TrajectoryDataset extends AbstractContinuousDomainDataset {
     private Extent<DateTime> tExtent;
 
     public TrajectoryDataset(String id, List<VariableMetadata> vars,
-            DiscreteFeatureReader<TrajectoryFeature> featureReader, FeatureIndexer indexer) {
+            DiscreteFeatureReader<TrajectoryFeature> featureReader, FeatureIndex indexer) {
         super(id, vars, indexer);
         this.featureReader = featureReader;
         
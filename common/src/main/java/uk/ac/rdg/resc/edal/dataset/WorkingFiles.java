@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility methods for files which {@link DatasetFactory}s and their helpers
+ * keep in the {@link DatasetFactory#getWorkingDirectory() working directory}.
+ * 
+ * Files are written to a temporary file in the same directory, which is only
+ * moved into place once it is complete. This means that a file is never read
+ * whilst it is partially written, and that concurrent writers don't interfere
+ * with each other.
+ * 
+ * @author agent
+ */
+public final class WorkingFiles {
+    private WorkingFiles() {
+    }
+
+    /**
+     * Writes the contents of a file
+     */
+    @FunctionalInterface
+    public interface FileWriter {
+        /**
+         * @param file
+         *            The (temporary) file to write to. This already exists,
+         *            and is empty
+         * @throws IOException
+         *             If there is a problem writing the file
+         */
+        public void write(File file) throws IOException;
+    }
+
+    /**
+     * Gets a file in the working directory
+     * 
+     * @param path
+     *            The names of the directories containing the file (relative
+     *            to the working directory), followed by the name of the file.
+     *            These may be IDs, since any characters which are not valid in
+     *            filenames are replaced.
+     * @return The file, or <code>null</code> if no working directory has been
+     *         set or any part of the path is <code>null</code>
+     */
+    public static File getFile(String... path) {
+        File file = DatasetFactory.getWorkingDirectory();
+        if (file == null) {
+            return null;
+        }
+        for (String name : path) {
+            if (name == null) {
+                return null;
+            }
+            file = new File(file, toFilename(name));
+        }
+        return file;
+    }
+
+    /**
+     * @param id
+     *            An ID, which may contain characters which are not valid in
+     *            filenames
+     * @return The ID with any such characters replaced by underscores
+     */
+    public static String toFilename(String id) {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * @param value
+     *            A value which is too long, or too similar to others, to be
+     *            used directly in a filename (e.g. a glob expression)
+     * @return A hex SHA-1 digest of the value, which can be used as a
+     *         filename
+     */
+    public static String digest(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder ret = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                ret.append(String.format("%02x", b));
+            }
+            return ret.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /*
+             * All Java platforms must support SHA-1
+             */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a file, so that it is never seen partially written. If the file
+     * cannot be written, any existing file is left in place.
+     * 
+     * @param file
+     *            The file to write. Its parent directories are created if
+     *            necessary
+     * @param writer
+     *            A {@link FileWriter} which writes the contents
+     * @throws IOException
+     *             If there is a problem writing the file, or moving it into
+     *             place
+     */
+    public static void write(File file, FileWriter writer) throws IOException {
+        File tmpFile = createTempFile(file);
+        try {
+            writer.write(tmpFile);
+        } catch (IOException | RuntimeException e) {
+            tmpFile.delete();
+            throw e;
+        }
+        moveIntoPlace(tmpFile, file);
+    }
+
+    /**
+     * Creates a temporary file to write the contents of a file to, for files
+     * which cannot be written with {@link #write(File, FileWriter)}. Once it
+     * has been written, it should be moved into place with
+     * {@link #moveIntoPlace(File, File)}, or deleted.
+     * 
+     * @param file
+     *            The file which will be written. Its parent directories are
+     *            created if necessary
+     * @return A new, empty, temporary file in the same directory
+     * @throws IOException
+     *             If the temporary file cannot be created
+     */
+    public static File createTempFile(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        return File.createTempFile(file.getName() + "-", ".tmp", dir);
+    }
+
+    /**
+     * Moves a completely written temporary file into place, replacing any
+     * existing file. The temporary file is deleted if this fails.
+     * 
+     * @param tmpFile
+     *            The temporary file, from {@link #createTempFile(File)}
+     * @param file
+     *            The file to replace
+     * @throws IOException
+     *             If the file cannot be moved into place
+     */
+    public static void moveIntoPlace(File tmpFile, File file) throws IOException {
+        try {
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw new IOException("Unable to move " + tmpFile + " into place at " + file, e);
+        }
+    }
+}
@@ -35,6 +35,7 @@ import uk.ac.rdg.resc.edal.metadata.VariableMetadata;
 import uk.ac.rdg.resc.edal.position.HorizontalPosition;
 
 public class NormalisedDifferencePlugin extends VariablePlugin {
+    private static final long serialVersionUID = 1L;
 
     private static final String DIFFNORMAL = "diffnormal";
 
@@ -39,6 +39,7 @@ import uk.ac.rdg.resc.edal.position.HorizontalPosition;
  * @author Guy Griffiths
  */
 public class ValueErrorPlugin extends VariablePlugin {
+    private static final long serialVersionUID = 1L;
 
     public final static String VALUE_ROLE = "value";
     public final static String ERROR_ROLE = "error";
@@ -28,6 +28,7 @@
 
 package uk.ac.rdg.resc.edal.dataset.plugins;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -77,7 +78,8 @@ import uk.ac.rdg.resc.edal.util.GISUtils;
  * 
  * @author Guy Griffiths
  */
-public abstract class VariablePlugin {
+public abstract class VariablePlugin implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     protected String[] uses;
     private String[] provides;
@@ -57,6 +57,7 @@ import uk.ac.rdg.resc.edal.util.GISUtils;
  * @author Guy Griffiths
  */
 public class VectorPlugin extends VariablePlugin {
+    private static final long serialVersionUID = 1L;
     private static final Logger log = LoggerFactory.getLogger(VectorPlugin.class);
 
     public final static String MAG_ROLE = "mag";
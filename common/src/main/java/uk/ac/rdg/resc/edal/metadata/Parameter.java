@@ -28,6 +28,7 @@
 
 package uk.ac.rdg.resc.edal.metadata;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import uk.ac.rdg.resc.edal.dataset.Dataset;
@@ -40,8 +41,11 @@ import uk.ac.rdg.resc.edal.feature.Feature;
  * @author Jon
  * @author Guy Griffiths
  */
-public class Parameter {
-    public static class Category {
+public class Parameter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static class Category implements Serializable {
+        private static final long serialVersionUID = 1L;
         private final String id;
         private final String label;
         private final String colour;
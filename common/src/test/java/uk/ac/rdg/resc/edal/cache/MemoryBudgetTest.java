@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.exceptions.InsufficientMemoryException;
+
+public class MemoryBudgetTest {
+    private static final String FIXED_NAME = "testReservation";
+
+    private long originalBudget;
+
+    @Before
+    public void setUp() {
+        originalBudget = MemoryBudget.getBudget();
+        /*
+         * Other caches may have fixed reservations, so make sure there is
+         * exactly 1000 bytes available
+         */
+        MemoryBudget.setBudget(MemoryBudget.getReservedBytes() + 1000);
+    }
+
+    @After
+    public void tearDown() {
+        MemoryBudget.setFixedReservation(FIXED_NAME, 0);
+        MemoryBudget.setMaxWait(30_000L);
+        MemoryBudget.setBudget(originalBudget);
+    }
+
+    @Test
+    public void testTryReserve() {
+        MemoryBudget.Reservation first = MemoryBudget.tryReserve(600);
+        assertNotNull(first);
+        assertEquals(400, MemoryBudget.getAvailableBytes());
+        assertNull(MemoryBudget.tryReserve(600));
+
+        first.close();
+        /*
+         * Closing twice should not release the memory twice
+         */
+        first.close();
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+        MemoryBudget.Reservation second = MemoryBudget.tryReserve(600);
+        assertNotNull(second);
+        second.close();
+    }
+
+    @Test
+    public void testFixedReservation() {
+        MemoryBudget.setFixedReservation(FIXED_NAME, 300);
+        assertEquals(700, MemoryBudget.getAvailableBytes());
+        MemoryBudget.setFixedReservation(FIXED_NAME, 100);
+        assertEquals(900, MemoryBudget.getAvailableBytes());
+        MemoryBudget.setFixedReservation(FIXED_NAME, 0);
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+    }
+
+    @Test
+    public void testReserveWaitsForRelease() throws InterruptedException {
+        final MemoryBudget.Reservation first = MemoryBudget.reserve(800);
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+            }
+            first.close();
+        });
+        releaser.start();
+        try (MemoryBudget.Reservation second = MemoryBudget.reserve(800)) {
+            assertEquals(200, MemoryBudget.getAvailableBytes());
+        }
+        releaser.join();
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+    }
+
+    @Test
+    public void testReserveTimesOut() {
+        MemoryBudget.setMaxWait(50);
+        try (MemoryBudget.Reservation first = MemoryBudget.reserve(800)) {
+            MemoryBudget.reserve(800);
+            fail("Reservation should have timed out");
+        } catch (InsufficientMemoryException e) {
+            /*
+             * Expected
+             */
+        }
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+    }
+
+    @Test
+    public void testReleaseWhenUnreachable() throws InterruptedException {
+        Object owner = new Object();
+        MemoryBudget.Reservation reservation = MemoryBudget.reserve(800);
+        reservation.releaseWhenUnreachable(owner);
+        assertEquals(200, MemoryBudget.getAvailableBytes());
+
+        owner = null;
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (MemoryBudget.getAvailableBytes() < 1000
+                && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+    }
+
+    @Test
+    public void testReserveWaitsForUnreachableOwner() throws InterruptedException {
+        MemoryBudget.Reservation first = MemoryBudget.reserve(800);
+        first.releaseWhenUnreachable(new Object());
+        /*
+         * The owner is already unreachable, so once it has been collected this
+         * should not need to wait for the full timeout
+         */
+        Thread collector = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+            }
+            System.gc();
+        });
+        collector.start();
+        try (MemoryBudget.Reservation second = MemoryBudget.reserve(800)) {
+            assertEquals(200, MemoryBudget.getAvailableBytes());
+        }
+        collector.join();
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+    }
+
+    @Test
+    public void testReserveForReadCoversNestedReservations() {
+        try (MemoryBudget.Reservation outer = MemoryBudget.reserveForRead(800)) {
+            /*
+             * A data source reserving for its copy of the data on the same
+             * thread should not take it from the budget a second time
+             */
+            try (MemoryBudget.Reservation inner = MemoryBudget.reserve(400)) {
+                assertEquals(0, inner.getBytes());
+                assertEquals(200, MemoryBudget.getAvailableBytes());
+            }
+            MemoryBudget.Reservation inner = MemoryBudget.tryReserve(800);
+            assertNotNull(inner);
+            assertEquals(0, inner.getBytes());
+            inner.close();
+            /*
+             * Larger reservations are not covered
+             */
+            assertNull(MemoryBudget.tryReserve(900));
+            assertEquals(200, MemoryBudget.getAvailableBytes());
+        }
+        /*
+         * Once closed, nothing is covered
+         */
+        try (MemoryBudget.Reservation reservation = MemoryBudget.reserve(400)) {
+            assertEquals(400, reservation.getBytes());
+            assertEquals(600, MemoryBudget.getAvailableBytes());
+        }
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+    }
+
+    @Test
+    public void testReserveForReadDoesNotCoverOtherThreads() throws InterruptedException {
+        try (MemoryBudget.Reservation outer = MemoryBudget.reserveForRead(600)) {
+            MemoryBudget.Reservation[] inner = new MemoryBudget.Reservation[1];
+            Thread other = new Thread(() -> inner[0] = MemoryBudget.tryReserve(600));
+            other.start();
+            other.join();
+            assertNull(inner[0]);
+        }
+        /*
+         * Plain reservations do not cover nested ones
+         */
+        try (MemoryBudget.Reservation outer = MemoryBudget.reserve(600)) {
+            assertNull(MemoryBudget.tryReserve(600));
+        }
+    }
+
+    @Test
+    public void testCloseReservationWithOwner() {
+        Object owner = new Object();
+        MemoryBudget.Reservation reservation = MemoryBudget.reserve(800);
+        reservation.releaseWhenUnreachable(owner);
+        reservation.close();
+        assertEquals(1000, MemoryBudget.getAvailableBytes());
+        assertNotNull(owner);
+    }
+
+    @Test(expected = InsufficientMemoryException.class)
+    public void testReserveMoreThanBudget() {
+        MemoryBudget.reserve(2000);
+    }
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.feature.PointFeature;
+import uk.ac.rdg.resc.edal.feature.PointSeriesFeature;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.geometry.BoundingBoxImpl;
+import uk.ac.rdg.resc.edal.grid.TimeAxisImpl;
+import uk.ac.rdg.resc.edal.grid.VerticalAxisImpl;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+import uk.ac.rdg.resc.edal.position.VerticalCrs;
+import uk.ac.rdg.resc.edal.position.VerticalCrsImpl;
+import uk.ac.rdg.resc.edal.position.VerticalPosition;
+import uk.ac.rdg.resc.edal.util.Array1D;
+import uk.ac.rdg.resc.edal.util.Extents;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+import uk.ac.rdg.resc.edal.util.ValuesArray1D;
+
+/**
+ * Tests for {@link ColumnarFeatureStore} and {@link ColumnarFeatureReader},
+ * using a {@link PRTreeFeatureIndexer} of the same features as a reference
+ *
+ * @author agent
+ */
+public class ColumnarFeatureStoreTest {
+    private static final String[] VARS = { "TEMP", "PSAL", "DOXY" };
+    private static final VerticalCrs DEPTH_CRS = new VerticalCrsImpl("m", false, false, false);
+
+    private File storeFile;
+    private Map<String, ProfileFeature> profiles = new HashMap<>();
+    private PRTreeFeatureIndexer reference;
+    private ColumnarFeatureReader<ProfileFeature> reader;
+
+    @Before
+    public void setUp() throws IOException {
+        storeFile = File.createTempFile("edal-columns", ".columns");
+        storeFile.delete();
+        ColumnarFeatureStore.setRowGroupSize(500);
+
+        Random random = new Random(1234L);
+        DateTime start = new DateTime(2000, 1, 1, 0, 0, ISOChronology.getInstanceUTC());
+        List<ProfileFeature> features = new ArrayList<>();
+        List<FeatureIndexer.FeatureBounds> bounds = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            HorizontalPosition pos = new HorizontalPosition(random.nextDouble() * 360.0 - 180.0,
+                    random.nextDouble() * 160.0 - 80.0, GISUtils.defaultGeographicCRS());
+            DateTime time = start.plusHours(random.nextInt(24 * 365));
+            int nLevels = 1 + random.nextInt(20);
+            List<Double> levels = new ArrayList<>();
+            double z = random.nextDouble() * 10.0;
+            for (int l = 0; l < nLevels; l++) {
+                levels.add(z);
+                z += 1.0 + random.nextDouble() * 50.0;
+            }
+            Map<String, Parameter> parameters = new HashMap<>();
+            Map<String, Array1D<Number>> values = new HashMap<>();
+            for (String var : VARS) {
+                if (random.nextBoolean()) {
+                    parameters.put(var, new Parameter(var, var, null, "units", null));
+                    Array1D<Number> varValues = new ValuesArray1D(nLevels);
+                    for (int l = 0; l < nLevels; l++) {
+                        varValues.set(random.nextInt(10) == 0 ? null : random.nextDouble(), l);
+                    }
+                    values.put(var, varValues);
+                }
+            }
+            ProfileFeature profile = new ProfileFeature("profile" + i, "Profile " + i,
+                    "Test profile " + i,
+                    new VerticalAxisImpl("Depth axis of profile", levels, DEPTH_CRS), pos, time,
+                    parameters, values);
+            profile.getFeatureProperties().put("QC", "flag" + (i % 3));
+            features.add(profile);
+            profiles.put(profile.getId(), profile);
+            /*
+             * Stores index the actual depths of a profile, as the EN3/4
+             * indexer does, rather than the bounds of its vertical axis
+             */
+            bounds.add(new FeatureIndexer.FeatureBounds(profile.getId(), pos,
+                    Extents.newExtent(levels.get(0), levels.get(nLevels - 1)),
+                    Extents.newExtent(time, time), profile.getVariableIds()));
+        }
+        reference = new PRTreeFeatureIndexer();
+        reference.addFeatures(bounds);
+
+        /*
+         * Write in 2 batches, as a converter would
+         */
+        try (ColumnarFeatureStore.Writer writer = new ColumnarFeatureStore.Writer(storeFile,
+                "source")) {
+            writer.add(features.subList(0, 1200));
+            writer.add(features.subList(1200, features.size()));
+        }
+        reader = new ColumnarFeatureReader<>(storeFile);
+    }
+
+    @After
+    public void tearDown() {
+        ColumnarFeatureStore.setRowGroupSize(8192);
+        storeFile.delete();
+    }
+
+    @Test
+    public void testMetadata() {
+        assertEquals("source", reader.getSourceKey());
+        assertTrue(reader.containsProfiles());
+        assertEquals(DEPTH_CRS, reader.getVerticalCrs());
+        assertEquals(profiles.keySet(), reader.getAllFeatureIds());
+        Set<String> varIds = new HashSet<>();
+        for (Parameter parameter : reader.getParameters()) {
+            varIds.add(parameter.getVariableId());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(VARS)), varIds);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<ProfileFeature> read = reader.readFeatures(profiles.keySet(), null);
+        assertEquals(profiles.size(), read.size());
+        for (ProfileFeature feature : read) {
+            ProfileFeature expected = profiles.get(feature.getId());
+            assertEquals(expected.getName(), feature.getName());
+            assertEquals(expected.getDescription(), feature.getDescription());
+            assertEquals(expected.getHorizontalPosition().getX(),
+                    feature.getHorizontalPosition().getX(), 1e-10);
+            assertEquals(expected.getHorizontalPosition().getY(),
+                    feature.getHorizontalPosition().getY(), 1e-10);
+            assertEquals(expected.getTime().getMillis(), feature.getTime().getMillis());
+            assertEquals(expected.getDomain().getCoordinateValues(),
+                    feature.getDomain().getCoordinateValues());
+            assertEquals(expected.getFeatureProperties(), feature.getFeatureProperties());
+            assertEquals(expected.getVariableIds(), feature.getVariableIds());
+            for (String varId : expected.getVariableIds()) {
+                assertEquals(expected.getParameter(varId), feature.getParameter(varId));
+                for (int l = 0; l < expected.getDomain().size(); l++) {
+                    assertEquals(expected.getValues(varId).get(l), feature.getValues(varId).get(l));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFindFeatureIds() {
+        Random random = new Random(5678L);
+        DateTime start = new DateTime(2000, 1, 1, 0, 0, ISOChronology.getInstanceUTC());
+        for (int i = 0; i < 50; i++) {
+            double minX = random.nextDouble() * 360.0 - 180.0;
+            double minY = random.nextDouble() * 160.0 - 80.0;
+            /*
+             * Some of these will cross the date line
+             */
+            BoundingBox bbox = new BoundingBoxImpl(minX, minY, minX + random.nextDouble() * 90.0,
+                    minY + random.nextDouble() * 40.0, GISUtils.defaultGeographicCRS());
+            double minZ = random.nextDouble() * 500.0;
+            Extent<Double> zExtent = i % 5 == 0 ? null : Extents.newExtent(minZ, minZ + 200.0);
+            DateTime minT = start.plusDays(random.nextInt(300));
+            Extent<DateTime> tExtent = i % 7 == 0 ? null
+                    : Extents.newExtent(minT, minT.plusDays(60));
+            Collection<String> varIds = i % 3 == 0 ? Collections.<String> emptySet()
+                    : Collections.singleton(VARS[random.nextInt(VARS.length)]);
+            /*
+             * The reference indexer does not check variables when the query
+             * crosses the date line, so check them here
+             */
+            Set<String> expected = new HashSet<>();
+            for (String id : reference.findFeatureIds(bbox, zExtent, tExtent, varIds)) {
+                if (profiles.get(id).getVariableIds().containsAll(varIds)) {
+                    expected.add(id);
+                }
+            }
+            assertEquals(expected,
+                    new HashSet<>(reader.findFeatureIds(bbox, zExtent, tExtent, varIds)));
+        }
+    }
+
+    @Test
+    public void testRowGroupPruning() {
+        BoundingBox bbox = new BoundingBoxImpl(10, 10, 20, 20, GISUtils.defaultGeographicCRS());
+        ColumnarFeatureReader.Query query = new ColumnarFeatureReader.Query(bbox, null, null);
+        int nRowGroups = reader.getMatchingRowGroups(
+                new ColumnarFeatureReader.Query(new BoundingBoxImpl(-180, -90, 180, 90,
+                        GISUtils.defaultGeographicCRS()), null, null), new int[0]).size();
+        assertTrue(nRowGroups > 10);
+        /*
+         * Features are sorted by location, so a small area should only need a
+         * few of the row groups
+         */
+        assertTrue(reader.getMatchingRowGroups(query, new int[0]).size() < nRowGroups / 2);
+    }
+
+    @Test
+    public void testVariableProjection() {
+        List<ProfileFeature> read = reader.readFeatures(profiles.keySet(),
+                Collections.singleton("TEMP"));
+        assertEquals(profiles.size(), read.size());
+        for (ProfileFeature feature : read) {
+            ProfileFeature expected = profiles.get(feature.getId());
+            if (expected.getVariableIds().contains("TEMP")) {
+                assertEquals(Collections.singleton("TEMP"), feature.getVariableIds());
+            } else {
+                assertTrue(feature.getVariableIds().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testReadSingleLevel() {
+        List<String> ids = Arrays.asList("profile1", "profile20", "profile300", "profile2999");
+        for (Double targetZ : new Double[] { null, 100.0 }) {
+            List<ProfileFeature> read = reader.readFeatures(ids, null, null, targetZ);
+            assertEquals(ids.size(), read.size());
+            for (ProfileFeature feature : read) {
+                assertEquals(1, feature.getDomain().size());
+                PointFeature expected = PointDataset
+                        .convertProfileFeature(profiles.get(feature.getId()), targetZ);
+                PointFeature actual = PointDataset.convertProfileFeature(feature, targetZ);
+                assertEquals(expected.getGeoPosition().getVerticalPosition().getZ(),
+                        actual.getGeoPosition().getVerticalPosition().getZ(), 1e-10);
+                for (String varId : feature.getVariableIds()) {
+                    assertEquals(expected.getValues(varId).get(0), actual.getValues(varId).get(0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPointSeries() throws IOException {
+        File seriesFile = File.createTempFile("edal-columns", ".columns");
+        try {
+            List<DateTime> times = new ArrayList<>();
+            Array1D<Number> values = new ValuesArray1D(10);
+            for (int i = 0; i < 10; i++) {
+                times.add(new DateTime(2010, 1, 1 + i, 0, 0, ISOChronology.getInstanceUTC()));
+                values.set(i == 5 ? null : i * 1.5, i);
+            }
+            Map<String, Array1D<Number>> valuesMap = new HashMap<>();
+            valuesMap.put("FLOW", values);
+            PointSeriesFeature series = new PointSeriesFeature("site:FLOW", "FLOW at site",
+                    "Timeseries", new TimeAxisImpl("Time axis for FLOW", times),
+                    new HorizontalPosition(190.0, 50.0, GISUtils.defaultGeographicCRS()), null,
+                    Collections.singletonMap("FLOW",
+                            new Parameter("FLOW", "FLOW", null, "m3/s", null)),
+                    valuesMap);
+            try (ColumnarFeatureStore.Writer writer = new ColumnarFeatureStore.Writer(seriesFile,
+                    null)) {
+                writer.add(Collections.singleton(series));
+            }
+
+            ColumnarFeatureReader<PointSeriesFeature> seriesReader = new ColumnarFeatureReader<>(
+                    seriesFile);
+            assertFalse(seriesReader.containsProfiles());
+            /*
+             * Longitudes are stored in the range (-180,180]
+             */
+            assertEquals(Collections.singletonList("site:FLOW"),
+                    new ArrayList<>(seriesReader.findFeatureIds(
+                            new BoundingBoxImpl(-175, 45, -165, 55,
+                                    GISUtils.defaultGeographicCRS()),
+                            Extents.newExtent(0.0, 10.0), null, null)));
+            PointSeriesFeature read = seriesReader.readFeature("site:FLOW", null);
+            assertNull(read.getVerticalPosition());
+            assertEquals(-170.0, read.getHorizontalPosition().getX(), 1e-10);
+            assertEquals(times, read.getDomain().getCoordinateValues());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(values.get(i), read.getValues("FLOW").get(i));
+            }
+
+            ColumnarPointDataset<PointSeriesFeature> dataset = new ColumnarPointDataset<>("test",
+                    seriesReader);
+            assertEquals(Collections.singleton("FLOW"), dataset.getVariableIds());
+            assertTrue(dataset.supportsTimeseriesExtraction("FLOW"));
+        } finally {
+            seriesFile.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testIncompleteStore() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(storeFile, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        new ColumnarFeatureReader<>(storeFile);
+    }
+}
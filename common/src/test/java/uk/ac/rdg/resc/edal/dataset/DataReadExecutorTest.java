@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.util.Array4D;
+
+public class DataReadExecutorTest {
+    private static final String VAR_ID = "var";
+
+    private int originalThreads;
+    private CountingDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        originalThreads = DataReadExecutor.getMaxThreads();
+        Number[][][][] values = new Number[2][1][3][4];
+        for (int t = 0; t < 2; t++) {
+            for (int y = 0; y < 3; y++) {
+                for (int x = 0; x < 4; x++) {
+                    values[t][0][y][x] = t * 100 + y * 10 + x;
+                }
+            }
+        }
+        Map<String, Number[][][][]> data = new HashMap<>();
+        data.put(VAR_ID, values);
+        dataSource = new CountingDataSource(data);
+    }
+
+    @After
+    public void tearDown() {
+        DataReadExecutor.setMaxThreads(originalThreads);
+    }
+
+    @Test
+    public void testReadAsync() throws InterruptedException, ExecutionException {
+        Array4D<Number> data = dataSource.readAsync(VAR_ID, 1, 1, 0, 0, 1, 2, 2, 3).get();
+        assertEquals(1, data.getTSize());
+        assertEquals(2, data.getYSize());
+        assertEquals(2, data.getXSize());
+        assertEquals(112, data.get(0, 0, 0, 0).intValue());
+        assertEquals(123, data.get(0, 0, 1, 1).intValue());
+    }
+
+    @Test
+    public void testReadFailure() throws InterruptedException {
+        try {
+            dataSource.readAsync("missing", 0, 0, 0, 0, 0, 0, 0, 0).get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DataReadingException);
+            return;
+        }
+        throw new AssertionError("Reading a missing variable should fail");
+    }
+
+    @Test
+    public void testCancelledReadIsNotRun() throws Exception {
+        DataReadExecutor.setMaxThreads(1);
+        /*
+         * Block the only reading thread
+         */
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocker = DataReadExecutor.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new DataReadingException("Interrupted", e);
+            }
+            return true;
+        });
+        started.await();
+
+        CompletableFuture<Array4D<Number>> cancelled = dataSource.readAsync(VAR_ID, 0, 0, 0, 0,
+                0, 0, 0, 0);
+        assertTrue(cancelled.cancel(true));
+        CompletableFuture<Array4D<Number>> kept = dataSource.readAsync(VAR_ID, 0, 0, 0, 0, 0, 0,
+                0, 0);
+
+        release.countDown();
+        assertTrue(blocker.get());
+        assertEquals(0, kept.get().get(0, 0, 0, 0).intValue());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, dataSource.reads.get());
+    }
+
+    @Test
+    public void testCancelledReadsAreRemovedFromQueue() throws Exception {
+        DataReadExecutor.setMaxThreads(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocker = DataReadExecutor.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new DataReadingException("Interrupted", e);
+            }
+            return true;
+        });
+        started.await();
+
+        /*
+         * More reads than the queue can hold, which should not fill it if they
+         * are removed on cancellation
+         */
+        for (int i = 0; i < 2000; i++) {
+            CompletableFuture<Array4D<Number>> cancelled = dataSource.readAsync(VAR_ID, 0, 0, 0,
+                    0, 0, 0, 0, 0);
+            assertFalse(cancelled.isCompletedExceptionally());
+            assertTrue(cancelled.cancel(false));
+        }
+        CompletableFuture<Array4D<Number>> kept = dataSource.readAsync(VAR_ID, 0, 0, 0, 0, 0, 0,
+                0, 0);
+
+        release.countDown();
+        assertTrue(blocker.get());
+        assertEquals(0, kept.get().get(0, 0, 0, 0).intValue());
+        assertEquals(1, dataSource.reads.get());
+    }
+
+    @Test
+    public void testCancelAndWaitForStartedRead() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger finished = new AtomicInteger(0);
+        CompletableFuture<Boolean> running = DataReadExecutor.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new DataReadingException("Interrupted", e);
+            }
+            finished.incrementAndGet();
+            return true;
+        });
+        started.await();
+
+        /*
+         * A started read cannot be cancelled, so this must wait for it
+         */
+        DataReadExecutor.cancelAndWait(running);
+        assertEquals(1, finished.get());
+        assertFalse(running.isCancelled());
+        assertTrue(running.get());
+    }
+
+    private static class CountingDataSource extends InMemoryGridDataSource {
+        private final AtomicInteger reads = new AtomicInteger(0);
+
+        public CountingDataSource(Map<String, Number[][][][]> data) {
+            super(data);
+        }
+
+        @Override
+        public Array4D<Number> read(String variableId, int tmin, int tmax, int zmin, int zmax,
+                int ymin, int ymax, int xmin, int xmax) throws DataReadingException {
+            reads.incrementAndGet();
+            return super.read(variableId, tmin, tmax, zmin, zmax, ymin, ymax, xmin, xmax);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.grid.HorizontalGrid;
+import uk.ac.rdg.resc.edal.grid.RegularGridImpl;
+import uk.ac.rdg.resc.edal.util.Array2D;
+import uk.ac.rdg.resc.edal.util.Array4D;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+public class DataReadingStrategyTest {
+    private static final String VAR_ID = "var";
+    private static final int X_SIZE = 100;
+    private static final int Y_SIZE = 90;
+    private static final int CHUNK_SIZE = 16;
+
+    private TestDataSource dataSource;
+    private Domain2DMapper domainMapper;
+
+    @Before
+    public void setUp() {
+        ChunkCache.clear();
+        dataSource = new TestDataSource();
+        HorizontalGrid sourceGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                GISUtils.defaultGeographicCRS(), X_SIZE, Y_SIZE);
+        HorizontalGrid targetGrid = new RegularGridImpl(10.2, 5.7, 73.9, 88.1,
+                GISUtils.defaultGeographicCRS(), 50, 70);
+        domainMapper = Domain2DMapper.forGrid(sourceGrid, targetGrid);
+    }
+
+    @Test
+    public void testAllStrategiesAgree() throws IOException, DataReadingException {
+        Array2D<Number> expected = DataReadingStrategy.PIXEL_BY_PIXEL.readMapData(dataSource,
+                VAR_ID, 0, 0, domainMapper);
+        for (DataReadingStrategy strategy : DataReadingStrategy.values()) {
+            assertArraysEqual(expected,
+                    strategy.readMapData(dataSource, VAR_ID, 0, 0, domainMapper));
+        }
+    }
+
+    @Test
+    public void testDoubleValuesKeepPrecision() throws IOException, DataReadingException {
+        dataSource.doubleValues = true;
+        Array2D<Number> expected = DataReadingStrategy.PIXEL_BY_PIXEL.readMapData(dataSource,
+                VAR_ID, 0, 0, domainMapper);
+        for (DataReadingStrategy strategy : DataReadingStrategy.values()) {
+            dataSource.manyReads = 0;
+            Array2D<Number> actual = strategy.readMapData(dataSource, VAR_ID, 0, 0,
+                    domainMapper);
+            assertEquals(0, dataSource.manyReads);
+            for (int j = 0; j < expected.getYSize(); j++) {
+                for (int i = 0; i < expected.getXSize(); i++) {
+                    assertEquals(strategy.name(), expected.get(j, i), actual.get(j, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChunksAreCached() throws IOException, DataReadingException {
+        DataReadingStrategy.CHUNK_ALIGNED.readMapData(dataSource, VAR_ID, 0, 0, domainMapper);
+        /*
+         * The target grid covers x indices 10-73 and y indices 5-88, which is
+         * 5x6 chunks
+         */
+        assertEquals(30, dataSource.reads);
+
+        /*
+         * Reading again, even from a new data source, should use the cached
+         * chunks
+         */
+        TestDataSource newDataSource = new TestDataSource();
+        DataReadingStrategy.CHUNK_ALIGNED.readMapData(newDataSource, VAR_ID, 0, 0, domainMapper);
+        assertEquals(0, newDataSource.reads);
+
+        /*
+         * But not for a different time
+         */
+        DataReadingStrategy.CHUNK_ALIGNED.readMapData(dataSource, VAR_ID, 1, 0, domainMapper);
+        assertEquals(60, dataSource.reads);
+    }
+
+    @Test
+    public void testAdaptiveChoosesCheapestPlan() throws DataReadingException {
+        /*
+         * A sparse set of points, spread over the whole source grid
+         */
+        HorizontalGrid sourceGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                GISUtils.defaultGeographicCRS(), X_SIZE, Y_SIZE);
+        HorizontalGrid targetGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                GISUtils.defaultGeographicCRS(), 5, 5);
+        Domain2DMapper sparseMapper = Domain2DMapper.forGrid(sourceGrid, targetGrid);
+
+        ReadCostModel model = new ReadCostModel();
+        /*
+         * With the default costs, a single read of the bounding box is best
+         */
+        ReadCostModel.ReadPlan plan = model.choosePlan(dataSource, VAR_ID, sparseMapper);
+        assertEquals(DataReadingStrategy.BOUNDING_BOX, plan.strategy);
+        assertEquals(1, plan.calls);
+
+        /*
+         * Once we have seen that individual reads are cheap, reading scanlines
+         * is better
+         */
+        ReadCostModel.ReadPlan pixelPlan = new ReadCostModel.ReadPlan(
+                DataReadingStrategy.PIXEL_BY_PIXEL, 25, 25);
+        for (int i = 0; i < 50; i++) {
+            model.record(pixelPlan, 25_000);
+        }
+        plan = model.choosePlan(dataSource, VAR_ID, sparseMapper);
+        assertEquals(DataReadingStrategy.SCANLINE, plan.strategy);
+        assertEquals(5, plan.calls);
+    }
+
+    @Test
+    public void testCoalescedScanlines() throws IOException, DataReadingException {
+        ScanlineCoalescer.resetStatistics();
+        int nScanlines = 0;
+        Iterator<?> it = domainMapper.scanlineIterator();
+        while (it.hasNext()) {
+            it.next();
+            nScanlines++;
+        }
+        /*
+         * The scanlines are close together and cover the same i indices, so
+         * they can all be read at once
+         */
+        DataReadingStrategy.COALESCED_SCANLINE.readMapData(dataSource, VAR_ID, 0, 0,
+                domainMapper);
+        assertEquals(1, dataSource.reads);
+        assertEquals(nScanlines - 1, ScanlineCoalescer.getMergedReads());
+        assertTrue(ScanlineCoalescer.getWastedCells() > 0);
+
+        /*
+         * A sparse set of points, where merging the scanlines would read far
+         * more data than needed, is read one scanline at a time
+         */
+        HorizontalGrid sourceGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                GISUtils.defaultGeographicCRS(), X_SIZE, Y_SIZE);
+        HorizontalGrid targetGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                GISUtils.defaultGeographicCRS(), 5, 5);
+        Domain2DMapper sparseMapper = Domain2DMapper.forGrid(sourceGrid, targetGrid);
+        ScanlineCoalescer.resetStatistics();
+        dataSource.reads = 0;
+        DataReadingStrategy.COALESCED_SCANLINE.readMapData(dataSource, VAR_ID, 0, 0,
+                sparseMapper);
+        assertEquals(5, dataSource.reads);
+        assertEquals(0, ScanlineCoalescer.getMergedReads());
+        assertEquals(0, ScanlineCoalescer.getWastedCells());
+    }
+
+    @Test
+    public void testAdaptiveConsidersCoalescedScanlines() throws DataReadingException {
+        /*
+         * The scanlines of the dense mapping all merge into one block, which
+         * is cheaper than reading the chunks or each scanline
+         */
+        ReadCostModel.ReadPlan plan = new ReadCostModel().choosePlan(dataSource, VAR_ID,
+                domainMapper);
+        assertEquals(DataReadingStrategy.COALESCED_SCANLINE, plan.strategy);
+        assertEquals(1, plan.calls);
+    }
+
+    @Test
+    public void testCoalescedCountsMatchBlocks() {
+        ScanlineCoalescer.setMaxWastedCells(100);
+        try {
+            HorizontalGrid sourceGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                    GISUtils.defaultGeographicCRS(), X_SIZE, Y_SIZE);
+            HorizontalGrid targetGrid = new RegularGridImpl(0, 0, X_SIZE, Y_SIZE,
+                    GISUtils.defaultGeographicCRS(), 37, 23);
+            Domain2DMapper mapper = Domain2DMapper.forGrid(sourceGrid, targetGrid);
+
+            ScanlineCoalescer.Counter counter = new ScanlineCoalescer.Counter();
+            Iterator<DomainMapper.Scanline<int[]>> it = mapper.scanlineIterator();
+            while (it.hasNext()) {
+                DomainMapper.Scanline<int[]> scanline = it.next();
+                List<DomainMapper.DomainMapperEntry<int[]>> entries = scanline
+                        .getPixelMapEntries();
+                counter.addScanline(scanline.getSourceGridJIndex(),
+                        entries.get(0).getSourceGridIIndex(),
+                        entries.get(entries.size() - 1).getSourceGridIIndex());
+            }
+
+            List<ScanlineCoalescer.Block> blocks = ScanlineCoalescer.coalesce(mapper);
+            long cells = 0;
+            for (ScanlineCoalescer.Block block : blocks) {
+                cells += (long) block.getWidth() * (block.jmax - block.jmin + 1);
+            }
+            assertTrue(blocks.size() > 1);
+            assertEquals(blocks.size(), counter.getReads());
+            assertEquals(cells, counter.getCells());
+        } finally {
+            ScanlineCoalescer.setMaxWastedCells(4096);
+        }
+    }
+
+    @Test
+    public void testReadManyVariables() throws IOException, DataReadingException {
+        List<String> varIds = Arrays.asList(VAR_ID, VAR_ID + "2");
+        for (DataReadingStrategy strategy : DataReadingStrategy.values()) {
+            Array2D<Number> expected = strategy.readMapData(dataSource, VAR_ID, 0, 0,
+                    domainMapper);
+            List<Array2D<Number>> actual = strategy.readMapData(dataSource, varIds, 0, 0,
+                    domainMapper);
+            assertEquals(2, actual.size());
+            assertArraysEqual(expected, actual.get(0));
+            assertArraysEqual(expected, actual.get(1));
+        }
+
+        /*
+         * Scanlines should be read for both variables at once
+         */
+        int nScanlines = 0;
+        Iterator<?> it = domainMapper.scanlineIterator();
+        while (it.hasNext()) {
+            it.next();
+            nScanlines++;
+        }
+        dataSource.manyReads = 0;
+        DataReadingStrategy.SCANLINE.readMapData(dataSource, varIds, 0, 0, domainMapper);
+        assertEquals(nScanlines, dataSource.manyReads);
+    }
+
+    @Test
+    public void testBoundingBoxInBands() throws IOException, DataReadingException {
+        List<String> varIds = Arrays.asList(VAR_ID, VAR_ID + "2");
+        Array2D<Number> expected = DataReadingStrategy.BOUNDING_BOX.readMapData(dataSource,
+                VAR_ID, 0, 0, domainMapper);
+        int width = domainMapper.getMaxIIndex() - domainMapper.getMinIIndex() + 1;
+        int height = domainMapper.getMaxJIndex() - domainMapper.getMinJIndex() + 1;
+
+        /*
+         * Too big to read in one go, so read in bands of 7 rows
+         */
+        dataSource.manyReads = 0;
+        List<Array2D<Number>> actual = DataReadingStrategy.readBoundingBox(dataSource, varIds,
+                0, 0, domainMapper, 7 * width + 3);
+        assertEquals((height + 6) / 7, dataSource.manyReads);
+        assertArraysEqual(expected, actual.get(0));
+        assertArraysEqual(expected, actual.get(1));
+    }
+
+    @Test
+    public void testBoundingBoxInBudgetBands() throws IOException, DataReadingException {
+        List<String> varIds = Arrays.asList(VAR_ID, VAR_ID + "2");
+        Array2D<Number> expected = DataReadingStrategy.BOUNDING_BOX.readMapData(dataSource,
+                VAR_ID, 0, 0, domainMapper);
+        int width = domainMapper.getMaxIIndex() - domainMapper.getMinIIndex() + 1;
+        int height = domainMapper.getMaxJIndex() - domainMapper.getMinJIndex() + 1;
+
+        /*
+         * Only enough memory for 5 rows of both variables, plus their copies
+         */
+        long originalBudget = MemoryBudget.getBudget();
+        MemoryBudget.setBudget(MemoryBudget.getReservedBytes() + 5 * 2L * 2 * width * 4);
+        try {
+            dataSource.manyReads = 0;
+            List<Array2D<Number>> actual = DataReadingStrategy.readBoundingBox(dataSource,
+                    varIds, 0, 0, domainMapper, Integer.MAX_VALUE);
+            assertEquals((height + 4) / 5, dataSource.manyReads);
+            assertArraysEqual(expected, actual.get(0));
+            assertArraysEqual(expected, actual.get(1));
+        } finally {
+            MemoryBudget.setBudget(originalBudget);
+        }
+    }
+
+    @Test(expected = DataReadingException.class)
+    public void testBoundingBoxRowTooLarge() throws IOException, DataReadingException {
+        int width = domainMapper.getMaxIIndex() - domainMapper.getMinIIndex() + 1;
+        DataReadingStrategy.readBoundingBox(dataSource, Arrays.asList(VAR_ID), 0, 0,
+                domainMapper, width - 1);
+    }
+
+    private static void assertArraysEqual(Array2D<Number> expected, Array2D<Number> actual) {
+        for (int j = 0; j < expected.getYSize(); j++) {
+            for (int i = 0; i < expected.getXSize(); i++) {
+                Number expectedValue = expected.get(j, i);
+                Number actualValue = actual.get(j, i);
+                if (expectedValue == null) {
+                    assertEquals(null, actualValue);
+                } else {
+                    assertEquals(expectedValue.floatValue(), actualValue.floatValue(), 1e-6);
+                }
+            }
+        }
+    }
+
+    /*
+     * A chunked data source where the value is calculated from the indices, and
+     * values on the diagonal are missing. Counts how many reads have been
+     * made. If doubleValues is set, the values cannot be represented exactly
+     * as floats.
+     */
+    private static class TestDataSource implements ChunkedGridDataSource {
+        private int reads = 0;
+        private int manyReads = 0;
+        private boolean doubleValues = false;
+
+        @Override
+        public Array4D<Number> read(String variableId, final int tmin, int tmax, final int zmin,
+                int zmax, final int ymin, int ymax, final int xmin, int xmax)
+                throws IOException, DataReadingException {
+            reads++;
+            return new Array4D<Number>(tmax - tmin + 1, zmax - zmin + 1, ymax - ymin + 1,
+                    xmax - xmin + 1) {
+                @Override
+                public Number get(int... coords) {
+                    int x = coords[3] + xmin;
+                    int y = coords[2] + ymin;
+                    if (x == y) {
+                        return null;
+                    }
+                    int value = (coords[0] + tmin) * 100000 + y * 100 + x;
+                    if (doubleValues) {
+                        return value + 0.123456789;
+                    }
+                    return value;
+                }
+
+                @Override
+                public void set(Number value, int... coords) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public boolean hasFloatValues(String variableId) {
+            return !doubleValues;
+        }
+
+        @Override
+        public void readMany(List<String> variableIds, int tmin, int tmax, int zmin, int zmax,
+                int ymin, int ymax, int xmin, int xmax, float[][] values)
+                throws IOException, DataReadingException {
+            manyReads++;
+            ChunkedGridDataSource.super.readMany(variableIds, tmin, tmax, zmin, zmax, ymin, ymax,
+                    xmin, xmax, values);
+        }
+
+        @Override
+        public int[] getChunkShape(String variableId) {
+            return new int[] { 1, 1, CHUNK_SIZE, CHUNK_SIZE };
+        }
+
+        @Override
+        public int[] getShape(String variableId) {
+            return new int[] { 2, 1, Y_SIZE, X_SIZE };
+        }
+
+        @Override
+        public String getCacheId() {
+            return "test";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.feature.ProfileFeature;
+import uk.ac.rdg.resc.edal.grid.VerticalAxisImpl;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+import uk.ac.rdg.resc.edal.position.VerticalCrsImpl;
+import uk.ac.rdg.resc.edal.util.Array1D;
+import uk.ac.rdg.resc.edal.util.CollectionUtils;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+import uk.ac.rdg.resc.edal.util.ValuesArray1D;
+
+/**
+ * Tests for {@link FeatureCache}
+ *
+ * @author agent
+ */
+public class FeatureCacheTest {
+    private CountingReader reader;
+
+    @Before
+    public void setUp() {
+        FeatureCache.clear();
+        reader = new CountingReader();
+    }
+
+    @After
+    public void tearDown() {
+        FeatureCache.setEnabled(true);
+        FeatureCache.clear();
+    }
+
+    @Test
+    public void testFeaturesAreCached() {
+        DiscreteFeatureReader<ProfileFeature> cached = FeatureCache.wrap(reader, "dataset",
+                FeatureCache.newGeneration("dataset"));
+        Set<String> vars = CollectionUtils.setOf("temp");
+
+        assertEquals(2, cached.readFeatures(Arrays.asList("a", "b"), vars).size());
+        assertEquals(2, reader.featuresRead);
+
+        /*
+         * Only the feature which is not already cached should be read
+         */
+        List<ProfileFeature> features = cached.readFeatures(Arrays.asList("a", "b", "c"), vars);
+        assertEquals(3, features.size());
+        assertEquals(3, reader.featuresRead);
+        assertEquals("a", cached.readFeature("a", vars).getId());
+        assertEquals(3, reader.featuresRead);
+
+        /*
+         * A different set of variables is a different entry
+         */
+        cached.readFeature("a", CollectionUtils.setOf("temp", "sal"));
+        assertEquals(4, reader.featuresRead);
+
+        /*
+         * Whole features can be used for maps, but map features are cached
+         * separately for each elevation
+         */
+        cached.readFeatures(Arrays.asList("a", "d"), vars, null, 10.0);
+        assertEquals(5, reader.featuresRead);
+        cached.readFeatures(Arrays.asList("a", "d"), vars, null, 10.0);
+        assertEquals(5, reader.featuresRead);
+        cached.readFeatures(Arrays.asList("a", "d"), vars, null, 20.0);
+        assertEquals(6, reader.featuresRead);
+    }
+
+    @Test
+    public void testNewGenerationInvalidates() {
+        Set<String> vars = CollectionUtils.setOf("temp");
+        DiscreteFeatureReader<ProfileFeature> cached = FeatureCache.wrap(reader, "dataset",
+                FeatureCache.newGeneration("dataset"));
+        DiscreteFeatureReader<ProfileFeature> other = FeatureCache.wrap(reader, "other",
+                FeatureCache.newGeneration("other"));
+        cached.readFeature("a", vars);
+        other.readFeature("a", vars);
+        assertEquals(2, reader.featuresRead);
+
+        /*
+         * Refreshing one dataset should not affect the other
+         */
+        DiscreteFeatureReader<ProfileFeature> refreshed = FeatureCache.wrap(reader, "dataset",
+                FeatureCache.newGeneration("dataset"));
+        refreshed.readFeature("a", vars);
+        assertEquals(3, reader.featuresRead);
+        other.readFeature("a", vars);
+        assertEquals(3, reader.featuresRead);
+    }
+
+    @Test
+    public void testDisabled() {
+        FeatureCache.setEnabled(false);
+        DiscreteFeatureReader<ProfileFeature> cached = FeatureCache.wrap(reader, "dataset",
+                FeatureCache.newGeneration("dataset"));
+        cached.readFeature("a", null);
+        cached.readFeature("a", null);
+        assertEquals(2, reader.featuresRead);
+    }
+
+    private static final class CountingReader implements DiscreteFeatureReader<ProfileFeature> {
+        private int featuresRead = 0;
+
+        @Override
+        public ProfileFeature readFeature(String id, Set<String> variableIds) {
+            featuresRead++;
+            Map<String, Parameter> parameters = new HashMap<>();
+            Map<String, Array1D<Number>> values = new HashMap<>();
+            Array1D<Number> tempValues = new ValuesArray1D(2);
+            tempValues.set(1.0, 0);
+            tempValues.set(2.0, 1);
+            parameters.put("temp", new Parameter("temp", "Temperature", "", "K", null));
+            values.put("temp", tempValues);
+            return new ProfileFeature(id, id, id,
+                    new VerticalAxisImpl("depth", Arrays.asList(0.0, 10.0),
+                            new VerticalCrsImpl("m", false, false, false)),
+                    new HorizontalPosition(0.0, 0.0, GISUtils.defaultGeographicCRS()),
+                    new DateTime(2000, 1, 1, 0, 0), parameters, values);
+        }
+
+        @Override
+        public List<ProfileFeature> readFeatures(Collection<String> ids,
+                Set<String> variableIds) {
+            List<ProfileFeature> ret = new ArrayList<>();
+            for (String id : ids) {
+                ret.add(readFeature(id, variableIds));
+            }
+            return ret;
+        }
+
+        @Override
+        public List<ProfileFeature> readFeatures(Collection<String> ids, Set<String> variableIds,
+                Extent<Double> zExtent, Double targetZ) {
+            return readFeatures(ids, variableIds);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.domain.Extent;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.geometry.BoundingBoxImpl;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+import uk.ac.rdg.resc.edal.util.Extents;
+import uk.ac.rdg.resc.edal.util.GISUtils;
+
+/**
+ * Tests for {@link MappedFeatureIndexer}, using a {@link PRTreeFeatureIndexer}
+ * of the same features as a reference
+ *
+ * @author agent
+ */
+public class MappedFeatureIndexerTest {
+    private static final String[] VARS = { "TEMP", "PSAL", "DOXY" };
+
+    private File indexFile;
+    private MappedFeatureIndexer indexer;
+    private PRTreeFeatureIndexer reference;
+    private Map<String, Collection<String>> featureVars = new HashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        indexFile = File.createTempFile("edal-featureindex", ".index");
+        indexFile.delete();
+        indexer = new MappedFeatureIndexer(indexFile);
+        reference = new PRTreeFeatureIndexer();
+
+        Random random = new Random(1234L);
+        DateTime start = new DateTime(2000, 1, 1, 0, 0);
+        List<FeatureIndexer.FeatureBounds> features = new ArrayList<>();
+        List<FeatureIndexer.FeatureBounds> referenceFeatures = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double x = random.nextDouble() * 360.0 - 180.0;
+            double y = random.nextDouble() * 160.0 - 80.0;
+            double z = random.nextDouble() * 1000.0;
+            DateTime time = start.plusHours(random.nextInt(24 * 365));
+            Collection<String> vars = new HashSet<>();
+            for (String var : VARS) {
+                if (random.nextBoolean()) {
+                    vars.add(var);
+                }
+            }
+            featureVars.put("feature" + i, vars);
+            HorizontalPosition pos = new HorizontalPosition(x, y, GISUtils.defaultGeographicCRS());
+            Extent<Double> zExtent = Extents.newExtent(z, z);
+            Extent<DateTime> tExtent = Extents.newExtent(time, time);
+            features.add(new FeatureIndexer.FeatureBounds("feature" + i, pos, zExtent, tExtent,
+                    vars));
+            referenceFeatures.add(new FeatureIndexer.FeatureBounds("feature" + i, pos, zExtent,
+                    tExtent, vars));
+        }
+        /*
+         * Add in 2 batches to check that adding to an existing index works
+         */
+        indexer.addFeatures(features.subList(0, 2000));
+        indexer.addFeatures(features.subList(2000, features.size()));
+        reference.addFeatures(referenceFeatures);
+    }
+
+    @After
+    public void tearDown() {
+        indexFile.delete();
+    }
+
+    @Test
+    public void testGetAllFeatureIds() {
+        assertEquals(5000, indexer.size());
+        assertEquals(reference.getAllFeatureIds(), indexer.getAllFeatureIds());
+    }
+
+    @Test
+    public void testFindFeatureIds() {
+        DateTime start = new DateTime(2000, 3, 1, 0, 0);
+        Extent<DateTime> tExtent = Extents.newExtent(start, start.plusMonths(4));
+        Extent<Double> zExtent = Extents.newExtent(100.0, 500.0);
+        BoundingBox[] bboxes = new BoundingBox[] {
+                new BoundingBoxImpl(-20, -30, 40, 10, GISUtils.defaultGeographicCRS()),
+                new BoundingBoxImpl(150, -30, 200, 30, GISUtils.defaultGeographicCRS()),
+                new BoundingBoxImpl(-200, 0, 600, 10, GISUtils.defaultGeographicCRS()) };
+        for (BoundingBox bbox : bboxes) {
+            compare(bbox, null, null, null);
+            compare(bbox, zExtent, tExtent, null);
+            compare(bbox, zExtent, null, Arrays.asList("TEMP"));
+            compare(bbox, null, tExtent, Arrays.asList("PSAL", "DOXY"));
+        }
+        assertTrue(indexer.findFeatureIds(bboxes[0], null, null, Arrays.asList("CHLA")).isEmpty());
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        BoundingBox bbox = new BoundingBoxImpl(-20, -30, 40, 10, GISUtils.defaultGeographicCRS());
+        Collection<String> expected = indexer.findFeatureIds(bbox, null, null, null);
+
+        MappedFeatureIndexer reopened = new MappedFeatureIndexer(indexFile);
+        assertEquals(new HashSet<>(expected),
+                new HashSet<>(reopened.findFeatureIds(bbox, null, null, null)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(indexer);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            MappedFeatureIndexer deserialised = (MappedFeatureIndexer) in.readObject();
+            assertEquals(new HashSet<>(expected),
+                    new HashSet<>(deserialised.findFeatureIds(bbox, null, null, null)));
+        }
+    }
+
+    @Test
+    public void testRevision() throws Exception {
+        long revision = indexer.getRevision();
+        assertTrue(revision != 0L);
+        assertEquals(revision, new MappedFeatureIndexer(indexFile).getRevision());
+
+        indexer.removeFeatures(Collections.singleton("feature0"));
+        assertTrue(indexer.getRevision() != revision);
+        assertEquals(indexer.getRevision(), new MappedFeatureIndexer(indexFile).getRevision());
+    }
+
+    @Test
+    public void testRemoveFeatures() {
+        BoundingBox bbox = new BoundingBoxImpl(-20, -30, 40, 10, GISUtils.defaultGeographicCRS());
+        List<String> ids = new ArrayList<>(indexer.findFeatureIds(bbox, null, null, null));
+        List<String> removed = ids.subList(0, ids.size() / 2);
+        indexer.removeFeatures(removed);
+        reference.removeFeatures(removed);
+
+        assertEquals(5000 - removed.size(), indexer.size());
+        assertEquals(reference.getAllFeatureIds(), indexer.getAllFeatureIds());
+        compare(bbox, null, null, null);
+        compare(bbox, null, null, Arrays.asList("TEMP"));
+    }
+
+    private void compare(BoundingBox bbox, Extent<Double> zExtent, Extent<DateTime> tExtent,
+            Collection<String> vars) {
+        Collection<String> expected = new HashSet<>();
+        for (String id : reference.findFeatureIds(bbox, zExtent, tExtent,
+                Collections.<String> emptyList())) {
+            expected.add(id);
+        }
+        if (vars != null) {
+            /*
+             * The reference indexer does not filter on variables when
+             * querying across the date line, so check variables here
+             */
+            Iterator<String> it = expected.iterator();
+            while (it.hasNext()) {
+                if (!featureVars.get(it.next()).containsAll(vars)) {
+                    it.remove();
+                }
+            }
+        }
+        Collection<String> found = indexer.findFeatureIds(bbox, zExtent, tExtent, vars);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new HashSet<>(found));
+    }
+}
@@ -29,10 +29,16 @@ package uk.ac.rdg.resc.edal.dataset;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeSet;
 
 import org.joda.time.Chronology;
@@ -183,6 +189,52 @@ public class PRTreeFeatureIndexerTest {
         findFeatureIds(bbox, verticalExtent, timeExtent, fIDs);
     }
 
+    /**
+     * Test adding features to an already-loaded index and removing them again
+     */
+    @Test
+    public void testAddAndRemoveFeatures() {
+        HorizontalPosition hPos = new HorizontalPosition(-100.0, -40.0, crs);
+        List<FeatureIndexer.FeatureBounds> extraFeatures = new ArrayList<>();
+        extraFeatures.add(new FeatureIndexer.FeatureBounds("extra", hPos, verticalExtent,
+                timeExtent, varIDs));
+        featureindexer.addFeatures(extraFeatures);
+
+        BoundingBox bbox = new BoundingBoxImpl(-101.0, -41.0, -99.0, -39.0, crs);
+        assertEquals(xSize * ySize + 1, featureindexer.getAllFeatureIds().size());
+        assertEquals(Arrays.asList("extra"),
+                featureindexer.findFeatureIds(bbox, null, null, varIDs));
+
+        featureindexer.removeFeatures(Arrays.asList("extra", "x0y0"));
+        assertEquals(xSize * ySize - 1, featureindexer.getAllFeatureIds().size());
+        assertFalse(featureindexer.getAllFeatureIds().contains("x0y0"));
+        assertTrue(featureindexer.findFeatureIds(bbox, null, null, varIDs).isEmpty());
+    }
+
+    /**
+     * Test that an index with changes which have not yet been searched for
+     * survives serialisation
+     */
+    @Test
+    public void testSerialiseWithPendingChanges() throws Exception {
+        featureindexer.removeFeatures(Arrays.asList("x0y0"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(featureindexer);
+        }
+        PRTreeFeatureIndexer deserialised;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialised = (PRTreeFeatureIndexer) in.readObject();
+        }
+
+        BoundingBox bbox = new BoundingBoxImpl(-180.0, -90.0, 180.0, 90.0, crs);
+        Collection<String> found = deserialised.findFeatureIds(bbox, null, null, varIDs);
+        assertEquals(xSize * ySize - 1, found.size());
+        assertFalse(found.contains("x0y0"));
+    }
+
     /**
      * Help method to do the real business of testing findFeatureIds
      *
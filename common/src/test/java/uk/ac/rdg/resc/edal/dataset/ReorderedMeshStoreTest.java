@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.dataset.HZTDataSource.MeshCoordinates3D;
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+import uk.ac.rdg.resc.edal.grid.HorizontalMesh;
+import uk.ac.rdg.resc.edal.grid.TimeAxisImpl;
+import uk.ac.rdg.resc.edal.metadata.HorizontalMesh4dVariableMetadata;
+import uk.ac.rdg.resc.edal.metadata.Parameter;
+import uk.ac.rdg.resc.edal.position.HorizontalPosition;
+
+public class ReorderedMeshStoreTest {
+    private static final String DATASET_ID = "mesh";
+    private static final String SOURCE_ID = "source@1";
+    private static final int SIZE = 20;
+    private static final int N_TIMES = 3;
+    private static final int MISSING_NODE = 7;
+
+    private File originalWorkingDir;
+    private File workingDir;
+    private HorizontalMesh mesh;
+    private HorizontalMesh4dVariableMetadata metadata;
+    private HZTDataSource dataSource;
+
+    @Before
+    public void setUp() throws IOException {
+        originalWorkingDir = DatasetFactory.getWorkingDirectory();
+        workingDir = Files.createTempDirectory("edal-meshorder").toFile();
+        DatasetFactory.setWorkingDirectory(workingDir);
+
+        /*
+         * A regular mesh with the nodes in a random order
+         */
+        List<Integer> nodeOrder = new ArrayList<>();
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            nodeOrder.add(i);
+        }
+        Collections.shuffle(nodeOrder, new Random(42));
+        HorizontalPosition[] positions = new HorizontalPosition[SIZE * SIZE];
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            int node = nodeOrder.get(i);
+            positions[node] = new HorizontalPosition(i % SIZE, i / SIZE);
+        }
+        List<int[]> connections = new ArrayList<>();
+        for (int y = 0; y < SIZE - 1; y++) {
+            for (int x = 0; x < SIZE - 1; x++) {
+                connections.add(new int[] { nodeOrder.get(y * SIZE + x),
+                        nodeOrder.get(y * SIZE + x + 1), nodeOrder.get((y + 1) * SIZE + x + 1),
+                        nodeOrder.get((y + 1) * SIZE + x) });
+            }
+        }
+        List<HorizontalPosition> positionList = new ArrayList<>();
+        Collections.addAll(positionList, positions);
+        mesh = HorizontalMesh.fromConnections(positionList, connections, 0);
+
+        List<DateTime> times = new ArrayList<>();
+        for (int t = 0; t < N_TIMES; t++) {
+            times.add(new DateTime(2000, 1, t + 1, 0, 0));
+        }
+        metadata = new HorizontalMesh4dVariableMetadata(new Parameter("var", "Variable", "",
+                "m", null), mesh, null, new TimeAxisImpl("time", times), true);
+
+        dataSource = new HZTDataSource() {
+            @Override
+            public List<Number> read(String variableId, List<MeshCoordinates3D> coordsToRead)
+                    throws DataReadingException {
+                List<Number> ret = new ArrayList<>();
+                for (MeshCoordinates3D coords : coordsToRead) {
+                    ret.add(coords.h < 0 || coords.h == MISSING_NODE ? null : getValue(
+                            coords.h, coords.t));
+                }
+                return ret;
+            }
+
+            @Override
+            public void close() throws DataReadingException {
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DatasetFactory.setWorkingDirectory(originalWorkingDir);
+        Files.walk(workingDir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    public void testHilbertDistance() {
+        assertEquals(0, ReorderedMeshStore.getHilbertDistance(2, 0, 0));
+        assertEquals(1, ReorderedMeshStore.getHilbertDistance(2, 0, 1));
+        assertEquals(2, ReorderedMeshStore.getHilbertDistance(2, 1, 1));
+        assertEquals(3, ReorderedMeshStore.getHilbertDistance(2, 1, 0));
+        /*
+         * With 2^16 cells in each direction, distances overflow an int, but
+         * are correct when treated as unsigned
+         */
+        int cells = 1 << 16;
+        assertEquals(0xFFFFFFFFL,
+                ReorderedMeshStore.getHilbertDistance(cells, cells - 1, 0) & 0xFFFFFFFFL);
+        assertEquals(0x80000000L,
+                ReorderedMeshStore.getHilbertDistance(cells, cells / 2, cells / 2) & 0xFFFFFFFFL);
+    }
+
+    @Test
+    public void testHilbertOrder() {
+        int[] order = ReorderedMeshStore.getHilbertOrder(mesh);
+        assertEquals(SIZE * SIZE, order.length);
+        boolean[] seen = new boolean[order.length];
+        double totalStep = 0.0;
+        for (int i = 0; i < order.length; i++) {
+            assertTrue(!seen[order[i]]);
+            seen[order[i]] = true;
+            if (i > 0) {
+                HorizontalPosition prev = mesh.getDomainObjects().get(order[i - 1]).getCentre();
+                HorizontalPosition pos = mesh.getDomainObjects().get(order[i]).getCentre();
+                totalStep += Math.abs(prev.getX() - pos.getX())
+                        + Math.abs(prev.getY() - pos.getY());
+            }
+        }
+        /*
+         * Consecutive nodes on the curve should mostly be neighbours. In the
+         * original (random) order, the mean step is around 13.
+         */
+        assertTrue(totalStep / (order.length - 1) < 1.5);
+    }
+
+    @Test
+    public void testBuildAndRead() throws IOException {
+        assertNull(ReorderedMeshStore.getStore(DATASET_ID, metadata, SOURCE_ID));
+        ReorderedMeshStore.build(DATASET_ID, metadata, SOURCE_ID,
+                ReorderedMeshStore.getHilbertOrder(mesh), dataSource);
+        ReorderedMeshStore store = ReorderedMeshStore.getStore(DATASET_ID, metadata, SOURCE_ID);
+        assertNotNull(store);
+        assertNull(ReorderedMeshStore.getStore(DATASET_ID, metadata, "source@2"));
+
+        List<MeshCoordinates3D> coords = new ArrayList<>();
+        for (int h = 0; h < SIZE * SIZE; h += 3) {
+            coords.add(new MeshCoordinates3D(h, 0, h % N_TIMES));
+        }
+        coords.add(new MeshCoordinates3D(MISSING_NODE, 0, 1));
+        coords.add(new MeshCoordinates3D(-1, 0, 1));
+        coords.add(new MeshCoordinates3D(12, 0, N_TIMES));
+
+        List<Number> values = store.read(coords);
+        assertEquals(coords.size(), values.size());
+        for (int i = 0; i < coords.size(); i++) {
+            MeshCoordinates3D c = coords.get(i);
+            if (c.h < 0 || c.h == MISSING_NODE || c.t >= N_TIMES) {
+                assertNull(values.get(i));
+            } else {
+                assertEquals(getValue(c.h, c.t), values.get(i).floatValue(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testDatasetUsesStores() throws Exception {
+        HorizontalMesh4dDataset dataset = new HorizontalMesh4dDataset(DATASET_ID,
+                Collections.singletonList(metadata)) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected HZTDataSource openDataSource() throws DataReadingException {
+                return useReorderedStore(dataSource);
+            }
+
+            @Override
+            protected String getSourceId() {
+                return SOURCE_ID;
+            }
+        };
+        dataset.openReorderedStore();
+        assertSame(dataSource, dataset.openDataSource());
+
+        dataset.buildReorderedStoreInBackground().get();
+        HZTDataSource reordered = dataset.openDataSource();
+        assertNotSame(dataSource, reordered);
+        List<MeshCoordinates3D> coords = Collections.singletonList(new MeshCoordinates3D(12, 0,
+                1));
+        assertEquals(getValue(12, 1), reordered.read("var", coords).get(0).floatValue(), 0f);
+
+        /*
+         * Reopening the stores finds the existing one without rebuilding it
+         */
+        dataset.openReorderedStore();
+        assertNotSame(dataSource, dataset.openDataSource());
+    }
+
+    private static float getValue(int h, int t) {
+        return t * 1000 + h;
+    }
+}
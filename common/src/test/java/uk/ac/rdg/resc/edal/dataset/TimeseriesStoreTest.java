@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.rdg.resc.edal.exceptions.DataReadingException;
+
+public class TimeseriesStoreTest {
+    private static final String DATASET_ID = "dataset/1";
+    private static final String VAR_ID = "var";
+    private static final int[] SHAPE = new int[] { 5, 2, 3, 4 };
+
+    private File originalWorkingDir;
+    private File workingDir;
+    private IdentifiedDataSource dataSource;
+
+    @Before
+    public void setUp() throws IOException {
+        originalWorkingDir = DatasetFactory.getWorkingDirectory();
+        workingDir = Files.createTempDirectory("edal-timeseries").toFile();
+        DatasetFactory.setWorkingDirectory(workingDir);
+
+        Number[][][][] values = new Number[SHAPE[0]][SHAPE[1]][SHAPE[2]][SHAPE[3]];
+        for (int t = 0; t < SHAPE[0]; t++) {
+            for (int z = 0; z < SHAPE[1]; z++) {
+                for (int y = 0; y < SHAPE[2]; y++) {
+                    for (int x = 0; x < SHAPE[3]; x++) {
+                        values[t][z][y][x] = t * 1000 + z * 100 + y * 10 + x;
+                    }
+                }
+            }
+        }
+        /*
+         * Include some missing data
+         */
+        values[2][1][2][3] = null;
+        Map<String, Number[][][][]> data = new HashMap<>();
+        data.put(VAR_ID, values);
+        dataSource = new IdentifiedDataSource(data, "source@1");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DatasetFactory.setWorkingDirectory(originalWorkingDir);
+        Files.walk(workingDir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    public void testMissingStore() {
+        assertNull(TimeseriesStore.getStore(DATASET_ID, VAR_ID, dataSource, SHAPE));
+    }
+
+    @Test
+    public void testBuildAndRead() throws IOException {
+        TimeseriesStore.build(DATASET_ID, VAR_ID, dataSource, SHAPE);
+        checkStore();
+    }
+
+    @Test
+    public void testBuildInTiles() throws IOException {
+        /*
+         * All time steps for two points at a time
+         */
+        TimeseriesStore.build(DATASET_ID, VAR_ID, dataSource, SHAPE, 40);
+        checkStore();
+    }
+
+    @Test
+    public void testBuildSplittingTimeAxis() throws IOException {
+        /*
+         * Three time steps for a single point at a time
+         */
+        TimeseriesStore.build(DATASET_ID, VAR_ID, dataSource, SHAPE, 12);
+        checkStore();
+    }
+
+    @Test
+    public void testSourceChanged() {
+        TimeseriesStore.build(DATASET_ID, VAR_ID, dataSource, SHAPE);
+        IdentifiedDataSource changed = new IdentifiedDataSource(new HashMap<>(), "source@2");
+        assertNull(TimeseriesStore.getStore(DATASET_ID, VAR_ID, changed, SHAPE));
+    }
+
+    @Test(expected = DataReadingException.class)
+    public void testUnidentifiedSource() {
+        TimeseriesStore.build(DATASET_ID, VAR_ID, new InMemoryGridDataSource(new HashMap<>()),
+                SHAPE);
+    }
+
+    private void checkStore() throws IOException {
+        TimeseriesStore store = TimeseriesStore.getStore(DATASET_ID, VAR_ID, dataSource, SHAPE);
+        assertNotNull(store);
+        for (int z = 0; z < SHAPE[1]; z++) {
+            for (int y = 0; y < SHAPE[2]; y++) {
+                for (int x = 0; x < SHAPE[3]; x++) {
+                    float[] series = store.readSeries(z, y, x, 1, 4);
+                    assertEquals(4, series.length);
+                    for (int t = 1; t <= 4; t++) {
+                        if (t == 2 && z == 1 && y == 2 && x == 3) {
+                            assertEquals(Float.NaN, series[t - 1], 0f);
+                        } else {
+                            assertEquals(t * 1000 + z * 100 + y * 10 + x, series[t - 1], 0f);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testShapeMismatch() {
+        TimeseriesStore.build(DATASET_ID, VAR_ID, dataSource, SHAPE);
+        assertNull(TimeseriesStore.getStore(DATASET_ID, VAR_ID, dataSource, new int[] { 6, 2,
+                3, 4 }));
+    }
+
+    private static class IdentifiedDataSource extends InMemoryGridDataSource
+            implements ChunkedGridDataSource {
+        private final String cacheId;
+
+        public IdentifiedDataSource(Map<String, Number[][][][]> data, String cacheId) {
+            super(data);
+            this.cacheId = cacheId;
+        }
+
+        @Override
+        public int[] getChunkShape(String variableId) {
+            return null;
+        }
+
+        @Override
+        public int[] getShape(String variableId) {
+            return SHAPE;
+        }
+
+        @Override
+        public String getCacheId() {
+            return cacheId;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.dataset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkingFilesTest {
+    private File originalWorkingDir;
+    private File workingDir;
+
+    @Before
+    public void setUp() throws IOException {
+        originalWorkingDir = DatasetFactory.getWorkingDirectory();
+        workingDir = Files.createTempDirectory("edal-workingfiles").toFile();
+        DatasetFactory.setWorkingDirectory(workingDir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DatasetFactory.setWorkingDirectory(originalWorkingDir);
+        Files.walk(workingDir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    public void testGetFile() {
+        assertEquals(new File(new File(new File(workingDir, "dir"), "my_dataset"), "var_1.dat"),
+                WorkingFiles.getFile("dir", "my/dataset", "var:1.dat"));
+        assertNull(WorkingFiles.getFile("dir", null));
+        DatasetFactory.setWorkingDirectory(null);
+        assertNull(WorkingFiles.getFile("dir", "dataset"));
+    }
+
+    @Test
+    public void testDigest() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", WorkingFiles.digest("abc"));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        File file = WorkingFiles.getFile("dir", "file");
+        WorkingFiles.write(file, tmpFile -> Files.write(tmpFile.toPath(), bytes("first")));
+        assertArrayEquals(bytes("first"), Files.readAllBytes(file.toPath()));
+
+        WorkingFiles.write(file, tmpFile -> Files.write(tmpFile.toPath(), bytes("second")));
+        assertArrayEquals(bytes("second"), Files.readAllBytes(file.toPath()));
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void testFailedWrite() throws IOException {
+        File file = WorkingFiles.getFile("dir", "file");
+        WorkingFiles.write(file, tmpFile -> Files.write(tmpFile.toPath(), bytes("first")));
+        try {
+            WorkingFiles.write(file, tmpFile -> {
+                Files.write(tmpFile.toPath(), bytes("partial"));
+                throw new IOException("Failed");
+            });
+            fail("The write should have failed");
+        } catch (IOException e) {
+            /*
+             * Expected
+             */
+        }
+        /*
+         * The existing file is untouched, and the partial one is removed
+         */
+        assertArrayEquals(bytes("first"), Files.readAllBytes(file.toPath()));
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
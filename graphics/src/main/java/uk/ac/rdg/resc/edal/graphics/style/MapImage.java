@@ -45,6 +45,7 @@ import java.util.Set;
 
 import javax.imageio.ImageIO;
 
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
 import uk.ac.rdg.resc.edal.exceptions.EdalException;
 import uk.ac.rdg.resc.edal.graphics.utils.FeatureCatalogue;
 import uk.ac.rdg.resc.edal.graphics.utils.LegendDataGenerator;
@@ -60,24 +61,30 @@ public class MapImage extends Drawable {
     @Override
     public BufferedImage drawImage(PlottingDomainParams params, FeatureCatalogue catalogue)
             throws EdalException {
-        BufferedImage finalImage = new BufferedImage(params.getWidth(), params.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-        Graphics2D graphics = finalImage.createGraphics();
+        /*
+         * Reserve memory for the final image and one layer image at a time
+         */
+        try (MemoryBudget.Reservation reservation = MemoryBudget
+                .reserve(2L * params.getWidth() * params.getHeight() * 4)) {
+            BufferedImage finalImage = new BufferedImage(params.getWidth(), params.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = finalImage.createGraphics();
 
-        for (Drawable drawable : layers) {
-            if (drawable != null) {
-                BufferedImage drawnImage = drawable.drawImage(params, catalogue);
-                OpacityTransform opacityTransform = drawable.getOpacityTransform();
-                if (opacityTransform != null) {
-                    opacityTransform.drawIntoImage(drawnImage, params, catalogue);
+            for (Drawable drawable : layers) {
+                if (drawable != null) {
+                    BufferedImage drawnImage = drawable.drawImage(params, catalogue);
+                    OpacityTransform opacityTransform = drawable.getOpacityTransform();
+                    if (opacityTransform != null) {
+                        opacityTransform.drawIntoImage(drawnImage, params, catalogue);
+                    }
+                    graphics.drawImage(drawnImage, 0, 0, null);
                 }
-                graphics.drawImage(drawnImage, 0, 0, null);
             }
+            if (getOpacityTransform() != null) {
+                getOpacityTransform().drawIntoImage(finalImage, params, catalogue);
+            }
+            return finalImage;
         }
-        if (getOpacityTransform() != null) {
-            getOpacityTransform().drawIntoImage(finalImage, params, catalogue);
-        }
-        return finalImage;
     }
 
     /**
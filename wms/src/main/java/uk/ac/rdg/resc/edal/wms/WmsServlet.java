@@ -52,6 +52,13 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 import javax.naming.OperationNotSupportedException;
@@ -189,6 +196,30 @@ public class WmsServlet extends HttpServlet {
             "EPSG:32761" // South Polar stereographic
     };
 
+    /*
+     * Draws the frames of animations. This is kept separate from the
+     * DataReadExecutor, because drawing a frame waits for the reads it
+     * submits there. Running frames on that pool could fill it with tasks
+     * which are waiting for reads that can never start.
+     */
+    private static final AtomicInteger animationThreadCount = new AtomicInteger(0);
+    private static final ThreadPoolExecutor animationExecutor = new ThreadPoolExecutor(
+            Runtime.getRuntime().availableProcessors(),
+            Runtime.getRuntime().availableProcessors(), 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                            "edal-animation-frame-" + animationThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    static {
+        animationExecutor.allowCoreThreadTimeOut(true);
+    }
+
     private WmsCatalogue catalogue = null;
     protected final VelocityEngine velocityEngine;
     private final Set<String> advertisedPalettes = new TreeSet<>();
@@ -536,30 +567,40 @@ public class WmsServlet extends HttpServlet {
             frames = Arrays.asList(imageGenerator.drawImage(plottingParameters, catalogue));
             timeValues.add(plottingParameters.getTargetT());
         } else {
-            frames = new ArrayList<>();
+            /*
+             * Draw the frames concurrently. If any of them fail, or this
+             * request is abandoned, the frames which have not yet been started
+             * are cancelled.
+             */
+            List<CompletableFuture<BufferedImage>> futures = new ArrayList<>();
             for (DateTime timeStep : getMapParams.getAnimationTimesteps()) {
                 PlottingDomainParams timestepParameters = new PlottingDomainParams(
                         plottingParameters.getWidth(), plottingParameters.getHeight(),
                         plottingParameters.getBbox(), plottingParameters.getZExtent(), null,
                         plottingParameters.getTargetHorizontalPosition(),
                         plottingParameters.getTargetZ(), timeStep);
-                BufferedImage frame = imageGenerator.drawImage(timestepParameters, catalogue);
-                Graphics2D g = frame.createGraphics();
-                g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 16));
-                g.setColor(Color.white);
-                g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 9,
-                        frame.getHeight() - 9);
-                g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 9,
-                        frame.getHeight() - 11);
-                g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 11,
-                        frame.getHeight() - 11);
-                g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 11,
-                        frame.getHeight() - 9);
-                g.setColor(Color.black);
-                g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 10,
-                        frame.getHeight() - 10);
+                futures.add(CompletableFuture.supplyAsync(() -> drawAnimationFrame(
+                        imageGenerator, timestepParameters, timeStep, catalogue),
+                        animationExecutor));
                 timeValues.add(timeStep);
-                frames.add(frame);
+            }
+            frames = new ArrayList<>();
+            try {
+                for (CompletableFuture<BufferedImage> future : futures) {
+                    frames.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EdalException("Interrupted whilst generating animation", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof EdalException) {
+                    throw (EdalException) e.getCause();
+                }
+                throw new EdalException("Problem generating animation", e.getCause());
+            } finally {
+                for (CompletableFuture<BufferedImage> future : futures) {
+                    future.cancel(false);
+                }
             }
         }
 
@@ -619,6 +660,29 @@ public class WmsServlet extends HttpServlet {
         }
     }
 
+    /*
+     * Draws a single frame of an animation, labelled with its time
+     */
+    private static BufferedImage drawAnimationFrame(MapImage imageGenerator,
+            PlottingDomainParams timestepParameters, DateTime timeStep, WmsCatalogue catalogue) {
+        BufferedImage frame = imageGenerator.drawImage(timestepParameters, catalogue);
+        Graphics2D g = frame.createGraphics();
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 16));
+        g.setColor(Color.white);
+        g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 9,
+                frame.getHeight() - 9);
+        g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 9,
+                frame.getHeight() - 11);
+        g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 11,
+                frame.getHeight() - 11);
+        g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 11,
+                frame.getHeight() - 9);
+        g.setColor(Color.black);
+        g.drawString(TimeUtils.formatUtcHumanReadableDateTime(timeStep), 10,
+                frame.getHeight() - 10);
+        return frame;
+    }
+
     protected void getCapabilities(RequestParams params, HttpServletResponse httpServletResponse,
             String baseUrl, WmsCatalogue catalogue) throws EdalException {
         /*
@@ -59,12 +59,17 @@ import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
 import net.sf.ehcache.management.ManagementService;
 import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import uk.ac.rdg.resc.edal.cache.EdalCache;
+import uk.ac.rdg.resc.edal.cache.MemoryBudget;
 import uk.ac.rdg.resc.edal.catalogue.jaxb.CacheInfo;
 import uk.ac.rdg.resc.edal.catalogue.jaxb.CatalogueConfig;
 import uk.ac.rdg.resc.edal.catalogue.jaxb.CatalogueConfig.DatasetStorage;
 import uk.ac.rdg.resc.edal.catalogue.jaxb.DatasetConfig;
+import uk.ac.rdg.resc.edal.catalogue.jaxb.DatasetPoolInfo;
+import uk.ac.rdg.resc.edal.catalogue.jaxb.MeshInfo;
 import uk.ac.rdg.resc.edal.catalogue.jaxb.VariableConfig;
 import uk.ac.rdg.resc.edal.dataset.Dataset;
+import uk.ac.rdg.resc.edal.dataset.cdm.CdmGridDatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.cdm.NetcdfDatasetAggregator;
 import uk.ac.rdg.resc.edal.exceptions.EdalException;
 import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
 import uk.ac.rdg.resc.edal.graphics.exceptions.EdalLayerNotFoundException;
@@ -126,6 +131,12 @@ public class DataCatalogue implements DatasetCatalogue, DatasetStorage, FeatureC
         layerMetadata = new HashMap<>();
 
         this.config = config;
+        /*
+         * The dataset pool and mesh settings need configuring before any
+         * datasets get loaded
+         */
+        setDatasetPool(config.getDatasetPoolSettings());
+        setMesh(config.getMeshSettings());
         this.config.setDatasetLoadedHandler(this);
         this.config.loadDatasets();
 
@@ -204,6 +215,7 @@ public class DataCatalogue implements DatasetCatalogue, DatasetStorage, FeatureC
                         true, true);
             }
         }
+        reserveCacheMemory();
     }
 
     public CatalogueConfig getConfig() {
@@ -214,6 +226,38 @@ public class DataCatalogue implements DatasetCatalogue, DatasetStorage, FeatureC
         CatalogueConfig.shutdown();
     }
 
+    /**
+     * Configures the pool of open NetCDF datasets used when reading data
+     * 
+     * @param poolConfig
+     *            The (new) configuration to use for the pool. Must not be
+     *            <code>null</code>
+     */
+    public void setDatasetPool(DatasetPoolInfo poolConfig) {
+        NetcdfDatasetAggregator.setMaxHandlesPerLocation(poolConfig.getMaxHandlesPerLocation());
+        NetcdfDatasetAggregator.setMaxOpenHandles(poolConfig.getMaxOpenHandles());
+        NetcdfDatasetAggregator.setMaxOpenMemory(poolConfig.getMaxOpenMemoryMB() * 1024 * 1024);
+        NetcdfDatasetAggregator.setIdleTimeout(poolConfig.getIdleTimeoutSeconds());
+        if (poolConfig.getAggregationScanThreads() > 0) {
+            NetcdfDatasetAggregator.setAggregationScanThreads(poolConfig.getAggregationScanThreads());
+        } else {
+            NetcdfDatasetAggregator
+                    .setAggregationScanThreads(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Configures how data are read from unstructured mesh datasets
+     * 
+     * @param meshConfig
+     *            The (new) configuration to use for meshes. Must not be
+     *            <code>null</code>
+     */
+    public void setMesh(MeshInfo meshConfig) {
+        CdmGridDatasetFactory.setReorderMeshNodes(meshConfig.isReorderNodes());
+        CdmGridDatasetFactory.setMaxMeshNodeGap(meshConfig.getMaxNodeGap());
+    }
+
     /**
      * Configures the cache used to store features
      * 
@@ -316,6 +360,16 @@ public class DataCatalogue implements DatasetCatalogue, DatasetStorage, FeatureC
              */
             EdalCache.cacheManager.removeCache(CACHE_NAME);
         }
+        reserveCacheMemory();
+    }
+
+    /*
+     * The feature cache can grow to its maximum size at any time, so that
+     * memory is not available to anything else
+     */
+    private void reserveCacheMemory() {
+        MemoryBudget.setFixedReservation(CACHE_NAME, cachingEnabled && featureCache != null
+                ? featureCache.getCacheConfiguration().getMaxBytesLocalHeap() : 0L);
     }
 
     /**
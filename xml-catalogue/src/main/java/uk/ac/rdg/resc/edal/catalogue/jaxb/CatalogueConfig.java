@@ -71,7 +71,7 @@ import uk.ac.rdg.resc.edal.graphics.utils.DatasetCatalogue;
  * 
  * @author Guy Griffiths
  */
-@XmlType(name = "config", propOrder = { "datasets", "cacheInfo" })
+@XmlType(name = "config", propOrder = { "datasets", "cacheInfo", "datasetPoolInfo", "meshInfo" })
 @XmlRootElement(name = "config")
 public class CatalogueConfig {
     private static final Logger log = LoggerFactory.getLogger(CatalogueConfig.class);
@@ -80,6 +80,10 @@ public class CatalogueConfig {
     private Map<String, DatasetConfig> datasets = new LinkedHashMap<>();
     @XmlElement(name = "cache")
     private CacheInfo cacheInfo = new CacheInfo();
+    @XmlElement(name = "datasetPool")
+    private DatasetPoolInfo datasetPoolInfo = new DatasetPoolInfo();
+    @XmlElement(name = "mesh")
+    private MeshInfo meshInfo = new MeshInfo();
     @XmlTransient
     private DatasetStorage datasetStorage = null;
     @XmlTransient
@@ -167,6 +171,14 @@ public class CatalogueConfig {
         return cacheInfo;
     }
 
+    public DatasetPoolInfo getDatasetPoolSettings() {
+        return datasetPoolInfo;
+    }
+
+    public MeshInfo getMeshSettings() {
+        return meshInfo;
+    }
+
     public DatasetConfig getDatasetInfo(String datasetId) {
         return datasets.get(datasetId);
     }
@@ -198,11 +210,13 @@ public class CatalogueConfig {
         datasets.remove(dataset.getId());
         futures.get(dataset.getId()).cancel(true);
         futures.remove(dataset.getId());
+        DatasetSnapshot.delete(dataset.getId());
     }
 
     public synchronized void changeDatasetId(DatasetConfig dataset, String newId) {
         datasets.remove(dataset.getId());
         ScheduledFuture<?> removedScheduler = futures.remove(dataset.getId());
+        DatasetSnapshot.delete(dataset.getId());
         dataset.setId(newId);
 
         datasets.put(newId, dataset);
@@ -254,6 +268,14 @@ public class CatalogueConfig {
         sb.append("----------\n");
         sb.append(cacheInfo.toString());
         sb.append("\n");
+        sb.append("Dataset Pool\n");
+        sb.append("------------\n");
+        sb.append(datasetPoolInfo.toString());
+        sb.append("\n");
+        sb.append("Mesh\n");
+        sb.append("----\n");
+        sb.append(meshInfo.toString());
+        sb.append("\n");
         return sb.toString();
     }
 
@@ -52,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.rdg.resc.edal.catalogue.jaxb.CatalogueConfig.DatasetStorage;
 import uk.ac.rdg.resc.edal.dataset.Dataset;
 import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.GriddedDataset;
 import uk.ac.rdg.resc.edal.domain.Extent;
 import uk.ac.rdg.resc.edal.exceptions.EdalException;
 import uk.ac.rdg.resc.edal.graphics.utils.ColourPalette;
@@ -174,6 +175,12 @@ public class DatasetConfig {
      */
     @XmlTransient
     private DateTime lastFailedUpdateTime = null;
+    /*
+     * Set if this dataset has been made available from a snapshot, but we have
+     * not yet checked whether the snapshot is still current
+     */
+    @XmlTransient
+    private DatasetSnapshot unvalidatedSnapshot = null;
 
     public DatasetConfig() {
     }
@@ -210,7 +217,32 @@ public class DatasetConfig {
              */
             state = lastSuccessfulUpdateTime == null ? DatasetState.LOADING : DatasetState.UPDATING;
 
-            createDataset(datasetStorage, true);
+            if (unvalidatedSnapshot != null) {
+                /*
+                 * We are serving this dataset from a snapshot. Now that it is
+                 * available, check whether it needs recreating.
+                 */
+                DatasetSnapshot snapshot = unvalidatedSnapshot;
+                unvalidatedSnapshot = null;
+                if (snapshot.isCurrent()) {
+                    loadingProgress.add("Snapshot is up to date");
+                } else {
+                    loadingProgress.add("Snapshot is out of date");
+                    createDataset(datasetStorage, true);
+                }
+            } else if (lastSuccessfulUpdateTime == null
+                    && (unvalidatedSnapshot = DatasetSnapshot.read(this)) != null) {
+                /*
+                 * This is the first time we've loaded this dataset. Make it
+                 * available from the snapshot straight away, and validate it
+                 * on the next refresh.
+                 */
+                loadingProgress.add("Loading dataset from snapshot created at "
+                        + unvalidatedSnapshot.getCreationTime());
+                datasetCreated(datasetStorage, unvalidatedSnapshot.getDataset());
+            } else {
+                createDataset(datasetStorage, true);
+            }
 
             /*
              * Update the state of this dataset. If we've got this far there
@@ -251,9 +283,29 @@ public class DatasetConfig {
          * TODO In the old version, we dealt with OPeNDAP credentials here...
          */
 
+        /*
+         * Get the state of the source files before creating the dataset, so
+         * that any changes made during creation make the snapshot out of date
+         */
+        List<DatasetSnapshot.SourceFile> sources = DatasetSnapshot.getSourceFiles(location);
+
         Dataset dataset = factory.createDataset(id, location, forceRefresh);
 
         loadingProgress.add("Dataset created");
+        datasetCreated(datasetStorage, dataset);
+
+        loadingProgress.add("Writing dataset snapshot");
+        DatasetSnapshot.write(this, dataset, sources);
+
+        loadingProgress.add("Finished loading dataset metadata");
+    }
+
+    /*
+     * Updates the variables to match a newly created Dataset, and makes it
+     * available
+     */
+    private void datasetCreated(DatasetStorage datasetStorage, Dataset dataset)
+            throws EdalException {
         /*
          * Loop through existing variables and check that they are still there,
          * removing them if not
@@ -291,13 +343,41 @@ public class DatasetConfig {
         loadingProgress.add("Making this dataset available through the WMS catalogue");
         datasetStorage.datasetLoaded(dataset, variables.values());
 
-        loadingProgress.add("Finished loading dataset metadata");
+        buildTimeseriesStores(dataset);
+    }
+
+    /*
+     * Builds a timeseries store for each variable configured to have one,
+     * unless it already has one which is up to date. Without a store,
+     * timeseries are just read from the underlying data, so a failure here
+     * does not stop the dataset being available.
+     */
+    private void buildTimeseriesStores(Dataset dataset) {
+        if (!(dataset instanceof GriddedDataset)) {
+            return;
+        }
+        GriddedDataset griddedDataset = (GriddedDataset) dataset;
+        for (VariableConfig variable : variables.values()) {
+            if (!variable.isTimeseriesStoreEnabled()) {
+                continue;
+            }
+            try {
+                if (!griddedDataset.hasTimeseriesStore(variable.getId())) {
+                    loadingProgress.add("Building timeseries store for variable: "
+                            + variable.getId());
+                    griddedDataset.buildTimeseriesStore(variable.getId());
+                }
+            } catch (EdalException e) {
+                log.error("Problem building timeseries store for variable " + variable.getId()
+                        + " in dataset " + id, e);
+            }
+        }
     }
 
     public boolean needsRefresh() {
         if (disabled || state == DatasetState.LOADING || state == DatasetState.UPDATING) {
             return false;
-        } else if (state == DatasetState.NEEDS_REFRESH) {
+        } else if (state == DatasetState.NEEDS_REFRESH || unvalidatedSnapshot != null) {
             return true;
         } else if (state == DatasetState.ERROR) {
             /*
@@ -328,6 +408,7 @@ public class DatasetConfig {
      */
     public void forceRefresh() {
         this.err = null;
+        this.unvalidatedSnapshot = null;
         this.state = DatasetState.NEEDS_REFRESH;
     }
 
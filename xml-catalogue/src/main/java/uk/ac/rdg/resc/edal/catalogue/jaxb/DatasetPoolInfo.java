@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.catalogue.jaxb;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import uk.ac.rdg.resc.edal.dataset.cdm.NetcdfDatasetAggregator;
+
+/**
+ * The settings for the pool of open NetCDF datasets held by the
+ * {@link NetcdfDatasetAggregator}
+ *
+ * @author agent
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class DatasetPoolInfo {
+    @XmlElement(name = "maxHandlesPerLocation")
+    private int maxHandlesPerLocation = 4;
+    @XmlElement(name = "maxOpenHandles")
+    private int maxOpenHandles = 20;
+    /* 0 means that there is no limit on memory */
+    @XmlElement(name = "maxOpenMemoryMB")
+    private long maxOpenMemoryMB = 0;
+    /* 0 means that datasets are only closed when a limit is reached */
+    @XmlElement(name = "idleTimeoutSeconds")
+    private long idleTimeoutSeconds = 0;
+    /* 0 means one thread per available processor */
+    @XmlElement(name = "aggregationScanThreads")
+    private int aggregationScanThreads = 0;
+
+    public DatasetPoolInfo() {
+    }
+
+    public DatasetPoolInfo(int maxHandlesPerLocation, int maxOpenHandles, long maxOpenMemoryMB,
+            long idleTimeoutSeconds, int aggregationScanThreads) {
+        this.maxHandlesPerLocation = maxHandlesPerLocation;
+        this.maxOpenHandles = maxOpenHandles;
+        this.maxOpenMemoryMB = maxOpenMemoryMB;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+        this.aggregationScanThreads = aggregationScanThreads;
+    }
+
+    public int getMaxHandlesPerLocation() {
+        return maxHandlesPerLocation;
+    }
+
+    public void setMaxHandlesPerLocation(int maxHandlesPerLocation) {
+        this.maxHandlesPerLocation = maxHandlesPerLocation;
+    }
+
+    public int getMaxOpenHandles() {
+        return maxOpenHandles;
+    }
+
+    public void setMaxOpenHandles(int maxOpenHandles) {
+        this.maxOpenHandles = maxOpenHandles;
+    }
+
+    public long getMaxOpenMemoryMB() {
+        return maxOpenMemoryMB;
+    }
+
+    public void setMaxOpenMemoryMB(long maxOpenMemoryMB) {
+        this.maxOpenMemoryMB = maxOpenMemoryMB;
+    }
+
+    public long getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public int getAggregationScanThreads() {
+        return aggregationScanThreads;
+    }
+
+    public void setAggregationScanThreads(int aggregationScanThreads) {
+        this.aggregationScanThreads = aggregationScanThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "Max handles per location: " + maxHandlesPerLocation + "\nMax open handles: "
+                + maxOpenHandles + "\nMax open memory (MB): " + maxOpenMemoryMB
+                + "\nIdle timeout (s): " + idleTimeoutSeconds + "\nAggregation scan threads: "
+                + aggregationScanThreads;
+    }
+}
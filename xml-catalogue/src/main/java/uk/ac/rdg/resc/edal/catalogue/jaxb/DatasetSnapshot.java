@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.catalogue.jaxb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.rdg.resc.edal.dataset.Dataset;
+import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.dataset.WorkingFiles;
+import uk.ac.rdg.resc.edal.util.cdm.CdmUtils;
+
+/**
+ * A snapshot of a loaded {@link Dataset}, stored in the working directory of
+ * the {@link DatasetFactory}s. This contains the complete metadata of the
+ * {@link Dataset} (variables, domains, CRSs etc.), so that after a restart it
+ * can be made available immediately, without having to be recreated from its
+ * source files.
+ * 
+ * A snapshot also records the modification times and sizes of the local files
+ * the {@link Dataset} was created from, so that it can be checked later to see
+ * whether it is still current.
+ * 
+ * @author agent
+ */
+public final class DatasetSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(DatasetSnapshot.class);
+
+    private static final String SNAPSHOT_DIR = "snapshots";
+    private static final String SUFFIX = ".snapshot";
+    private static final int MAGIC = 0x45445331;
+    /*
+     * Increment this if the format of the snapshot changes
+     */
+    private static final int VERSION = 1;
+
+    private static boolean enabled = true;
+
+    private final Dataset dataset;
+    private final String location;
+    private final List<SourceFile> sources;
+    private final DateTime created;
+
+    /*
+     * The modification time and size of a file which a Dataset was created
+     * from
+     */
+    static final class SourceFile implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        private SourceFile(File file) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode() * 31 + Long.hashCode(lastModified) * 17
+                    + Long.hashCode(length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof SourceFile))
+                return false;
+            SourceFile other = (SourceFile) obj;
+            return path.equals(other.path) && lastModified == other.lastModified
+                    && length == other.length;
+        }
+    }
+
+    private DatasetSnapshot(Dataset dataset, String location, List<SourceFile> sources,
+            DateTime created) {
+        this.dataset = dataset;
+        this.location = location;
+        this.sources = sources;
+        this.created = created;
+    }
+
+    /**
+     * @param enabled
+     *            Whether {@link Dataset}s should be written to and read from
+     *            snapshots. Defaults to <code>true</code>. Snapshots are never
+     *            used if {@link DatasetFactory#getWorkingDirectory()} is not
+     *            set.
+     */
+    public static void setEnabled(boolean enabled) {
+        DatasetSnapshot.enabled = enabled;
+    }
+
+    /**
+     * @return The {@link Dataset} stored in this snapshot
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return The time at which this snapshot was written
+     */
+    public DateTime getCreationTime() {
+        return created;
+    }
+
+    /**
+     * Checks whether the source files of this snapshot have changed since it
+     * was written. This needs to access the filesystem, so should not be
+     * called when the {@link Dataset} needs to be available quickly.
+     * 
+     * @return <code>true</code> if all source files are unchanged (and no new
+     *         ones have been added). If the source files could not be
+     *         determined when the snapshot was written (e.g. for remote
+     *         datasets), this will always return <code>false</code>
+     */
+    public boolean isCurrent() {
+        return sources != null && sources.equals(getSourceFiles(location));
+    }
+
+    /**
+     * Gets the current state of the local source files at the given location.
+     * This should be called <i>before</i> creating a {@link Dataset} which is
+     * to be written to a snapshot, so that any change to the files which
+     * happens whilst the {@link Dataset} is being created causes the snapshot
+     * to be out of date.
+     * 
+     * @param location
+     *            The location of the {@link Dataset}
+     * @return A {@link List} of the source files, or <code>null</code> if the
+     *         location does not refer to local files
+     */
+    static List<SourceFile> getSourceFiles(String location) {
+        if (location == null || location.contains("://")) {
+            return null;
+        }
+        List<File> files;
+        try {
+            files = CdmUtils.expandGlobExpression(location);
+        } catch (Exception e) {
+            log.debug("Could not expand location " + location, e);
+            return null;
+        }
+        if (files.isEmpty()) {
+            return null;
+        }
+        List<SourceFile> sources = new ArrayList<>();
+        for (File file : files) {
+            sources.add(new SourceFile(file));
+        }
+        Collections.sort(sources, new Comparator<SourceFile>() {
+            @Override
+            public int compare(SourceFile s1, SourceFile s2) {
+                return s1.path.compareTo(s2.path);
+            }
+        });
+        return sources;
+    }
+
+    /**
+     * Reads a snapshot of a {@link Dataset}
+     * 
+     * @param config
+     *            The {@link DatasetConfig} of the {@link Dataset}
+     * @return The {@link DatasetSnapshot}, or <code>null</code> if there is no
+     *         usable snapshot for the {@link DatasetConfig} (e.g. if it was
+     *         written by a different version, or the location or
+     *         {@link DatasetFactory} have changed)
+     */
+    static DatasetSnapshot read(DatasetConfig config) {
+        File file = getSnapshotFile(config.getId());
+        if (file == null || !file.exists() || config.getLocation() == null) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !in.readUTF().equals(config.getId())
+                    || !in.readUTF().equals(config.getLocation())
+                    || !in.readUTF().equals(String.valueOf(config.getDataReaderClass()))) {
+                log.debug("Snapshot for dataset " + config.getId() + " is not usable");
+                return null;
+            }
+            DateTime created = new DateTime(in.readLong());
+            @SuppressWarnings("unchecked")
+            List<SourceFile> sources = (List<SourceFile>) in.readObject();
+            Dataset dataset = (Dataset) in.readObject();
+            if (!config.getId().equals(dataset.getId())) {
+                return null;
+            }
+            return new DatasetSnapshot(dataset, config.getLocation(), sources, created);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            /*
+             * Most likely the classes making up the Dataset have changed since
+             * the snapshot was written. The snapshot is useless, so remove it.
+             */
+            log.warn("Unable to read snapshot for dataset " + config.getId()
+                    + ".  It will be recreated.", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of a {@link Dataset}. Any problems are logged, but
+     * otherwise ignored, since a missing snapshot just means that the
+     * {@link Dataset} gets created from scratch on the next restart.
+     * 
+     * @param config
+     *            The {@link DatasetConfig} of the {@link Dataset}
+     * @param dataset
+     *            The {@link Dataset} to write
+     * @param sources
+     *            The state of the source files, from
+     *            {@link DatasetSnapshot#getSourceFiles(String)}, when the
+     *            {@link Dataset} was created
+     */
+    static void write(DatasetConfig config, Dataset dataset, List<SourceFile> sources) {
+        File file = getSnapshotFile(config.getId());
+        if (file == null || config.getLocation() == null) {
+            return;
+        }
+        try {
+            WorkingFiles.write(file, tmpFile -> {
+                try (ObjectOutputStream out = new ObjectOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(config.getId());
+                    out.writeUTF(config.getLocation());
+                    out.writeUTF(String.valueOf(config.getDataReaderClass()));
+                    out.writeLong(System.currentTimeMillis());
+                    out.writeObject(sources == null ? null : new ArrayList<>(sources));
+                    out.writeObject(dataset);
+                }
+            });
+        } catch (NotSerializableException e) {
+            /*
+             * Not all Datasets can be serialised, which isn't an error
+             */
+            log.debug("Unable to write snapshot for dataset " + config.getId(), e);
+            file.delete();
+        } catch (IOException e) {
+            log.warn("Unable to write snapshot for dataset " + config.getId(), e);
+            file.delete();
+        }
+    }
+
+    /**
+     * Removes the snapshot of a {@link Dataset}, if there is one
+     * 
+     * @param datasetId
+     *            The ID of the {@link Dataset}
+     */
+    static void delete(String datasetId) {
+        File file = getSnapshotFile(datasetId);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static File getSnapshotFile(String datasetId) {
+        if (!enabled || datasetId == null) {
+            return null;
+        }
+        return WorkingFiles.getFile(SNAPSHOT_DIR, datasetId + SUFFIX);
+    }
+}
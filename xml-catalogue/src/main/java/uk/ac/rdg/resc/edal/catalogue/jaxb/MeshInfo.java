@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.catalogue.jaxb;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import uk.ac.rdg.resc.edal.dataset.cdm.CdmGridDatasetFactory;
+
+/**
+ * The settings used when reading unstructured mesh datasets with the
+ * {@link CdmGridDatasetFactory}
+ *
+ * @author agent
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MeshInfo {
+    @XmlElement(name = "reorderNodes")
+    private boolean reorderNodes = false;
+    @XmlElement(name = "maxNodeGap")
+    private int maxNodeGap = 1024;
+
+    public MeshInfo() {
+    }
+
+    public MeshInfo(boolean reorderNodes, int maxNodeGap) {
+        this.reorderNodes = reorderNodes;
+        this.maxNodeGap = maxNodeGap;
+    }
+
+    public boolean isReorderNodes() {
+        return reorderNodes;
+    }
+
+    public void setReorderNodes(boolean reorderNodes) {
+        this.reorderNodes = reorderNodes;
+    }
+
+    public int getMaxNodeGap() {
+        return maxNodeGap;
+    }
+
+    public void setMaxNodeGap(int maxNodeGap) {
+        this.maxNodeGap = maxNodeGap;
+    }
+
+    @Override
+    public String toString() {
+        return "Reorder nodes: " + reorderNodes + "\nMax node gap: " + maxNodeGap;
+    }
+}
@@ -41,6 +41,7 @@ import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import uk.ac.rdg.resc.edal.dataset.Dataset;
+import uk.ac.rdg.resc.edal.dataset.TimeseriesStore;
 import uk.ac.rdg.resc.edal.domain.Extent;
 import uk.ac.rdg.resc.edal.graphics.utils.ColourPalette;
 import uk.ac.rdg.resc.edal.graphics.utils.EnhancedVariableMetadata;
@@ -100,6 +101,13 @@ public class VariableConfig implements EnhancedVariableMetadata {
     @XmlAttribute(name = "disabled")
     private Boolean disabled = null;
 
+    /*
+     * Whether to keep a time-major copy of this variable for timeseries
+     * extraction
+     */
+    @XmlAttribute(name = "timeseriesStore")
+    private Boolean timeseriesStore = null;
+
     /* The dataset to which this variable belongs */
     @XmlTransient
     private DatasetConfig dataset;
@@ -261,6 +269,18 @@ public class VariableConfig implements EnhancedVariableMetadata {
         this.disabled = disabled;
     }
 
+    /**
+     * @return Whether a {@link TimeseriesStore} should be built for this
+     *         variable when its dataset is loaded
+     */
+    public boolean isTimeseriesStoreEnabled() {
+        return timeseriesStore == null ? false : timeseriesStore;
+    }
+
+    public void setTimeseriesStoreEnabled(boolean timeseriesStore) {
+        this.timeseriesStore = timeseriesStore;
+    }
+
     private static class ScaleRangeAdapter extends XmlAdapter<String, Extent<Float>> {
         private ScaleRangeAdapter() {
         }
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.catalogue.jaxb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+
+public class CatalogueConfigTest {
+    @Test
+    public void testDatasetPoolDefaults() throws JAXBException {
+        CatalogueConfig config = CatalogueConfig
+                .deserialise(new StringReader("<config><datasets/></config>"));
+        DatasetPoolInfo pool = config.getDatasetPoolSettings();
+        assertEquals(4, pool.getMaxHandlesPerLocation());
+        assertEquals(20, pool.getMaxOpenHandles());
+        assertEquals(0, pool.getMaxOpenMemoryMB());
+        assertEquals(0, pool.getIdleTimeoutSeconds());
+        assertEquals(0, pool.getAggregationScanThreads());
+    }
+
+    @Test
+    public void testDatasetPoolRoundTrip() throws JAXBException {
+        CatalogueConfig config = CatalogueConfig.deserialise(new StringReader(
+                "<config><datasets/><datasetPool>"
+                        + "<maxHandlesPerLocation>2</maxHandlesPerLocation>"
+                        + "<maxOpenHandles>50</maxOpenHandles>"
+                        + "<maxOpenMemoryMB>256</maxOpenMemoryMB>"
+                        + "<idleTimeoutSeconds>300</idleTimeoutSeconds>"
+                        + "<aggregationScanThreads>8</aggregationScanThreads>"
+                        + "</datasetPool></config>"));
+        StringWriter xml = new StringWriter();
+        config.serialise(xml);
+        DatasetPoolInfo pool = CatalogueConfig.deserialise(new StringReader(xml.toString()))
+                .getDatasetPoolSettings();
+        assertEquals(2, pool.getMaxHandlesPerLocation());
+        assertEquals(50, pool.getMaxOpenHandles());
+        assertEquals(256, pool.getMaxOpenMemoryMB());
+        assertEquals(300, pool.getIdleTimeoutSeconds());
+        assertEquals(8, pool.getAggregationScanThreads());
+    }
+
+    @Test
+    public void testTimeseriesStoreSetting() throws JAXBException {
+        CatalogueConfig config = CatalogueConfig.deserialise(new StringReader(
+                "<config><datasets><dataset id=\"ds\" location=\"/data\"><variables>"
+                        + "<variable id=\"sst\" timeseriesStore=\"true\"/>"
+                        + "<variable id=\"ice\"/>"
+                        + "</variables></dataset></datasets></config>"));
+        DatasetConfig dataset = config.getDatasetInfo("ds");
+        assertTrue(dataset.getVariableById("sst").isTimeseriesStoreEnabled());
+        assertFalse(dataset.getVariableById("ice").isTimeseriesStoreEnabled());
+    }
+
+    @Test
+    public void testMeshSettings() throws JAXBException {
+        MeshInfo mesh = CatalogueConfig
+                .deserialise(new StringReader("<config><datasets/></config>")).getMeshSettings();
+        assertFalse(mesh.isReorderNodes());
+        assertEquals(1024, mesh.getMaxNodeGap());
+        mesh = CatalogueConfig.deserialise(new StringReader("<config><datasets/><mesh>"
+                + "<reorderNodes>true</reorderNodes><maxNodeGap>64</maxNodeGap>"
+                + "</mesh></config>")).getMeshSettings();
+        assertTrue(mesh.isReorderNodes());
+        assertEquals(64, mesh.getMaxNodeGap());
+    }
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2026 The University of Reading
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University of Reading, nor the names of the
+ *    authors or contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package uk.ac.rdg.resc.edal.catalogue.jaxb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.ac.rdg.resc.edal.catalogue.jaxb.CatalogueConfig.DatasetStorage;
+import uk.ac.rdg.resc.edal.catalogue.jaxb.DatasetConfig.DatasetState;
+import uk.ac.rdg.resc.edal.dataset.Dataset;
+import uk.ac.rdg.resc.edal.dataset.DatasetFactory;
+import uk.ac.rdg.resc.edal.exceptions.EdalException;
+
+public class DatasetSnapshotTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File originalWorkingDir;
+    private File sourceFile;
+
+    /**
+     * Creates {@link InMemoryNorthPolarStereographicDataset}s, counting how
+     * many it has created
+     */
+    public static class CountingDatasetFactory extends DatasetFactory {
+        static int created = 0;
+
+        @Override
+        public Dataset createDataset(String id, String location, boolean forceRefresh)
+                throws IOException, EdalException {
+            created++;
+            return new InMemoryNorthPolarStereographicDataset();
+        }
+    }
+
+    /*
+     * Records the datasets which have been made available
+     */
+    private static class RecordingStorage implements DatasetStorage {
+        private final List<Dataset> loaded = new ArrayList<>();
+
+        @Override
+        public void datasetLoaded(Dataset dataset, Collection<VariableConfig> variables) {
+            loaded.add(dataset);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        originalWorkingDir = DatasetFactory.getWorkingDirectory();
+        DatasetFactory.setWorkingDirectory(tempDir.newFolder("working"));
+        sourceFile = writeSourceFile("data.nc");
+        CountingDatasetFactory.created = 0;
+    }
+
+    @After
+    public void tearDown() {
+        DatasetFactory.setWorkingDirectory(originalWorkingDir);
+    }
+
+    @Test
+    public void testWriteAndRead() throws EdalException {
+        DatasetConfig config = getConfig(sourceFile.getAbsolutePath());
+        Dataset dataset = new InMemoryNorthPolarStereographicDataset();
+        DatasetSnapshot.write(config, dataset,
+                DatasetSnapshot.getSourceFiles(config.getLocation()));
+
+        DatasetSnapshot snapshot = DatasetSnapshot.read(config);
+        assertNotNull(snapshot);
+        assertEquals(dataset.getId(), snapshot.getDataset().getId());
+        assertEquals(dataset.getVariableIds(), snapshot.getDataset().getVariableIds());
+        assertNotNull(snapshot.getCreationTime());
+        assertTrue(snapshot.isCurrent());
+
+        DatasetSnapshot.delete(config.getId());
+        assertNull(DatasetSnapshot.read(config));
+    }
+
+    @Test
+    public void testHeaderMismatch() throws IOException, EdalException {
+        DatasetConfig config = getConfig(sourceFile.getAbsolutePath());
+        DatasetSnapshot.write(config, new InMemoryNorthPolarStereographicDataset(),
+                DatasetSnapshot.getSourceFiles(config.getLocation()));
+
+        DatasetConfig moved = getConfig(writeSourceFile("other.nc").getAbsolutePath());
+        assertNull(DatasetSnapshot.read(moved));
+
+        DatasetConfig otherFactory = getConfig(sourceFile.getAbsolutePath());
+        otherFactory.setDataReaderClass(DatasetFactory.class.getName());
+        assertNull(DatasetSnapshot.read(otherFactory));
+
+        assertNotNull(DatasetSnapshot.read(config));
+    }
+
+    @Test
+    public void testIsCurrent() throws IOException, EdalException {
+        DatasetConfig config = getConfig(sourceFile.getAbsolutePath());
+        DatasetSnapshot.write(config, new InMemoryNorthPolarStereographicDataset(),
+                DatasetSnapshot.getSourceFiles(config.getLocation()));
+        assertTrue(DatasetSnapshot.read(config).isCurrent());
+
+        sourceFile.setLastModified(sourceFile.lastModified() - 60000L);
+        assertFalse(DatasetSnapshot.read(config).isCurrent());
+
+        /*
+         * A snapshot whose sources are unknown can never be validated
+         */
+        DatasetSnapshot.write(config, new InMemoryNorthPolarStereographicDataset(), null);
+        assertFalse(DatasetSnapshot.read(config).isCurrent());
+    }
+
+    @Test
+    public void testRefreshFromSnapshot() {
+        RecordingStorage storage = new RecordingStorage();
+        DatasetConfig config = getConfig(sourceFile.getAbsolutePath());
+        config.refresh(storage);
+        assertEquals(DatasetState.READY, config.getState());
+        assertEquals(1, CountingDatasetFactory.created);
+
+        /*
+         * After a restart, the dataset is served from the snapshot, and then
+         * validated on the next refresh
+         */
+        DatasetConfig restarted = getConfig(sourceFile.getAbsolutePath());
+        restarted.refresh(storage);
+        assertEquals(DatasetState.READY, restarted.getState());
+        assertEquals(1, CountingDatasetFactory.created);
+        assertEquals(2, storage.loaded.size());
+        assertTrue(restarted.needsRefresh());
+
+        restarted.refresh(storage);
+        assertEquals(DatasetState.READY, restarted.getState());
+        assertEquals(1, CountingDatasetFactory.created);
+        assertEquals(2, storage.loaded.size());
+        assertFalse(restarted.needsRefresh());
+    }
+
+    @Test
+    public void testRefreshStaleSnapshot() {
+        RecordingStorage storage = new RecordingStorage();
+        getConfig(sourceFile.getAbsolutePath()).refresh(storage);
+        assertEquals(1, CountingDatasetFactory.created);
+
+        DatasetConfig restarted = getConfig(sourceFile.getAbsolutePath());
+        restarted.refresh(storage);
+        Dataset fromSnapshot = storage.loaded.get(1);
+        assertEquals(1, CountingDatasetFactory.created);
+
+        sourceFile.setLastModified(sourceFile.lastModified() - 60000L);
+        restarted.refresh(storage);
+        assertEquals(DatasetState.READY, restarted.getState());
+        assertEquals(2, CountingDatasetFactory.created);
+        assertEquals(3, storage.loaded.size());
+        assertFalse(fromSnapshot == storage.loaded.get(2));
+
+        /*
+         * The recreated dataset has been written to a new, current snapshot
+         */
+        DatasetSnapshot snapshot = DatasetSnapshot.read(restarted);
+        assertNotNull(snapshot);
+        assertTrue(snapshot.isCurrent());
+    }
+
+    @Test
+    public void testForceRefreshIgnoresSnapshot() {
+        RecordingStorage storage = new RecordingStorage();
+        getConfig(sourceFile.getAbsolutePath()).refresh(storage);
+
+        DatasetConfig restarted = getConfig(sourceFile.getAbsolutePath());
+        restarted.refresh(storage);
+        restarted.forceRefresh();
+        restarted.refresh(storage);
+        assertEquals(2, CountingDatasetFactory.created);
+        assertSame(DatasetState.READY, restarted.getState());
+    }
+
+    private DatasetConfig getConfig(String location) {
+        DatasetConfig config = new DatasetConfig();
+        config.setId("northPole");
+        config.setTitle("North Polar Stereographic");
+        config.setLocation(location);
+        config.setDataReaderClass(CountingDatasetFactory.class.getName());
+        return config;
+    }
+
+    private File writeSourceFile(String name) throws IOException {
+        File file = tempDir.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] { 1, 2, 3, 4 });
+        }
+        return file;
+    }
+}